@@ -1,16 +1,20 @@
 CREATE TABLE roperty_key (
     id character varying(255) NOT NULL,
-    description character varying(255)
+    description character varying(255),
+    modified bigint
 );
 
 ALTER TABLE ONLY roperty_key
     ADD CONSTRAINT roperty_key_pkey PRIMARY KEY (id);
 
+CREATE INDEX roperty_key_modified_index ON roperty_key USING btree (modified);
+
 CREATE TABLE roperty_value (
     id bigint NOT NULL,
     key character varying(255) NOT NULL,
     pattern character varying(255) NOT NULL,
     value bytea,
+    value_hash bigint,
     change_set character varying(255)
 );
 
@@ -22,5 +26,17 @@ ALTER TABLE ONLY roperty_value
 
 CREATE INDEX roperty_value_fkey_index ON roperty_value USING btree (key);
 
+CREATE SEQUENCE roperty_value_id_seq START WITH 1 INCREMENT BY 50;
+
 ALTER TABLE ONLY roperty_value
     ADD CONSTRAINT roperty_value_fkey FOREIGN KEY (key) REFERENCES roperty_key(id);
+
+CREATE TABLE roperty_tombstone (
+    id character varying(255) NOT NULL,
+    removed bigint NOT NULL
+);
+
+ALTER TABLE ONLY roperty_tombstone
+    ADD CONSTRAINT roperty_tombstone_pkey PRIMARY KEY (id);
+
+CREATE INDEX roperty_tombstone_removed_index ON roperty_tombstone USING btree (removed);
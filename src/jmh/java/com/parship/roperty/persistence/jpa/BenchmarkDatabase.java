@@ -0,0 +1,57 @@
+package com.parship.roperty.persistence.jpa;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates in-memory HSQLDB databases and persistences wired against them for the benchmarks.
+ */
+final class BenchmarkDatabase {
+
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    private BenchmarkDatabase() {
+    }
+
+    static EntityManagerFactory createEntityManagerFactory() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:hsqldb:mem:roperty_benchmark_" + DATABASE_COUNTER.incrementAndGet() + ";shutdown=true;hsqldb.tx=mvcc");
+        properties.put("hibernate.show_sql", "false");
+        return Persistence.createEntityManagerFactory("hsqldb", properties);
+    }
+
+    static <T extends JpaPersistence> T wire(T jpaPersistence, EntityManagerFactory entityManagerFactory) {
+        TransactionManager transactionManager = new TransactionManager();
+        transactionManager.setEntityManagerFactory(entityManagerFactory);
+
+        QueryBuilderDelegate<RopertyKey> keyQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        keyQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        keyQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        keyQueryBuilderDelegate.setResultClass(RopertyKey.class);
+        RopertyKeyDAO ropertyKeyDAO = new RopertyKeyDAO();
+        ropertyKeyDAO.setQueryBuilderDelegate(keyQueryBuilderDelegate);
+
+        QueryBuilderDelegate<RopertyValue> valueQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        valueQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        valueQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        valueQueryBuilderDelegate.setResultClass(RopertyValue.class);
+        RopertyValueDAO ropertyValueDAO = new RopertyValueDAO();
+        ropertyValueDAO.setQueryBuilderDelegate(valueQueryBuilderDelegate);
+
+        QueryBuilderDelegate<RopertyTombstone> tombstoneQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        tombstoneQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        tombstoneQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        tombstoneQueryBuilderDelegate.setResultClass(RopertyTombstone.class);
+        RopertyTombstoneDAO ropertyTombstoneDAO = new RopertyTombstoneDAO();
+        ropertyTombstoneDAO.setQueryBuilderDelegate(tombstoneQueryBuilderDelegate);
+
+        jpaPersistence.setTransactionManager(transactionManager);
+        jpaPersistence.setRopertyKeyDAO(ropertyKeyDAO);
+        jpaPersistence.setRopertyValueDAO(ropertyValueDAO);
+        jpaPersistence.setRopertyTombstoneDAO(ropertyTombstoneDAO);
+        return jpaPersistence;
+    }
+}
@@ -0,0 +1,93 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading all key ids as scalars with reading all keys as managed entities and taking their ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class KeyEnumerationBenchmark {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    @Param({"100000"})
+    private int keyCount;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private JpaPersistence persistence;
+
+    private QueryBuilderDelegate<RopertyKey> keyQueryBuilderDelegate;
+
+    @Setup(Level.Trial)
+    public void createDataSet() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        persistence = BenchmarkDatabase.wire(new JpaPersistence(), entityManagerFactory);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        long modified = System.currentTimeMillis();
+        for (int i = 0; i < keyCount; i++) {
+            RopertyKey ropertyKey = new RopertyKey();
+            ropertyKey.setId("benchmark.module" + i % 100 + ".key" + i);
+            ropertyKey.setDescription("Description of benchmark key " + i);
+            ropertyKey.setModified(modified);
+            entityManager.persist(ropertyKey);
+            if (i % INSERT_BATCH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+
+        keyQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        keyQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        keyQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        keyQueryBuilderDelegate.setResultClass(RopertyKey.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<String> loadKeyIds() {
+        return persistence.getAllKeys();
+    }
+
+    @Benchmark
+    public List<String> loadKeyEntities() {
+        EntityManager entityManager = keyQueryBuilderDelegate.createEntityManager();
+        List<RopertyKey> ropertyKeys = keyQueryBuilderDelegate.all(entityManager).getResultList();
+        List<String> keys = new ArrayList<>(ropertyKeys.size());
+        ropertyKeys.forEach(ropertyKey -> keys.add(ropertyKey.getId()));
+        keyQueryBuilderDelegate.closeEntityManager(entityManager);
+        return keys;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.parship.roperty.persistence.jpa;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how loading all keys scales with the number of threads that read and decode ranges of keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ParallelLoadBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int loadParallelism;
+
+    @Param({"10000"})
+    private int keyCount;
+
+    @Param({"5"})
+    private int patternsPerKey;
+
+    private final KeyValuesFactory keyValuesFactory = new DefaultKeyValuesFactory();
+
+    private final DomainSpecificValueFactory domainSpecificValueFactory = new DefaultDomainSpecificValueFactory();
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private ExecutorService executorService;
+
+    private JpaPersistence persistence;
+
+    @Setup(Level.Trial)
+    public void createDataSet() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        persistence = BenchmarkDatabase.wire(new JpaPersistence(), entityManagerFactory);
+        for (int i = 0; i < keyCount; i++) {
+            KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+            for (int j = 0; j < patternsPerKey; j++) {
+                String[] domainValues = new String[j];
+                for (int k = 0; k < j; k++) {
+                    domainValues[k] = "domainValue" + k;
+                }
+                keyValues.put("value" + i + "." + j, domainValues);
+            }
+            persistence.store("benchmark.key." + i, keyValues, null);
+        }
+
+        executorService = Executors.newFixedThreadPool(loadParallelism);
+        persistence.setLoadParallelism(loadParallelism);
+        persistence.setLoadExecutor(executorService);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        executorService.shutdown();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public Map<String, KeyValues> loadAll() {
+        return persistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+    }
+
+}
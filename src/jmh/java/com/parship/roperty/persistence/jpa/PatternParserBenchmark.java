@@ -0,0 +1,68 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares splitting the patterns of a large config set with a regular expression to the cached pattern parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PatternParserBenchmark {
+
+    private static final String[] COUNTRIES = {"DE", "AT", "CH", "FR", "IT", "ES", "NL", "BE"};
+
+    private static final String[] BRANDS = {"premium", "basic", "elite"};
+
+    private static final String[] PLATFORMS = {"android", "ios", "web"};
+
+    @Param({"10000"})
+    private int valueCount;
+
+    private String[] patterns;
+
+    @Setup
+    public void createPatterns() {
+        patterns = new String[valueCount];
+        for (int i = 0; i < valueCount; i++) {
+            // build new strings as they would come from the database
+            patterns[i] = new StringBuilder()
+                    .append(COUNTRIES[i % COUNTRIES.length]).append('|')
+                    .append(BRANDS[i % BRANDS.length]).append('|')
+                    .append(PLATFORMS[i % PLATFORMS.length])
+                    .toString();
+        }
+    }
+
+    @Benchmark
+    public void split(Blackhole blackhole) {
+        for (String pattern : patterns) {
+            blackhole.consume(pattern.split("\\|"));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        PatternParser patternParser = PatternParser.shared();
+        for (String pattern : patterns) {
+            blackhole.consume(patternParser.parse(pattern));
+        }
+    }
+
+}
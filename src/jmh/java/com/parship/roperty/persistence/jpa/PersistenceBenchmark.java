@@ -0,0 +1,184 @@
+package com.parship.roperty.persistence.jpa;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.DomainSpecificValue;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the hot paths of {@link JpaPersistence} and {@link LazyJpaPersistence} against an in-memory HSQLDB.
+ * Start it with <code>mvn -P benchmark verify</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PersistenceBenchmark {
+
+    private static final String KEY_PREFIX = "benchmark.key.";
+
+    private static final String SCRATCH_KEY = "benchmark.scratch";
+
+    private static final int LOAD_CHUNK_SIZE = 100;
+
+    @Param({"eager", "lazy"})
+    private String persistenceType;
+
+    @Param({"100", "1000"})
+    private int keyCount;
+
+    @Param({"1", "5"})
+    private int patternsPerKey;
+
+    @Param({"0", "2"})
+    private int changeSets;
+
+    @Param({"16", "1024"})
+    private int valueSize;
+
+    private final KeyValuesFactory keyValuesFactory = new DefaultKeyValuesFactory();
+
+    private final DomainSpecificValueFactory domainSpecificValueFactory = new DefaultDomainSpecificValueFactory();
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private JpaPersistence persistence;
+
+    private JpaPersistence chunkedPersistence;
+
+    private JpaPersistence indexedPersistence;
+
+    private Map<String, KeyValues> keyValuesMap;
+
+    private String value;
+
+    private int nextKey;
+
+    @Setup(Level.Trial)
+    public void createDataSet() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        persistence = BenchmarkDatabase.wire("lazy".equals(persistenceType) ? new LazyJpaPersistence() : new JpaPersistence(), entityManagerFactory);
+        chunkedPersistence = BenchmarkDatabase.wire("lazy".equals(persistenceType) ? new LazyJpaPersistence() : new JpaPersistence(), entityManagerFactory);
+        chunkedPersistence.setLoadChunkSize(LOAD_CHUNK_SIZE);
+        indexedPersistence = BenchmarkDatabase.wire("lazy".equals(persistenceType) ? new LazyJpaPersistence() : new JpaPersistence(), entityManagerFactory);
+        indexedPersistence.setKeySearchIndexEnabled(true);
+        value = StringUtils.repeat('x', valueSize);
+
+        for (int i = 0; i < keyCount; i++) {
+            storeKey(KEY_PREFIX + i);
+        }
+
+        keyValuesMap = persistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeEntityManagerFactory() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public KeyValues load() {
+        return persistence.load(nextKey(), keyValuesFactory, domainSpecificValueFactory);
+    }
+
+    @Benchmark
+    public Map<String, KeyValues> loadAll() {
+        return persistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+    }
+
+    @Benchmark
+    public void loadAllInChunks(Blackhole blackhole) {
+        chunkedPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory, (key, keyValues) -> blackhole.consume(keyValues));
+    }
+
+    @Benchmark
+    public Map<String, KeyValues> reload() {
+        return persistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+    }
+
+    @Benchmark
+    public void store() {
+        persistence.store(nextKey(), createKeyValues(null), null);
+    }
+
+    @Benchmark
+    public void remove(ScratchValue scratchValue) {
+        persistence.remove(SCRATCH_KEY, scratchValue.domainSpecificValue, null);
+    }
+
+    @Benchmark
+    public List<String> findKeys() {
+        return persistence.findKeys(nextKey().substring(KEY_PREFIX.length() - 1));
+    }
+
+    @Benchmark
+    public List<String> findKeysFromIndex() {
+        return indexedPersistence.findKeys(nextKey().substring(KEY_PREFIX.length() - 1));
+    }
+
+    private String nextKey() {
+        String key = KEY_PREFIX + nextKey;
+        nextKey = (nextKey + 1) % keyCount;
+        return key;
+    }
+
+    private void storeKey(String key) {
+        persistence.store(key, createKeyValues(null), null);
+        for (int i = 0; i < changeSets; i++) {
+            String changeSet = "changeSet" + i;
+            persistence.store(key, createKeyValues(changeSet), changeSet);
+        }
+    }
+
+    private KeyValues createKeyValues(String changeSet) {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        keyValues.setDescription("benchmark");
+        for (int i = 0; i < patternsPerKey; i++) {
+            String[] domainValues = new String[i];
+            for (int j = 0; j < i; j++) {
+                domainValues[j] = "domainValue" + j;
+            }
+            keyValues.putWithChangeSet(changeSet, value, domainValues);
+        }
+        return keyValues;
+    }
+
+    @State(Scope.Benchmark)
+    public static class ScratchValue {
+
+        private DomainSpecificValue domainSpecificValue;
+
+        @Setup(Level.Invocation)
+        public void store(PersistenceBenchmark benchmark) {
+            KeyValues keyValues = benchmark.createKeyValues(null);
+            benchmark.persistence.store(SCRATCH_KEY, keyValues, null);
+            domainSpecificValue = keyValues.getDomainSpecificValues().iterator().next();
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.parship.roperty.persistence.jpa;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading all keys from the database with loading them from a snapshot file and reading the changes since.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SnapshotLoadBenchmark {
+
+    @Param({"database", "snapshot"})
+    private String source;
+
+    @Param({"10000"})
+    private int keyCount;
+
+    @Param({"5"})
+    private int patternsPerKey;
+
+    private final KeyValuesFactory keyValuesFactory = new DefaultKeyValuesFactory();
+
+    private final DomainSpecificValueFactory domainSpecificValueFactory = new DefaultDomainSpecificValueFactory();
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private JpaPersistence persistence;
+
+    private Path snapshotFile;
+
+    @Setup(Level.Trial)
+    public void createDataSet() throws IOException {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        persistence = BenchmarkDatabase.wire(new JpaPersistence(), entityManagerFactory);
+        // the keys are stored just before, so with an overlap the catch-up after the snapshot would read all of them
+        persistence.setReloadOverlap(0);
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        for (int i = 0; i < keyCount; i++) {
+            KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+            for (int j = 0; j < patternsPerKey; j++) {
+                String[] domainValues = new String[j];
+                for (int k = 0; k < j; k++) {
+                    domainValues[k] = "domainValue" + k;
+                }
+                keyValues.put("value" + i + "." + j, domainValues);
+            }
+            keyValuesMap.put("benchmark.key." + i, keyValues);
+        }
+        persistence.storeAll(keyValuesMap, null);
+
+        if ("snapshot".equals(source)) {
+            snapshotFile = Files.createTempFile("roperty", ".snapshot");
+            Files.delete(snapshotFile);
+            persistence.setSnapshotFile(snapshotFile);
+            persistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        entityManagerFactory.close();
+        if (snapshotFile != null) {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Benchmark
+    public Map<String, KeyValues> loadAll() {
+        return persistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+    }
+
+}
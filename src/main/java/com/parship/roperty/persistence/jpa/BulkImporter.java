@@ -0,0 +1,160 @@
+package com.parship.roperty.persistence.jpa;
+
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import org.apache.commons.lang3.Validate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Streams records from a file into the persistence. Records are read one at a time and stored in batches with
+ * {@link JpaPersistence#storeAll(Map, String)}, so memory use depends on the batch size rather than the size of the
+ * file. After each batch, the number of lines read so far is passed to a checkpoint, and an interrupted import can be
+ * continued after the lines of the last checkpoint. Storing is idempotent, so records that were stored after the
+ * last checkpoint are simply stored again.
+ */
+public class BulkImporter {
+
+    private static final int DEFAULT_BATCH_SIZE = 5_000;
+
+    private static final long NO_CHECKPOINT = 0L;
+
+    private JpaPersistence persistence;
+
+    private KeyValuesFactory keyValuesFactory;
+
+    private DomainSpecificValueFactory domainSpecificValueFactory;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Imports the records of the reader, skipping the given number of lines first. Returns the number of lines read.
+     */
+    public long importRecords(Reader reader, ImportFormat format, long startLine, LongConsumer checkpoint) {
+        Validate.notNull(reader, "Reader must not be null");
+        Validate.isTrue(startLine >= 0, "Start line must not be negative");
+        Validate.notNull(checkpoint, "Checkpoint must not be null");
+        Validate.notNull(persistence, "Persistence must not be null");
+        Validate.notNull(keyValuesFactory, "Key values factory must not be null");
+        Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
+
+        BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        ImportRecordReader recordReader = new ImportRecordReader(bufferedReader, format);
+        try {
+            recordReader.skipLines(startLine);
+            Map<String, Map<String, KeyValues>> batch = new LinkedHashMap<>();
+            int numRecords = 0;
+            ImportRecord record;
+            while ((record = recordReader.next()) != null) {
+                add(batch, record);
+                if (++numRecords == batchSize) {
+                    store(batch);
+                    checkpoint.accept(recordReader.getLineNumber());
+                    numRecords = 0;
+                }
+            }
+            if (numRecords > 0) {
+                store(batch);
+                checkpoint.accept(recordReader.getLineNumber());
+            }
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Could not read import after line %d", recordReader.getLineNumber()), e);
+        }
+        return recordReader.getLineNumber();
+    }
+
+    /**
+     * Imports the records of a UTF-8 encoded file. The number of lines stored is kept in the checkpoint file, and an
+     * import of the same file continues after them. The checkpoint file is kept after the import completes, so it must
+     * be removed to import the file again.
+     */
+    public long importFile(Path file, ImportFormat format, Path checkpointFile) {
+        Validate.notNull(file, "File must not be null");
+        Validate.notNull(checkpointFile, "Checkpoint file must not be null");
+        long startLine = readCheckpoint(checkpointFile);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importRecords(reader, format, startLine, lineNumber -> writeCheckpoint(checkpointFile, lineNumber));
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Could not read import file '%s'", file), e);
+        }
+    }
+
+    private void add(Map<String, Map<String, KeyValues>> batch, ImportRecord record) {
+        String changeSet = record.getChangeSet();
+        KeyValues keyValues = batch.computeIfAbsent(changeSet, ignored -> new LinkedHashMap<>())
+                .computeIfAbsent(record.getKey(), ignored -> createKeyValues());
+        String[] domainKeyParts = PatternParser.shared().parse(record.getPattern());
+        if (changeSet == null) {
+            keyValues.put(record.getValue(), domainKeyParts);
+        } else {
+            keyValues.putWithChangeSet(changeSet, record.getValue(), domainKeyParts);
+        }
+    }
+
+    private KeyValues createKeyValues() {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        Validate.notNull(keyValues, "Key values must not be null");
+        return keyValues;
+    }
+
+    private void store(Map<String, Map<String, KeyValues>> batch) {
+        batch.forEach((changeSet, keyValuesMap) -> persistence.storeAll(keyValuesMap, changeSet));
+        batch.clear();
+    }
+
+    private static long readCheckpoint(Path checkpointFile) {
+        if (!Files.exists(checkpointFile)) {
+            return NO_CHECKPOINT;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            throw new RopertyPersistenceException(String.format("Could not read checkpoint file '%s'", checkpointFile), e);
+        }
+    }
+
+    private static void writeCheckpoint(Path checkpointFile, long lineNumber) {
+        Path absoluteCheckpointFile = checkpointFile.toAbsolutePath();
+        try {
+            // replace the checkpoint in one step, so an interruption leaves either the old or the new one
+            Path tempFile = Files.createTempFile(absoluteCheckpointFile.getParent(), absoluteCheckpointFile.getFileName().toString(), ".tmp");
+            Files.write(tempFile, Long.toString(lineNumber).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, absoluteCheckpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Could not write checkpoint file '%s'", checkpointFile), e);
+        }
+    }
+
+    public void setPersistence(JpaPersistence persistence) {
+        Validate.notNull(persistence, "Persistence must not be null");
+        this.persistence = persistence;
+    }
+
+    public void setKeyValuesFactory(KeyValuesFactory keyValuesFactory) {
+        Validate.notNull(keyValuesFactory, "Key values factory must not be null");
+        this.keyValuesFactory = keyValuesFactory;
+    }
+
+    public void setDomainSpecificValueFactory(DomainSpecificValueFactory domainSpecificValueFactory) {
+        Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
+        this.domainSpecificValueFactory = domainSpecificValueFactory;
+    }
+
+    /**
+     * Sets the number of records stored between two checkpoints. Defaults to 5000.
+     */
+    public void setBatchSize(int batchSize) {
+        Validate.isTrue(batchSize > 0, "Batch size must be positive");
+        this.batchSize = batchSize;
+    }
+}
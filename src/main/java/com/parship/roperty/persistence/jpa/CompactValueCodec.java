@@ -0,0 +1,189 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes a type tag byte followed by a compact binary form for strings, integers, longs, booleans, doubles, big
+ * decimals, dates and array lists of these. All other values are written with Java serialization, whose stream magic
+ * byte serves as the tag, so values stored as plain serialized objects are decoded as well.
+ */
+public class CompactValueCodec implements ValueCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte BIG_DECIMAL = 6;
+    private static final byte DATE = 7;
+    private static final byte LIST = 8;
+    private static final byte SERIALIZED = (byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8);
+
+    @Override
+    public byte[] encode(Serializable value) {
+        Validate.notNull(value, "Value must not be null");
+        if (!isCompact(value)) {
+            return serialize(value);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            write(output, value);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Cannot encode value '%s'", value), e);
+        }
+    }
+
+    @Override
+    public Serializable decode(byte[] bytes) {
+        Validate.notNull(bytes, "Bytes must not be null");
+        Validate.isTrue(bytes.length > 0, "Bytes must not be empty");
+        if (bytes[0] == SERIALIZED) {
+            return deserialize(bytes);
+        }
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+            return read(input);
+        } catch (IOException e) {
+            throw new RopertyPersistenceException("Cannot decode value", e);
+        }
+    }
+
+    private static boolean isCompact(Object value) {
+        if (value == null) {
+            return true;
+        }
+        Class<?> valueClass = value.getClass();
+        if (valueClass == ArrayList.class) {
+            for (Object element : (List<?>) value) {
+                if (!isCompact(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return valueClass == String.class
+                || valueClass == Integer.class
+                || valueClass == Long.class
+                || valueClass == Boolean.class
+                || valueClass == Double.class
+                || valueClass == BigDecimal.class
+                || valueClass == Date.class;
+    }
+
+    private static void write(DataOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof String) {
+            output.writeByte(STRING);
+            writeBytes(output, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal bigDecimal = (BigDecimal) value;
+            output.writeByte(BIG_DECIMAL);
+            output.writeInt(bigDecimal.scale());
+            writeBytes(output, bigDecimal.unscaledValue().toByteArray());
+        } else if (value instanceof Date) {
+            output.writeByte(DATE);
+            output.writeLong(((Date) value).getTime());
+        } else {
+            List<?> list = (List<?>) value;
+            output.writeByte(LIST);
+            output.writeInt(list.size());
+            for (Object element : list) {
+                write(output, element);
+            }
+        }
+    }
+
+    private static Serializable read(DataInputStream input) throws IOException {
+        byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(readBytes(input), StandardCharsets.UTF_8);
+            case INTEGER:
+                return input.readInt();
+            case LONG:
+                return input.readLong();
+            case BOOLEAN:
+                return input.readBoolean();
+            case DOUBLE:
+                return input.readDouble();
+            case BIG_DECIMAL:
+                int scale = input.readInt();
+                return new BigDecimal(new BigInteger(readBytes(input)), scale);
+            case DATE:
+                return new Date(input.readLong());
+            case LIST:
+                int size = input.readInt();
+                ArrayList<Serializable> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(input));
+                }
+                return list;
+            default:
+                throw new RopertyPersistenceException(String.format("Unknown value type tag %d", tag));
+        }
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] serialize(Serializable value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Cannot serialize value '%s'", value), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Serializable deserialize(byte[] bytes) {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Serializable) input.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RopertyPersistenceException("Cannot deserialize value", e);
+        }
+    }
+}
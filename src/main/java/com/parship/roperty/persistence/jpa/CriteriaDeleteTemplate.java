@@ -0,0 +1,37 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.ParameterExpression;
+
+/**
+ * Caches a bulk delete. Its parameters must be named, because not all providers resolve unnamed parameter expressions
+ * of criteria deletes, so values are bound by name.
+ */
+class CriteriaDeleteTemplate<X> {
+
+    private final CriteriaDelete<X> delete;
+
+    private final ParameterExpression<?>[] parameters;
+
+    CriteriaDeleteTemplate(CriteriaDelete<X> delete, ParameterExpression<?>... parameters) {
+        Validate.notNull(delete, "Criteria delete must not be null");
+        for (ParameterExpression<?> parameter : parameters) {
+            Validate.notEmpty(parameter.getName(), "Parameters of criteria delete must be named");
+        }
+        this.delete = delete;
+        this.parameters = parameters;
+    }
+
+    Query createQuery(EntityManager entityManager, Object... values) {
+        Validate.isTrue(values.length == parameters.length, "Expected %d parameter values but got %d", parameters.length, values.length);
+        Query query = entityManager.createQuery(delete);
+        for (int i = 0; i < parameters.length; i++) {
+            query.setParameter(parameters[i].getName(), values[i]);
+        }
+        return query;
+    }
+}
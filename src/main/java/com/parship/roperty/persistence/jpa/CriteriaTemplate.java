@@ -0,0 +1,32 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+
+class CriteriaTemplate<R> {
+
+    private final CriteriaQuery<R> query;
+
+    private final ParameterExpression<?>[] parameters;
+
+    CriteriaTemplate(CriteriaQuery<R> query, ParameterExpression<?>... parameters) {
+        Validate.notNull(query, "Criteria query must not be null");
+        this.query = query;
+        this.parameters = parameters;
+    }
+
+    @SuppressWarnings("unchecked")
+    TypedQuery<R> createQuery(EntityManager entityManager, Object... values) {
+        Validate.isTrue(values.length == parameters.length, "Expected %d parameter values but got %d", parameters.length, values.length);
+        TypedQuery<R> typedQuery = entityManager.createQuery(query);
+        for (int i = 0; i < parameters.length; i++) {
+            typedQuery.setParameter((Parameter<Object>) parameters[i], values[i]);
+        }
+        return typedQuery;
+    }
+}
@@ -0,0 +1,24 @@
+package com.parship.roperty.persistence.jpa;
+
+class GreaterThanCriterion<Y extends Comparable<? super Y>> {
+    private String attributeName;
+    private Y comparison;
+
+    String getAttributeName() {
+        return attributeName;
+    }
+
+    GreaterThanCriterion<Y> withAttributeName(String attributeName) {
+        this.attributeName = attributeName;
+        return this;
+    }
+
+    Y getComparison() {
+        return comparison;
+    }
+
+    GreaterThanCriterion<Y> withComparison(Y comparison) {
+        this.comparison = comparison;
+        return this;
+    }
+}
@@ -0,0 +1,43 @@
+package com.parship.roperty.persistence.jpa;
+
+/**
+ * 64 bit FNV-1a hashes followed by the finalizer of MurmurHash3, so that inputs differing in a single byte or character
+ * differ in about half of the bits. The length is mixed in before the finalizer.
+ */
+final class Hashes {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashes() {
+    }
+
+    static long fnv1aMix(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash ^ bytes.length);
+    }
+
+    static long fnv1aMix(String string) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash ^ string.length());
+    }
+
+    private static long mix(long hash) {
+        long mixed = hash;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 33;
+        return mixed;
+    }
+}
@@ -0,0 +1,178 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a latency histogram and totals of the work of each operation in memory. Recording an operation only increments
+ * counters, without locks or allocations, so the recorder can stay enabled in production. Latencies are sorted into
+ * buckets that are a quarter of a power of two wide, so percentiles are accurate to 25 percent.
+ */
+public class HistogramMetricsRecorder implements MetricsRecorder {
+
+    private final Map<PersistenceOperation, OperationHistogram> histograms = new EnumMap<>(PersistenceOperation.class);
+
+    public HistogramMetricsRecorder() {
+        for (PersistenceOperation operation : PersistenceOperation.values()) {
+            histograms.put(operation, new OperationHistogram());
+        }
+    }
+
+    @Override
+    public void record(PersistenceOperation operation, long durationNanos, OperationStats stats) {
+        histograms.get(operation).record(durationNanos, stats);
+    }
+
+    public OperationHistogram getHistogram(PersistenceOperation operation) {
+        Validate.notNull(operation, "Operation must not be null");
+        return histograms.get(operation);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        histograms.forEach((operation, histogram) -> {
+            if (histogram.getCount() > 0) {
+                builder.append(operation).append(": ").append(histogram).append('\n');
+            }
+        });
+        return builder.toString();
+    }
+
+    public static final class OperationHistogram {
+
+        private static final int SUB_BUCKET_BITS = 2;
+
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private static final int NUM_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        private final LongAdder queries = new LongAdder();
+
+        private final LongAdder rows = new LongAdder();
+
+        private final LongAdder valueBytes = new LongAdder();
+
+        private final LongAdder entityManagers = new LongAdder();
+
+        private OperationHistogram() {
+        }
+
+        private void record(long durationNanos, OperationStats stats) {
+            long nanos = Math.max(durationNanos, 0L);
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (stats.isFailed()) {
+                failures.increment();
+            }
+            queries.add(stats.getQueries());
+            rows.add(stats.getRows());
+            valueBytes.add(stats.getValueBytes());
+            entityManagers.add(stats.getEntityManagers());
+        }
+
+        /**
+         * Values below the number of sub buckets get a bucket each. Larger values are sorted by their highest bit and
+         * the bits after it.
+         */
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * Returns the smallest duration of the next bucket, which is larger than all durations of the given bucket.
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket + 1L;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            return (SUB_BUCKETS + subBucket + 1) << shift;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getQueries() {
+            return queries.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getValueBytes() {
+            return valueBytes.sum();
+        }
+
+        public long getEntityManagers() {
+            return entityManagers.sum();
+        }
+
+        /**
+         * Returns a duration in nanoseconds that the given share of operations, between 0 and 1, did not exceed.
+         */
+        public long getPercentile(double quantile) {
+            Validate.inclusiveBetween(0.0, 1.0, quantile, "Quantile must be between 0 and 1");
+            long total = 0;
+            long[] counts = new long[NUM_BUCKETS];
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.min(upperBound(i), getMaxNanos());
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + ", failures=" + getFailures()
+                    + ", p50=" + getPercentile(0.5) + "ns, p99=" + getPercentile(0.99) + "ns, max=" + getMaxNanos() + "ns"
+                    + ", queries=" + getQueries() + ", rows=" + getRows() + ", valueBytes=" + getValueBytes()
+                    + ", entityManagers=" + getEntityManagers();
+        }
+    }
+}
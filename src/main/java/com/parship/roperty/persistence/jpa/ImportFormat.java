@@ -0,0 +1,24 @@
+package com.parship.roperty.persistence.jpa;
+
+/**
+ * Formats of the files {@link BulkImporter} reads.
+ */
+public enum ImportFormat {
+
+    /**
+     * Java properties with one key and value per entry. The values are stored for the empty pattern and no change set.
+     */
+    PROPERTIES,
+
+    /**
+     * Comma separated records of key, pattern, change set and value without a header. Fields containing commas,
+     * quotes or line breaks are enclosed in double quotes, and quotes within them are doubled.
+     */
+    CSV,
+
+    /**
+     * Tab separated records of key, pattern, change set and value, one per line. Tabs, line breaks and backslashes
+     * within fields are escaped as <code>\t</code>, <code>\n</code>, <code>\r</code> and <code>\\</code>.
+     */
+    TAB_SEPARATED
+}
@@ -0,0 +1,43 @@
+package com.parship.roperty.persistence.jpa;
+
+final class ImportRecord {
+
+    private final String key;
+
+    private final String pattern;
+
+    private final String changeSet;
+
+    private final String value;
+
+    ImportRecord(String key, String pattern, String changeSet, String value) {
+        this.key = key;
+        this.pattern = pattern;
+        this.changeSet = changeSet;
+        this.value = value;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns the change set of the record, or null for values outside of change sets.
+     */
+    String getChangeSet() {
+        return changeSet;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return key + '[' + pattern + ']' + (changeSet == null ? "" : '@' + changeSet) + '=' + value;
+    }
+}
@@ -0,0 +1,217 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Reads the records of an import one at a time and counts the lines it has read, so that an import can continue
+ * after the last record that was committed.
+ */
+class ImportRecordReader {
+
+    private static final int NUM_FIELDS = 4;
+
+    private static final String PROPERTIES_WHITESPACE = " \t\f";
+
+    private final BufferedReader reader;
+
+    private final ImportFormat format;
+
+    private long lineNumber;
+
+    ImportRecordReader(BufferedReader reader, ImportFormat format) {
+        Validate.notNull(reader, "Reader must not be null");
+        Validate.notNull(format, "Import format must not be null");
+        this.reader = reader;
+        this.format = format;
+    }
+
+    /**
+     * Returns the number of lines read so far. After {@link #next()}, this is the line the record ended on.
+     */
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    void skipLines(long numLines) throws IOException {
+        while (lineNumber < numLines) {
+            if (readLine() == null) {
+                throw new RopertyPersistenceException(String.format("Input ends at line %d before line %d to continue after", lineNumber, numLines));
+            }
+        }
+    }
+
+    /**
+     * Returns the next record, or null at the end of the input.
+     */
+    ImportRecord next() throws IOException {
+        String line;
+        while ((line = readLine()) != null) {
+            if (isBlankOrComment(line)) {
+                continue;
+            }
+            switch (format) {
+                case PROPERTIES:
+                    ImportRecord record = readProperty(line);
+                    if (record == null) {
+                        continue;
+                    }
+                    return record;
+                case CSV:
+                    return readCsv(line);
+                default:
+                    return readTabSeparated(line);
+            }
+        }
+        return null;
+    }
+
+    private String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineNumber++;
+        }
+        return line;
+    }
+
+    private boolean isBlankOrComment(String line) {
+        if (format == ImportFormat.PROPERTIES) {
+            String stripped = StringUtils.stripStart(line, PROPERTIES_WHITESPACE);
+            return stripped.isEmpty() || stripped.charAt(0) == '#' || stripped.charAt(0) == '!';
+        }
+        return StringUtils.isBlank(line) || line.charAt(0) == '#';
+    }
+
+    /**
+     * Returns the property of the logical line starting with the given line, or null if the logical line holds none,
+     * e.g. a lone continuation followed by a blank line.
+     */
+    private ImportRecord readProperty(String firstLine) throws IOException {
+        long firstLineNumber = lineNumber;
+        StringBuilder logicalLine = new StringBuilder(firstLine);
+        String line = firstLine;
+        while (continuesOnNextLine(line)) {
+            logicalLine.setLength(logicalLine.length() - 1);
+            line = readLine();
+            if (line == null) {
+                break;
+            }
+            logicalLine.append(StringUtils.stripStart(line, PROPERTIES_WHITESPACE));
+        }
+
+        Properties properties = new Properties();
+        properties.load(new StringReader(logicalLine.toString()));
+        if (properties.isEmpty()) {
+            return null;
+        }
+        String key = properties.stringPropertyNames().iterator().next();
+        validateKey(key, firstLineNumber);
+        return new ImportRecord(key, "", null, properties.getProperty(key));
+    }
+
+    private static boolean continuesOnNextLine(String line) {
+        int numBackslashes = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            numBackslashes++;
+        }
+        return numBackslashes % 2 == 1;
+    }
+
+    private ImportRecord readCsv(String firstLine) throws IOException {
+        long firstLineNumber = lineNumber;
+        List<String> fields = new ArrayList<>(NUM_FIELDS);
+        StringBuilder field = new StringBuilder();
+        String line = firstLine;
+        boolean fieldStart = true;
+        boolean quoted = false;
+        int i = 0;
+        while (i < line.length() || quoted) {
+            if (i == line.length()) {
+                // a quoted field continues on the next line
+                line = readLine();
+                if (line == null) {
+                    throw new RopertyPersistenceException(String.format("Quoted field of record at line %d is not closed", firstLineNumber));
+                }
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                fieldStart = true;
+                continue;
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+            fieldStart = false;
+        }
+        fields.add(field.toString());
+        return toRecord(fields, firstLineNumber);
+    }
+
+    private ImportRecord readTabSeparated(String line) {
+        List<String> fields = new ArrayList<>(NUM_FIELDS);
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                field.append(unescape(line.charAt(++i)));
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return toRecord(fields, lineNumber);
+    }
+
+    private static char unescape(char escaped) {
+        switch (escaped) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            default:
+                return escaped;
+        }
+    }
+
+    private static ImportRecord toRecord(List<String> fields, long lineNumber) {
+        if (fields.size() != NUM_FIELDS) {
+            throw new RopertyPersistenceException(String.format("Expected %d fields but found %d in record at line %d", NUM_FIELDS, fields.size(), lineNumber));
+        }
+        String key = fields.get(0);
+        validateKey(key, lineNumber);
+        return new ImportRecord(key, fields.get(1), StringUtils.defaultIfEmpty(fields.get(2), null), fields.get(3));
+    }
+
+    private static void validateKey(String key, long lineNumber) {
+        if (StringUtils.isBlank(key)) {
+            throw new RopertyPersistenceException(String.format("Key must not be empty in record at line %d", lineNumber));
+        }
+    }
+}
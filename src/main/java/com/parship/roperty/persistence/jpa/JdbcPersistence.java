@@ -0,0 +1,653 @@
+package com.parship.roperty.persistence.jpa;
+
+import com.parship.roperty.DomainSpecificValue;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import com.parship.roperty.Persistence;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads and writes the tables of {@link JpaPersistence} with plain JDBC, without a JPA provider. Rows are read with
+ * forward-only, read-only result sets and turned into key values while they are read, without creating entities.
+ * Statements are prepared once per call and reused for all rows of the call. Value ids are taken from the same sequence
+ * as the JPA provider uses, so both can write to the same tables.
+ */
+public class JdbcPersistence implements Persistence {
+
+    private static final long NO_WATERMARK = -1L;
+
+    private static final long DEFAULT_RELOAD_OVERLAP = 60_000L;
+
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    private static final String KEY_VALUES_QUERY = "SELECT k.id, k.description, v.pattern, v.change_set, v.value FROM roperty_key k JOIN roperty_value v ON v.key = k.id";
+
+    private static final String SELECT_KEY_VALUES = KEY_VALUES_QUERY + " WHERE k.id = ?";
+
+    private static final String SELECT_ALL_KEY_VALUES = KEY_VALUES_QUERY + " ORDER BY k.id";
+
+    private static final String SELECT_MODIFIED_KEY_VALUES = KEY_VALUES_QUERY + " WHERE k.modified > ? ORDER BY k.id";
+
+    private static final String SELECT_REMOVED_KEYS = "SELECT id FROM roperty_tombstone WHERE removed > ?";
+
+    private static final String SELECT_KEY = "SELECT id FROM roperty_key WHERE id = ?";
+
+    private static final String SELECT_ALL_KEYS = "SELECT id FROM roperty_key";
+
+    private static final String SELECT_KEYS_LIKE = "SELECT id FROM roperty_key WHERE LOWER(id) LIKE ?";
+
+    private static final String INSERT_KEY = "INSERT INTO roperty_key (id, description, modified) VALUES (?, ?, ?)";
+
+    private static final String TOUCH_KEY = "UPDATE roperty_key SET modified = ? WHERE id = ?";
+
+    private static final String DELETE_KEY = "DELETE FROM roperty_key WHERE id = ?";
+
+    private static final String DELETE_KEY_WITHOUT_VALUES = "DELETE FROM roperty_key WHERE id = ? AND NOT EXISTS (SELECT 1 FROM roperty_value WHERE key = ?)";
+
+    private static final String SELECT_VALUE_HASHES = "SELECT id, pattern, value_hash FROM roperty_value WHERE key = ? AND change_set = ?";
+
+    private static final String SELECT_VALUES = "SELECT id, pattern, value FROM roperty_value WHERE key = ?";
+
+    private static final String INSERT_VALUE = "INSERT INTO roperty_value (id, key, value, value_hash, change_set, pattern) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_VALUE = "UPDATE roperty_value SET value = ?, value_hash = ? WHERE id = ?";
+
+    private static final String DELETE_VALUE_BY_ID = "DELETE FROM roperty_value WHERE id = ?";
+
+    private static final String DELETE_VALUES = "DELETE FROM roperty_value WHERE key = ?";
+
+    private static final String DELETE_VALUE = "DELETE FROM roperty_value WHERE key = ? AND pattern = ? AND change_set = ?";
+
+    private static final String UPDATE_TOMBSTONE = "UPDATE roperty_tombstone SET removed = ? WHERE id = ?";
+
+    private static final String INSERT_TOMBSTONE = "INSERT INTO roperty_tombstone (id, removed) VALUES (?, ?)";
+
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    private static final String POSTGRESQL_NEXT_VALUE = "SELECT nextval('roperty_value_id_seq')";
+
+    private static final String STANDARD_NEXT_VALUE = "VALUES (NEXT VALUE FOR roperty_value_id_seq)";
+
+    private final Object idLock = new Object();
+
+    private DataSource dataSource;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    private long reloadOverlap = DEFAULT_RELOAD_OVERLAP;
+
+    private volatile String nextValueSql;
+
+    private volatile long watermark = NO_WATERMARK;
+
+    private long nextId;
+
+    private long lastId = -1L;
+
+    @Override
+    public KeyValues load(String key, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        Validate.notBlank(key, "Key must not be empty");
+        RopertyValueTransformer ropertyValueTransformer = transformer(keyValuesFactory, domainSpecificValueFactory);
+
+        KeyValues[] result = new KeyValues[1];
+        inTransaction(String.format("Could not load key '%s'", key), connection -> {
+            try (PreparedStatement statement = prepareQuery(connection, SELECT_KEY_VALUES)) {
+                statement.setString(1, key);
+                readKeyValues(statement, ropertyValueTransformer, (ignored, keyValues) -> result[0] = keyValues);
+            }
+            return null;
+        });
+        return result[0];
+    }
+
+    @Override
+    public Map<String, KeyValues> loadAll(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        loadAll(keyValuesFactory, domainSpecificValueFactory, keyValuesMap::put);
+        return keyValuesMap;
+    }
+
+    /**
+     * Loads all keys and hands each one to the consumer as soon as its rows are read, ordered by key. Only the values
+     * of the current key and the rows the driver fetched are held in memory.
+     */
+    public void loadAll(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory, BiConsumer<String, KeyValues> consumer) {
+        RopertyValueTransformer ropertyValueTransformer = transformer(keyValuesFactory, domainSpecificValueFactory);
+        Validate.notNull(consumer, "Consumer must not be null");
+
+        long loadStarted = System.currentTimeMillis();
+        inTransaction("Could not load all keys", connection -> {
+            try (PreparedStatement statement = prepareQuery(connection, SELECT_ALL_KEY_VALUES)) {
+                readKeyValues(statement, ropertyValueTransformer, consumer);
+            }
+            return null;
+        });
+        watermark = loadStarted - reloadOverlap;
+    }
+
+    @Override
+    public Map<String, KeyValues> reload(Map<String, KeyValues> keyValuesMap, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        Validate.notNull(keyValuesMap, "Key values map must not be null");
+        RopertyValueTransformer ropertyValueTransformer = transformer(keyValuesFactory, domainSpecificValueFactory);
+
+        long reloadStarted = System.currentTimeMillis();
+        long since = watermark;
+        Map<String, KeyValues> result;
+        if (since == NO_WATERMARK) {
+            result = new HashMap<>(keyValuesMap.size());
+            for (String key : keyValuesMap.keySet()) {
+                KeyValues keyValues = load(key, keyValuesFactory, domainSpecificValueFactory);
+                if (keyValues != null) {
+                    result.put(key, keyValues);
+                }
+            }
+        } else {
+            result = inTransaction("Could not reload keys", connection -> reloadModifiedKeys(connection, keyValuesMap, since, ropertyValueTransformer));
+        }
+
+        watermark = reloadStarted - reloadOverlap;
+        return result;
+    }
+
+    private Map<String, KeyValues> reloadModifiedKeys(Connection connection, Map<String, KeyValues> keyValuesMap, long since, RopertyValueTransformer ropertyValueTransformer) throws SQLException {
+        Map<String, KeyValues> result = new HashMap<>(keyValuesMap);
+        Set<String> modifiedKeys = new HashSet<>();
+        try (PreparedStatement statement = prepareQuery(connection, SELECT_MODIFIED_KEY_VALUES)) {
+            statement.setLong(1, since);
+            readKeyValues(statement, ropertyValueTransformer, (key, keyValues) -> {
+                result.put(key, keyValues);
+                modifiedKeys.add(key);
+            });
+        }
+        try (PreparedStatement statement = prepareQuery(connection, SELECT_REMOVED_KEYS)) {
+            statement.setLong(1, since);
+            for (String removedKey : readStrings(statement)) {
+                if (!modifiedKeys.contains(removedKey)) {
+                    result.remove(removedKey);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads rows of key id, description, pattern, change set and value, whose rows of one key are adjacent, and hands
+     * each key to the consumer when its last row was read.
+     */
+    private static void readKeyValues(PreparedStatement statement, RopertyValueTransformer ropertyValueTransformer, BiConsumer<String, KeyValues> consumer) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            String currentKey = null;
+            KeyValues keyValues = null;
+            while (resultSet.next()) {
+                String key = resultSet.getString(1);
+                if (!key.equals(currentKey)) {
+                    if (keyValues != null) {
+                        consumer.accept(currentKey, keyValues);
+                    }
+                    currentKey = key;
+                    keyValues = ropertyValueTransformer.createKeyValues();
+                    keyValues.setDescription(resultSet.getString(2));
+                }
+                byte[] value = resultSet.getBytes(5);
+                RopertyValueTransformer.putValue(keyValues, resultSet.getString(3), resultSet.getString(4), value == null ? null : decode(value));
+            }
+            if (keyValues != null) {
+                consumer.accept(currentKey, keyValues);
+            }
+        }
+    }
+
+    private static Serializable decode(byte[] value) {
+        OperationStats.valueDecoded(value.length);
+        return ValueCodecs.codec().decode(value);
+    }
+
+    /**
+     * Stores the values of the key for the change set. Values whose encoding did not change are recognized by their
+     * hash and neither read nor written.
+     */
+    @Override
+    public void store(String key, KeyValues keyValues, String changeSet) {
+        JpaPersistence.validateForStore(key, keyValues);
+
+        inTransaction(String.format("Could not store key '%s'", key), connection -> {
+            storeInTransaction(connection, key, keyValues, changeSet);
+            return null;
+        });
+    }
+
+    private void storeInTransaction(Connection connection, String key, KeyValues keyValues, String changeSet) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (!touch(connection, key, now)) {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_KEY)) {
+                statement.setString(1, key);
+                statement.setString(2, keyValues.getDescription());
+                statement.setLong(3, now);
+                statement.executeUpdate();
+            }
+        }
+
+        String transformedChangeSet = changeSet == null ? "" : changeSet;
+        Map<String, ExistingValue> existingValues = new HashMap<>();
+        try (PreparedStatement statement = prepareQuery(connection, SELECT_VALUE_HASHES)) {
+            statement.setString(1, key);
+            statement.setString(2, transformedChangeSet);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    long valueHash = resultSet.getLong(3);
+                    existingValues.put(resultSet.getString(2), new ExistingValue(resultSet.getLong(1), resultSet.wasNull() ? null : valueHash));
+                }
+            }
+        }
+
+        try (PreparedStatement insertStatement = connection.prepareStatement(INSERT_VALUE);
+             PreparedStatement updateStatement = connection.prepareStatement(UPDATE_VALUE)) {
+            boolean inserts = false;
+            boolean updates = false;
+            for (DomainSpecificValue domainSpecificValue : keyValues.getDomainSpecificValues()) {
+                if (!domainSpecificValue.changeSetIs(StringUtils.isEmpty(changeSet) ? null : changeSet)) {
+                    continue;
+                }
+                String pattern = domainSpecificValue.getPatternStr();
+                Object value = domainSpecificValue.getValue();
+                ExistingValue existingValue = existingValues.get(pattern);
+                if (existingValue == null) {
+                    if (value == null) {
+                        throw new RopertyPersistenceException(String.format("Cannot serialize value '%s'", value));
+                    }
+                    byte[] bytes = encode(value);
+                    insertStatement.setLong(1, nextValueId(connection));
+                    insertStatement.setString(2, key);
+                    insertStatement.setBytes(3, bytes);
+                    insertStatement.setLong(4, RopertyValue.hash(bytes));
+                    insertStatement.setString(5, transformedChangeSet);
+                    insertStatement.setString(6, pattern);
+                    insertStatement.addBatch();
+                    inserts = true;
+                } else {
+                    byte[] bytes = encode(value);
+                    long valueHash = RopertyValue.hash(bytes);
+                    if (existingValue.valueHash == null || existingValue.valueHash != valueHash) {
+                        updateStatement.setBytes(1, bytes);
+                        updateStatement.setLong(2, valueHash);
+                        updateStatement.setLong(3, existingValue.id);
+                        updateStatement.addBatch();
+                        updates = true;
+                    }
+                }
+            }
+            if (inserts) {
+                insertStatement.executeBatch();
+            }
+            if (updates) {
+                updateStatement.executeBatch();
+            }
+        }
+    }
+
+    private static byte[] encode(Object value) {
+        if (value != null && !(value instanceof Serializable)) {
+            throw new RopertyPersistenceException(String.format("Cannot serialize value '%s'", value));
+        }
+        return RopertyValue.encode((Serializable) value);
+    }
+
+    /**
+     * Returns the next value id. Ids are taken from the sequence in blocks whose last id is the sequence value, as the
+     * pooled optimizer of Hibernate does, so that ids of both never overlap.
+     */
+    private long nextValueId(Connection connection) throws SQLException {
+        synchronized (idLock) {
+            if (nextId > lastId) {
+                long sequenceValue;
+                try (PreparedStatement statement = connection.prepareStatement(nextValueSql(connection));
+                     ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new RopertyPersistenceException("Sequence roperty_value_id_seq returned no value");
+                    }
+                    sequenceValue = resultSet.getLong(1);
+                }
+                nextId = Math.max(1L, sequenceValue - RopertyValue.ID_ALLOCATION_SIZE + 1);
+                lastId = sequenceValue;
+            }
+            return nextId++;
+        }
+    }
+
+    private String nextValueSql(Connection connection) throws SQLException {
+        String sql = nextValueSql;
+        if (sql == null) {
+            sql = POSTGRESQL.equals(connection.getMetaData().getDatabaseProductName()) ? POSTGRESQL_NEXT_VALUE : STANDARD_NEXT_VALUE;
+            nextValueSql = sql;
+        }
+        return sql;
+    }
+
+    @Override
+    public void remove(String key, KeyValues keyValues, String changeSet) {
+        Validate.notBlank(key, "Key must not be empty");
+
+        inTransaction(String.format("Could not remove key '%s'", key), connection -> {
+            if (!exists(connection, key)) {
+                return null;
+            }
+            if (keyValues == null) {
+                int numDeletedValues;
+                try (PreparedStatement statement = connection.prepareStatement(DELETE_VALUES)) {
+                    statement.setString(1, key);
+                    numDeletedValues = statement.executeUpdate();
+                }
+                if (numDeletedValues == 0) {
+                    throw new RopertyPersistenceException(String.format("Could not find any values for key '%s'. This is an inconsistency that should not happen.", key));
+                }
+                removeKey(connection, key);
+                return null;
+            }
+            removeKeyValues(connection, key, keyValues);
+            return null;
+        });
+    }
+
+    private void removeKeyValues(Connection connection, String key, KeyValues keyValues) throws SQLException {
+        Set<DomainSpecificValue> domainSpecificValues = keyValues.getDomainSpecificValues();
+        if (domainSpecificValues.isEmpty()) {
+            throw new RopertyPersistenceException(String.format("Key values for key '%s' must contain domain specific values", key));
+        }
+
+        // values are only decoded if their pattern is one of the removed ones
+        Map<String, List<DomainSpecificValue>> removedByPattern = new HashMap<>();
+        for (DomainSpecificValue domainSpecificValue : domainSpecificValues) {
+            removedByPattern.computeIfAbsent(domainSpecificValue.getPatternStr(), pattern -> new ArrayList<>(1)).add(domainSpecificValue);
+        }
+
+        int numValues = 0;
+        List<Long> removedIds = new ArrayList<>();
+        try (PreparedStatement statement = prepareQuery(connection, SELECT_VALUES)) {
+            statement.setString(1, key);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    numValues++;
+                    List<DomainSpecificValue> candidates = removedByPattern.getOrDefault(resultSet.getString(2), Collections.emptyList());
+                    if (!candidates.isEmpty() && matchesAny(resultSet.getBytes(3), candidates)) {
+                        removedIds.add(resultSet.getLong(1));
+                    }
+                }
+            }
+        }
+        if (numValues == 0) {
+            throw new RopertyPersistenceException(String.format("Could not find any values for key '%s'. This is an inconsistency that should not happen.", key));
+        }
+
+        if (removedIds.size() == numValues) {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_VALUES)) {
+                statement.setString(1, key);
+                statement.executeUpdate();
+            }
+            removeKey(connection, key);
+            return;
+        }
+        if (!removedIds.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_VALUE_BY_ID)) {
+                for (Long removedId : removedIds) {
+                    statement.setLong(1, removedId);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        touch(connection, key, System.currentTimeMillis());
+    }
+
+    private static boolean matchesAny(byte[] bytes, List<DomainSpecificValue> candidates) {
+        Object value = bytes == null ? null : decode(bytes);
+        for (DomainSpecificValue candidate : candidates) {
+            if (Objects.equals(candidate.getValue(), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void remove(String key, DomainSpecificValue domainSpecificValue, String changeSet) {
+        Validate.notBlank(key, "Key must not be empty");
+        Validate.notNull(domainSpecificValue, "Domain specific value must not be null");
+
+        inTransaction(String.format("Could not remove value of key '%s'", key), connection -> {
+            if (!exists(connection, key)) {
+                return null;
+            }
+            Object value = domainSpecificValue.getValue();
+            if (value == null) {
+                throw new RopertyPersistenceException(String.format("Value for key '%s' must not be null", key));
+            }
+            if (!(value instanceof Serializable)) {
+                throw new RopertyPersistenceException(String.format("Domain specific value '%s' for key '%s' must be serializable", value, key));
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_VALUE)) {
+                statement.setString(1, key);
+                statement.setString(2, domainSpecificValue.getPatternStr());
+                statement.setString(3, changeSet == null ? "" : changeSet);
+                if (statement.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+
+            // the key is only deleted if this was its last value, which saves counting the values first
+            boolean keyRemoved;
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_KEY_WITHOUT_VALUES)) {
+                statement.setString(1, key);
+                statement.setString(2, key);
+                keyRemoved = statement.executeUpdate() > 0;
+            }
+            if (keyRemoved) {
+                writeTombstone(connection, key);
+            } else {
+                touch(connection, key, System.currentTimeMillis());
+            }
+            return null;
+        });
+    }
+
+    private boolean exists(Connection connection, String key) throws SQLException {
+        try (PreparedStatement statement = prepareQuery(connection, SELECT_KEY)) {
+            statement.setString(1, key);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * Marks the key as modified. Returns false if there is no such key.
+     */
+    private static boolean touch(Connection connection, String key, long modified) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(TOUCH_KEY)) {
+            statement.setLong(1, modified);
+            statement.setString(2, key);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    private static void removeKey(Connection connection, String key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE_KEY)) {
+            statement.setString(1, key);
+            statement.executeUpdate();
+        }
+        writeTombstone(connection, key);
+    }
+
+    private static void writeTombstone(Connection connection, String key) throws SQLException {
+        long removed = System.currentTimeMillis();
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_TOMBSTONE)) {
+            statement.setLong(1, removed);
+            statement.setString(2, key);
+            if (statement.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_TOMBSTONE)) {
+            statement.setString(1, key);
+            statement.setLong(2, removed);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the keys that contain the substring, ignoring case. An exact match comes first, then keys that contain
+     * the substring earlier, then shorter keys.
+     */
+    @Override
+    public List<String> findKeys(String substring) {
+        Validate.notNull(substring, "Substring must not be null");
+
+        List<String> keys = inTransaction(String.format("Could not find keys containing '%s'", substring), connection -> {
+            try (PreparedStatement statement = prepareQuery(connection, SELECT_KEYS_LIKE)) {
+                statement.setString(1, "%" + substring.toLowerCase(Locale.ROOT) + "%");
+                return readStrings(statement);
+            }
+        });
+        return KeySearchIndex.rank(keys, substring, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<String> getAllKeys() {
+        return inTransaction("Could not load all keys", connection -> {
+            try (PreparedStatement statement = prepareQuery(connection, SELECT_ALL_KEYS)) {
+                return readStrings(statement);
+            }
+        });
+    }
+
+    private static List<String> readStrings(PreparedStatement statement) throws SQLException {
+        List<String> strings = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                strings.add(resultSet.getString(1));
+            }
+        }
+        return strings;
+    }
+
+    private PreparedStatement prepareQuery(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    private static RopertyValueTransformer transformer(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        Validate.notNull(keyValuesFactory, "Key values factory must no be null");
+        Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
+        return new RopertyValueTransformer()
+                .withDomainSpecificValueFactory(domainSpecificValueFactory)
+                .withKeyValuesFactory(keyValuesFactory);
+    }
+
+    /**
+     * Runs the callback on a connection of the data source in one transaction, which is rolled back if the callback
+     * fails. Some drivers only stream result sets when auto commit is disabled.
+     */
+    private <T> T inTransaction(String failureMessage, ConnectionCallback<T> callback) {
+        Validate.notNull(dataSource, "Data source must not be null");
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            Exception failure = null;
+            try {
+                T result = callback.doInConnection(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                failure = e;
+                try {
+                    connection.rollback();
+                } catch (SQLException | RuntimeException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw e;
+            } finally {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException | RuntimeException resetFailure) {
+                    // a failure of the call itself is more telling than one of resetting the connection
+                    if (failure == null) {
+                        throw resetFailure;
+                    }
+                    failure.addSuppressed(resetFailure);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RopertyPersistenceException(failureMessage, e);
+        }
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        Validate.notNull(dataSource, "Data source must not be null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Sets the number of rows the JDBC driver reads per round trip. Defaults to 1000. Zero keeps the driver's default,
+     * which for some drivers reads the whole result into memory.
+     */
+    public void setFetchSize(int fetchSize) {
+        Validate.isTrue(fetchSize >= 0, "Fetch size must not be negative");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Sets the time in milliseconds a reload looks back before the previous load or reload started, so that changes
+     * committed by transactions that started earlier are not missed. Defaults to one minute.
+     */
+    public void setReloadOverlap(long reloadOverlap) {
+        Validate.isTrue(reloadOverlap >= 0, "Reload overlap must not be negative");
+        this.reloadOverlap = reloadOverlap;
+    }
+
+    /**
+     * Sets the query that returns the next value of the sequence <code>roperty_value_id_seq</code>. By default
+     * <code>nextval</code> is used for PostgreSQL and <code>NEXT VALUE FOR</code> for other databases.
+     */
+    public void setNextValueSql(String nextValueSql) {
+        Validate.notBlank(nextValueSql, "Next value SQL must not be empty");
+        this.nextValueSql = nextValueSql;
+    }
+
+    @FunctionalInterface
+    private interface ConnectionCallback<T> {
+
+        T doInConnection(Connection connection) throws SQLException;
+    }
+
+    private static final class ExistingValue {
+
+        private final long id;
+
+        private final Long valueHash;
+
+        private ExistingValue(long id, Long valueHash) {
+            this.id = id;
+            this.valueHash = valueHash;
+        }
+    }
+}
@@ -9,35 +9,112 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class JpaPersistence implements Persistence {
 
+    private static final long NO_WATERMARK = -1L;
+
+    private static final long DEFAULT_RELOAD_OVERLAP = 60_000L;
+
+    private static final int UNCHUNKED = 0;
+
+    private static final int RANGES_PER_THREAD = 4;
+
+    private static final long DEFAULT_KEY_SEARCH_INDEX_REFRESH_INTERVAL = 10_000L;
+
+    private static final int DEFAULT_STORE_CHUNK_SIZE = 500;
+
+    private static final int DEFAULT_ASYNC_PARALLELISM = 4;
+
+    private static final long DEFAULT_SNAPSHOT_MAX_AGE = 86_400_000L;
+
+    private final AtomicBoolean refreshingKeySearchIndex = new AtomicBoolean();
+
     private RopertyKeyDAO ropertyKeyDAO;
 
     private RopertyValueDAO ropertyValueDAO;
 
+    private RopertyTombstoneDAO ropertyTombstoneDAO;
+
     private TransactionManager transactionManager;
 
+    private long reloadOverlap = DEFAULT_RELOAD_OVERLAP;
+
+    private int loadChunkSize = UNCHUNKED;
+
+    private int fetchSize;
+
+    private int loadParallelism = 1;
+
+    private int storeChunkSize = DEFAULT_STORE_CHUNK_SIZE;
+
+    private Executor loadExecutor;
+
+    private Executor asyncExecutor;
+
+    private int asyncParallelism = DEFAULT_ASYNC_PARALLELISM;
+
+    private volatile Executor defaultAsyncExecutor;
+
+    private Path snapshotFile;
+
+    private MetricsRecorder metricsRecorder = MetricsRecorder.NONE;
+
+    private long snapshotMaxAge = DEFAULT_SNAPSHOT_MAX_AGE;
+
+    private volatile long watermark = NO_WATERMARK;
+
+    private boolean keySearchIndexEnabled;
+
+    private long keySearchIndexRefreshInterval = DEFAULT_KEY_SEARCH_INDEX_REFRESH_INTERVAL;
+
+    private volatile KeySearchIndex keySearchIndex;
+
+    private volatile long keySearchIndexWatermark;
+
+    private volatile long nextKeySearchIndexRefresh;
+
     @Override
     public KeyValues load(String key, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
         Validate.notBlank(key, "Key must not be empty");
         Validate.notNull(keyValuesFactory, "Key values factory must no be null");
         Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
 
-        RopertyKey ropertyKey = ropertyKeyDAO.loadRopertyKey(key);
-        if (ropertyKey == null) {
-            return null;
-        }
+        return measure(PersistenceOperation.LOAD, () -> inUnitOfWork(() -> {
+            RopertyKey ropertyKey = ropertyKeyDAO.loadRopertyKey(key);
+            if (ropertyKey == null) {
+                return null;
+            }
 
-        return load(ropertyKey, keyValuesFactory, domainSpecificValueFactory);
+            return load(ropertyKey, keyValuesFactory, domainSpecificValueFactory);
+        }));
     }
 
     private KeyValues load(RopertyKey ropertyKey, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
@@ -59,16 +136,212 @@ public class JpaPersistence implements Persistence {
         Validate.notNull(keyValuesFactory, "Key values factory must no be null");
         Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
 
-        List<RopertyKey> ropertyKeys = ropertyKeyDAO.loadAllRopertyKeys();
-        Map<String, KeyValues> keyValuesMap = new HashMap<>(ropertyKeys.size());
-        for (RopertyKey ropertyKey : ropertyKeys) {
-            String key = ropertyKey.getId();
-            KeyValues keyValues = load(ropertyKey, keyValuesFactory, domainSpecificValueFactory);
-            Validate.notNull(keyValues, "No values found for key '%s'", key);
-            keyValuesMap.put(key, keyValues);
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        loadAll(keyValuesFactory, domainSpecificValueFactory, keyValuesMap::put);
+        return keyValuesMap;
+    }
+
+    /**
+     * Loads all keys and hands each one to the consumer as soon as its values are read, ordered by key. With a load
+     * chunk size, only the values of that many keys are held in memory at a time. With a load parallelism above one,
+     * ranges of keys are read in parallel and the consumer is called on the calling thread.
+     */
+    public void loadAll(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory, BiConsumer<String, KeyValues> consumer) {
+        Validate.notNull(keyValuesFactory, "Key values factory must no be null");
+        Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
+        Validate.notNull(consumer, "Consumer must not be null");
+
+        measure(PersistenceOperation.LOAD_ALL, () -> loadAllKeys(keyValuesFactory, domainSpecificValueFactory, consumer));
+    }
+
+    private void loadAllKeys(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory, BiConsumer<String, KeyValues> consumer) {
+        long loadStarted = System.currentTimeMillis();
+        long loadWatermark = loadStarted - reloadOverlap;
+        RopertyValueTransformer ropertyValueTransformer = new RopertyValueTransformer()
+                .withDomainSpecificValueFactory(domainSpecificValueFactory)
+                .withKeyValuesFactory(keyValuesFactory);
+        KeyValuesSnapshot snapshot = openSnapshot(loadStarted);
+        if (snapshot != null) {
+            loadFromSnapshot(snapshot, ropertyValueTransformer, consumer);
+        } else if (isSnapshotEnabled()) {
+            try (KeyValuesSnapshot.Writer snapshotWriter = KeyValuesSnapshot.create(snapshotFile, loadWatermark)) {
+                loadFromDatabase(ropertyValueTransformer, (key, keyValues) -> {
+                    snapshotWriter.add(key, keyValues);
+                    consumer.accept(key, keyValues);
+                });
+                snapshotWriter.commit();
+            }
+        } else {
+            loadFromDatabase(ropertyValueTransformer, consumer);
         }
 
-        return keyValuesMap;
+        watermark = loadWatermark;
+    }
+
+    private void loadFromDatabase(RopertyValueTransformer ropertyValueTransformer, BiConsumer<String, KeyValues> consumer) {
+        if (loadParallelism > 1) {
+            loadRangesInParallel(ropertyValueTransformer, consumer);
+        } else if (loadChunkSize == UNCHUNKED) {
+            List<RopertyValue> ropertyValues = inUnitOfWork(() -> ropertyValueDAO.loadAllRopertyValues(fetchSize));
+            ropertyValueTransformer.transformSortedValues(ropertyValues, consumer);
+        } else {
+            String afterKey = "";
+            while (afterKey != null) {
+                String lastKey = afterKey;
+                afterKey = inUnitOfWork(() -> loadChunk(lastKey, ropertyValueTransformer, consumer));
+            }
+        }
+    }
+
+    private boolean isSnapshotEnabled() {
+        return snapshotFile != null && ropertyTombstoneDAO != null;
+    }
+
+    /**
+     * Returns the snapshot to load from, or null if snapshots are disabled or the snapshot file is missing, unusable or
+     * older than the maximum snapshot age.
+     */
+    private KeyValuesSnapshot openSnapshot(long loadStarted) {
+        if (!isSnapshotEnabled()) {
+            return null;
+        }
+        KeyValuesSnapshot snapshot = KeyValuesSnapshot.open(snapshotFile);
+        if (snapshot == null || snapshot.getWatermark() < loadStarted - snapshotMaxAge) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Hands the keys of the snapshot to the consumer, replacing keys that were modified or removed since the snapshot
+     * was written with their current values from the database.
+     */
+    private void loadFromSnapshot(KeyValuesSnapshot snapshot, RopertyValueTransformer ropertyValueTransformer, BiConsumer<String, KeyValues> consumer) {
+        long since = snapshot.getWatermark();
+        SortedMap<String, KeyValues> modifiedKeyValues = new TreeMap<>();
+        Set<String> removedKeys = new HashSet<>();
+        inUnitOfWork(() -> {
+            ropertyValueTransformer.transformSortedValues(ropertyValueDAO.loadRopertyValuesModifiedSince(since), modifiedKeyValues::put);
+            removedKeys.addAll(ropertyTombstoneDAO.loadRemovedKeys(since));
+            return null;
+        });
+
+        Iterator<Map.Entry<String, KeyValues>> modifiedEntries = modifiedKeyValues.entrySet().iterator();
+        Map.Entry<String, KeyValues> nextModified = nextOrNull(modifiedEntries);
+        KeyValuesSnapshot.Cursor cursor = snapshot.cursor();
+        while (cursor.next()) {
+            String key = cursor.getKey();
+            while (nextModified != null && nextModified.getKey().compareTo(key) < 0) {
+                consumer.accept(nextModified.getKey(), nextModified.getValue());
+                nextModified = nextOrNull(modifiedEntries);
+            }
+            // modified keys are matched by lookup, so an order of the database that differs from the order of strings
+            // changes the order of keys but never hands a key over twice
+            if (!modifiedKeyValues.containsKey(key) && !removedKeys.contains(key)) {
+                consumer.accept(key, cursor.getKeyValues(ropertyValueTransformer));
+            }
+        }
+        while (nextModified != null) {
+            consumer.accept(nextModified.getKey(), nextModified.getValue());
+            nextModified = nextOrNull(modifiedEntries);
+        }
+    }
+
+    private static <T> T nextOrNull(Iterator<T> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Splits the keys into contiguous ranges of about the same size and loads each range with its own entity manager
+     * on the load executor. The ranges are handed to the consumer in order.
+     */
+    private void loadRangesInParallel(RopertyValueTransformer ropertyValueTransformer, BiConsumer<String, KeyValues> consumer) {
+        List<String> keys = inUnitOfWork(() -> ropertyKeyDAO.loadRopertyKeyIds("", Integer.MAX_VALUE));
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        int numKeys = keys.size();
+        int numRanges = loadParallelism * RANGES_PER_THREAD;
+        if (loadChunkSize != UNCHUNKED) {
+            numRanges = Math.max(numRanges, (numKeys + loadChunkSize - 1) / loadChunkSize);
+        }
+        numRanges = Math.min(numRanges, numKeys);
+
+        Executor executor = loadExecutor;
+        ExecutorService ownExecutor = null;
+        if (executor == null) {
+            ownExecutor = Executors.newFixedThreadPool(loadParallelism);
+            executor = ownExecutor;
+        }
+        OperationStats stats = OperationStats.current();
+        try {
+            List<CompletableFuture<List<Map.Entry<String, KeyValues>>>> ranges = new ArrayList<>(numRanges);
+            List<OperationStats> rangeStats = new ArrayList<>(numRanges);
+            String afterKey = "";
+            for (int i = 1; i <= numRanges; i++) {
+                String lowerBound = afterKey;
+                String lastKey = keys.get((int) ((long) numKeys * i / numRanges) - 1);
+                // each range counts its work on its own thread and adds it to the operation when it is joined
+                OperationStats statsOfRange = stats == null ? null : new OperationStats();
+                rangeStats.add(statsOfRange);
+                ranges.add(CompletableFuture.supplyAsync(() -> OperationStats.countTo(statsOfRange, () -> loadRange(lowerBound, lastKey, ropertyValueTransformer)), executor));
+                afterKey = lastKey;
+            }
+            for (int i = 0; i < numRanges; i++) {
+                for (Map.Entry<String, KeyValues> entry : join(ranges.get(i))) {
+                    consumer.accept(entry.getKey(), entry.getValue());
+                }
+                if (stats != null) {
+                    stats.add(rangeStats.get(i));
+                }
+            }
+        } finally {
+            if (ownExecutor != null) {
+                ownExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private List<Map.Entry<String, KeyValues>> loadRange(String afterKey, String lastKey, RopertyValueTransformer ropertyValueTransformer) {
+        return inUnitOfWork(() -> {
+            List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValuesOfKeyRange(afterKey, lastKey, fetchSize);
+            List<Map.Entry<String, KeyValues>> result = new ArrayList<>();
+            ropertyValueTransformer.transformSortedValues(ropertyValues, (key, keyValues) -> result.add(new AbstractMap.SimpleImmutableEntry<>(key, keyValues)));
+            return result;
+        });
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RopertyPersistenceException("Loading a range of keys failed", cause);
+        }
+    }
+
+    /**
+     * Loads the keys following the given key, one chunk at a time. Returns the last loaded key or null, if there are
+     * no more keys.
+     */
+    private String loadChunk(String afterKey, RopertyValueTransformer ropertyValueTransformer, BiConsumer<String, KeyValues> consumer) {
+        int chunkSize = loadChunkSize;
+        List<String> keys = ropertyKeyDAO.loadRopertyKeyIds(afterKey, chunkSize);
+        if (keys.isEmpty()) {
+            return null;
+        }
+
+        String lastKey = keys.get(keys.size() - 1);
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValuesOfKeyRange(afterKey, lastKey, fetchSize);
+        ropertyValueTransformer.transformSortedValues(ropertyValues, consumer);
+        if (keys.size() < chunkSize) {
+            return null;
+        }
+        return lastKey;
     }
 
     @Override
@@ -76,6 +349,20 @@ public class JpaPersistence implements Persistence {
         Validate.notNull(keyValuesFactory, "Key values factory must no be null");
         Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
 
+        long reloadStarted = System.currentTimeMillis();
+        long since = watermark;
+        Map<String, KeyValues> result = measure(PersistenceOperation.RELOAD, () -> inUnitOfWork(() -> {
+            if (since == NO_WATERMARK || ropertyTombstoneDAO == null) {
+                return reloadKeys(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+            }
+            return reloadModifiedKeys(keyValuesMap, since, keyValuesFactory, domainSpecificValueFactory);
+        }));
+
+        watermark = reloadStarted - reloadOverlap;
+        return result;
+    }
+
+    private Map<String, KeyValues> reloadKeys(Map<String, KeyValues> keyValuesMap, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
         Map<String, KeyValues> result = new HashMap<>(keyValuesMap.size());
 
         for (String key : keyValuesMap.keySet()) {
@@ -88,58 +375,181 @@ public class JpaPersistence implements Persistence {
         return result;
     }
 
+    private Map<String, KeyValues> reloadModifiedKeys(Map<String, KeyValues> keyValuesMap, long since, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        List<RopertyValue> modifiedValues = ropertyValueDAO.loadRopertyValuesModifiedSince(since);
+        List<String> removedKeys = ropertyTombstoneDAO.loadRemovedKeys(since);
+
+        Map<String, KeyValues> result = new HashMap<>(keyValuesMap);
+        Set<String> modifiedKeys = new HashSet<>();
+        new RopertyValueTransformer()
+                .withDomainSpecificValueFactory(domainSpecificValueFactory)
+                .withKeyValuesFactory(keyValuesFactory)
+                .transformSortedValues(modifiedValues, (key, keyValues) -> {
+                    result.put(key, keyValues);
+                    modifiedKeys.add(key);
+                });
+
+        for (String removedKey : removedKeys) {
+            if (!modifiedKeys.contains(removedKey)) {
+                result.remove(removedKey);
+            }
+        }
+
+        return result;
+    }
+
     @Override
     public void store(String key, KeyValues keyValues, String changeSet) {
-        Validate.notBlank(key, "Key must not be empty");
-        Validate.notNull(keyValues, "Key values must not be null");
         Validate.notNull(transactionManager, "Transaction manager must no be null");
+        validateForStore(key, keyValues);
+
+        measure(PersistenceOperation.STORE, () -> storeKey(key, keyValues, changeSet));
+    }
 
+    /**
+     * Rolls back the transaction after a failure. A failure of the rollback is added to the original failure, so that
+     * one is still thrown.
+     */
+    private void rollback(RuntimeException failure) {
+        try {
+            transactionManager.rollback();
+        } catch (RuntimeException rollbackFailure) {
+            failure.addSuppressed(rollbackFailure);
+        }
+    }
+
+    private void storeKey(String key, KeyValues keyValues, String changeSet) {
         transactionManager.begin();
+        try {
+            storeInTransaction(key, keyValues, changeSet);
+        } catch (RuntimeException e) {
+            rollback(e);
+            throw e;
+        }
+        addToKeySearchIndex(key);
+    }
+
+    /**
+     * Stores the values of many keys for the change set. The keys are written in chunks of
+     * {@link #setStoreChunkSize(int) store chunk size} keys, each in its own transaction, with one query for the
+     * existing keys and one for their existing values per chunk. All key values are validated before the first chunk
+     * is written, but a chunk that fails leaves the chunks before it committed.
+     */
+    public void storeAll(Map<String, KeyValues> keyValuesMap, String changeSet) {
+        Validate.notNull(keyValuesMap, "Key values map must not be null");
+        Validate.notNull(transactionManager, "Transaction manager must no be null");
+        keyValuesMap.forEach(JpaPersistence::validateForStore);
+
+        measure(PersistenceOperation.STORE_ALL, () -> storeChunks(keyValuesMap, changeSet));
+    }
 
+    private void storeChunks(Map<String, KeyValues> keyValuesMap, String changeSet) {
+        List<Map.Entry<String, KeyValues>> entries = new ArrayList<>(keyValuesMap.entrySet());
+        for (int from = 0; from < entries.size(); from += storeChunkSize) {
+            List<Map.Entry<String, KeyValues>> chunk = entries.subList(from, Math.min(from + storeChunkSize, entries.size()));
+            transactionManager.begin();
+            try {
+                storeAllInTransaction(chunk, changeSet);
+            } catch (RuntimeException e) {
+                rollback(e);
+                throw e;
+            }
+            chunk.forEach(entry -> addToKeySearchIndex(entry.getKey()));
+        }
+    }
+
+    static void validateForStore(String key, KeyValues keyValues) {
+        Validate.notBlank(key, "Key must not be empty");
+        Validate.notNull(keyValues, "Key values of key '%s' must not be null", key);
+        Set<DomainSpecificValue> domainSpecificValues = keyValues.getDomainSpecificValues();
+        if (domainSpecificValues == null || domainSpecificValues.isEmpty()) {
+            throw new RopertyPersistenceException(String.format("Domain specific values were empty for key '%s'", key));
+        }
+        for (DomainSpecificValue domainSpecificValue : domainSpecificValues) {
+            if (domainSpecificValue.getPatternStr() == null) {
+                throw new RopertyPersistenceException(String.format("Pattern for key '%s' must not be null", key));
+            }
+        }
+    }
+
+    private void storeAllInTransaction(List<Map.Entry<String, KeyValues>> entries, String changeSet) {
+        List<String> keys = new ArrayList<>(entries.size());
+        entries.forEach(entry -> keys.add(entry.getKey()));
+        Map<String, RopertyKey> ropertyKeys = new HashMap<>();
+        ropertyKeyDAO.loadRopertyKeys(keys).forEach(ropertyKey -> ropertyKeys.put(ropertyKey.getId(), ropertyKey));
+
+        Map<String, List<RopertyValue>> existingValues = new HashMap<>();
+        for (RopertyValue ropertyValue : ropertyValueDAO.loadRopertyValues(ropertyKeys.values(), emptyWhenNull(changeSet))) {
+            existingValues.computeIfAbsent(ropertyValue.getKey().getId(), key -> new ArrayList<>()).add(ropertyValue);
+        }
+
+        for (Map.Entry<String, KeyValues> entry : entries) {
+            String key = entry.getKey();
+            storeKeyValues(key, ropertyKeys.get(key), entry.getValue(), changeSet,
+                    ropertyKey -> existingValues.getOrDefault(key, Collections.emptyList()));
+        }
+
+        transactionManager.end();
+    }
+
+    private void storeInTransaction(String key, KeyValues keyValues, String changeSet) {
         RopertyKey ropertyKey = ropertyKeyDAO.loadRopertyKey(key);
+        storeKeyValues(key, ropertyKey, keyValues, changeSet,
+                existingKey -> ropertyValueDAO.loadRopertyValues(existingKey, emptyWhenNull(changeSet)));
+
+        transactionManager.end();
+    }
+
+    private void storeKeyValues(String key, RopertyKey existingRopertyKey, KeyValues keyValues, String changeSet, Function<RopertyKey, List<RopertyValue>> existingValuesLoader) {
+        RopertyKey ropertyKey = existingRopertyKey;
         String description = keyValues.getDescription();
-        if (ropertyKey == null) {
+        boolean existingKey = ropertyKey != null;
+        if (!existingKey) {
             ropertyKey = new RopertyKey();
             ropertyKey.setId(key);
             ropertyKey.setDescription(description);
+            ropertyKey.setModified(System.currentTimeMillis());
             transactionManager.persist(ropertyKey);
         }
 
         Set<DomainSpecificValue> domainSpecificValues = keyValues.getDomainSpecificValues();
         if (domainSpecificValues == null) {
-            transactionManager.end();
             throw new RopertyPersistenceException(String.format("Domain specific values were null for key values with description '%s'", description));
         }
         if (domainSpecificValues.isEmpty()) {
-            transactionManager.end();
             throw new RopertyPersistenceException(String.format("Domain specific values were empty for key values with description '%s'", description));
         }
 
-        storeDomainSpecificValues(ropertyKey, domainSpecificValues, changeSet);
-
-        transactionManager.end();
+        Map<String, RopertyValue> existingValues = new HashMap<>();
+        if (existingKey) {
+            touch(ropertyKey);
+            for (RopertyValue ropertyValue : existingValuesLoader.apply(ropertyKey)) {
+                existingValues.put(ropertyValue.getPattern(), ropertyValue);
+            }
+        }
+        storeDomainSpecificValues(ropertyKey, domainSpecificValues, changeSet, existingValues);
     }
 
-    private void storeDomainSpecificValues(RopertyKey key, Iterable<DomainSpecificValue> domainSpecificValues, String changeSet) {
+    private void storeDomainSpecificValues(RopertyKey key, Iterable<DomainSpecificValue> domainSpecificValues, String changeSet, Map<String, RopertyValue> existingValues) {
         String transformedChangeSet = emptyWhenNull(changeSet);
         for (DomainSpecificValue domainSpecificValue : domainSpecificValues) {
             Object rawValue = domainSpecificValue.getValue();
             String patternStr = domainSpecificValue.getPatternStr();
             if (patternStr == null) {
-                transactionManager.end();
                 throw new RopertyPersistenceException(String.format("Pattern for key '%s' must not be null", key.getId()));
             }
             if (domainSpecificValue.changeSetIs(nullWhenEmpty(changeSet))) {
-                storeRopertyValue(key, patternStr, rawValue, transformedChangeSet);
+                storeRopertyValue(key, patternStr, rawValue, transformedChangeSet, existingValues);
             }
         }
     }
 
-    private void storeRopertyValue(RopertyKey ropertyKey, String pattern, Object value, String changeSet) {
-        RopertyValue ropertyValue = ropertyValueDAO.loadRopertyValue(ropertyKey, pattern, changeSet);
+    private void storeRopertyValue(RopertyKey ropertyKey, String pattern, Object value, String changeSet, Map<String, RopertyValue> existingValues) {
+        RopertyValue ropertyValue = existingValues.get(pattern);
         if (ropertyValue == null) {
             RopertyValue newRopertyValue = createRopertyValue(ropertyKey, changeSet, value, pattern);
             transactionManager.persist(newRopertyValue);
+            existingValues.put(pattern, newRopertyValue);
         } else {
             boolean merge = mergeRopertyValue(ropertyValue, changeSet, value);
             if (merge) {
@@ -154,17 +564,15 @@ public class JpaPersistence implements Persistence {
             original.setChangeSet(newChangeSet);
             merge = true;
         }
-        if (!Objects.equals(original.getValue(), newValue)) {
-            if (newValue == null) {
-                original.setValue(null);
-                merge = true;
-            } else if (Serializable.class.isAssignableFrom(newValue.getClass())) {
-                Serializable value = (Serializable) newValue;
-                original.setValue(value);
-                merge = true;
-            } else {
-                throw new RopertyPersistenceException(String.format("Cannot serialize value '%s'", newValue));
-            }
+        if (newValue != null && !Serializable.class.isAssignableFrom(newValue.getClass())) {
+            throw new RopertyPersistenceException(String.format("Cannot serialize value '%s'", newValue));
+        }
+        Serializable value = (Serializable) newValue;
+        // the stored value is compared by its hash, so it is not decoded
+        byte[] bytes = RopertyValue.encode(value);
+        if (!original.hasEncodedValue(bytes)) {
+            original.setValue(value, bytes);
+            merge = true;
         }
         return merge;
     }
@@ -203,56 +611,80 @@ public class JpaPersistence implements Persistence {
     public void remove(String key, KeyValues keyValues, String changeSet) {
         Validate.notBlank(key, "Key must not be empty");
 
+        measure(PersistenceOperation.REMOVE, () -> removeKeyValues(key, keyValues));
+    }
+
+    private void removeKeyValues(String key, KeyValues keyValues) {
         transactionManager.begin();
+        boolean keyRemoved;
+        try {
+            keyRemoved = removeInTransaction(key, keyValues);
+        } catch (RuntimeException e) {
+            rollback(e);
+            throw e;
+        }
+        if (keyRemoved) {
+            removeFromKeySearchIndex(key);
+        }
+    }
 
+    private boolean removeInTransaction(String key, KeyValues keyValues) {
         RopertyKey ropertyKey = ropertyKeyDAO.loadRopertyKey(key);
         if (ropertyKey == null) {
             transactionManager.end();
-            return;
+            return false;
         }
 
-        List<RopertyValue> ropertyValues = new LinkedList<>(ropertyValueDAO.loadRopertyValues(ropertyKey));
-        if (ropertyValues.isEmpty()) {
+        if (keyValues == null) {
+            int numDeletedValues = ropertyValueDAO.deleteRopertyValues(ropertyKey);
+            if (numDeletedValues == 0) {
+                throw new RopertyPersistenceException(String.format("Could not find any values for key '%s'. This is an inconsistency that should not happen.", ropertyKey.getId()));
+            }
+            removeKey(ropertyKey);
             transactionManager.end();
-            throw new RopertyPersistenceException(String.format("Could not find any values for key '%s'. This is an inconsistency that should not happen.", ropertyKey.getId()));
+            return true;
         }
 
-        if (keyValues == null) {
-            for (RopertyValue value : ropertyValues) {
-                transactionManager.remove(value);
-            }
-            transactionManager.remove(ropertyKey);
-        } else {
-            removeKeyValues(ropertyKey, keyValues, ropertyValues);
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValues(ropertyKey);
+        if (ropertyValues.isEmpty()) {
+            throw new RopertyPersistenceException(String.format("Could not find any values for key '%s'. This is an inconsistency that should not happen.", ropertyKey.getId()));
         }
+        boolean keyRemoved = removeKeyValues(ropertyKey, keyValues, ropertyValues);
 
         transactionManager.end();
+        return keyRemoved;
     }
 
-    private void removeKeyValues(RopertyKey ropertyKey, KeyValues keyValues, List<RopertyValue> ropertyValues) {
+    private boolean removeKeyValues(RopertyKey ropertyKey, KeyValues keyValues, List<RopertyValue> ropertyValues) {
         Set<DomainSpecificValue> domainSpecificValues = keyValues.getDomainSpecificValues();
-        int numDomainSpecificValues = domainSpecificValues.size();
-        if (numDomainSpecificValues == 0) {
-            transactionManager.end();
+        if (domainSpecificValues.isEmpty()) {
             throw new RopertyPersistenceException(String.format("Key values for key '%s' must contain domain specific values", ropertyKey.getId()));
         }
 
-        int numRemovedValues = 0;
+        // a pattern has one value per change set, so matching a domain specific value only compares a few candidates
+        Map<String, List<RopertyValue>> ropertyValuesByPattern = new HashMap<>();
+        for (RopertyValue ropertyValue : ropertyValues) {
+            ropertyValuesByPattern.computeIfAbsent(ropertyValue.getPattern(), pattern -> new ArrayList<>(1)).add(ropertyValue);
+        }
 
+        Set<Long> removedIds = new HashSet<>();
         for (DomainSpecificValue domainSpecificValue : domainSpecificValues) {
-            for (Iterator<RopertyValue> itRopertyValue = ropertyValues.iterator(); itRopertyValue.hasNext(); ) {
-                RopertyValue ropertyValue = itRopertyValue.next();
+            List<RopertyValue> candidates = ropertyValuesByPattern.getOrDefault(domainSpecificValue.getPatternStr(), Collections.emptyList());
+            for (RopertyValue ropertyValue : candidates) {
                 if (ropertyValue.equals(domainSpecificValue)) {
-                    transactionManager.remove(ropertyValue);
-                    itRopertyValue.remove();
-                    numRemovedValues++;
+                    removedIds.add(ropertyValue.getId());
                 }
             }
         }
 
-        if (numDomainSpecificValues == numRemovedValues) {
-            transactionManager.remove(ropertyKey);
+        ropertyValueDAO.deleteRopertyValues(ropertyKey, removedIds);
+
+        if (removedIds.size() == ropertyValues.size()) {
+            removeKey(ropertyKey);
+            return true;
         }
+        touch(ropertyKey);
+        return false;
     }
 
     @Override
@@ -260,54 +692,320 @@ public class JpaPersistence implements Persistence {
         Validate.notBlank(key, "Key must not be empty");
         Validate.notNull(domainSpecificValue, "Domain specific value must not be null");
 
+        measure(PersistenceOperation.REMOVE, () -> removeDomainSpecificValue(key, domainSpecificValue, changeSet));
+    }
+
+    private void removeDomainSpecificValue(String key, DomainSpecificValue domainSpecificValue, String changeSet) {
         transactionManager.begin();
+        boolean keyRemoved;
+        try {
+            keyRemoved = removeInTransaction(key, domainSpecificValue, changeSet);
+        } catch (RuntimeException e) {
+            rollback(e);
+            throw e;
+        }
+        if (keyRemoved) {
+            removeFromKeySearchIndex(key);
+        }
+    }
 
+    private boolean removeInTransaction(String key, DomainSpecificValue domainSpecificValue, String changeSet) {
         RopertyKey ropertyKey = ropertyKeyDAO.loadRopertyKey(key);
         if (ropertyKey == null) {
             transactionManager.end();
-            return;
+            return false;
         }
 
-        long numValues = ropertyValueDAO.getNumberOfValues(ropertyKey);
-
         String patternStr = domainSpecificValue.getPatternStr();
 
         Object value = domainSpecificValue.getValue();
         if (value == null) {
-            transactionManager.end();
             throw new RopertyPersistenceException(String.format("Value for key '%s' must not be null", key));
         }
         if (!Serializable.class.isAssignableFrom(value.getClass())) {
-            transactionManager.end();
             throw new RopertyPersistenceException(String.format("Domain specific value '%s' for key '%s' must be serializable", value, key));
         }
 
-        RopertyValue ropertyValue = ropertyValueDAO.loadRopertyValue(ropertyKey, patternStr, emptyWhenNull(changeSet));
-        if (ropertyValue == null) {
+        if (!ropertyValueDAO.deleteRopertyValue(ropertyKey, patternStr, emptyWhenNull(changeSet))) {
             transactionManager.end();
-            return;
+            return false;
         }
 
-        transactionManager.remove(ropertyValue);
-
-        if (numValues == 1) {
-            transactionManager.remove(ropertyKey);
+        // the key is only deleted if this was its last value, which saves counting the values first
+        boolean keyRemoved = ropertyKeyDAO.deleteRopertyKeyWithoutValues(key);
+        if (keyRemoved) {
+            writeTombstone(key);
+        } else {
+            touch(ropertyKey);
         }
 
         transactionManager.end();
+        return keyRemoved;
+    }
+
+    private void touch(RopertyKey ropertyKey) {
+        ropertyKey.setModified(System.currentTimeMillis());
+        transactionManager.merge(ropertyKey);
+    }
+
+    private void removeKey(RopertyKey ropertyKey) {
+        transactionManager.remove(ropertyKey);
+        writeTombstone(ropertyKey.getId());
+    }
+
+    private void writeTombstone(String key) {
+        RopertyTombstone tombstone = new RopertyTombstone();
+        tombstone.setId(key);
+        tombstone.setRemoved(System.currentTimeMillis());
+        transactionManager.merge(tombstone);
     }
 
     @Override
     public List<String> findKeys(String substring) {
-        return ropertyKeyDAO.findKeys(substring);
+        return findKeys(substring, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most the given number of keys that contain the substring, ignoring case. An exact match comes first,
+     * then keys that contain the substring earlier, then shorter keys.
+     */
+    public List<String> findKeys(String substring, int maxResults) {
+        Validate.notNull(substring, "Substring must not be null");
+        Validate.isTrue(maxResults > 0, "Maximum number of results must be positive");
+        return measure(PersistenceOperation.FIND_KEYS, () -> searchKeys(substring, maxResults));
+    }
+
+    private List<String> searchKeys(String substring, int maxResults) {
+        if (keySearchIndexEnabled) {
+            return keySearchIndex().find(substring, maxResults);
+        }
+
+        List<String> keys = inUnitOfWork(() -> ropertyKeyDAO.findKeys(substring));
+        return KeySearchIndex.rank(keys, substring, maxResults);
+    }
+
+    /**
+     * Returns at most the given number of keys that contain the substring, ignoring case, and come after the given key,
+     * in ascending order. Passing the last key of a page as {@code afterKey} returns the next page; {@code null}
+     * starts with the first key.
+     */
+    public List<String> findKeys(String substring, String afterKey, int limit) {
+        Validate.notNull(substring, "Substring must not be null");
+        Validate.isTrue(limit > 0, "Limit must be positive");
+        String startAfter = afterKey == null ? "" : afterKey;
+        return measure(PersistenceOperation.FIND_KEYS, () -> searchKeys(substring, startAfter, limit));
+    }
+
+    private List<String> searchKeys(String substring, String afterKey, int limit) {
+        if (keySearchIndexEnabled) {
+            return keySearchIndex().findAfter(substring, afterKey, limit);
+        }
+
+        return inUnitOfWork(() -> ropertyKeyDAO.findKeys(substring, afterKey, limit));
+    }
+
+    /**
+     * Iterates over all keys that contain the substring, ignoring case, in ascending order. Keys are fetched in pages
+     * of the given size when the iterator reaches them.
+     */
+    public Iterator<String> iterateKeys(String substring, int pageSize) {
+        Validate.notNull(substring, "Substring must not be null");
+        return new KeyPageIterator((afterKey, limit) -> findKeys(substring, afterKey, limit), pageSize);
+    }
+
+    private KeySearchIndex keySearchIndex() {
+        KeySearchIndex index = keySearchIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (keySearchIndex == null) {
+                    rebuildKeySearchIndex();
+                }
+                return keySearchIndex;
+            }
+        }
+
+        // only one thread refreshes, the others keep searching the current index meanwhile
+        if (System.currentTimeMillis() >= nextKeySearchIndexRefresh && refreshingKeySearchIndex.compareAndSet(false, true)) {
+            try {
+                refreshKeySearchIndex(index);
+            } finally {
+                refreshingKeySearchIndex.set(false);
+            }
+        }
+        return index;
+    }
+
+    private void rebuildKeySearchIndex() {
+        long rebuildStarted = System.currentTimeMillis();
+        keySearchIndex = KeySearchIndex.of(getAllKeys());
+        keySearchIndexWatermark = rebuildStarted - reloadOverlap;
+        nextKeySearchIndexRefresh = rebuildStarted + keySearchIndexRefreshInterval;
+    }
+
+    private void refreshKeySearchIndex(KeySearchIndex index) {
+        // picks up keys that were created or removed by other nodes
+        long refreshStarted = System.currentTimeMillis();
+        long since = keySearchIndexWatermark;
+        List<String> removedKeys = new ArrayList<>();
+        Set<String> modifiedKeys = new HashSet<>(inUnitOfWork(() -> {
+            if (ropertyTombstoneDAO != null) {
+                removedKeys.addAll(ropertyTombstoneDAO.loadRemovedKeys(since));
+            }
+            return ropertyKeyDAO.loadRopertyKeyIdsModifiedSince(since);
+        }));
+        for (String removedKey : removedKeys) {
+            if (!modifiedKeys.contains(removedKey)) {
+                index.remove(removedKey);
+            }
+        }
+        modifiedKeys.forEach(index::add);
+        keySearchIndexWatermark = refreshStarted - reloadOverlap;
+        nextKeySearchIndexRefresh = refreshStarted + keySearchIndexRefreshInterval;
+    }
+
+    private void addToKeySearchIndex(String key) {
+        KeySearchIndex index = keySearchIndex;
+        if (index != null) {
+            index.add(key);
+        }
+    }
+
+    private void removeFromKeySearchIndex(String key) {
+        KeySearchIndex index = keySearchIndex;
+        if (index != null) {
+            index.remove(key);
+        }
     }
 
     @Override
     public List<String> getAllKeys() {
-        List<RopertyKey> ropertyKeys = ropertyKeyDAO.loadAllRopertyKeys();
-        List<String> keys = new ArrayList<>(ropertyKeys.size());
-        ropertyKeys.forEach(ropertyKey -> keys.add(ropertyKey.getId()));
-        return keys;
+        return inUnitOfWork(ropertyKeyDAO::loadAllRopertyKeyIds);
+    }
+
+    /**
+     * Returns at most the given number of keys that come after the given key, in ascending order. Passing the last key
+     * of a page as {@code afterKey} returns the next page; {@code null} starts with the first key.
+     */
+    public List<String> getKeys(String afterKey, int limit) {
+        Validate.isTrue(limit > 0, "Limit must be positive");
+        String startAfter = afterKey == null ? "" : afterKey;
+        return inUnitOfWork(() -> ropertyKeyDAO.loadRopertyKeyIds(startAfter, limit));
+    }
+
+    /**
+     * Iterates over all keys in ascending order. Keys are fetched in pages of the given size when the iterator reaches
+     * them.
+     */
+    public Iterator<String> iterateKeys(int pageSize) {
+        return new KeyPageIterator(this::getKeys, pageSize);
+    }
+
+    List<String> getKeysModifiedSince(long since) {
+        return inUnitOfWork(() -> ropertyKeyDAO.loadRopertyKeyIdsModifiedSince(since));
+    }
+
+    /**
+     * Loads the key on the {@link #setAsyncExecutor(Executor) async executor}. The future completes with null if the
+     * key does not exist, or exceptionally if loading fails.
+     */
+    public CompletableFuture<KeyValues> loadAsync(String key, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        return CompletableFuture.supplyAsync(() -> load(key, keyValuesFactory, domainSpecificValueFactory), asyncExecutor());
+    }
+
+    public CompletableFuture<Map<String, KeyValues>> loadAllAsync(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        return CompletableFuture.supplyAsync(() -> loadAll(keyValuesFactory, domainSpecificValueFactory), asyncExecutor());
+    }
+
+    public CompletableFuture<Void> storeAsync(String key, KeyValues keyValues, String changeSet) {
+        return CompletableFuture.runAsync(() -> store(key, keyValues, changeSet), asyncExecutor());
+    }
+
+    public CompletableFuture<Void> storeAllAsync(Map<String, KeyValues> keyValuesMap, String changeSet) {
+        return CompletableFuture.runAsync(() -> storeAll(keyValuesMap, changeSet), asyncExecutor());
+    }
+
+    private Executor asyncExecutor() {
+        Executor executor = asyncExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        executor = defaultAsyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (defaultAsyncExecutor == null) {
+                    defaultAsyncExecutor = DefaultAsyncExecutor.create(asyncParallelism);
+                }
+                executor = defaultAsyncExecutor;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Pool of daemon threads that is only created when an async method is used without an executor. Each thread holds
+     * a connection while it runs a call, so the pool is bounded and further calls wait in its queue. Idle threads stop
+     * after a minute.
+     */
+    private static final class DefaultAsyncExecutor {
+
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        private static final ThreadFactory THREAD_FACTORY = runnable -> {
+            Thread thread = new Thread(runnable, "roperty-async-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        static ExecutorService create(int parallelism) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 1L, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), THREAD_FACTORY);
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * Runs a persistence operation and reports its duration and the work counted meanwhile to the metrics recorder.
+     * Operations within another operation count towards the outer one.
+     */
+    <T> T measure(PersistenceOperation operation, Supplier<T> supplier) {
+        MetricsRecorder recorder = metricsRecorder;
+        OperationStats stats = recorder == MetricsRecorder.NONE ? null : OperationStats.begin();
+        if (stats == null) {
+            return supplier.get();
+        }
+        long started = System.nanoTime();
+        try {
+            return supplier.get();
+        } catch (RuntimeException | Error e) {
+            stats.fail();
+            throw e;
+        } finally {
+            OperationStats.end();
+            recorder.record(operation, System.nanoTime() - started, stats);
+        }
+    }
+
+    void measure(PersistenceOperation operation, Runnable runnable) {
+        measure(operation, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a read in one unit of work, so all DAO calls of the operation share one entity manager and connection.
+     * Without a transaction manager every DAO call uses its own entity manager.
+     */
+    private <T> T inUnitOfWork(Supplier<T> operation) {
+        if (transactionManager == null) {
+            return operation.get();
+        }
+        transactionManager.beginUnitOfWork();
+        try {
+            return operation.get();
+        } finally {
+            transactionManager.endUnitOfWork();
+        }
     }
 
     public void setTransactionManager(TransactionManager transactionManager) {
@@ -324,4 +1022,132 @@ public class JpaPersistence implements Persistence {
         Validate.notNull(ropertyValueDAO, "Roperty value DAO must no be null");
         this.ropertyValueDAO = ropertyValueDAO;
     }
+
+    public void setRopertyTombstoneDAO(RopertyTombstoneDAO ropertyTombstoneDAO) {
+        Validate.notNull(ropertyTombstoneDAO, "Roperty tombstone DAO must no be null");
+        this.ropertyTombstoneDAO = ropertyTombstoneDAO;
+    }
+
+    /**
+     * Sets the number of keys whose values {@link #loadAll} reads per query. Zero, the default, reads all values in a
+     * single query.
+     */
+    public void setLoadChunkSize(int loadChunkSize) {
+        Validate.isTrue(loadChunkSize >= 0, "Load chunk size must not be negative");
+        this.loadChunkSize = loadChunkSize;
+    }
+
+    /**
+     * Sets the number of keys {@link #storeAll} writes per transaction. Defaults to 500.
+     */
+    public void setStoreChunkSize(int storeChunkSize) {
+        Validate.isTrue(storeChunkSize > 0, "Store chunk size must be positive");
+        this.storeChunkSize = storeChunkSize;
+    }
+
+    /**
+     * Sets the number of threads {@link #loadAll} reads and decodes values with. Each thread uses its own entity
+     * manager and connection. One, the default, loads on the calling thread.
+     */
+    public void setLoadParallelism(int loadParallelism) {
+        Validate.isTrue(loadParallelism > 0, "Load parallelism must be positive");
+        this.loadParallelism = loadParallelism;
+    }
+
+    /**
+     * Sets the executor that loads ranges of keys in parallel. Without one, each parallel load starts and stops its
+     * own thread pool.
+     */
+    public void setLoadExecutor(Executor loadExecutor) {
+        Validate.notNull(loadExecutor, "Load executor must not be null");
+        this.loadExecutor = loadExecutor;
+    }
+
+    /**
+     * Sets the executor the async methods run on, e.g. an executor that starts a virtual thread per task. Without one,
+     * they run on a pool of {@link #setAsyncParallelism(int) async parallelism} daemon threads.
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        Validate.notNull(asyncExecutor, "Async executor must not be null");
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Sets the number of threads of the pool the async methods run on without an {@link #setAsyncExecutor(Executor)
+     * async executor}. It should leave connections of the pool for other callers. Defaults to 4 and only takes effect
+     * before the first async call.
+     */
+    public void setAsyncParallelism(int asyncParallelism) {
+        Validate.isTrue(asyncParallelism > 0, "Async parallelism must be positive");
+        this.asyncParallelism = asyncParallelism;
+    }
+
+    /**
+     * Sets the number of rows the JDBC driver reads per round trip when loading all keys. Zero, the default, keeps
+     * the driver's default.
+     */
+    public void setFetchSize(int fetchSize) {
+        Validate.isTrue(fetchSize >= 0, "Fetch size must not be negative");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Sets the file {@link #loadAll} starts from. If the file holds a snapshot that is younger than the maximum
+     * snapshot age, the keys are read from it and only keys that were modified or removed since it was written are
+     * read from the database. Otherwise all keys are read from the database and written to a new snapshot. Requires
+     * the tombstone DAO to find removed keys. Disabled by default.
+     */
+    public void setSnapshotFile(Path snapshotFile) {
+        Validate.notNull(snapshotFile, "Snapshot file must not be null");
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Sets the age, in milliseconds, after which a snapshot is replaced by loading all keys from the database. Defaults
+     * to one day.
+     */
+    public void setSnapshotMaxAge(long snapshotMaxAge) {
+        Validate.isTrue(snapshotMaxAge >= 0, "Snapshot max age must not be negative");
+        this.snapshotMaxAge = snapshotMaxAge;
+    }
+
+    /**
+     * Sets the recorder that receives the duration, queries, rows, decoded value bytes and opened entity managers of
+     * each operation. Defaults to {@link MetricsRecorder#NONE}, which skips measuring.
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        Validate.notNull(metricsRecorder, "Metrics recorder must not be null");
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * Enables answering {@link #findKeys} from an index over all key ids in memory instead of the database. The index
+     * is built with the first search, follows stores and removals of this instance and picks up changes of other nodes
+     * every refresh interval. Disabled by default.
+     */
+    public void setKeySearchIndexEnabled(boolean keySearchIndexEnabled) {
+        this.keySearchIndexEnabled = keySearchIndexEnabled;
+    }
+
+    /**
+     * Sets how often, in milliseconds, the key search index looks for keys that were created or removed by other
+     * nodes.
+     */
+    public void setKeySearchIndexRefreshInterval(long keySearchIndexRefreshInterval) {
+        Validate.isTrue(keySearchIndexRefreshInterval >= 0, "Key search index refresh interval must not be negative");
+        this.keySearchIndexRefreshInterval = keySearchIndexRefreshInterval;
+    }
+
+    long getReloadOverlap() {
+        return reloadOverlap;
+    }
+
+    /**
+     * Sets how far, in milliseconds, each reload looks back before the start of the previous load. The overlap covers
+     * transactions that were still running and clocks of other nodes that run behind.
+     */
+    public void setReloadOverlap(long reloadOverlap) {
+        Validate.isTrue(reloadOverlap >= 0, "Reload overlap must not be negative");
+        this.reloadOverlap = reloadOverlap;
+    }
 }
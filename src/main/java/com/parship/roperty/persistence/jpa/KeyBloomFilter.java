@@ -0,0 +1,100 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over key ids. It never answers false for a key that was put, but may answer true for a key that was
+ * not. Keys can be added concurrently to lookups. Keys cannot be removed, so a removed key stays a possible hit.
+ */
+final class KeyBloomFilter {
+
+    private static final int MIN_BITS = Long.SIZE;
+
+    private final AtomicLongArray words;
+
+    private final int numBits;
+
+    private final int numHashFunctions;
+
+    private final int capacity;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private KeyBloomFilter(int numBits, int numHashFunctions, int capacity) {
+        this.words = new AtomicLongArray((numBits + Long.SIZE - 1) / Long.SIZE);
+        this.numBits = numBits;
+        this.numHashFunctions = numHashFunctions;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a filter that answers with the given false positive rate while it holds at most the expected number
+     * of keys.
+     */
+    static KeyBloomFilter create(int expectedKeys, double falsePositiveRate) {
+        Validate.isTrue(expectedKeys > 0, "Expected number of keys must be positive");
+        Validate.isTrue(falsePositiveRate > 0.0d && falsePositiveRate < 1.0d, "False positive rate must be between 0 and 1");
+
+        double ln2 = Math.log(2.0d);
+        long numBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        numBits = Math.max(MIN_BITS, Math.min(numBits, Integer.MAX_VALUE));
+        int numHashFunctions = (int) Math.max(1L, Math.round((double) numBits / expectedKeys * ln2));
+        return new KeyBloomFilter((int) numBits, numHashFunctions, expectedKeys);
+    }
+
+    void put(String key) {
+        long hash = Hashes.fnv1aMix(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 0; i < numHashFunctions; i++) {
+            int bit = bitIndex(hash1 + i * hash2);
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+                current = words.get(word);
+            }
+        }
+        // keys that are put again don't set new bits, so they are not counted twice
+        if (changed) {
+            size.incrementAndGet();
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = Hashes.fnv1aMix(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashFunctions; i++) {
+            int bit = bitIndex(hash1 + i * hash2);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true, if more keys were put than the filter was created for, so it answers with a higher false positive
+     * rate than requested.
+     */
+    boolean isSaturated() {
+        return size.get() > capacity;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private int bitIndex(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % numBits;
+    }
+}
@@ -0,0 +1,58 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+/**
+ * Iterates over keys in ascending order and loads the next page of keys only when the current one is used up. Each
+ * page starts after the last key of the previous page, so keys that are created or removed meanwhile don't shift
+ * the pages.
+ */
+class KeyPageIterator implements Iterator<String> {
+
+    private final BiFunction<String, Integer, List<String>> pageLoader;
+
+    private final int pageSize;
+
+    private List<String> page;
+
+    private int position;
+
+    private boolean lastPage;
+
+    KeyPageIterator(BiFunction<String, Integer, List<String>> pageLoader, int pageSize) {
+        Validate.notNull(pageLoader, "Page loader must not be null");
+        Validate.isTrue(pageSize > 0, "Page size must be positive");
+        this.pageLoader = pageLoader;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page != null && position < page.size()) {
+            return true;
+        }
+        if (lastPage) {
+            return false;
+        }
+
+        String afterKey = page == null ? "" : page.get(page.size() - 1);
+        page = pageLoader.apply(afterKey, pageSize);
+        Validate.notNull(page, "Page of keys after '%s' must not be null", afterKey);
+        position = 0;
+        lastPage = page.size() < pageSize;
+        return !page.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(position++);
+    }
+}
@@ -0,0 +1,206 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram index over key ids for case insensitive substring search. A search only verifies the keys that share the
+ * rarest trigram of the substring instead of scanning all keys. Keys can be added and removed concurrently to searches.
+ */
+final class KeySearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final Comparator<Match> RANKING = Comparator
+            .comparing((Match match) -> !match.exact)
+            .thenComparingInt(match -> match.position)
+            .thenComparingInt(match -> match.key.length())
+            .thenComparing(match -> match.key);
+
+    private static final Comparator<Match> KEY_ORDER = Comparator.comparing(match -> match.key);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, String> lowerCaseKeys = new HashMap<>();
+
+    private final Map<String, Set<String>> keysByGram = new HashMap<>();
+
+    static KeySearchIndex of(Collection<String> keys) {
+        Validate.notNull(keys, "Keys must not be null");
+        KeySearchIndex index = new KeySearchIndex();
+        keys.forEach(index::add);
+        return index;
+    }
+
+    void add(String key) {
+        Validate.notNull(key, "Key must not be null");
+        String lowerCaseKey = toLowerCase(key);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (lowerCaseKeys.putIfAbsent(key, lowerCaseKey) != null) {
+                return;
+            }
+            for (int i = 0; i + GRAM_LENGTH <= lowerCaseKey.length(); i++) {
+                keysByGram.computeIfAbsent(lowerCaseKey.substring(i, i + GRAM_LENGTH), gram -> new HashSet<>(2)).add(key);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void remove(String key) {
+        Validate.notNull(key, "Key must not be null");
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            String lowerCaseKey = lowerCaseKeys.remove(key);
+            if (lowerCaseKey == null) {
+                return;
+            }
+            for (int i = 0; i + GRAM_LENGTH <= lowerCaseKey.length(); i++) {
+                String gram = lowerCaseKey.substring(i, i + GRAM_LENGTH);
+                Set<String> keys = keysByGram.get(gram);
+                if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                    keysByGram.remove(gram);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return lowerCaseKeys.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns at most the given number of keys that contain the substring, ignoring case, ranked like
+     * {@link #rank(Collection, String, int)}.
+     */
+    List<String> find(String substring, int maxResults) {
+        Validate.notNull(substring, "Substring must not be null");
+        Validate.isTrue(maxResults > 0, "Maximum number of results must be positive");
+        return limit(matches(toLowerCase(substring), null), RANKING, maxResults);
+    }
+
+    /**
+     * Returns at most the given number of keys that contain the substring, ignoring case, and come after the given
+     * key, in ascending order.
+     */
+    List<String> findAfter(String substring, String afterKey, int maxResults) {
+        Validate.notNull(substring, "Substring must not be null");
+        Validate.notNull(afterKey, "Key to start after must not be null");
+        Validate.isTrue(maxResults > 0, "Maximum number of results must be positive");
+        return limit(matches(toLowerCase(substring), afterKey), KEY_ORDER, maxResults);
+    }
+
+    private List<Match> matches(String lowerCaseSubstring, String afterKey) {
+        List<Match> matches = new ArrayList<>();
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (lowerCaseSubstring.length() < GRAM_LENGTH) {
+                lowerCaseKeys.forEach((key, lowerCaseKey) -> addMatch(matches, key, lowerCaseKey, lowerCaseSubstring, afterKey));
+            } else {
+                for (String key : rarestGramKeys(lowerCaseSubstring)) {
+                    addMatch(matches, key, lowerCaseKeys.get(key), lowerCaseSubstring, afterKey);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return matches;
+    }
+
+    /**
+     * Ranks the keys for the substring: an exact match comes first, then keys that contain the substring earlier, then
+     * shorter keys, then keys in alphabetical order. Returns at most the given number of keys.
+     */
+    static List<String> rank(Collection<String> keys, String substring, int maxResults) {
+        Validate.notNull(keys, "Keys must not be null");
+        Validate.notNull(substring, "Substring must not be null");
+        Validate.isTrue(maxResults > 0, "Maximum number of results must be positive");
+        String lowerCaseSubstring = toLowerCase(substring);
+        List<Match> matches = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            String lowerCaseKey = toLowerCase(key);
+            int position = lowerCaseKey.indexOf(lowerCaseSubstring);
+            // keys the database matched with wildcards go last
+            matches.add(new Match(key, lowerCaseKey.equals(lowerCaseSubstring), position < 0 ? Integer.MAX_VALUE : position));
+        }
+        return limit(matches, RANKING, maxResults);
+    }
+
+    private Set<String> rarestGramKeys(String lowerCaseSubstring) {
+        Set<String> rarestKeys = null;
+        for (int i = 0; i + GRAM_LENGTH <= lowerCaseSubstring.length(); i++) {
+            Set<String> keys = keysByGram.get(lowerCaseSubstring.substring(i, i + GRAM_LENGTH));
+            if (keys == null) {
+                return Collections.emptySet();
+            }
+            if (rarestKeys == null || keys.size() < rarestKeys.size()) {
+                rarestKeys = keys;
+            }
+        }
+        return rarestKeys;
+    }
+
+    private static void addMatch(List<Match> matches, String key, String lowerCaseKey, String lowerCaseSubstring, String afterKey) {
+        if (afterKey != null && key.compareTo(afterKey) <= 0) {
+            return;
+        }
+        int position = lowerCaseKey.indexOf(lowerCaseSubstring);
+        if (position >= 0) {
+            matches.add(new Match(key, lowerCaseKey.length() == lowerCaseSubstring.length(), position));
+        }
+    }
+
+    private static List<String> limit(List<Match> matches, Comparator<Match> order, int maxResults) {
+        matches.sort(order);
+        int numResults = Math.min(matches.size(), maxResults);
+        List<String> result = new ArrayList<>(numResults);
+        for (int i = 0; i < numResults; i++) {
+            result.add(matches.get(i).key);
+        }
+        return result;
+    }
+
+    private static String toLowerCase(String string) {
+        return string.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Match {
+
+        private final String key;
+
+        private final boolean exact;
+
+        private final int position;
+
+        private Match(String key, boolean exact, int position) {
+            this.key = key;
+            this.exact = exact;
+            this.position = position;
+        }
+    }
+}
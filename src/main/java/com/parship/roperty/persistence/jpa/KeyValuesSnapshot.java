@@ -0,0 +1,371 @@
+package com.parship.roperty.persistence.jpa;
+
+import com.parship.roperty.DomainSpecificValue;
+import com.parship.roperty.KeyValues;
+import org.apache.commons.lang3.Validate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * File with the values of all keys and the point in time up to which they are complete. It starts with a magic number,
+ * the format version and that watermark, and ends with the number of keys and the magic number again, so that files
+ * of other versions or files that were cut off are not used. Each key is followed by its description and the size of
+ * its values, so keys whose values are not needed are skipped without decoding them. Values are encoded with the
+ * {@link ValueCodec} of the value column. Files larger than a single memory mapping are mapped in segments, each
+ * starting at a key.
+ */
+final class KeyValuesSnapshot {
+
+    static final int VERSION = 1;
+
+    private static final int MAGIC = 0x52505348;
+
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final Path file;
+
+    private final long watermark;
+
+    private final long numKeys;
+
+    private KeyValuesSnapshot(Path file, long watermark, long numKeys) {
+        this.file = file;
+        this.watermark = watermark;
+        this.numKeys = numKeys;
+    }
+
+    /**
+     * Reads the header and trailer of the snapshot file. Returns null if there is no file or it was written with another
+     * format version or is incomplete.
+     */
+    static KeyValuesSnapshot open(Path file) {
+        Validate.notNull(file, "Snapshot file must not be null");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                return null;
+            }
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            long watermark = header.getLong();
+            long numKeys = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                return null;
+            }
+            return new KeyValuesSnapshot(file, watermark, numKeys);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Could not read snapshot file '%s'", file), e);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Starts writing a snapshot with the given watermark. The file is replaced only when the writer is committed.
+     */
+    static Writer create(Path file, long watermark) {
+        Validate.notNull(file, "Snapshot file must not be null");
+        try {
+            return new Writer(file, watermark);
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Could not create snapshot file '%s'", file), e);
+        }
+    }
+
+    long getWatermark() {
+        return watermark;
+    }
+
+    long getNumKeys() {
+        return numKeys;
+    }
+
+    /**
+     * Returns a cursor before the first key, which maps the file into memory as it moves through it.
+     */
+    Cursor cursor() {
+        return cursor(MAX_SEGMENT_SIZE);
+    }
+
+    Cursor cursor(int maxSegmentSize) {
+        Validate.isTrue(maxSegmentSize > 0, "Max segment size must be positive");
+        try {
+            return new Cursor(Files.size(file) - TRAILER_SIZE, maxSegmentSize);
+        } catch (IOException e) {
+            throw new RopertyPersistenceException(String.format("Could not map snapshot file '%s'", file), e);
+        }
+    }
+
+    final class Cursor {
+
+        private final long end;
+
+        private final int maxSegmentSize;
+
+        private ByteBuffer segment;
+
+        private long segmentStart;
+
+        private String key;
+
+        private String description;
+
+        private long valuesPosition;
+
+        private long valuesEnd = HEADER_SIZE;
+
+        private long readPosition;
+
+        private Cursor(long end, int maxSegmentSize) {
+            this.end = end;
+            this.maxSegmentSize = maxSegmentSize;
+        }
+
+        /**
+         * Moves to the next key. Returns false after the last key.
+         */
+        boolean next() {
+            long keyPosition = valuesEnd;
+            if (keyPosition >= end) {
+                return false;
+            }
+            readPosition = keyPosition;
+            key = nextString();
+            description = nextString();
+            int valuesSize = nextInt();
+            valuesPosition = readPosition;
+            valuesEnd = valuesPosition + valuesSize;
+            if (valuesEnd > end) {
+                throw new RopertyPersistenceException(String.format("Values of key '%s' exceed snapshot file '%s'", key, file));
+            }
+            if (valuesEnd - keyPosition > maxSegmentSize) {
+                throw new RopertyPersistenceException(String.format("Key '%s' exceeds the maximum mapping size in snapshot file '%s'", key, file));
+            }
+            // the values are read from the same mapping as the key
+            bufferAt(keyPosition, (int) (valuesEnd - keyPosition));
+            return true;
+        }
+
+        private int nextInt() {
+            int value = bufferAt(readPosition, Integer.BYTES).getInt();
+            readPosition += Integer.BYTES;
+            return value;
+        }
+
+        private String nextString() {
+            int length = nextInt();
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            bufferAt(readPosition, length).get(bytes);
+            readPosition += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns a buffer positioned at the given position of the file, mapping a new segment that starts there if the
+         * current one does not hold the given number of bytes.
+         */
+        private ByteBuffer bufferAt(long position, int length) {
+            if (segment == null || position < segmentStart || position + length > segmentStart + segment.limit()) {
+                long size = Math.min(end + TRAILER_SIZE - position, maxSegmentSize);
+                if (length > size) {
+                    throw new RopertyPersistenceException(String.format("Snapshot file '%s' ends within a key", file));
+                }
+                segment = map(position, size);
+                segmentStart = position;
+            }
+            ByteBuffer buffer = segment.duplicate();
+            buffer.position((int) (position - segmentStart));
+            return buffer;
+        }
+
+        private ByteBuffer map(long position, long size) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // the mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            } catch (IOException e) {
+                throw new RopertyPersistenceException(String.format("Could not map snapshot file '%s'", file), e);
+            }
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        KeyValues getKeyValues(RopertyValueTransformer ropertyValueTransformer) {
+            KeyValues keyValues = ropertyValueTransformer.createKeyValues();
+            ByteBuffer values = bufferAt(valuesPosition, (int) (valuesEnd - valuesPosition));
+            int numValues = values.getInt();
+            for (int i = 0; i < numValues; i++) {
+                String pattern = readString(values);
+                String changeSet = readString(values);
+                byte[] value = readBytes(values);
+                RopertyValueTransformer.putValue(keyValues, pattern, changeSet, value == null ? null : decode(value));
+            }
+            keyValues.setDescription(description);
+            return keyValues;
+        }
+    }
+
+    private static Serializable decode(byte[] value) {
+        OperationStats.valueDecoded(value.length);
+        return ValueCodecs.codec().decode(value);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = readBytes(buffer);
+        if (bytes == null) {
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    static final class Writer implements Closeable {
+
+        private final Path file;
+
+        private final Path tempFile;
+
+        private final DataOutputStream output;
+
+        private final ByteArrayOutputStream valuesBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream values = new DataOutputStream(valuesBytes);
+
+        private long numKeys;
+
+        private boolean committed;
+
+        private Writer(Path file, long watermark) throws IOException {
+            this.file = file.toAbsolutePath();
+            tempFile = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(watermark);
+        }
+
+        void add(String key, KeyValues keyValues) {
+            Validate.notNull(key, "Key must not be null");
+            Validate.notNull(keyValues, "Key values must not be null");
+            try {
+                valuesBytes.reset();
+                Set<DomainSpecificValue> domainSpecificValues = keyValues.getDomainSpecificValues();
+                values.writeInt(domainSpecificValues.size());
+                for (DomainSpecificValue domainSpecificValue : domainSpecificValues) {
+                    writeString(values, domainSpecificValue.getPatternStr());
+                    String changeSet = domainSpecificValue.getChangeSet();
+                    writeString(values, changeSet == null ? "" : changeSet);
+                    writeBytes(values, encode(key, domainSpecificValue.getValue()));
+                }
+                writeString(output, key);
+                writeString(output, keyValues.getDescription());
+                output.writeInt(valuesBytes.size());
+                valuesBytes.writeTo(output);
+                numKeys++;
+            } catch (IOException e) {
+                throw new RopertyPersistenceException(String.format("Could not write key '%s' to snapshot file '%s'", key, file), e);
+            }
+        }
+
+        private static byte[] encode(String key, Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (!(value instanceof Serializable)) {
+                throw new RopertyPersistenceException(String.format("Value '%s' of key '%s' must be serializable", value, key));
+            }
+            return ValueCodecs.codec().encode((Serializable) value);
+        }
+
+        /**
+         * Completes the file and replaces the previous snapshot with it in one step.
+         */
+        void commit() {
+            try {
+                output.writeLong(numKeys);
+                output.writeInt(MAGIC);
+                output.close();
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                committed = true;
+            } catch (IOException e) {
+                throw new RopertyPersistenceException(String.format("Could not write snapshot file '%s'", file), e);
+            }
+        }
+
+        /**
+         * Discards the file, unless it was committed.
+         */
+        @Override
+        public void close() {
+            if (committed) {
+                return;
+            }
+            try {
+                output.close();
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                throw new RopertyPersistenceException(String.format("Could not discard snapshot file '%s'", tempFile), e);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        writeBytes(output, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -3,20 +3,169 @@ package com.parship.roperty.persistence.jpa;
 import com.parship.roperty.DomainSpecificValueFactory;
 import com.parship.roperty.KeyValues;
 import com.parship.roperty.KeyValuesFactory;
+import org.apache.commons.lang3.Validate;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 public class LazyJpaPersistence extends JpaPersistence {
 
+    private static final double DEFAULT_KEY_FILTER_FALSE_POSITIVE_RATE = 0.01d;
+
+    private static final long DEFAULT_KEY_FILTER_REFRESH_INTERVAL = 10_000L;
+
+    private static final int MIN_KEY_FILTER_CAPACITY = 1024;
+
+    private final AtomicBoolean refreshingKeyFilter = new AtomicBoolean();
+
+    private boolean keyFilterEnabled;
+
+    private double keyFilterFalsePositiveRate = DEFAULT_KEY_FILTER_FALSE_POSITIVE_RATE;
+
+    private long keyFilterRefreshInterval = DEFAULT_KEY_FILTER_REFRESH_INTERVAL;
+
+    private volatile KeyBloomFilter keyFilter;
+
+    private volatile Set<String> keysStoredDuringRebuild;
+
+    private volatile long keyFilterWatermark;
+
+    private volatile long nextKeyFilterRefresh;
+
+    @Override
+    public KeyValues load(String key, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        Validate.notBlank(key, "Key must not be empty");
+        return measure(PersistenceOperation.LOAD, () -> {
+            if (keyFilterEnabled && !keyFilter().mightContain(key)) {
+                return null;
+            }
+
+            return super.load(key, keyValuesFactory, domainSpecificValueFactory);
+        });
+    }
+
+    @Override
+    public void store(String key, KeyValues keyValues, String changeSet) {
+        super.store(key, keyValues, changeSet);
+        addToKeyFilter(key);
+    }
+
+    @Override
+    public void storeAll(Map<String, KeyValues> keyValuesMap, String changeSet) {
+        try {
+            super.storeAll(keyValuesMap, changeSet);
+        } finally {
+            // chunks before a failing one are committed, and extra keys in the filter only cost a query
+            keyValuesMap.keySet().forEach(this::addToKeyFilter);
+        }
+    }
+
     @Override
     public Map<String, KeyValues> loadAll(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
         return Collections.emptyMap();
     }
 
+    @Override
+    public void loadAll(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory, BiConsumer<String, KeyValues> consumer) {
+        // keys are loaded on first access
+    }
+
     @Override
     public Map<String, KeyValues> reload(Map<String, KeyValues> keyValuesMap, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
         return Collections.emptyMap();
     }
 
+    private KeyBloomFilter keyFilter() {
+        KeyBloomFilter filter = keyFilter;
+        if (filter == null) {
+            synchronized (this) {
+                if (keyFilter == null) {
+                    rebuildKeyFilter();
+                }
+                return keyFilter;
+            }
+        }
+
+        // only one thread refreshes, the others keep using the current filter meanwhile
+        if (System.currentTimeMillis() >= nextKeyFilterRefresh && refreshingKeyFilter.compareAndSet(false, true)) {
+            try {
+                refreshKeyFilter(filter);
+            } finally {
+                refreshingKeyFilter.set(false);
+            }
+        }
+        return keyFilter;
+    }
+
+    private void rebuildKeyFilter() {
+        long rebuildStarted = System.currentTimeMillis();
+        // keys stored while the key ids are being loaded may be missing from them, so they are collected until the
+        // new filter is published
+        Set<String> storedKeys = ConcurrentHashMap.newKeySet();
+        keysStoredDuringRebuild = storedKeys;
+        try {
+            List<String> keys = getAllKeys();
+            KeyBloomFilter filter = KeyBloomFilter.create(Math.max(MIN_KEY_FILTER_CAPACITY, keys.size() * 2), keyFilterFalsePositiveRate);
+            keys.forEach(filter::put);
+            keyFilterWatermark = rebuildStarted - getReloadOverlap();
+            nextKeyFilterRefresh = rebuildStarted + keyFilterRefreshInterval;
+            keyFilter = filter;
+            storedKeys.forEach(filter::put);
+        } finally {
+            keysStoredDuringRebuild = null;
+        }
+    }
+
+    private void refreshKeyFilter(KeyBloomFilter filter) {
+        if (filter.isSaturated()) {
+            rebuildKeyFilter();
+            return;
+        }
+
+        // picks up keys that were created by other nodes
+        long refreshStarted = System.currentTimeMillis();
+        getKeysModifiedSince(keyFilterWatermark).forEach(filter::put);
+        keyFilterWatermark = refreshStarted - getReloadOverlap();
+        nextKeyFilterRefresh = refreshStarted + keyFilterRefreshInterval;
+    }
+
+    private void addToKeyFilter(String key) {
+        // collected before the filter is read, so a rebuild that publishes its filter in between still sees the key
+        Set<String> storedKeys = keysStoredDuringRebuild;
+        if (storedKeys != null) {
+            storedKeys.add(key);
+        }
+        KeyBloomFilter filter = keyFilter;
+        if (filter != null) {
+            filter.put(key);
+        }
+    }
+
+    /**
+     * Enables answering loads of missing keys from a Bloom filter over all key ids instead of the database. The
+     * filter is built with the first load and picks up keys created by other nodes every refresh interval. Until
+     * then, such keys are reported as missing. Disabled by default.
+     */
+    public void setKeyFilterEnabled(boolean keyFilterEnabled) {
+        this.keyFilterEnabled = keyFilterEnabled;
+    }
+
+    public void setKeyFilterFalsePositiveRate(double keyFilterFalsePositiveRate) {
+        Validate.isTrue(keyFilterFalsePositiveRate > 0.0d && keyFilterFalsePositiveRate < 1.0d, "False positive rate must be between 0 and 1");
+        this.keyFilterFalsePositiveRate = keyFilterFalsePositiveRate;
+    }
+
+    /**
+     * Sets how often, in milliseconds, the key filter looks for keys that were created by other nodes.
+     */
+    public void setKeyFilterRefreshInterval(long keyFilterRefreshInterval) {
+        Validate.isTrue(keyFilterRefreshInterval >= 0, "Key filter refresh interval must not be negative");
+        this.keyFilterRefreshInterval = keyFilterRefreshInterval;
+    }
+
 }
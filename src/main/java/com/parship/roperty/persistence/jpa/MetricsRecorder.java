@@ -0,0 +1,18 @@
+package com.parship.roperty.persistence.jpa;
+
+/**
+ * Receives the duration and the work of each persistence operation when it completes. It is called on the thread of
+ * the operation, so implementations must be thread safe and return quickly. Operations that call other operations,
+ * like {@link JpaPersistence#reload} loading keys, are recorded once as the outer operation.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Records nothing. Persistence operations skip all measuring with this recorder.
+     */
+    MetricsRecorder NONE = (operation, durationNanos, stats) -> {
+    };
+
+    void record(PersistenceOperation operation, long durationNanos, OperationStats stats);
+
+}
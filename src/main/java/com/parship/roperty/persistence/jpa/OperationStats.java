@@ -0,0 +1,149 @@
+package com.parship.roperty.persistence.jpa;
+
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Counts the work of one persistence operation: the queries the DAOs ran, the rows they read, the bytes of values
+ * that were decoded and the entity managers that were opened. The counters are kept for the current thread, and the
+ * static methods count nothing outside of a measured operation.
+ */
+public final class OperationStats {
+
+    private static final ThreadLocal<OperationStats> CURRENT = new ThreadLocal<>();
+
+    private long queries;
+
+    private long rows;
+
+    private long valueBytes;
+
+    private long entityManagers;
+
+    private boolean failed;
+
+    OperationStats() {
+    }
+
+    public long getQueries() {
+        return queries;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getValueBytes() {
+        return valueBytes;
+    }
+
+    public long getEntityManagers() {
+        return entityManagers;
+    }
+
+    /**
+     * Returns whether the operation ended with an exception.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    void fail() {
+        failed = true;
+    }
+
+    void add(OperationStats stats) {
+        queries += stats.queries;
+        rows += stats.rows;
+        valueBytes += stats.valueBytes;
+        entityManagers += stats.entityManagers;
+    }
+
+    static OperationStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts counting for an operation on the current thread. Returns null if an operation is counted already, so that
+     * nested operations count towards the outer one.
+     */
+    static OperationStats begin() {
+        if (CURRENT.get() != null) {
+            return null;
+        }
+        OperationStats stats = new OperationStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Counts the work of the supplier, which runs on another thread of an operation, to the given stats.
+     */
+    static <T> T countTo(OperationStats stats, Supplier<T> supplier) {
+        OperationStats previous = CURRENT.get();
+        CURRENT.set(stats);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    static <X> List<X> resultList(TypedQuery<X> query) {
+        List<X> result = query.getResultList();
+        OperationStats stats = CURRENT.get();
+        if (stats != null && result != null) {
+            stats.queries++;
+            stats.rows += result.size();
+        }
+        return result;
+    }
+
+    static <X> X singleResult(TypedQuery<X> query) {
+        X result = query.getSingleResult();
+        OperationStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.queries++;
+            stats.rows++;
+        }
+        return result;
+    }
+
+    static int executeUpdate(Query query) {
+        int numUpdatedRows = query.executeUpdate();
+        OperationStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.queries++;
+        }
+        return numUpdatedRows;
+    }
+
+    static void valueDecoded(int numBytes) {
+        OperationStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.valueBytes += numBytes;
+        }
+    }
+
+    static void entityManagerOpened() {
+        OperationStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.entityManagers++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "queries=" + queries + ", rows=" + rows + ", valueBytes=" + valueBytes + ", entityManagers=" + entityManagers + (failed ? ", failed" : "");
+    }
+}
@@ -0,0 +1,93 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Splits patterns like <code>DE|premium|android</code> into their domain values. The parts of each pattern are
+ * cached and shared between all values with that pattern, so callers must not modify the returned array.
+ */
+class PatternParser {
+
+    static final int DEFAULT_MAX_CACHED_PATTERNS = 10_000;
+
+    private static final PatternParser SHARED = new PatternParser(DEFAULT_MAX_CACHED_PATTERNS);
+
+    private static final char SEPARATOR = '|';
+
+    private static final String[] NO_PARTS = new String[0];
+
+    private final ConcurrentMap<String, String[]> cache = new ConcurrentHashMap<>();
+
+    private final int maxCachedPatterns;
+
+    PatternParser(int maxCachedPatterns) {
+        Validate.isTrue(maxCachedPatterns >= 0, "Maximum number of cached patterns must not be negative");
+        this.maxCachedPatterns = maxCachedPatterns;
+    }
+
+    static PatternParser shared() {
+        return SHARED;
+    }
+
+    String[] parse(String pattern) {
+        Validate.notNull(pattern, "Pattern must not be null");
+        if (pattern.isEmpty()) {
+            return NO_PARTS;
+        }
+        String[] parts = cache.get(pattern);
+        if (parts == null) {
+            parts = split(pattern);
+            // once full, further patterns are parsed on every call instead of growing the cache without bounds
+            if (cache.size() < maxCachedPatterns) {
+                String[] cachedParts = cache.putIfAbsent(pattern, parts);
+                if (cachedParts != null) {
+                    parts = cachedParts;
+                }
+            }
+        }
+        return parts;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    /**
+     * Gives the same result as <code>pattern.split("\\|")</code> for non-empty patterns: trailing empty parts are
+     * dropped.
+     */
+    static String[] split(String pattern) {
+        int end = pattern.length();
+        while (end > 0 && pattern.charAt(end - 1) == SEPARATOR) {
+            end--;
+        }
+        if (end == 0) {
+            return NO_PARTS;
+        }
+
+        int numParts = 1;
+        for (int i = 0; i < end; i++) {
+            if (pattern.charAt(i) == SEPARATOR) {
+                numParts++;
+            }
+        }
+        if (numParts == 1 && end == pattern.length()) {
+            return new String[]{pattern};
+        }
+
+        String[] parts = new String[numParts];
+        int part = 0;
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            if (pattern.charAt(i) == SEPARATOR) {
+                parts[part++] = pattern.substring(start, i);
+                start = i + 1;
+            }
+        }
+        parts[part] = pattern.substring(start, end);
+        return parts;
+    }
+}
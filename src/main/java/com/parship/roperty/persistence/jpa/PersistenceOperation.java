@@ -0,0 +1,14 @@
+package com.parship.roperty.persistence.jpa;
+
+/**
+ * Operations of {@link JpaPersistence} that are reported to the {@link MetricsRecorder}.
+ */
+public enum PersistenceOperation {
+    LOAD,
+    LOAD_ALL,
+    RELOAD,
+    STORE,
+    STORE_ALL,
+    REMOVE,
+    FIND_KEYS
+}
@@ -1,119 +1,550 @@
 package com.parship.roperty.persistence.jpa;
 
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.Validate;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.criteria.Subquery;
 import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.Metamodel;
 import javax.persistence.metamodel.SingularAttribute;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
+/**
+ * Builds typed queries from criteria templates. Each query shape is built once per attribute set and cached, so
+ * a call only binds its parameters. Templates are cached per criteria builder, of which the JPA provider keeps one per
+ * entity manager factory, and are shared by all threads and entity managers of that factory. JPA does not promise that
+ * criteria queries can be reused like this, but Hibernate creates a new query from them on every call.
+ */
 public class QueryBuilder<X> {
 
-    private Class<X> resultClass;
+    private final ConcurrentMap<CriteriaBuilder, ConcurrentMap<String, CriteriaTemplate<?>>> templates = new ConcurrentHashMap<>();
 
-    private EntityManager entityManager;
+    private final ConcurrentMap<CriteriaBuilder, ConcurrentMap<String, CriteriaDeleteTemplate<X>>> deleteTemplates = new ConcurrentHashMap<>();
 
-    TypedQuery<X> equality(EqualsCriterion<?>... equalsCriteria) {
+    private volatile Class<X> resultClass;
+
+    TypedQuery<X> equality(EntityManager entityManager, EqualsCriterion<?>... equalsCriteria) {
         Validate.notNull(entityManager, "Entity manager must not be null");
         Validate.notNull(resultClass, "Result class must not be null");
         Validate.notEmpty(equalsCriteria, "At least one equals criterion should be given");
 
-        for (EqualsCriterion<?> equalsCriterion : equalsCriteria) {
+        int numRestrictions = equalsCriteria.length;
+        String[] attributeNames = new String[numRestrictions];
+        Object[] comparisons = new Object[numRestrictions];
+        for (int i = 0; i < numRestrictions; i++) {
+            EqualsCriterion<?> equalsCriterion = equalsCriteria[i];
             Validate.notEmpty(equalsCriterion.getAttributeName(), "Attribute name of equals criterion must no be blank");
             Validate.notNull(equalsCriterion.getComparison(), "A comparison value must exist. It is currently null");
+            attributeNames[i] = equalsCriterion.getAttributeName();
+            comparisons[i] = equalsCriterion.getComparison();
         }
 
-        Metamodel metamodel = entityManager.getMetamodel();
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
-        EntityType<X> entityType = metamodel.entity(resultClass);
-        Root<X> root = query.from(entityType);
+        CriteriaTemplate<X> template = template("equality:" + String.join(",", attributeNames), entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            Predicate[] restrictions = new Predicate[numRestrictions];
+            ParameterExpression<?>[] parameters = new ParameterExpression<?>[numRestrictions];
+            for (int i = 0; i < numRestrictions; i++) {
+                SingularAttribute<? super X, ?> singularAttribute = entityType.getSingularAttribute(attributeNames[i]);
+                Path<?> path = root.get(singularAttribute);
+                ParameterExpression<?> parameter = criteriaBuilder.parameter(ClassUtils.primitiveToWrapper(singularAttribute.getJavaType()));
+                restrictions[i] = criteriaBuilder.equal(path, parameter);
+                parameters[i] = parameter;
+            }
+            query.where(criteriaBuilder.and(restrictions));
+            return new CriteriaTemplate<>(query, parameters);
+        });
+        return template.createQuery(entityManager, comparisons);
+    }
+
+    /**
+     * Selects the entities whose attribute is one of the values.
+     */
+    TypedQuery<X> in(EntityManager entityManager, String inAttributeName, Collection<?> values) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notEmpty(inAttributeName, "In attribute name must not be blank");
+        Validate.notEmpty(values, "At least one value should be given");
+
+        CriteriaTemplate<X> template = template("in:" + inAttributeName, entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            ParameterExpression<Collection> inParameter = criteriaBuilder.parameter(Collection.class);
+            query.select(root);
+            query.where(root.get(inAttributeName).in(inParameter));
+            return new CriteriaTemplate<>(query, inParameter);
+        });
+        return template.createQuery(entityManager, values);
+    }
+
+    /**
+     * Selects the entities whose attribute equals the comparison and whose other attribute is one of the values.
+     */
+    TypedQuery<X> equalityAndIn(EntityManager entityManager, EqualsCriterion<?> equalsCriterion, String inAttributeName, Collection<?> values) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notNull(equalsCriterion, "Equals criterion must not be null");
+        Validate.notEmpty(equalsCriterion.getAttributeName(), "Attribute name of equals criterion must no be blank");
+        Validate.notNull(equalsCriterion.getComparison(), "A comparison value must exist. It is currently null");
+        Validate.notEmpty(inAttributeName, "In attribute name must not be blank");
+        Validate.notEmpty(values, "At least one value should be given");
+
+        String attributeName = equalsCriterion.getAttributeName();
+        CriteriaTemplate<X> template = template("equalityAndIn:" + attributeName + "," + inAttributeName, entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            SingularAttribute<? super X, ?> singularAttribute = entityType.getSingularAttribute(attributeName);
+            ParameterExpression<?> parameter = criteriaBuilder.parameter(ClassUtils.primitiveToWrapper(singularAttribute.getJavaType()));
+            ParameterExpression<Collection> inParameter = criteriaBuilder.parameter(Collection.class);
+            query.select(root);
+            query.where(criteriaBuilder.equal(root.get(singularAttribute), parameter), root.get(inAttributeName).in(inParameter));
+            return new CriteriaTemplate<>(query, parameter, inParameter);
+        });
+        return template.createQuery(entityManager, equalsCriterion.getComparison(), values);
+    }
+
+    TypedQuery<X> all(EntityManager entityManager) {
+        Validate.notNull(resultClass, "Result class must not be null");
+        return all(entityManager, null, resultClass);
+    }
+
+    /**
+     * Selects only the given attribute of all entities, so no entities have to be built and managed.
+     */
+    <A> TypedQuery<A> selectAll(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass) {
+        Validate.notEmpty(selectedAttributeName, "Selected attribute name must not be blank");
+        return all(entityManager, selectedAttributeName, selectionClass);
+    }
+
+    private <R> TypedQuery<R> all(EntityManager entityManager, String selectedAttributeName, Class<R> selectionClass) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notNull(selectionClass, "Selection class must not be null");
+
+        CriteriaTemplate<R> template = template(shape("all", selectedAttributeName), entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<R> query = criteriaBuilder.createQuery(selectionClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            query.select(selection(root, entityType, selectedAttributeName, selectionClass));
+            return new CriteriaTemplate<>(query);
+        });
+        return template.createQuery(entityManager);
+    }
+
+    TypedQuery<X> allJoined(EntityManager entityManager, String joinAttributeName, String orderAttributeName) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notEmpty(joinAttributeName, "Join attribute name must not be blank");
+        Validate.notEmpty(orderAttributeName, "Order attribute name must not be blank");
+
+        CriteriaTemplate<X> template = template("allJoined:" + joinAttributeName + "," + orderAttributeName, entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            root.fetch(joinAttributeName);
+            query.select(root);
+            query.orderBy(criteriaBuilder.asc(root.get(joinAttributeName).get(orderAttributeName)));
+            return new CriteriaTemplate<>(query);
+        });
+        return template.createQuery(entityManager);
+    }
+
+    <Y extends Comparable<? super Y>> TypedQuery<X> joinedGreaterThan(EntityManager entityManager, String joinAttributeName, String orderAttributeName, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notEmpty(joinAttributeName, "Join attribute name must not be blank");
+        Validate.notEmpty(orderAttributeName, "Order attribute name must not be blank");
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notEmpty(criterion.getAttributeName(), "Attribute name of greater than criterion must no be blank");
+        Validate.notNull(criterion.getComparison(), "A comparison value must exist. It is currently null");
+
+        String attributeName = criterion.getAttributeName();
+        Class<Y> comparisonClass = comparisonClass(criterion);
+        CriteriaTemplate<X> template = template("joinedGreaterThan:" + joinAttributeName + "," + orderAttributeName + "," + attributeName, entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            root.fetch(joinAttributeName);
+            Path<Object> joinedPath = root.get(joinAttributeName);
+            Path<Y> path = joinedPath.get(attributeName);
+            ParameterExpression<Y> parameter = criteriaBuilder.parameter(comparisonClass);
+            query.select(root);
+            query.where(criteriaBuilder.greaterThan(path, parameter));
+            query.orderBy(criteriaBuilder.asc(joinedPath.get(orderAttributeName)));
+            return new CriteriaTemplate<>(query, parameter);
+        });
+        return template.createQuery(entityManager, criterion.getComparison());
+    }
+
+    <Y extends Comparable<? super Y>> TypedQuery<X> greaterThan(EntityManager entityManager, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(resultClass, "Result class must not be null");
+        return greaterThan(entityManager, null, resultClass, criterion, false);
+    }
+
+    /**
+     * Selects only the given attribute of the entities with an attribute greater than the comparison.
+     */
+    <A, Y extends Comparable<? super Y>> TypedQuery<A> selectGreaterThan(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, GreaterThanCriterion<Y> criterion) {
+        Validate.notEmpty(selectedAttributeName, "Selected attribute name must not be blank");
+        return greaterThan(entityManager, selectedAttributeName, selectionClass, criterion, false);
+    }
+
+    /**
+     * Selects the entities with the given attribute greater than the comparison, ordered by that attribute.
+     */
+    <Y extends Comparable<? super Y>> TypedQuery<X> greaterThanAscending(EntityManager entityManager, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(resultClass, "Result class must not be null");
+        return greaterThan(entityManager, null, resultClass, criterion, true);
+    }
+
+    /**
+     * Selects only the given attribute of the entities with an attribute greater than the comparison, ordered by the
+     * compared attribute.
+     */
+    <A, Y extends Comparable<? super Y>> TypedQuery<A> selectGreaterThanAscending(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, GreaterThanCriterion<Y> criterion) {
+        Validate.notEmpty(selectedAttributeName, "Selected attribute name must not be blank");
+        return greaterThan(entityManager, selectedAttributeName, selectionClass, criterion, true);
+    }
+
+    private <R, Y extends Comparable<? super Y>> TypedQuery<R> greaterThan(EntityManager entityManager, String selectedAttributeName, Class<R> selectionClass, GreaterThanCriterion<Y> criterion, boolean ascending) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notNull(selectionClass, "Selection class must not be null");
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notEmpty(criterion.getAttributeName(), "Attribute name of greater than criterion must no be blank");
+        Validate.notNull(criterion.getComparison(), "A comparison value must exist. It is currently null");
+
+        String attributeName = criterion.getAttributeName();
+        Class<Y> comparisonClass = comparisonClass(criterion);
+        String shape = (ascending ? "greaterThanAscending:" : "greaterThan:") + attributeName;
+        CriteriaTemplate<R> template = template(shape(shape, selectedAttributeName), entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<R> query = criteriaBuilder.createQuery(selectionClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            Path<Y> path = root.get(attributeName);
+            ParameterExpression<Y> parameter = criteriaBuilder.parameter(comparisonClass);
+            query.select(selection(root, entityType, selectedAttributeName, selectionClass));
+            query.where(criteriaBuilder.greaterThan(path, parameter));
+            if (ascending) {
+                query.orderBy(criteriaBuilder.asc(path));
+            }
+            return new CriteriaTemplate<>(query, parameter);
+        });
+        return template.createQuery(entityManager, criterion.getComparison());
+    }
+
+    /**
+     * Selects the entities whose joined attribute lies after the lower and up to the upper bound, ordered by the
+     * joined attribute. The joined entity is fetched as well.
+     */
+    <Y extends Comparable<? super Y>> TypedQuery<X> joinedRange(EntityManager entityManager, String joinAttributeName, String attributeName, Y lowerExclusive, Y upperInclusive) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notEmpty(joinAttributeName, "Join attribute name must not be blank");
+        Validate.notEmpty(attributeName, "Attribute name must not be blank");
+        Validate.notNull(lowerExclusive, "Lower bound must not be null");
+        Validate.notNull(upperInclusive, "Upper bound must not be null");
+
+        @SuppressWarnings("unchecked")
+        Class<Y> boundClass = (Class<Y>) lowerExclusive.getClass();
+        CriteriaTemplate<X> template = template("joinedRange:" + joinAttributeName + "," + attributeName, entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            root.fetch(joinAttributeName);
+            Path<Y> path = root.get(joinAttributeName).get(attributeName);
+            ParameterExpression<Y> lower = criteriaBuilder.parameter(boundClass);
+            ParameterExpression<Y> upper = criteriaBuilder.parameter(boundClass);
+            query.select(root);
+            query.where(criteriaBuilder.greaterThan(path, lower), criteriaBuilder.lessThanOrEqualTo(path, upper));
+            query.orderBy(criteriaBuilder.asc(path));
+            return new CriteriaTemplate<>(query, lower, upper);
+        });
+        return template.createQuery(entityManager, lowerExclusive, upperInclusive);
+    }
+
+    /**
+     * Deletes all entities whose attributes equal the given comparisons in a single statement, bypassing the
+     * persistence context.
+     */
+    Query deleteEquality(EntityManager entityManager, EqualsCriterion<?>... equalsCriteria) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notEmpty(equalsCriteria, "At least one equals criterion should be given");
+
         int numRestrictions = equalsCriteria.length;
-        Predicate[] restrictions = new Predicate[numRestrictions];
+        String[] attributeNames = new String[numRestrictions];
+        Object[] comparisons = new Object[numRestrictions];
         for (int i = 0; i < numRestrictions; i++) {
             EqualsCriterion<?> equalsCriterion = equalsCriteria[i];
-            String attributeName = equalsCriterion.getAttributeName();
-            SingularAttribute<? super X, ?> singularAttribute = entityType.getSingularAttribute(attributeName);
-            Path<?> path = root.get(singularAttribute);
-            Predicate restriction = criteriaBuilder.equal(path, equalsCriterion.getComparison());
-            restrictions[i] = restriction;
+            Validate.notEmpty(equalsCriterion.getAttributeName(), "Attribute name of equals criterion must no be blank");
+            Validate.notNull(equalsCriterion.getComparison(), "A comparison value must exist. It is currently null");
+            attributeNames[i] = equalsCriterion.getAttributeName();
+            comparisons[i] = equalsCriterion.getComparison();
         }
-        query.where(criteriaBuilder.and(restrictions));
-        return entityManager.createQuery(query);
+
+        CriteriaDeleteTemplate<X> template = deleteTemplate("deleteEquality:" + String.join(",", attributeNames), entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaDelete<X> delete = criteriaBuilder.createCriteriaDelete(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = delete.from(entityType);
+            Predicate[] restrictions = new Predicate[numRestrictions];
+            ParameterExpression<?>[] parameters = new ParameterExpression<?>[numRestrictions];
+            for (int i = 0; i < numRestrictions; i++) {
+                SingularAttribute<? super X, ?> singularAttribute = entityType.getSingularAttribute(attributeNames[i]);
+                ParameterExpression<?> parameter = criteriaBuilder.parameter(ClassUtils.primitiveToWrapper(singularAttribute.getJavaType()), "p" + i);
+                restrictions[i] = criteriaBuilder.equal(root.get(singularAttribute), parameter);
+                parameters[i] = parameter;
+            }
+            delete.where(criteriaBuilder.and(restrictions));
+            return new CriteriaDeleteTemplate<>(delete, parameters);
+        });
+        return template.createQuery(entityManager, comparisons);
     }
 
-    TypedQuery<X> all() {
+    /**
+     * Deletes all entities whose attribute equals the comparison and whose other attribute is one of the given values
+     * in a single statement, bypassing the persistence context.
+     */
+    Query deleteEqualityAndIn(EntityManager entityManager, EqualsCriterion<?> equalsCriterion, String inAttributeName, Collection<?> values) {
         Validate.notNull(entityManager, "Entity manager must not be null");
         Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notNull(equalsCriterion, "Equals criterion must not be null");
+        Validate.notEmpty(equalsCriterion.getAttributeName(), "Attribute name of equals criterion must no be blank");
+        Validate.notNull(equalsCriterion.getComparison(), "A comparison value must exist. It is currently null");
+        Validate.notEmpty(inAttributeName, "In attribute name must not be blank");
+        Validate.notEmpty(values, "At least one value should be given");
 
-        Metamodel metamodel = entityManager.getMetamodel();
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
-        EntityType<X> entityType = metamodel.entity(resultClass);
-        Root<X> root = query.from(entityType);
-        query.select(root);
-        return entityManager.createQuery(query);
+        String attributeName = equalsCriterion.getAttributeName();
+        CriteriaDeleteTemplate<X> template = deleteTemplate("deleteEqualityAndIn:" + attributeName + "," + inAttributeName, entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaDelete<X> delete = criteriaBuilder.createCriteriaDelete(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = delete.from(entityType);
+            SingularAttribute<? super X, ?> singularAttribute = entityType.getSingularAttribute(attributeName);
+            ParameterExpression<?> parameter = criteriaBuilder.parameter(ClassUtils.primitiveToWrapper(singularAttribute.getJavaType()), "p0");
+            ParameterExpression<Collection> inParameter = criteriaBuilder.parameter(Collection.class, "values");
+            delete.where(criteriaBuilder.equal(root.get(singularAttribute), parameter), root.get(inAttributeName).in(inParameter));
+            return new CriteriaDeleteTemplate<>(delete, parameter, inParameter);
+        });
+        return template.createQuery(entityManager, equalsCriterion.getComparison(), values);
     }
 
-    void setResultClass(Class<X> resultClass) {
+    /**
+     * Deletes the entity whose attribute equals the comparison in a single statement, unless an entity of the
+     * referencing class still refers to it through the referencing attribute. The compared attribute must be the id.
+     */
+    Query deleteUnreferenced(EntityManager entityManager, EqualsCriterion<?> idCriterion, Class<?> referencingClass, String referencingAttributeName) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
         Validate.notNull(resultClass, "Result class must not be null");
-        this.resultClass = resultClass;
+        Validate.notNull(idCriterion, "Id criterion must not be null");
+        Validate.notEmpty(idCriterion.getAttributeName(), "Attribute name of id criterion must no be blank");
+        Validate.notNull(idCriterion.getComparison(), "A comparison value must exist. It is currently null");
+        Validate.notNull(referencingClass, "Referencing class must not be null");
+        Validate.notEmpty(referencingAttributeName, "Referencing attribute name must not be blank");
+
+        String idAttributeName = idCriterion.getAttributeName();
+        String shape = "deleteUnreferenced:" + idAttributeName + "," + referencingClass.getName() + "," + referencingAttributeName;
+        CriteriaDeleteTemplate<X> template = deleteTemplate(shape, entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaDelete<X> delete = criteriaBuilder.createCriteriaDelete(resultClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = delete.from(entityType);
+            Class<?> idClass = ClassUtils.primitiveToWrapper(entityType.getSingularAttribute(idAttributeName).getJavaType());
+            ParameterExpression<?> parameter = criteriaBuilder.parameter(idClass, "id");
+            ParameterExpression<?> referencedParameter = criteriaBuilder.parameter(idClass, "referencedId");
+            // compares with a parameter instead of correlating, because some providers don't alias the deleted table
+            Subquery<Integer> references = delete.subquery(Integer.class);
+            Root<?> referencingRoot = references.from(referencingClass);
+            references.select(criteriaBuilder.literal(1));
+            references.where(criteriaBuilder.equal(referencingRoot.get(referencingAttributeName).get(idAttributeName), referencedParameter));
+            delete.where(criteriaBuilder.equal(root.get(idAttributeName), parameter), criteriaBuilder.not(criteriaBuilder.exists(references)));
+            return new CriteriaDeleteTemplate<>(delete, parameter, referencedParameter);
+        });
+        return template.createQuery(entityManager, idCriterion.getComparison(), idCriterion.getComparison());
     }
 
-    void withEntityManager(EntityManager entityManager) {
-        Validate.notNull(entityManager, "Entity manager must not be null");
-        this.entityManager = entityManager;
+    void setResultClass(Class<X> resultClass) {
+        Validate.notNull(resultClass, "Result class must not be null");
+        this.resultClass = resultClass;
+        templates.clear();
+        deleteTemplates.clear();
     }
 
-    TypedQuery<Long> count(RopertyKey ropertyKey) {
+    TypedQuery<Long> count(EntityManager entityManager, RopertyKey ropertyKey) {
         Validate.notNull(entityManager, "Entity manager must not be null");
         Validate.notNull(resultClass, "Result class must not be null");
 
-        Metamodel metamodel = entityManager.getMetamodel();
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
-        EntityType<X> entityType = metamodel.entity(resultClass);
-        Root<X> root = query.from(entityType);
+        CriteriaTemplate<Long> template = template("count", entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            ParameterExpression<RopertyKey> parameter = criteriaBuilder.parameter(RopertyKey.class);
+            query.select(criteriaBuilder.count(root));
+            query.where(criteriaBuilder.equal(root.get(entityType.getSingularAttribute("key")), parameter));
+            return new CriteriaTemplate<>(query, parameter);
+        });
+        return template.createQuery(entityManager, ropertyKey);
+    }
 
-        query.select(criteriaBuilder.count(root));
-        query.where(criteriaBuilder.equal(root.get(entityType.getSingularAttribute("key")), ropertyKey));
+    TypedQuery<X> likeliness(EntityManager entityManager, LikeCriterion... criteria) {
+        Validate.notNull(resultClass, "Result class must not be null");
+        return likeliness(entityManager, null, resultClass, criteria);
+    }
 
-        return entityManager.createQuery(query);
+    /**
+     * Selects only the given attribute of the entities whose attributes are like the expressions, ignoring case.
+     */
+    <A> TypedQuery<A> selectLikeliness(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, LikeCriterion... criteria) {
+        Validate.notEmpty(selectedAttributeName, "Selected attribute name must not be blank");
+        return likeliness(entityManager, selectedAttributeName, selectionClass, criteria);
     }
 
-    TypedQuery<X> likeliness(LikeCriterion... criteria) {
+    private <R> TypedQuery<R> likeliness(EntityManager entityManager, String selectedAttributeName, Class<R> selectionClass, LikeCriterion... criteria) {
         Validate.notNull(entityManager, "Entity manager must not be null");
         Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notNull(selectionClass, "Selection class must not be null");
         Validate.notEmpty(criteria, "At least one like criterion should be given");
 
-        for (LikeCriterion criterion : criteria) {
+        int numRestrictions = criteria.length;
+        String[] attributeNames = new String[numRestrictions];
+        Object[] expressions = new Object[numRestrictions];
+        for (int i = 0; i < numRestrictions; i++) {
+            LikeCriterion criterion = criteria[i];
             Validate.notEmpty(criterion.getAttributeName(), "Attribute name of equals criterion must no be blank");
             Validate.notNull(criterion.getExpression(), "An expression must exist. It is currently null");
+            attributeNames[i] = criterion.getAttributeName();
+            expressions[i] = criterion.getExpression().toLowerCase();
         }
 
-        Metamodel metamodel = entityManager.getMetamodel();
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<X> query = criteriaBuilder.createQuery(resultClass);
-        EntityType<X> entityType = metamodel.entity(resultClass);
-        Root<X> root = query.from(entityType);
-        int numRestrictions = criteria.length;
-        Predicate[] restrictions = new Predicate[numRestrictions];
-        for (int i = 0; i < numRestrictions; i++) {
-            LikeCriterion criterion = criteria[i];
-            String attributeName = criterion.getAttributeName();
-            SingularAttribute<? super X, String> singularAttribute = entityType.getSingularAttribute(attributeName, String.class);
-            Path<String> path = root.get(singularAttribute);
-            String expression = criterion.getExpression();
-            Predicate restriction = criteriaBuilder.like(criteriaBuilder.lower(path), expression.toLowerCase());
-            restrictions[i] = restriction;
+        CriteriaTemplate<R> template = template(shape("likeliness:" + String.join(",", attributeNames), selectedAttributeName), entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<R> query = criteriaBuilder.createQuery(selectionClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            Predicate[] restrictions = new Predicate[numRestrictions];
+            ParameterExpression<?>[] parameters = new ParameterExpression<?>[numRestrictions];
+            for (int i = 0; i < numRestrictions; i++) {
+                SingularAttribute<? super X, String> singularAttribute = entityType.getSingularAttribute(attributeNames[i], String.class);
+                Path<String> path = root.get(singularAttribute);
+                ParameterExpression<String> parameter = criteriaBuilder.parameter(String.class);
+                restrictions[i] = criteriaBuilder.like(criteriaBuilder.lower(path), parameter);
+                parameters[i] = parameter;
+            }
+            if (selectedAttributeName != null) {
+                query.select(selection(root, entityType, selectedAttributeName, selectionClass));
+            }
+            query.where(criteriaBuilder.and(restrictions));
+            return new CriteriaTemplate<>(query, parameters);
+        });
+        return template.createQuery(entityManager, expressions);
+    }
+
+    /**
+     * Selects the entities whose attribute is like the expression, ignoring case, and whose other attribute is greater
+     * than the comparison, ordered by that other attribute.
+     */
+    <Y extends Comparable<? super Y>> TypedQuery<X> likelinessGreaterThanAscending(EntityManager entityManager, LikeCriterion likeCriterion, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(resultClass, "Result class must not be null");
+        return likelinessGreaterThanAscending(entityManager, null, resultClass, likeCriterion, criterion);
+    }
+
+    /**
+     * Like {@link #likelinessGreaterThanAscending(EntityManager, LikeCriterion, GreaterThanCriterion)}, but selects
+     * only the given attribute.
+     */
+    <A, Y extends Comparable<? super Y>> TypedQuery<A> selectLikelinessGreaterThanAscending(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, LikeCriterion likeCriterion, GreaterThanCriterion<Y> criterion) {
+        Validate.notEmpty(selectedAttributeName, "Selected attribute name must not be blank");
+        return likelinessGreaterThanAscending(entityManager, selectedAttributeName, selectionClass, likeCriterion, criterion);
+    }
+
+    private <R, Y extends Comparable<? super Y>> TypedQuery<R> likelinessGreaterThanAscending(EntityManager entityManager, String selectedAttributeName, Class<R> selectionClass, LikeCriterion likeCriterion, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        Validate.notNull(resultClass, "Result class must not be null");
+        Validate.notNull(selectionClass, "Selection class must not be null");
+        Validate.notNull(likeCriterion, "Like criterion must not be null");
+        Validate.notEmpty(likeCriterion.getAttributeName(), "Attribute name of like criterion must no be blank");
+        Validate.notNull(likeCriterion.getExpression(), "An expression must exist. It is currently null");
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notEmpty(criterion.getAttributeName(), "Attribute name of greater than criterion must no be blank");
+        Validate.notNull(criterion.getComparison(), "A comparison value must exist. It is currently null");
+
+        String likeAttributeName = likeCriterion.getAttributeName();
+        String attributeName = criterion.getAttributeName();
+        Class<Y> comparisonClass = comparisonClass(criterion);
+        CriteriaTemplate<R> template = template(shape("likelinessGreaterThanAscending:" + likeAttributeName + "," + attributeName, selectedAttributeName), entityManager, criteriaBuilder -> {
+            Metamodel metamodel = entityManager.getMetamodel();
+            CriteriaQuery<R> query = criteriaBuilder.createQuery(selectionClass);
+            EntityType<X> entityType = metamodel.entity(resultClass);
+            Root<X> root = query.from(entityType);
+            Path<String> likePath = root.get(entityType.getSingularAttribute(likeAttributeName, String.class));
+            ParameterExpression<String> likeParameter = criteriaBuilder.parameter(String.class);
+            Path<Y> path = root.get(attributeName);
+            ParameterExpression<Y> parameter = criteriaBuilder.parameter(comparisonClass);
+            query.select(selection(root, entityType, selectedAttributeName, selectionClass));
+            query.where(criteriaBuilder.like(criteriaBuilder.lower(likePath), likeParameter), criteriaBuilder.greaterThan(path, parameter));
+            query.orderBy(criteriaBuilder.asc(path));
+            return new CriteriaTemplate<>(query, likeParameter, parameter);
+        });
+        return template.createQuery(entityManager, likeCriterion.getExpression().toLowerCase(), criterion.getComparison());
+    }
+
+    /**
+     * Selects the whole entity, if no attribute is given.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> Selection<? extends R> selection(Root<X> root, EntityType<X> entityType, String selectedAttributeName, Class<R> selectionClass) {
+        if (selectedAttributeName == null) {
+            return (Selection<? extends R>) root;
         }
-        query.where(criteriaBuilder.and(restrictions));
-        return entityManager.createQuery(query);
+        return root.get(entityType.getSingularAttribute(selectedAttributeName, selectionClass));
+    }
+
+    private static String shape(String shape, String selectedAttributeName) {
+        return selectedAttributeName == null ? shape : shape + "->" + selectedAttributeName;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> CriteriaTemplate<R> template(String shape, EntityManager entityManager, Function<CriteriaBuilder, CriteriaTemplate<R>> factory) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        return (CriteriaTemplate<R>) templates.computeIfAbsent(criteriaBuilder, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(shape, key -> factory.apply(criteriaBuilder));
+    }
+
+    private CriteriaDeleteTemplate<X> deleteTemplate(String shape, EntityManager entityManager, Function<CriteriaBuilder, CriteriaDeleteTemplate<X>> factory) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        return deleteTemplates.computeIfAbsent(criteriaBuilder, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(shape, key -> factory.apply(criteriaBuilder));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Y extends Comparable<? super Y>> Class<Y> comparisonClass(GreaterThanCriterion<Y> criterion) {
+        return (Class<Y>) criterion.getComparison().getClass();
     }
 }
@@ -4,7 +4,9 @@ import org.apache.commons.lang3.Validate;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.util.Collection;
 
 public class QueryBuilderDelegate<T> {
 
@@ -22,21 +24,109 @@ public class QueryBuilderDelegate<T> {
         this.queryBuilder = queryBuilder;
     }
 
+    /**
+     * Returns the entity manager of the current {@link UnitOfWork} or a new one, if no unit of work was started.
+     * Release it with {@link #closeEntityManager(EntityManager)}.
+     */
     EntityManager createEntityManager() {
         Validate.notNull(entityManagerFactory, "Entity manager factory must not be null");
-        EntityManager entityManager = entityManagerFactory.createEntityManager();
-        queryBuilder.withEntityManager(entityManager);
-        return entityManager;
+        EntityManager entityManager = UnitOfWork.entityManager(entityManagerFactory);
+        if (entityManager != null) {
+            return entityManager;
+        }
+        OperationStats.entityManagerOpened();
+        return entityManagerFactory.createEntityManager();
     }
 
-    TypedQuery<T> equality(EqualsCriterion<?>... equalsCriteria) {
+    void closeEntityManager(EntityManager entityManager) {
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        if (!UnitOfWork.isScoped(entityManagerFactory, entityManager)) {
+            entityManager.close();
+        }
+    }
+
+    TypedQuery<T> equality(EntityManager entityManager, EqualsCriterion<?>... equalsCriteria) {
         Validate.notEmpty(equalsCriteria, "Equals criteria must not be empty");
-        return queryBuilder.equality(equalsCriteria);
+        return queryBuilder.equality(entityManager, equalsCriteria);
+    }
+
+    TypedQuery<T> in(EntityManager entityManager, String inAttributeName, Collection<?> values) {
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.in(entityManager, inAttributeName, values);
+    }
+
+    TypedQuery<T> equalityAndIn(EntityManager entityManager, EqualsCriterion<?> equalsCriterion, String inAttributeName, Collection<?> values) {
+        Validate.notNull(equalsCriterion, "Equals criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.equalityAndIn(entityManager, equalsCriterion, inAttributeName, values);
+    }
+
+    TypedQuery<T> all(EntityManager entityManager) {
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.all(entityManager);
+    }
+
+    <A> TypedQuery<A> selectAll(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass) {
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.selectAll(entityManager, selectedAttributeName, selectionClass);
+    }
+
+    TypedQuery<T> allJoined(EntityManager entityManager, String joinAttributeName, String orderAttributeName) {
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.allJoined(entityManager, joinAttributeName, orderAttributeName);
+    }
+
+    <Y extends Comparable<? super Y>> TypedQuery<T> joinedGreaterThan(EntityManager entityManager, String joinAttributeName, String orderAttributeName, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.joinedGreaterThan(entityManager, joinAttributeName, orderAttributeName, criterion);
+    }
+
+    <Y extends Comparable<? super Y>> TypedQuery<T> greaterThan(EntityManager entityManager, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.greaterThan(entityManager, criterion);
+    }
+
+    <A, Y extends Comparable<? super Y>> TypedQuery<A> selectGreaterThan(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.selectGreaterThan(entityManager, selectedAttributeName, selectionClass, criterion);
     }
 
-    TypedQuery<T> all() {
+    <Y extends Comparable<? super Y>> TypedQuery<T> greaterThanAscending(EntityManager entityManager, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(criterion, "Greater than criterion must not be null");
         Validate.notNull(queryBuilder, "Query builder must not be null");
-        return queryBuilder.all();
+        return queryBuilder.greaterThanAscending(entityManager, criterion);
+    }
+
+    <A, Y extends Comparable<? super Y>> TypedQuery<A> selectGreaterThanAscending(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.selectGreaterThanAscending(entityManager, selectedAttributeName, selectionClass, criterion);
+    }
+
+    <Y extends Comparable<? super Y>> TypedQuery<T> joinedRange(EntityManager entityManager, String joinAttributeName, String attributeName, Y lowerExclusive, Y upperInclusive) {
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.joinedRange(entityManager, joinAttributeName, attributeName, lowerExclusive, upperInclusive);
+    }
+
+    Query deleteEquality(EntityManager entityManager, EqualsCriterion<?>... equalsCriteria) {
+        Validate.notEmpty(equalsCriteria, "Equals criteria must not be empty");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.deleteEquality(entityManager, equalsCriteria);
+    }
+
+    Query deleteEqualityAndIn(EntityManager entityManager, EqualsCriterion<?> equalsCriterion, String inAttributeName, Collection<?> values) {
+        Validate.notNull(equalsCriterion, "Equals criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.deleteEqualityAndIn(entityManager, equalsCriterion, inAttributeName, values);
+    }
+
+    Query deleteUnreferenced(EntityManager entityManager, EqualsCriterion<?> idCriterion, Class<?> referencingClass, String referencingAttributeName) {
+        Validate.notNull(idCriterion, "Id criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.deleteUnreferenced(entityManager, idCriterion, referencingClass, referencingAttributeName);
     }
 
     public void setResultClass(Class<T> resultClass) {
@@ -44,14 +134,33 @@ public class QueryBuilderDelegate<T> {
         queryBuilder.setResultClass(resultClass);
     }
 
-    TypedQuery<Long> count(RopertyKey ropertyKey) {
+    TypedQuery<Long> count(EntityManager entityManager, RopertyKey ropertyKey) {
         Validate.notNull(ropertyKey, "Roperty key must not be null");
         Validate.notNull(queryBuilder, "Query builder must not be null");
-        return queryBuilder.count(ropertyKey);
+        return queryBuilder.count(entityManager, ropertyKey);
+    }
+
+    TypedQuery<T> likeliness(EntityManager entityManager, LikeCriterion... criteria) {
+        Validate.notEmpty(criteria, "Like criteria must not be empty");
+        return queryBuilder.likeliness(entityManager, criteria);
     }
 
-    TypedQuery<T> likeliness(LikeCriterion... criteria) {
+    <A> TypedQuery<A> selectLikeliness(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, LikeCriterion... criteria) {
         Validate.notEmpty(criteria, "Like criteria must not be empty");
-        return queryBuilder.likeliness(criteria);
+        return queryBuilder.selectLikeliness(entityManager, selectedAttributeName, selectionClass, criteria);
+    }
+
+    <Y extends Comparable<? super Y>> TypedQuery<T> likelinessGreaterThanAscending(EntityManager entityManager, LikeCriterion likeCriterion, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(likeCriterion, "Like criterion must not be null");
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.likelinessGreaterThanAscending(entityManager, likeCriterion, criterion);
+    }
+
+    <A, Y extends Comparable<? super Y>> TypedQuery<A> selectLikelinessGreaterThanAscending(EntityManager entityManager, String selectedAttributeName, Class<A> selectionClass, LikeCriterion likeCriterion, GreaterThanCriterion<Y> criterion) {
+        Validate.notNull(likeCriterion, "Like criterion must not be null");
+        Validate.notNull(criterion, "Greater than criterion must not be null");
+        Validate.notNull(queryBuilder, "Query builder must not be null");
+        return queryBuilder.selectLikelinessGreaterThanAscending(entityManager, selectedAttributeName, selectionClass, likeCriterion, criterion);
     }
 }
@@ -2,12 +2,14 @@ package com.parship.roperty.persistence.jpa;
 
 import org.apache.commons.lang3.Validate;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "roperty_key")
+@Table(name = "roperty_key", indexes = @Index(columnList = "modified"))
 public class RopertyKey {
 
     @Id
@@ -15,6 +17,9 @@ public class RopertyKey {
 
     private String description;
 
+    @Column(name = "modified")
+    private Long modified;
+
     public String getId() {
         return id;
     }
@@ -32,6 +37,14 @@ public class RopertyKey {
         this.description = description;
     }
 
+    public Long getModified() {
+        return modified;
+    }
+
+    public void setModified(Long modified) {
+        this.modified = modified;
+    }
+
     @Override
     public String toString() {
         return "RopertyKey{" +
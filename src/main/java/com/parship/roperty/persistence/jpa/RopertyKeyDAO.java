@@ -3,13 +3,17 @@ package com.parship.roperty.persistence.jpa;
 import org.apache.commons.lang3.Validate;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 public class RopertyKeyDAO {
 
+    private static final int MAX_KEYS_PER_QUERY = 1000;
+
     private QueryBuilderDelegate<RopertyKey> queryBuilderDelegate;
 
     RopertyKey loadRopertyKey(String key) {
@@ -17,24 +21,161 @@ public class RopertyKeyDAO {
         EntityManager entityManager = queryBuilderDelegate.createEntityManager();
         Validate.notNull(entityManager, "Entity manager must not be null");
         RopertyKey ropertyKey = entityManager.find(RopertyKey.class, key);
-        entityManager.close();
+        queryBuilderDelegate.closeEntityManager(entityManager);
         return ropertyKey;
     }
 
-    List<RopertyKey> loadAllRopertyKeys() {
+    /**
+     * Loads the existing keys among the given ones, using one query per thousand keys.
+     */
+    List<RopertyKey> loadRopertyKeys(Collection<String> keys) {
         Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        Validate.notNull(keys, "Keys must not be null");
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
         EntityManager entityManager = queryBuilderDelegate.createEntityManager();
         Validate.notNull(entityManager, "Entity manager must not be null");
-        TypedQuery<RopertyKey> typedQuery = queryBuilderDelegate.all();
+
+        List<String> keyList = new ArrayList<>(keys);
+        List<RopertyKey> ropertyKeys = new ArrayList<>();
+        for (int from = 0; from < keyList.size(); from += MAX_KEYS_PER_QUERY) {
+            List<String> chunk = keyList.subList(from, Math.min(from + MAX_KEYS_PER_QUERY, keyList.size()));
+            TypedQuery<RopertyKey> typedQuery = queryBuilderDelegate.in(entityManager, "id", chunk);
+            if (typedQuery == null) {
+                queryBuilderDelegate.closeEntityManager(entityManager);
+                throw new RopertyPersistenceException("Typed query for keys must not be null");
+            }
+            ropertyKeys.addAll(OperationStats.resultList(typedQuery));
+        }
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        return Collections.unmodifiableList(ropertyKeys);
+    }
+
+    /**
+     * Loads the ids of all keys. Only the ids are selected, so no key entities are built and managed.
+     */
+    List<String> loadAllRopertyKeyIds() {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+        TypedQuery<String> typedQuery = queryBuilderDelegate.selectAll(entityManager, "id", String.class);
 
         if (typedQuery == null) {
-            entityManager.close();
+            queryBuilderDelegate.closeEntityManager(entityManager);
             throw new RopertyPersistenceException("Typed query must not be null");
         }
 
-        List<RopertyKey> ropertyKeys = typedQuery.getResultList();
-        entityManager.close();
-        return Collections.unmodifiableList(ropertyKeys);
+        List<String> ids = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Loads the ids of at most the given number of keys that come after the given key id, in ascending order.
+     */
+    List<String> loadRopertyKeyIds(String afterKey, int maxResults) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        Validate.notNull(afterKey, "Key to start after must not be null");
+        Validate.isTrue(maxResults > 0, "Maximum number of keys must be positive");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        GreaterThanCriterion<String> idCriterion = new GreaterThanCriterion<String>()
+                .withAttributeName("id")
+                .withComparison(afterKey);
+
+        TypedQuery<String> typedQuery = queryBuilderDelegate.selectGreaterThanAscending(entityManager, "id", String.class, idCriterion);
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException("Typed query for keys must not be null");
+        }
+
+        List<String> ids = OperationStats.resultList(typedQuery.setMaxResults(maxResults));
+        queryBuilderDelegate.closeEntityManager(entityManager);
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Loads the ids of at most the given number of keys that contain the substring, ignoring case, and come after the
+     * given key id, in ascending order.
+     */
+    List<String> findKeys(String substring, String afterKey, int maxResults) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        Validate.notNull(substring, "Substring must not be null");
+        Validate.notNull(afterKey, "Key to start after must not be null");
+        Validate.isTrue(maxResults > 0, "Maximum number of keys must be positive");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        LikeCriterion likeCriterion = new LikeCriterion()
+                .withAttributeName("id")
+                .withExpression("%" + substring + "%");
+
+        GreaterThanCriterion<String> idCriterion = new GreaterThanCriterion<String>()
+                .withAttributeName("id")
+                .withComparison(afterKey);
+
+        TypedQuery<String> typedQuery = queryBuilderDelegate.selectLikelinessGreaterThanAscending(entityManager, "id", String.class, likeCriterion, idCriterion);
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException("Typed query for keys must not be null");
+        }
+
+        List<String> ids = OperationStats.resultList(typedQuery.setMaxResults(maxResults));
+        queryBuilderDelegate.closeEntityManager(entityManager);
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Loads the ids of all keys that were created or modified after the given point in time.
+     */
+    List<String> loadRopertyKeyIdsModifiedSince(long since) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        GreaterThanCriterion<Long> modifiedCriterion = new GreaterThanCriterion<Long>()
+                .withAttributeName("modified")
+                .withComparison(since);
+
+        TypedQuery<String> typedQuery = queryBuilderDelegate.selectGreaterThan(entityManager, "id", String.class, modifiedCriterion);
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException("Typed query for modified keys must not be null");
+        }
+
+        List<String> ids = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Deletes the key with a single statement, if it has no values left. Must be called within a transaction.
+     *
+     * @return true, if the key was deleted
+     */
+    boolean deleteRopertyKeyWithoutValues(String key) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        EqualsCriterion<String> idCriterion = new EqualsCriterion<String>()
+                .withAttributeName("id")
+                .withComparison(key);
+
+        Query query = queryBuilderDelegate.deleteUnreferenced(entityManager, idCriterion, RopertyValue.class, "key");
+        if (query == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException(String.format("Query for deleting key '%s' must not be null", key));
+        }
+
+        int numDeletedKeys = OperationStats.executeUpdate(query);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        return numDeletedKeys > 0;
     }
 
     public void setQueryBuilderDelegate(QueryBuilderDelegate<RopertyKey> queryBuilderDelegate) {
@@ -51,18 +192,16 @@ public class RopertyKeyDAO {
                 .withAttributeName("id")
                 .withExpression("%" + substring + "%");
 
-        TypedQuery<RopertyKey> typedQuery = queryBuilderDelegate.likeliness(idCriterion);
+        TypedQuery<String> typedQuery = queryBuilderDelegate.selectLikeliness(entityManager, "id", String.class, idCriterion);
 
         if (typedQuery == null) {
-            entityManager.close();
+            queryBuilderDelegate.closeEntityManager(entityManager);
             throw new RopertyPersistenceException("Typed query must not be null");
         }
 
-        List<RopertyKey> ropertyKeys = typedQuery.getResultList();
-        List<String> result = new ArrayList<>(ropertyKeys.size());
-        ropertyKeys.forEach((key) -> result.add(key.getId()));
-        entityManager.close();
-        return Collections.unmodifiableList(result);
+        List<String> ids = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+        return Collections.unmodifiableList(ids);
     }
 
 }
@@ -0,0 +1,45 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "roperty_tombstone", indexes = @Index(columnList = "removed"))
+public class RopertyTombstone {
+
+    @Id
+    private String id;
+
+    @Column(name = "removed", nullable = false)
+    private long removed;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        Validate.notBlank(id, "id must not be null or blank");
+        this.id = id;
+    }
+
+    public long getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(long removed) {
+        this.removed = removed;
+    }
+
+    @Override
+    public String toString() {
+        return "RopertyTombstone{" +
+                "id='" + id + '\'' +
+                ", removed=" + removed +
+                '}';
+    }
+}
@@ -0,0 +1,39 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.Collections;
+import java.util.List;
+
+public class RopertyTombstoneDAO {
+
+    private QueryBuilderDelegate<RopertyTombstone> queryBuilderDelegate;
+
+    List<String> loadRemovedKeys(long since) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        GreaterThanCriterion<Long> removedCriterion = new GreaterThanCriterion<Long>()
+                .withAttributeName("removed")
+                .withComparison(since);
+
+        TypedQuery<String> typedQuery = queryBuilderDelegate.selectGreaterThan(entityManager, "id", String.class, removedCriterion);
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException("Typed query for removed keys must not be null");
+        }
+
+        List<String> removedKeys = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+        return Collections.unmodifiableList(removedKeys);
+    }
+
+    public void setQueryBuilderDelegate(QueryBuilderDelegate<RopertyTombstone> queryBuilderDelegate) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        this.queryBuilderDelegate = queryBuilderDelegate;
+    }
+
+}
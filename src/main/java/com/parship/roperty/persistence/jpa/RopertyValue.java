@@ -5,10 +5,12 @@ import com.parship.roperty.DomainSpecificValue;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.io.Serializable;
 import java.util.Objects;
@@ -17,8 +19,14 @@ import java.util.Objects;
 @Table(name = "roperty_value", indexes = {@Index(columnList = "key"), @Index(columnList = "key, pattern, change_set", unique = true)})
 public class RopertyValue {
 
+    /**
+     * Number of ids taken from the sequence at once. A sequence value is the last id of its block.
+     */
+    static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "roperty_value_id")
+    @SequenceGenerator(name = "roperty_value_id", sequenceName = "roperty_value_id_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -26,7 +34,14 @@ public class RopertyValue {
     private RopertyKey key;
 
     @Column(name = "value")
-    private Serializable value;
+    private byte[] value;
+
+    @Column(name = "value_hash")
+    private Long valueHash;
+
+    private transient byte[] decodedBytes;
+
+    private transient Serializable decodedValue;
 
     @Column(name = "change_set", nullable = false)
     private String changeSet;
@@ -43,11 +58,55 @@ public class RopertyValue {
     }
 
     public Object getValue() {
-        return value;
+        // decoded lazily, because loading all values mostly touches a small part of them
+        byte[] bytes = value;
+        if (bytes != decodedBytes) {
+            decodedValue = bytes == null ? null : decode(bytes);
+            decodedBytes = bytes;
+        }
+        return decodedValue;
+    }
+
+    private static Serializable decode(byte[] bytes) {
+        OperationStats.valueDecoded(bytes.length);
+        return ValueCodecs.codec().decode(bytes);
     }
 
     public void setValue(Serializable value) {
-        this.value = value;
+        setValue(value, encode(value));
+    }
+
+    void setValue(Serializable value, byte[] bytes) {
+        this.value = bytes;
+        valueHash = hash(bytes);
+        decodedBytes = bytes;
+        decodedValue = value;
+    }
+
+    /**
+     * Returns whether the stored value has the given encoding, comparing hashes instead of decoding the stored value.
+     * Values stored before hashes were introduced never match, so they are written once more with their hash.
+     */
+    boolean hasEncodedValue(byte[] bytes) {
+        return valueHash != null && valueHash == hash(bytes);
+    }
+
+    public Long getValueHash() {
+        return valueHash;
+    }
+
+    static byte[] encode(Serializable value) {
+        return value == null ? null : ValueCodecs.codec().encode(value);
+    }
+
+    /**
+     * Hash of the encoded value, see {@link Hashes#fnv1aMix(byte[])}. A null value hashes to zero.
+     */
+    static long hash(byte[] bytes) {
+        if (bytes == null) {
+            return 0L;
+        }
+        return Hashes.fnv1aMix(bytes);
     }
 
     public String getChangeSet() {
@@ -68,7 +127,7 @@ public class RopertyValue {
 
     public boolean equals(DomainSpecificValue domainSpecificValue) {
         return Objects.equals(domainSpecificValue.getPatternStr(), pattern)
-                && Objects.equals(domainSpecificValue.getValue(), value);
+                && Objects.equals(domainSpecificValue.getValue(), getValue());
     }
 
     public Long getId() {
@@ -3,28 +3,36 @@ package com.parship.roperty.persistence.jpa;
 import org.apache.commons.lang3.Validate;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 public class RopertyValueDAO {
 
+    private static final String FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+
+    // some databases limit the number of elements of an in list
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     private QueryBuilderDelegate<RopertyValue> queryBuilderDelegate;
 
     Long getNumberOfValues(RopertyKey ropertyKey) {
         Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
         EntityManager entityManager = queryBuilderDelegate.createEntityManager();
         Validate.notNull(entityManager, "Entity manager must not be null");
-        TypedQuery<Long> typedQuery = queryBuilderDelegate.count(ropertyKey);
+        TypedQuery<Long> typedQuery = queryBuilderDelegate.count(entityManager, ropertyKey);
         if (typedQuery == null) {
-            entityManager.close();
+            queryBuilderDelegate.closeEntityManager(entityManager);
             throw new RopertyPersistenceException(String.format("Typed query for counting of key '%s' must not be null", ropertyKey.getId()));
         }
-        Long result = typedQuery.getSingleResult();
+        Long result = OperationStats.singleResult(typedQuery);
         if (result == null) {
             throw new RopertyPersistenceException("Single result of query must not be null");
         }
-        entityManager.close();
+        queryBuilderDelegate.closeEntityManager(entityManager);
         return result;
     }
 
@@ -36,20 +44,159 @@ public class RopertyValueDAO {
                 .withAttributeName("key")
                 .withComparison(ropertyKey);
 
-        TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.equality(equalsCriterion);
+        TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.equality(entityManager, equalsCriterion);
         if (typedQuery == null) {
-            entityManager.close();
+            queryBuilderDelegate.closeEntityManager(entityManager);
             throw new RopertyPersistenceException(String.format("Typed query for equality of key '%s' must not be null", ropertyKey.getId()));
         }
 
-        List<RopertyValue> ropertyValues = typedQuery.getResultList();
-        entityManager.close();
+        List<RopertyValue> ropertyValues = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
 
         Validate.notNull(ropertyValues, "Result list of Roperty values for key '%s' was null", ropertyKey.getId());
 
         return Collections.unmodifiableList(ropertyValues);
     }
 
+    List<RopertyValue> loadRopertyValues(RopertyKey ropertyKey, String changeSet) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        EqualsCriterion<RopertyKey> keyCriterion = new EqualsCriterion<RopertyKey>()
+                .withAttributeName("key")
+                .withComparison(ropertyKey);
+
+        EqualsCriterion<String> changeSetCriterion = new EqualsCriterion<String>()
+                .withAttributeName("changeSet")
+                .withComparison(changeSet);
+
+        TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.equality(entityManager, keyCriterion, changeSetCriterion);
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException(String.format("Typed query for equality of key '%s' and change set '%s' must not be null", ropertyKey.getId(), changeSet));
+        }
+
+        List<RopertyValue> ropertyValues = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        Validate.notNull(ropertyValues, "Result list of Roperty values for key '%s' and change set '%s' was null", ropertyKey.getId(), changeSet);
+
+        return Collections.unmodifiableList(ropertyValues);
+    }
+
+    /**
+     * Loads the values of the given keys with the change set, using one query per thousand keys.
+     */
+    List<RopertyValue> loadRopertyValues(Collection<RopertyKey> ropertyKeys, String changeSet) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        Validate.notNull(ropertyKeys, "Roperty keys must not be null");
+        if (ropertyKeys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        EqualsCriterion<String> changeSetCriterion = new EqualsCriterion<String>()
+                .withAttributeName("changeSet")
+                .withComparison(changeSet);
+
+        List<RopertyKey> keyList = new ArrayList<>(ropertyKeys);
+        List<RopertyValue> ropertyValues = new ArrayList<>();
+        for (int from = 0; from < keyList.size(); from += MAX_IDS_PER_QUERY) {
+            List<RopertyKey> chunk = keyList.subList(from, Math.min(from + MAX_IDS_PER_QUERY, keyList.size()));
+            TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.equalityAndIn(entityManager, changeSetCriterion, "key", chunk);
+            if (typedQuery == null) {
+                queryBuilderDelegate.closeEntityManager(entityManager);
+                throw new RopertyPersistenceException(String.format("Typed query for values of keys with change set '%s' must not be null", changeSet));
+            }
+            ropertyValues.addAll(OperationStats.resultList(typedQuery));
+        }
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        return Collections.unmodifiableList(ropertyValues);
+    }
+
+    /**
+     * Loads the values of all keys in a single query. The keys are fetched together with their values and the
+     * result is ordered by key, so the values of one key are always adjacent. A positive fetch size is passed to the
+     * JDBC driver as the number of rows to read per round trip.
+     */
+    List<RopertyValue> loadAllRopertyValues(int fetchSize) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.allJoined(entityManager, "key", "id");
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException("Typed query for all values must not be null");
+        }
+        if (fetchSize > 0) {
+            typedQuery.setHint(FETCH_SIZE_HINT, fetchSize);
+        }
+
+        List<RopertyValue> ropertyValues = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        Validate.notNull(ropertyValues, "Result list of all Roperty values was null");
+
+        return Collections.unmodifiableList(ropertyValues);
+    }
+
+    /**
+     * Loads the values of the keys after the first and up to the last given key id, ordered by key. A positive fetch
+     * size is passed to the JDBC driver as the number of rows to read per round trip.
+     */
+    List<RopertyValue> loadRopertyValuesOfKeyRange(String afterKey, String lastKey, int fetchSize) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.joinedRange(entityManager, "key", "id", afterKey, lastKey);
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException(String.format("Typed query for values of keys after '%s' up to '%s' must not be null", afterKey, lastKey));
+        }
+        if (fetchSize > 0) {
+            typedQuery.setHint(FETCH_SIZE_HINT, fetchSize);
+        }
+
+        List<RopertyValue> ropertyValues = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        Validate.notNull(ropertyValues, "Result list of Roperty values of keys after '%s' up to '%s' was null", afterKey, lastKey);
+
+        return Collections.unmodifiableList(ropertyValues);
+    }
+
+    /**
+     * Loads the values of all keys that were modified after the given point in time, ordered by key.
+     */
+    List<RopertyValue> loadRopertyValuesModifiedSince(long since) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        GreaterThanCriterion<Long> modifiedCriterion = new GreaterThanCriterion<Long>()
+                .withAttributeName("modified")
+                .withComparison(since);
+
+        TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.joinedGreaterThan(entityManager, "key", "id", modifiedCriterion);
+        if (typedQuery == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException("Typed query for modified values must not be null");
+        }
+
+        List<RopertyValue> ropertyValues = OperationStats.resultList(typedQuery);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        Validate.notNull(ropertyValues, "Result list of modified Roperty values was null");
+
+        return Collections.unmodifiableList(ropertyValues);
+    }
+
     RopertyValue loadRopertyValue(RopertyKey ropertyKey, String pattern, String changeSet) {
         Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
         EntityManager entityManager = queryBuilderDelegate.createEntityManager();
@@ -68,15 +215,16 @@ public class RopertyValueDAO {
                 .withComparison(changeSet);
 
         TypedQuery<RopertyValue> typedQuery = queryBuilderDelegate.equality(
+                entityManager,
                 keyCriterion,
                 patternCriterion,
                 changeSetCriterion);
         if (typedQuery == null) {
-            entityManager.close();
+            queryBuilderDelegate.closeEntityManager(entityManager);
             throw new RopertyPersistenceException(String.format("Typed query for equality of key '%s' must not be null", ropertyKey.getId()));
         }
 
-        List<RopertyValue> ropertyValues = typedQuery.getResultList();
+        List<RopertyValue> ropertyValues = OperationStats.resultList(typedQuery);
         int numValues = ropertyValues.size();
         RopertyValue ropertyValue;
         if (numValues == 0) {
@@ -87,11 +235,108 @@ public class RopertyValueDAO {
             throw new RopertyPersistenceException(String.format("More than one database entry found for key '%s' and pattern '%s'", ropertyKey, pattern));
         }
 
-        entityManager.close();
+        queryBuilderDelegate.closeEntityManager(entityManager);
 
         return ropertyValue;
     }
 
+    /**
+     * Deletes all values of the key with a single statement. Must be called within a transaction.
+     *
+     * @return the number of deleted values
+     */
+    int deleteRopertyValues(RopertyKey ropertyKey) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        EqualsCriterion<RopertyKey> keyCriterion = new EqualsCriterion<RopertyKey>()
+                .withAttributeName("key")
+                .withComparison(ropertyKey);
+
+        Query query = queryBuilderDelegate.deleteEquality(entityManager, keyCriterion);
+        if (query == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException(String.format("Query for deleting the values of key '%s' must not be null", ropertyKey.getId()));
+        }
+
+        int numDeletedValues = OperationStats.executeUpdate(query);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        return numDeletedValues;
+    }
+
+    /**
+     * Deletes the value of the key for the pattern and change set with a single statement. Must be called within a
+     * transaction.
+     *
+     * @return true, if the value was deleted
+     */
+    boolean deleteRopertyValue(RopertyKey ropertyKey, String pattern, String changeSet) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        EqualsCriterion<RopertyKey> keyCriterion = new EqualsCriterion<RopertyKey>()
+                .withAttributeName("key")
+                .withComparison(ropertyKey);
+
+        EqualsCriterion<String> patternCriterion = new EqualsCriterion<String>()
+                .withAttributeName("pattern")
+                .withComparison(pattern);
+
+        EqualsCriterion<String> changeSetCriterion = new EqualsCriterion<String>()
+                .withAttributeName("changeSet")
+                .withComparison(changeSet);
+
+        Query query = queryBuilderDelegate.deleteEquality(entityManager, keyCriterion, patternCriterion, changeSetCriterion);
+        if (query == null) {
+            queryBuilderDelegate.closeEntityManager(entityManager);
+            throw new RopertyPersistenceException(String.format("Query for deleting the value of key '%s' and pattern '%s' must not be null", ropertyKey.getId(), pattern));
+        }
+
+        int numDeletedValues = OperationStats.executeUpdate(query);
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        return numDeletedValues > 0;
+    }
+
+    /**
+     * Deletes the values of the key with the given ids, using one statement per thousand ids. Must be called within a
+     * transaction.
+     *
+     * @return the number of deleted values
+     */
+    int deleteRopertyValues(RopertyKey ropertyKey, Collection<Long> ids) {
+        Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
+        Validate.notNull(ids, "Ids must not be null");
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        EntityManager entityManager = queryBuilderDelegate.createEntityManager();
+        Validate.notNull(entityManager, "Entity manager must not be null");
+
+        EqualsCriterion<RopertyKey> keyCriterion = new EqualsCriterion<RopertyKey>()
+                .withAttributeName("key")
+                .withComparison(ropertyKey);
+
+        List<Long> idList = new ArrayList<>(ids);
+        int numDeletedValues = 0;
+        for (int from = 0; from < idList.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = idList.subList(from, Math.min(from + MAX_IDS_PER_QUERY, idList.size()));
+            Query query = queryBuilderDelegate.deleteEqualityAndIn(entityManager, keyCriterion, "id", chunk);
+            if (query == null) {
+                queryBuilderDelegate.closeEntityManager(entityManager);
+                throw new RopertyPersistenceException(String.format("Query for deleting values of key '%s' must not be null", ropertyKey.getId()));
+            }
+            numDeletedValues += OperationStats.executeUpdate(query);
+        }
+        queryBuilderDelegate.closeEntityManager(entityManager);
+
+        return numDeletedValues;
+    }
+
     public void setQueryBuilderDelegate(QueryBuilderDelegate<RopertyValue> queryBuilderDelegate) {
         Validate.notNull(queryBuilderDelegate, "Query builder delegate must not be null");
         this.queryBuilderDelegate = queryBuilderDelegate;
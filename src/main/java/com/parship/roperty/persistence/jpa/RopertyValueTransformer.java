@@ -3,11 +3,11 @@ package com.parship.roperty.persistence.jpa;
 import com.parship.roperty.DomainSpecificValueFactory;
 import com.parship.roperty.KeyValues;
 import com.parship.roperty.KeyValuesFactory;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 
 class RopertyValueTransformer {
 
@@ -19,34 +19,67 @@ class RopertyValueTransformer {
             return null;
         }
 
-        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
-        Validate.notNull(keyValues, "Key values must not be null");
+        KeyValues keyValues = createKeyValues();
+        for (RopertyValue ropertyValue : ropertyValues) {
+            putValue(keyValues, ropertyValue);
+        }
 
+        return keyValues;
+    }
+
+    void transformSortedValues(Iterable<RopertyValue> ropertyValues, BiConsumer<String, KeyValues> consumer) {
+        Validate.notNull(consumer, "Consumer must not be null");
+
+        String currentKey = null;
+        KeyValues keyValues = null;
         for (RopertyValue ropertyValue : ropertyValues) {
-            String pattern = ropertyValue.getPattern();
             RopertyKey key = ropertyValue.getKey();
-            Validate.notNull(pattern, "Pattern of value with key '%s' may not be null", key);
-            String[] domainKeyParts;
-            if (StringUtils.isEmpty(pattern)) {
-                domainKeyParts = new String[0];
-            } else {
-                domainKeyParts = pattern.split("\\|");
-            }
-            Object value = ropertyValue.getValue();
-            String changeSet = ropertyValue.getChangeSet();
-            if (Objects.equals(changeSet, "")) {
-                keyValues.put(value, domainKeyParts);
-            } else {
-                keyValues.putWithChangeSet(changeSet, value, domainKeyParts);
+            Validate.notNull(key, "Key of value for pattern '%s' may not be null", ropertyValue.getPattern());
+            String keyId = key.getId();
+            if (!Objects.equals(keyId, currentKey)) {
+                if (keyValues != null) {
+                    consumer.accept(currentKey, keyValues);
+                }
+                currentKey = keyId;
+                keyValues = createKeyValues();
             }
+            putValue(keyValues, ropertyValue);
+        }
 
-            Validate.notNull(key, "Key of value '%s' for pattern '%s' may not be null", value, pattern);
-            keyValues.setDescription(key.getDescription());
+        if (keyValues != null) {
+            consumer.accept(currentKey, keyValues);
         }
+    }
 
+    KeyValues createKeyValues() {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        Validate.notNull(keyValues, "Key values must not be null");
         return keyValues;
     }
 
+    private static void putValue(KeyValues keyValues, RopertyValue ropertyValue) {
+        String pattern = ropertyValue.getPattern();
+        RopertyKey key = ropertyValue.getKey();
+        Validate.notNull(pattern, "Pattern of value with key '%s' may not be null", key);
+        Object value = ropertyValue.getValue();
+        putValue(keyValues, pattern, ropertyValue.getChangeSet(), value);
+
+        Validate.notNull(key, "Key of value '%s' for pattern '%s' may not be null", value, pattern);
+        keyValues.setDescription(key.getDescription());
+    }
+
+    /**
+     * Puts a value as it is stored in <code>roperty_value</code>, where an empty change set stands for values outside
+     * of change sets.
+     */
+    static void putValue(KeyValues keyValues, String pattern, String changeSet, Object value) {
+        String[] domainKeyParts = PatternParser.shared().parse(pattern);
+        if (Objects.equals(changeSet, "")) {
+            keyValues.put(value, domainKeyParts);
+        } else {
+            keyValues.putWithChangeSet(changeSet, value, domainKeyParts);
+        }
+    }
 
     RopertyValueTransformer withKeyValuesFactory(KeyValuesFactory keyValuesFactory) {
         this.keyValuesFactory = keyValuesFactory;
@@ -6,15 +6,16 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 
+/**
+ * Manages one entity manager and transaction per thread, so writers on different threads don't share state. The
+ * transaction runs in the {@link UnitOfWork} of the entity manager factory, so DAO calls between {@link #begin()} and
+ * {@link #end()} read through the same entity manager and connection.
+ */
 public class TransactionManager {
 
-    private EntityManagerFactory entityManagerFactory;
-
-    private EntityManager entityManager;
-
-    private EntityTransaction transaction;
+    private final ThreadLocal<EntityManager> entityManagers = new ThreadLocal<>();
 
-    private boolean transactionStarted;
+    private EntityManagerFactory entityManagerFactory;
 
     public void setEntityManagerFactory(EntityManagerFactory entityManagerFactory) {
         Validate.notNull(entityManagerFactory, "Entity manager factory must not be null");
@@ -23,40 +24,77 @@ public class TransactionManager {
 
     void begin() {
         Validate.notNull(entityManagerFactory, "Entity manager factory must not be null");
-        entityManager = entityManagerFactory.createEntityManager();
-        Validate.notNull(entityManager, "Entity manager must not be null");
-        transaction = entityManager.getTransaction();
-        Validate.notNull(transaction, "Entity manager didn't return a transaction");
-        transaction.begin();
-        transactionStarted = true;
+        discardStaleEntityManager();
+        UnitOfWork.begin(entityManagerFactory);
+        try {
+            EntityManager entityManager = UnitOfWork.entityManager(entityManagerFactory);
+            EntityTransaction transaction = entityManager.getTransaction();
+            Validate.notNull(transaction, "Entity manager didn't return a transaction");
+            transaction.begin();
+            entityManagers.set(entityManager);
+        } catch (RuntimeException e) {
+            UnitOfWork.end(entityManagerFactory);
+            throw e;
+        }
     }
 
     void end() {
-        Validate.isTrue(transactionStarted, "No transaction started yet. You need to call begin first");
+        EntityManager entityManager = currentEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
         Validate.notNull(transaction, "Transaction must not be null");
-        Validate.notNull(entityManager, "Entity manager must not be null");
-        transaction.commit();
-        entityManager.close();
-        transactionStarted = false;
+        try {
+            transaction.commit();
+        } finally {
+            entityManagers.remove();
+            UnitOfWork.end(entityManagerFactory);
+        }
+    }
+
+    /**
+     * Rolls back the transaction of the current thread, if there is one.
+     */
+    void rollback() {
+        EntityManager entityManager = entityManagers.get();
+        if (entityManager == null) {
+            return;
+        }
+        entityManagers.remove();
+        try {
+            EntityTransaction transaction = entityManager.getTransaction();
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+        } finally {
+            UnitOfWork.end(entityManagerFactory);
+        }
+    }
+
+    /**
+     * Starts a unit of work for reads, so all DAO calls until {@link #endUnitOfWork()} share one entity manager.
+     */
+    void beginUnitOfWork() {
+        Validate.notNull(entityManagerFactory, "Entity manager factory must not be null");
+        UnitOfWork.begin(entityManagerFactory);
+    }
+
+    void endUnitOfWork() {
+        UnitOfWork.end(entityManagerFactory);
     }
 
     void merge(Object object) {
-        Validate.isTrue(transactionStarted, "No transaction started yet. You need to call begin first");
-        Validate.notNull(entityManager, "Entity manager must not be null");
+        EntityManager entityManager = currentEntityManager();
         Validate.notNull(object, "Object must not be null");
         entityManager.merge(object);
     }
 
     void persist(Object object) {
-        Validate.isTrue(transactionStarted, "No transaction started yet. You need to call begin first");
-        Validate.notNull(entityManager, "Entity manager must not be null");
+        EntityManager entityManager = currentEntityManager();
         Validate.notNull(object, "Object must not be null");
         entityManager.persist(object);
     }
 
     void remove(Object object) {
-        Validate.isTrue(transactionStarted, "No transaction started yet. You need to call begin first");
-        Validate.notNull(entityManager, "Entity manager must not be null");
+        EntityManager entityManager = currentEntityManager();
         Validate.notNull(object, "Object must not be null");
         Object attachedEntity;
         if (entityManager.contains(object)) {
@@ -66,4 +104,30 @@ public class TransactionManager {
         }
         entityManager.remove(attachedEntity);
     }
+
+    private EntityManager currentEntityManager() {
+        EntityManager entityManager = entityManagers.get();
+        Validate.isTrue(entityManager != null, "No transaction started yet. You need to call begin first");
+        return entityManager;
+    }
+
+    private void discardStaleEntityManager() {
+        // a previous call on this thread failed between begin and end
+        EntityManager staleEntityManager = entityManagers.get();
+        if (staleEntityManager == null) {
+            return;
+        }
+        entityManagers.remove();
+        try {
+            EntityTransaction transaction = staleEntityManager.getTransaction();
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+        } finally {
+            UnitOfWork.discard(entityManagerFactory);
+            if (staleEntityManager.isOpen()) {
+                staleEntityManager.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package com.parship.roperty.persistence.jpa;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares one entity manager between all DAO calls of one persistence operation on the current thread. Units of work
+ * nest: only the outermost {@link #end(EntityManagerFactory)} closes the entity manager. The entity manager is created
+ * on first use, so an operation that doesn't touch the database doesn't check out a connection.
+ */
+final class UnitOfWork {
+
+    private static final ThreadLocal<Map<EntityManagerFactory, UnitOfWork>> CURRENT = new ThreadLocal<>();
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private int depth;
+
+    private UnitOfWork(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    static void begin(EntityManagerFactory entityManagerFactory) {
+        Validate.notNull(entityManagerFactory, "Entity manager factory must not be null");
+        Map<EntityManagerFactory, UnitOfWork> unitsOfWork = CURRENT.get();
+        if (unitsOfWork == null) {
+            unitsOfWork = new HashMap<>(2);
+            CURRENT.set(unitsOfWork);
+        }
+        unitsOfWork.computeIfAbsent(entityManagerFactory, UnitOfWork::new).depth++;
+    }
+
+    static void end(EntityManagerFactory entityManagerFactory) {
+        UnitOfWork unitOfWork = current(entityManagerFactory);
+        Validate.isTrue(unitOfWork != null, "No unit of work started yet. You need to call begin first");
+        unitOfWork.depth--;
+        if (unitOfWork.depth == 0) {
+            unitOfWork.close();
+        }
+    }
+
+    /**
+     * Closes the unit of work of the given factory regardless of how many callers began it.
+     */
+    static void discard(EntityManagerFactory entityManagerFactory) {
+        UnitOfWork unitOfWork = current(entityManagerFactory);
+        if (unitOfWork != null) {
+            unitOfWork.close();
+        }
+    }
+
+    /**
+     * Returns the entity manager of the current unit of work or null, if no unit of work was started for the factory.
+     */
+    static EntityManager entityManager(EntityManagerFactory entityManagerFactory) {
+        UnitOfWork unitOfWork = current(entityManagerFactory);
+        if (unitOfWork == null) {
+            return null;
+        }
+        if (unitOfWork.entityManager == null) {
+            unitOfWork.entityManager = entityManagerFactory.createEntityManager();
+            Validate.notNull(unitOfWork.entityManager, "Entity manager must not be null");
+            OperationStats.entityManagerOpened();
+        }
+        return unitOfWork.entityManager;
+    }
+
+    static boolean isScoped(EntityManagerFactory entityManagerFactory, EntityManager entityManager) {
+        UnitOfWork unitOfWork = current(entityManagerFactory);
+        return unitOfWork != null && unitOfWork.entityManager == entityManager;
+    }
+
+    private static UnitOfWork current(EntityManagerFactory entityManagerFactory) {
+        Map<EntityManagerFactory, UnitOfWork> unitsOfWork = CURRENT.get();
+        if (unitsOfWork == null) {
+            return null;
+        }
+        return unitsOfWork.get(entityManagerFactory);
+    }
+
+    private void close() {
+        Map<EntityManagerFactory, UnitOfWork> unitsOfWork = CURRENT.get();
+        unitsOfWork.remove(entityManagerFactory);
+        if (unitsOfWork.isEmpty()) {
+            CURRENT.remove();
+        }
+        if (entityManager != null) {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.parship.roperty.persistence.jpa;
+
+import java.io.Serializable;
+
+/**
+ * Converts values to the bytes stored in the value column of <code>roperty_value</code> and back. An implementation
+ * can be registered as a service in <code>META-INF/services/com.parship.roperty.persistence.jpa.ValueCodec</code>;
+ * otherwise {@link CompactValueCodec} is used. A codec must be able to decode all values written by the codecs used
+ * before, so existing rows stay readable.
+ */
+public interface ValueCodec {
+
+    byte[] encode(Serializable value);
+
+    Serializable decode(byte[] bytes);
+
+}
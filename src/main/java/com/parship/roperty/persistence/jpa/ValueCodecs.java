@@ -0,0 +1,29 @@
+package com.parship.roperty.persistence.jpa;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+final class ValueCodecs {
+
+    private static volatile ValueCodec codec;
+
+    private ValueCodecs() {
+    }
+
+    static ValueCodec codec() {
+        ValueCodec result = codec;
+        if (result == null) {
+            result = loadCodec();
+            codec = result;
+        }
+        return result;
+    }
+
+    private static ValueCodec loadCodec() {
+        Iterator<ValueCodec> codecs = ServiceLoader.load(ValueCodec.class).iterator();
+        if (codecs.hasNext()) {
+            return codecs.next();
+        }
+        return new CompactValueCodec();
+    }
+}
@@ -0,0 +1,446 @@
+package com.parship.roperty.persistence.jpa;
+
+import com.parship.roperty.DomainSpecificValue;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import com.parship.roperty.Persistence;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Queues stores and writes them to the persistence in batches. Repeated stores of the same key, pattern and change set
+ * only keep the last value. The queue is flushed when it holds the maximum number of pending values, when the flush
+ * interval has passed, before every read or removal, and on {@link #close()}. A flush stores the keys of each change
+ * set with {@link JpaPersistence#storeAll(Map, String)}. Reads and removals go on if the flush before them fails, and
+ * the failure is handed to the flush failure listener.
+ */
+public class WriteBehindJpaPersistence implements Persistence, Closeable {
+
+    private static final int DEFAULT_MAX_PENDING_VALUES = 1_000;
+
+    private static final long DEFAULT_FLUSH_INTERVAL = 1_000L;
+
+    private static final int DEFAULT_MAX_FLUSH_ATTEMPTS = 3;
+
+    private final Object lock = new Object();
+
+    private final Object flushLock = new Object();
+
+    private JpaPersistence persistence;
+
+    private KeyValuesFactory keyValuesFactory;
+
+    private DomainSpecificValueFactory domainSpecificValueFactory;
+
+    private int maxPendingValues = DEFAULT_MAX_PENDING_VALUES;
+
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    private WriteDurability durability = WriteDurability.QUEUED;
+
+    private int maxFlushAttempts = DEFAULT_MAX_FLUSH_ATTEMPTS;
+
+    private Consumer<RuntimeException> flushFailureListener = failure -> {
+    };
+
+    private Map<String, Map<String, PendingKey>> pending = new LinkedHashMap<>();
+
+    private int numPendingValues;
+
+    private CompletableFuture<Void> pendingFlush = new CompletableFuture<>();
+
+    private ScheduledExecutorService flushExecutor;
+
+    private boolean closed;
+
+    @Override
+    public KeyValues load(String key, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        flushQuietly();
+        return persistence.load(key, keyValuesFactory, domainSpecificValueFactory);
+    }
+
+    @Override
+    public Map<String, KeyValues> loadAll(KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        flushQuietly();
+        return persistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+    }
+
+    @Override
+    public Map<String, KeyValues> reload(Map<String, KeyValues> keyValuesMap, KeyValuesFactory keyValuesFactory, DomainSpecificValueFactory domainSpecificValueFactory) {
+        flushQuietly();
+        return persistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+    }
+
+    /**
+     * Queues the values of the key for the change set. Depending on the {@link WriteDurability durability}, returns
+     * when they are queued or when they are committed.
+     */
+    @Override
+    public void store(String key, KeyValues keyValues, String changeSet) {
+        JpaPersistence.validateForStore(key, keyValues);
+        Validate.notNull(persistence, "Persistence must not be null");
+        Validate.notNull(keyValuesFactory, "Key values factory must not be null");
+        Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
+
+        String pendingChangeSet = StringUtils.isEmpty(changeSet) ? null : changeSet;
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (DomainSpecificValue domainSpecificValue : keyValues.getDomainSpecificValues()) {
+            if (domainSpecificValue.changeSetIs(pendingChangeSet)) {
+                Object value = domainSpecificValue.getValue();
+                // fails now rather than in every later flush
+                if (value != null && !(value instanceof Serializable)) {
+                    throw new RopertyPersistenceException(String.format("Cannot serialize value '%s'", value));
+                }
+                values.put(domainSpecificValue.getPatternStr(), value);
+            }
+        }
+        if (values.isEmpty()) {
+            // only creates the key, which is not worth queueing
+            persistence.store(key, keyValues, changeSet);
+            return;
+        }
+
+        CompletableFuture<Void> flushOfValues;
+        boolean full;
+        synchronized (lock) {
+            Validate.validState(!closed, "Write behind persistence is closed");
+            startFlushExecutor();
+            PendingKey pendingKey = pending.computeIfAbsent(pendingChangeSet, ignored -> new LinkedHashMap<>())
+                    .computeIfAbsent(key, ignored -> new PendingKey());
+            numPendingValues += pendingKey.put(keyValues.getDescription(), values);
+            flushOfValues = pendingFlush;
+            full = numPendingValues >= maxPendingValues;
+        }
+        if (full) {
+            // committed stores learn about a failure from their flush
+            flushQuietly();
+        }
+        if (durability == WriteDurability.COMMITTED) {
+            join(flushOfValues);
+        }
+    }
+
+    @Override
+    public void remove(String key, KeyValues keyValues, String changeSet) {
+        flushBeforeRemoving(key);
+        persistence.remove(key, keyValues, changeSet);
+    }
+
+    @Override
+    public void remove(String key, DomainSpecificValue domainSpecificValue, String changeSet) {
+        flushBeforeRemoving(key);
+        persistence.remove(key, domainSpecificValue, changeSet);
+    }
+
+    /**
+     * Flushes the queue. If that fails, the queued values of the key are discarded, so that a later flush does not
+     * overwrite the removal.
+     */
+    private void flushBeforeRemoving(String key) {
+        if (flushQuietly()) {
+            return;
+        }
+        synchronized (lock) {
+            pending.values().removeIf(pendingKeys -> {
+                PendingKey pendingKey = pendingKeys.remove(key);
+                if (pendingKey != null) {
+                    numPendingValues -= pendingKey.values.size();
+                }
+                return pendingKeys.isEmpty();
+            });
+        }
+    }
+
+    @Override
+    public List<String> findKeys(String substring) {
+        flushQuietly();
+        return persistence.findKeys(substring);
+    }
+
+    @Override
+    public List<String> getAllKeys() {
+        flushQuietly();
+        return persistence.getAllKeys();
+    }
+
+    /**
+     * Writes all queued values. Flushes run one after another, so values are written in the order they were stored.
+     * If the flush fails, the values that could not be written are queued again, and values that failed the maximum
+     * number of flushes are dropped.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Map<String, PendingKey>> batch;
+            CompletableFuture<Void> flushOfBatch;
+            synchronized (lock) {
+                if (numPendingValues == 0) {
+                    return;
+                }
+                batch = pending;
+                flushOfBatch = pendingFlush;
+                pending = new LinkedHashMap<>();
+                numPendingValues = 0;
+                pendingFlush = new CompletableFuture<>();
+            }
+            if (durability == WriteDurability.COMMITTED) {
+                try {
+                    batch.forEach(this::storeAll);
+                } catch (RuntimeException e) {
+                    flushOfBatch.completeExceptionally(e);
+                    throw e;
+                }
+                flushOfBatch.complete(null);
+                return;
+            }
+
+            RuntimeException failure = storeAllOrFailingKeys(batch);
+            if (failure == null) {
+                flushOfBatch.complete(null);
+                return;
+            }
+            flushOfBatch.completeExceptionally(failure);
+            List<String> droppedKeys = requeue(batch);
+            if (!droppedKeys.isEmpty()) {
+                throw new RopertyPersistenceException(String.format("Dropped queued values of keys %s after %d failed flushes", droppedKeys, maxFlushAttempts), failure);
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * Stores the keys of each change set and removes them from the batch. If a change set fails, its keys are stored
+     * one by one, so that a single bad value does not keep the other keys from being written. Returns the first
+     * failure of a key that could not be stored, or null.
+     */
+    private RuntimeException storeAllOrFailingKeys(Map<String, Map<String, PendingKey>> batch) {
+        RuntimeException failure = null;
+        Iterator<Map.Entry<String, Map<String, PendingKey>>> changeSets = batch.entrySet().iterator();
+        while (changeSets.hasNext()) {
+            Map.Entry<String, Map<String, PendingKey>> changeSetEntry = changeSets.next();
+            String changeSet = changeSetEntry.getKey();
+            Map<String, PendingKey> pendingKeys = changeSetEntry.getValue();
+            try {
+                storeAll(changeSet, pendingKeys);
+                changeSets.remove();
+                continue;
+            } catch (RuntimeException e) {
+                if (pendingKeys.size() == 1) {
+                    failure = failure == null ? e : failure;
+                    continue;
+                }
+            }
+
+            Iterator<Map.Entry<String, PendingKey>> keys = pendingKeys.entrySet().iterator();
+            while (keys.hasNext()) {
+                Map.Entry<String, PendingKey> keyEntry = keys.next();
+                try {
+                    storeAll(changeSet, Collections.singletonMap(keyEntry.getKey(), keyEntry.getValue()));
+                    keys.remove();
+                } catch (RuntimeException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (pendingKeys.isEmpty()) {
+                changeSets.remove();
+            }
+        }
+        return failure;
+    }
+
+    private void storeAll(String changeSet, Map<String, PendingKey> pendingKeys) {
+        Map<String, KeyValues> keyValuesMap = new LinkedHashMap<>();
+        pendingKeys.forEach((key, pendingKey) -> keyValuesMap.put(key, pendingKey.toKeyValues(changeSet)));
+        persistence.storeAll(keyValuesMap, changeSet);
+    }
+
+    /**
+     * Queues the values that a flush could not store again, unless they were stored again in the meantime or failed
+     * the maximum number of flushes. Returns the keys whose values were dropped.
+     */
+    private List<String> requeue(Map<String, Map<String, PendingKey>> batch) {
+        List<String> droppedKeys = new ArrayList<>();
+        synchronized (lock) {
+            Map<String, Map<String, PendingKey>> newerPending = pending;
+            pending = batch;
+            numPendingValues = 0;
+            batch.values().removeIf(pendingKeys -> {
+                pendingKeys.entrySet().removeIf(entry -> {
+                    PendingKey pendingKey = entry.getValue();
+                    if (++pendingKey.failedFlushes >= maxFlushAttempts) {
+                        droppedKeys.add(entry.getKey());
+                        return true;
+                    }
+                    numPendingValues += pendingKey.values.size();
+                    return false;
+                });
+                return pendingKeys.isEmpty();
+            });
+            newerPending.forEach((changeSet, pendingKeys) -> pendingKeys.forEach((key, pendingKey) -> {
+                PendingKey olderPendingKey = pending.computeIfAbsent(changeSet, ignored -> new LinkedHashMap<>())
+                        .computeIfAbsent(key, ignored -> new PendingKey());
+                numPendingValues += olderPendingKey.put(pendingKey.description, pendingKey.values);
+            }));
+        }
+        return droppedKeys;
+    }
+
+    private void startFlushExecutor() {
+        if (flushExecutor != null) {
+            return;
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "roperty-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes and hands a failure to the flush failure listener instead of throwing it. Returns whether the flush
+     * succeeded.
+     */
+    private boolean flushQuietly() {
+        try {
+            flush();
+            return true;
+        } catch (RuntimeException e) {
+            // the values are queued again or the waiting stores fail, and the next flush tries again
+            flushFailureListener.accept(e);
+            return false;
+        }
+    }
+
+    private static void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RopertyPersistenceException("Flushing queued values failed", cause);
+        }
+    }
+
+    /**
+     * Flushes the queued values and stops flushing in the background. Stores after closing fail.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (lock) {
+            closed = true;
+            executor = flushExecutor;
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        flush();
+    }
+
+    int getNumPendingValues() {
+        synchronized (lock) {
+            return numPendingValues;
+        }
+    }
+
+    public void setPersistence(JpaPersistence persistence) {
+        Validate.notNull(persistence, "Persistence must not be null");
+        this.persistence = persistence;
+    }
+
+    public void setKeyValuesFactory(KeyValuesFactory keyValuesFactory) {
+        Validate.notNull(keyValuesFactory, "Key values factory must not be null");
+        this.keyValuesFactory = keyValuesFactory;
+    }
+
+    public void setDomainSpecificValueFactory(DomainSpecificValueFactory domainSpecificValueFactory) {
+        Validate.notNull(domainSpecificValueFactory, "Domain specific value factory must not be null");
+        this.domainSpecificValueFactory = domainSpecificValueFactory;
+    }
+
+    /**
+     * Sets the number of queued values at which the storing thread flushes the queue. Defaults to 1000.
+     */
+    public void setMaxPendingValues(int maxPendingValues) {
+        Validate.isTrue(maxPendingValues > 0, "Max pending values must be positive");
+        this.maxPendingValues = maxPendingValues;
+    }
+
+    /**
+     * Sets the interval, in milliseconds, in which queued values are flushed in the background. Defaults to one second.
+     */
+    public void setFlushInterval(long flushInterval) {
+        Validate.isTrue(flushInterval > 0, "Flush interval must be positive");
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Sets whether stores return when their values are queued, the default, or when they are committed.
+     */
+    public void setDurability(WriteDurability durability) {
+        Validate.notNull(durability, "Durability must not be null");
+        this.durability = durability;
+    }
+
+    /**
+     * Sets the number of flushes queued values may fail before they are dropped. Defaults to 3. Only applies to
+     * {@link WriteDurability#QUEUED}.
+     */
+    public void setMaxFlushAttempts(int maxFlushAttempts) {
+        Validate.isTrue(maxFlushAttempts > 0, "Max flush attempts must be positive");
+        this.maxFlushAttempts = maxFlushAttempts;
+    }
+
+    /**
+     * Sets the listener that receives failures of flushes that do not throw, i.e. flushes in the background, before
+     * reads and removals, and when the queue is full. By default failures are ignored.
+     */
+    public void setFlushFailureListener(Consumer<RuntimeException> flushFailureListener) {
+        Validate.notNull(flushFailureListener, "Flush failure listener must not be null");
+        this.flushFailureListener = flushFailureListener;
+    }
+
+    private final class PendingKey {
+
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        private String description;
+
+        private int failedFlushes;
+
+        /**
+         * Replaces the values of the same patterns. Returns the number of values that were added.
+         */
+        private int put(String description, Map<String, Object> newValues) {
+            this.description = description;
+            int numValues = values.size();
+            values.putAll(newValues);
+            return values.size() - numValues;
+        }
+
+        private KeyValues toKeyValues(String changeSet) {
+            KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+            values.forEach((pattern, value) -> RopertyValueTransformer.putValue(keyValues, pattern, changeSet == null ? "" : changeSet, value));
+            keyValues.setDescription(description);
+            return keyValues;
+        }
+    }
+}
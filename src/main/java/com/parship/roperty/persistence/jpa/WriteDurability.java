@@ -0,0 +1,19 @@
+package com.parship.roperty.persistence.jpa;
+
+/**
+ * When {@link WriteBehindJpaPersistence#store} returns to the caller.
+ */
+public enum WriteDurability {
+
+    /**
+     * Returns as soon as the values are queued. Values that were not flushed yet are lost if the process dies, and
+     * values of failed flushes are queued again for the next one.
+     */
+    QUEUED,
+
+    /**
+     * Returns after the flush with the values was committed, and fails if it fails. Callers still share flushes, but
+     * each store waits up to the flush interval.
+     */
+    COMMITTED
+}
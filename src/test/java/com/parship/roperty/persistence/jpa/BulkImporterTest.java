@@ -0,0 +1,120 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.KeyValues;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class BulkImporterTest {
+
+    private static final String RECORDS =
+            "# key, pattern, change set, value\n" +
+            "first.key\t\t\tdefault\n" +
+            "first.key\tDE\t\tgerman\n" +
+            "second.key\t\tchangeSet\tchanged\n";
+
+    private final BulkImporter bulkImporter = new BulkImporter();
+
+    private final List<Long> checkpoints = new ArrayList<>();
+
+    @Mock
+    private JpaPersistence persistence;
+
+    @Captor
+    private ArgumentCaptor<Map<String, KeyValues>> keyValuesMapCaptor;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void wireImporter() {
+        bulkImporter.setPersistence(persistence);
+        bulkImporter.setKeyValuesFactory(new DefaultKeyValuesFactory());
+        bulkImporter.setDomainSpecificValueFactory(new DefaultDomainSpecificValueFactory());
+        bulkImporter.setBatchSize(2);
+    }
+
+    @Test
+    public void storesRecordsInBatchesAndCheckpointsAfterEach() {
+        long numLines = bulkImporter.importRecords(new StringReader(RECORDS), ImportFormat.TAB_SEPARATED, 0, checkpoints::add);
+
+        assertThat(numLines, is(4L));
+        assertThat(checkpoints, contains(3L, 4L));
+        verify(persistence).storeAll(keyValuesMapCaptor.capture(), isNull());
+        verify(persistence).storeAll(keyValuesMapCaptor.capture(), eq("changeSet"));
+        verifyNoMoreInteractions(persistence);
+        Map<String, KeyValues> firstBatch = keyValuesMapCaptor.getAllValues().get(0);
+        assertThat(firstBatch.keySet(), contains("first.key"));
+        assertThat(firstBatch.get("first.key").getDomainSpecificValues().size(), is(2));
+        Map<String, KeyValues> secondBatch = keyValuesMapCaptor.getAllValues().get(1);
+        assertThat(secondBatch.keySet(), contains("second.key"));
+        assertThat(secondBatch.get("second.key").getDomainSpecificValues().iterator().next().getValue(), is("changed"));
+    }
+
+    @Test
+    public void continuesAfterStartLine() {
+        long numLines = bulkImporter.importRecords(new StringReader(RECORDS), ImportFormat.TAB_SEPARATED, 3, checkpoints::add);
+
+        assertThat(numLines, is(4L));
+        assertThat(checkpoints, contains(4L));
+        verify(persistence).storeAll(keyValuesMapCaptor.capture(), eq("changeSet"));
+        verifyNoMoreInteractions(persistence);
+        assertThat(keyValuesMapCaptor.getValue().keySet(), contains("second.key"));
+    }
+
+    @Test
+    public void failedBatchIsNotCheckpointed() {
+        doThrow(new RopertyPersistenceException("failed")).when(persistence).storeAll(any(), isNull());
+
+        assertThrows(RopertyPersistenceException.class, () -> bulkImporter.importRecords(new StringReader(RECORDS), ImportFormat.TAB_SEPARATED, 0, checkpoints::add));
+        assertThat(checkpoints, empty());
+    }
+
+    @Test
+    public void importFileContinuesAfterCheckpointFile() throws IOException {
+        Path file = tempDir.resolve("import.tsv");
+        Files.write(file, RECORDS.getBytes(StandardCharsets.UTF_8));
+        Path checkpointFile = tempDir.resolve("import.checkpoint");
+        Files.write(checkpointFile, "3".getBytes(StandardCharsets.UTF_8));
+
+        bulkImporter.importFile(file, ImportFormat.TAB_SEPARATED, checkpointFile);
+
+        verify(persistence).storeAll(keyValuesMapCaptor.capture(), eq("changeSet"));
+        verifyNoMoreInteractions(persistence);
+        assertThat(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8), is("4"));
+    }
+
+    @Test
+    public void failIfBatchSizeIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> bulkImporter.setBatchSize(0));
+    }
+
+}
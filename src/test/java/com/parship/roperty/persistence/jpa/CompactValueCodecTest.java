@@ -0,0 +1,102 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class CompactValueCodecTest {
+
+    private final CompactValueCodec codec = new CompactValueCodec();
+
+    private static Stream<Serializable> values() {
+        return Stream.of(
+                "",
+                "value with ümlauts",
+                Integer.MIN_VALUE,
+                4711L,
+                Boolean.TRUE,
+                Boolean.FALSE,
+                -0.5d,
+                new BigDecimal("-1234567890123456789.0100"),
+                new Date(123456789101112L),
+                new ArrayList<>(Arrays.asList("a", 1, null, 2L, new ArrayList<>(Arrays.asList(true, 0.25d)))),
+                new Timestamp(123456789L),
+                new HashMap<>(),
+                (Serializable) Arrays.asList("a", "b")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("values")
+    public void decodesEncodedValue(Serializable value) {
+        Serializable decoded = codec.decode(codec.encode(value));
+
+        assertThat(decoded, is(value));
+        assertThat(decoded.getClass(), is((Object) value.getClass()));
+    }
+
+    @Test
+    public void decodesValuesStoredWithJavaSerialization() throws IOException {
+        Date date = new Date(123456789101112L);
+
+        assertThat(codec.decode(serialize(date)), is(date));
+        assertThat(codec.decode(serialize("value")), is("value"));
+    }
+
+    @Test
+    public void compactEncodingIsSmallerThanJavaSerialization() throws IOException {
+        assertThat(codec.encode(4711L).length, lessThan(serialize(4711L).length));
+        assertThat(codec.encode("value").length, lessThan(serialize("value").length));
+        Date date = new Date();
+        assertThat(codec.encode(date).length, lessThan(serialize(date).length));
+    }
+
+    @Test
+    public void unsupportedTypesFallBackToJavaSerialization() throws IOException {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("key", "value");
+
+        assertThat(codec.encode(map), is(serialize(map)));
+    }
+
+    @Test
+    public void failIfTypeTagIsUnknown() {
+        assertThrows(RopertyPersistenceException.class, () -> codec.decode(new byte[]{42}));
+    }
+
+    @Test
+    public void failIfValueIsNull() {
+        assertThrows(NullPointerException.class, () -> codec.encode(null));
+    }
+
+    @Test
+    public void defaultCodecIsCompact() {
+        assertThat(ValueCodecs.codec(), instanceOf(CompactValueCodec.class));
+    }
+
+    private static byte[] serialize(Serializable value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentJpaPersistenceTest {
+
+    private static final int NUM_THREADS = 8;
+
+    private static final int KEYS_PER_THREAD = 24;
+
+    private static final int VALUES_PER_KEY = 3;
+
+    private final KeyValuesFactory keyValuesFactory = new DefaultKeyValuesFactory();
+
+    private final DomainSpecificValueFactory domainSpecificValueFactory = new DefaultDomainSpecificValueFactory();
+
+    private JpaPersistence jpaPersistence;
+
+    @BeforeEach
+    public void initPersistence() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:hsqldb:mem:roperty_concurrency_test;hsqldb.tx=mvcc");
+        properties.put("hibernate.show_sql", "false");
+        EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory("hsqldb", properties);
+
+        TransactionManager transactionManager = new TransactionManager();
+        transactionManager.setEntityManagerFactory(entityManagerFactory);
+
+        QueryBuilderDelegate<RopertyKey> keyQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        keyQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        keyQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        keyQueryBuilderDelegate.setResultClass(RopertyKey.class);
+        RopertyKeyDAO ropertyKeyDAO = new RopertyKeyDAO();
+        ropertyKeyDAO.setQueryBuilderDelegate(keyQueryBuilderDelegate);
+
+        QueryBuilderDelegate<RopertyValue> valueQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        valueQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        valueQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        valueQueryBuilderDelegate.setResultClass(RopertyValue.class);
+        RopertyValueDAO ropertyValueDAO = new RopertyValueDAO();
+        ropertyValueDAO.setQueryBuilderDelegate(valueQueryBuilderDelegate);
+
+        QueryBuilderDelegate<RopertyTombstone> tombstoneQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        tombstoneQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        tombstoneQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        tombstoneQueryBuilderDelegate.setResultClass(RopertyTombstone.class);
+        RopertyTombstoneDAO ropertyTombstoneDAO = new RopertyTombstoneDAO();
+        ropertyTombstoneDAO.setQueryBuilderDelegate(tombstoneQueryBuilderDelegate);
+
+        jpaPersistence = new JpaPersistence();
+        jpaPersistence.setTransactionManager(transactionManager);
+        jpaPersistence.setRopertyKeyDAO(ropertyKeyDAO);
+        jpaPersistence.setRopertyValueDAO(ropertyValueDAO);
+        jpaPersistence.setRopertyTombstoneDAO(ropertyTombstoneDAO);
+    }
+
+    @Test
+    public void writersOnDifferentKeysRunInParallel() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < NUM_THREADS; thread++) {
+                String keyPrefix = "thread" + thread + ".key";
+                writers.add(executorService.submit(() -> {
+                    start.await();
+                    writeAndRemoveKeys(keyPrefix);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(jpaPersistence.getAllKeys().size(), is(NUM_THREADS * KEYS_PER_THREAD / 2));
+        for (int thread = 0; thread < NUM_THREADS; thread++) {
+            for (int key = 1; key < KEYS_PER_THREAD; key += 2) {
+                KeyValues keyValues = jpaPersistence.load("thread" + thread + ".key" + key, keyValuesFactory, domainSpecificValueFactory);
+                assertThat(keyValues, notNullValue());
+                assertThat(keyValues.getDomainSpecificValues().size(), is(VALUES_PER_KEY));
+            }
+        }
+    }
+
+    @Test
+    public void asyncStoresAndLoadsRunOnAsyncExecutor() {
+        ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            jpaPersistence.setAsyncExecutor(executorService);
+            List<CompletableFuture<Void>> stores = new ArrayList<>();
+            for (int key = 0; key < KEYS_PER_THREAD; key++) {
+                stores.add(jpaPersistence.storeAsync("async.key" + key, createKeyValues(key), null));
+            }
+            CompletableFuture.allOf(stores.toArray(new CompletableFuture[0])).join();
+
+            Map<String, KeyValues> keyValuesMap = jpaPersistence.loadAllAsync(keyValuesFactory, domainSpecificValueFactory).join();
+            KeyValues keyValues = jpaPersistence.loadAsync("async.key0", keyValuesFactory, domainSpecificValueFactory).join();
+
+            for (int key = 0; key < KEYS_PER_THREAD; key++) {
+                assertThat(keyValuesMap.get("async.key" + key).getDomainSpecificValues().size(), is(VALUES_PER_KEY));
+            }
+            assertThat(keyValues.getDescription(), is("description0"));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void writeAndRemoveKeys(String keyPrefix) {
+        for (int key = 0; key < KEYS_PER_THREAD; key++) {
+            jpaPersistence.store(keyPrefix + key, createKeyValues(key), null);
+        }
+        for (int key = 0; key < KEYS_PER_THREAD; key += 2) {
+            jpaPersistence.remove(keyPrefix + key, (KeyValues) null, null);
+        }
+    }
+
+    private KeyValues createKeyValues(int key) {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        keyValues.setDescription("description" + key);
+        keyValues.put("value" + key);
+        for (int i = 1; i < VALUES_PER_KEY; i++) {
+            keyValues.put("value" + key + "." + i, "domainValue" + i);
+        }
+        return keyValues;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.ParameterExpression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class CriteriaDeleteTemplateTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CriteriaDelete<String> criteriaDelete;
+
+    @Mock
+    private Query query;
+
+    @Mock
+    private ParameterExpression<Long> firstParameter;
+
+    @Mock
+    private ParameterExpression<String> secondParameter;
+
+    @Test
+    public void failIfCriteriaDeleteIsNull() {
+        assertThrows(NullPointerException.class, () -> new CriteriaDeleteTemplate<String>(null));
+    }
+
+    @Test
+    public void failIfParameterIsNotNamed() {
+        assertThrows(NullPointerException.class, () -> new CriteriaDeleteTemplate<>(criteriaDelete, firstParameter));
+    }
+
+    @Test
+    public void failIfNumberOfValuesDoesNotMatchParameters() {
+        when(firstParameter.getName()).thenReturn("first");
+        when(secondParameter.getName()).thenReturn("second");
+        CriteriaDeleteTemplate<String> criteriaDeleteTemplate = new CriteriaDeleteTemplate<>(criteriaDelete, firstParameter, secondParameter);
+
+        assertThrows(IllegalArgumentException.class, () -> criteriaDeleteTemplate.createQuery(entityManager, 1L));
+    }
+
+    @Test
+    public void bindsValuesToParametersByName() {
+        when(firstParameter.getName()).thenReturn("first");
+        when(secondParameter.getName()).thenReturn("second");
+        when(entityManager.createQuery(criteriaDelete)).thenReturn(query);
+        CriteriaDeleteTemplate<String> criteriaDeleteTemplate = new CriteriaDeleteTemplate<>(criteriaDelete, firstParameter, secondParameter);
+
+        Query result = criteriaDeleteTemplate.createQuery(entityManager, 1L, "value");
+
+        verify(query).setParameter("first", 1L);
+        verify(query).setParameter("second", "value");
+        assertThat(result, is(query));
+    }
+
+}
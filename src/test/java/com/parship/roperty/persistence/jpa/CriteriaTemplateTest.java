@@ -0,0 +1,60 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class CriteriaTemplateTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CriteriaQuery<String> criteriaQuery;
+
+    @Mock
+    private TypedQuery<String> typedQuery;
+
+    @Mock
+    private ParameterExpression<Long> firstParameter;
+
+    @Mock
+    private ParameterExpression<String> secondParameter;
+
+    @Test
+    public void failIfCriteriaQueryIsNull() {
+        assertThrows(NullPointerException.class, () -> new CriteriaTemplate<String>(null));
+    }
+
+    @Test
+    public void failIfNumberOfValuesDoesNotMatchParameters() {
+        CriteriaTemplate<String> criteriaTemplate = new CriteriaTemplate<>(criteriaQuery, firstParameter, secondParameter);
+
+        assertThrows(IllegalArgumentException.class, () -> criteriaTemplate.createQuery(entityManager, 1L));
+    }
+
+    @Test
+    public void bindsValuesToParametersInOrder() {
+        when(entityManager.createQuery(criteriaQuery)).thenReturn(typedQuery);
+        CriteriaTemplate<String> criteriaTemplate = new CriteriaTemplate<>(criteriaQuery, firstParameter, secondParameter);
+
+        TypedQuery<String> result = criteriaTemplate.createQuery(entityManager, 1L, "value");
+
+        verify(typedQuery).setParameter(firstParameter, 1L);
+        verify(typedQuery).setParameter(secondParameter, "value");
+        assertThat(result, is(typedQuery));
+    }
+
+}
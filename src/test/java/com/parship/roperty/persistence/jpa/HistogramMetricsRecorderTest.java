@@ -0,0 +1,65 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.parship.roperty.persistence.jpa.HistogramMetricsRecorder.OperationHistogram;
+import org.junit.jupiter.api.Test;
+
+public class HistogramMetricsRecorderTest {
+
+    private final HistogramMetricsRecorder recorder = new HistogramMetricsRecorder();
+
+    @Test
+    public void bucketsFollowEachOther() {
+        for (long nanos = 0; nanos < 100_000; nanos++) {
+            int bucket = OperationHistogram.bucket(nanos);
+            assertThat(OperationHistogram.upperBound(bucket), greaterThan(nanos));
+            assertThat(OperationHistogram.bucket(OperationHistogram.upperBound(bucket)), is(bucket + 1));
+        }
+        assertThat(OperationHistogram.bucket(Long.MAX_VALUE), is(247));
+    }
+
+    @Test
+    public void percentilesAreAccurateToAQuarter() {
+        for (long millis = 1; millis <= 100; millis++) {
+            recorder.record(PersistenceOperation.LOAD, millis * 1_000_000, new OperationStats());
+        }
+
+        OperationHistogram histogram = recorder.getHistogram(PersistenceOperation.LOAD);
+        assertThat(histogram.getCount(), is(100L));
+        assertThat(histogram.getPercentile(0.5), allOf(greaterThanOrEqualTo(50_000_000L), lessThanOrEqualTo(62_500_000L)));
+        assertThat(histogram.getPercentile(0.99), allOf(greaterThanOrEqualTo(99_000_000L), lessThanOrEqualTo(100_000_000L)));
+        assertThat(histogram.getPercentile(1.0), is(100_000_000L));
+        assertThat(histogram.getMaxNanos(), is(100_000_000L));
+        assertThat(histogram.getTotalNanos(), is(5_050_000_000L));
+    }
+
+    @Test
+    public void sumsWorkAndFailuresPerOperation() {
+        OperationStats stats = new OperationStats();
+        stats.fail();
+
+        recorder.record(PersistenceOperation.STORE, 10, stats);
+        recorder.record(PersistenceOperation.STORE, 20, new OperationStats());
+
+        OperationHistogram histogram = recorder.getHistogram(PersistenceOperation.STORE);
+        assertThat(histogram.getCount(), is(2L));
+        assertThat(histogram.getFailures(), is(1L));
+        assertThat(recorder.getHistogram(PersistenceOperation.LOAD).getCount(), is(0L));
+        assertThat(recorder.getHistogram(PersistenceOperation.LOAD).getPercentile(0.5), is(0L));
+    }
+
+    @Test
+    public void failIfQuantileIsOutOfRange() {
+        OperationHistogram histogram = recorder.getHistogram(PersistenceOperation.LOAD);
+
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(1.5));
+    }
+
+}
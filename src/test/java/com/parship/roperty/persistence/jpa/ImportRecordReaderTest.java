@@ -0,0 +1,124 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+public class ImportRecordReaderTest {
+
+    @Test
+    public void readsPropertiesWithContinuationsAndEscapes() throws IOException {
+        ImportRecordReader reader = reader(ImportFormat.PROPERTIES,
+                "# comment\n" +
+                "first.key = a value\n" +
+                "second.key=line one \\\n" +
+                "    continued\n" +
+                "\n" +
+                "! another comment\n" +
+                "third\\:key=\\u00e4\n");
+
+        assertThat(reader.next().toString(), is("first.key[]=a value"));
+        assertThat(reader.next().toString(), is("second.key[]=line one continued"));
+        assertThat(reader.getLineNumber(), is(4L));
+        assertThat(reader.next().toString(), is("third:key[]=\u00e4"));
+        assertThat(reader.next(), nullValue());
+        assertThat(reader.getLineNumber(), is(7L));
+    }
+
+    @Test
+    public void readsCsvWithQuotedFields() throws IOException {
+        ImportRecordReader reader = reader(ImportFormat.CSV,
+                "key,DE|premium,changeSet,\"a, \"\"quoted\"\"\n" +
+                "value\"\n" +
+                "# comment\n" +
+                "other.key,,,plain\n");
+
+        ImportRecord record = reader.next();
+        assertThat(record.getKey(), is("key"));
+        assertThat(record.getPattern(), is("DE|premium"));
+        assertThat(record.getChangeSet(), is("changeSet"));
+        assertThat(record.getValue(), is("a, \"quoted\"\nvalue"));
+        assertThat(reader.getLineNumber(), is(2L));
+        record = reader.next();
+        assertThat(record.toString(), is("other.key[]=plain"));
+        assertThat(record.getChangeSet(), nullValue());
+        assertThat(reader.next(), nullValue());
+    }
+
+    @Test
+    public void readsTabSeparatedWithEscapes() throws IOException {
+        ImportRecordReader reader = reader(ImportFormat.TAB_SEPARATED,
+                "key\tDE\t\tfirst\\tsecond\\nthird\\\\\n" +
+                "other.key\t\tchangeSet\t\n");
+
+        assertThat(reader.next().getValue(), is("first\tsecond\nthird\\"));
+        assertThat(reader.next().toString(), is("other.key[]@changeSet="));
+        assertThat(reader.next(), nullValue());
+    }
+
+    @Test
+    public void skipsLinesToContinueAfterCheckpoint() throws IOException {
+        ImportRecordReader reader = reader(ImportFormat.TAB_SEPARATED, "first\t\t\t1\nsecond\t\t\t2\nthird\t\t\t3\n");
+
+        reader.skipLines(2);
+
+        assertThat(reader.next().getKey(), is("third"));
+        assertThat(reader.getLineNumber(), is(3L));
+    }
+
+    @Test
+    public void failIfInputEndsBeforeLinesToSkip() {
+        ImportRecordReader reader = reader(ImportFormat.TAB_SEPARATED, "first\t\t\t1\n");
+
+        RopertyPersistenceException exception = assertThrows(RopertyPersistenceException.class, () -> reader.skipLines(2));
+        assertThat(exception.getMessage(), containsString("line 1"));
+    }
+
+    @Test
+    public void failIfRecordHasWrongNumberOfFields() throws IOException {
+        ImportRecordReader reader = reader(ImportFormat.CSV, "key,pattern,,value\nkey,value\n");
+        reader.next();
+
+        RopertyPersistenceException exception = assertThrows(RopertyPersistenceException.class, reader::next);
+        assertThat(exception.getMessage(), is("Expected 4 fields but found 2 in record at line 2"));
+    }
+
+    @Test
+    public void failIfQuotedFieldIsNotClosed() {
+        ImportRecordReader reader = reader(ImportFormat.CSV, "key,pattern,,\"value\nmore\n");
+
+        RopertyPersistenceException exception = assertThrows(RopertyPersistenceException.class, reader::next);
+        assertThat(exception.getMessage(), is("Quoted field of record at line 1 is not closed"));
+    }
+
+    @Test
+    public void skipsPropertiesLineWithOnlyContinuation() throws IOException {
+        ImportRecordReader reader = reader(ImportFormat.PROPERTIES,
+                "  \\\n" +
+                "\n" +
+                "key=value\n");
+
+        assertThat(reader.next().toString(), is("key[]=value"));
+        assertThat(reader.getLineNumber(), is(3L));
+        assertThat(reader.next(), nullValue());
+    }
+
+    @Test
+    public void failIfKeyIsEmpty() {
+        ImportRecordReader reader = reader(ImportFormat.TAB_SEPARATED, "\tpattern\t\tvalue\n");
+
+        assertThrows(RopertyPersistenceException.class, reader::next);
+    }
+
+    private static ImportRecordReader reader(ImportFormat format, String input) {
+        return new ImportRecordReader(new BufferedReader(new StringReader(input)), format);
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.DomainSpecificValue;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.sql.DataSource;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class JdbcPersistenceTest {
+
+    private static final String URL = "jdbc:hsqldb:mem:roperty_jdbc_test";
+
+    private final KeyValuesFactory keyValuesFactory = new DefaultKeyValuesFactory();
+
+    private final DomainSpecificValueFactory domainSpecificValueFactory = new DefaultDomainSpecificValueFactory();
+
+    private JDBCDataSource dataSource;
+
+    private JdbcPersistence jdbcPersistence;
+
+    private JpaPersistence jpaPersistence;
+
+    @BeforeEach
+    public void initPersistence() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", URL);
+        properties.put("hibernate.show_sql", "false");
+        EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory("hsqldb", properties);
+
+        TransactionManager transactionManager = new TransactionManager();
+        transactionManager.setEntityManagerFactory(entityManagerFactory);
+
+        QueryBuilderDelegate<RopertyKey> keyQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        keyQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        keyQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        keyQueryBuilderDelegate.setResultClass(RopertyKey.class);
+        RopertyKeyDAO ropertyKeyDAO = new RopertyKeyDAO();
+        ropertyKeyDAO.setQueryBuilderDelegate(keyQueryBuilderDelegate);
+
+        QueryBuilderDelegate<RopertyValue> valueQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        valueQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        valueQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        valueQueryBuilderDelegate.setResultClass(RopertyValue.class);
+        RopertyValueDAO ropertyValueDAO = new RopertyValueDAO();
+        ropertyValueDAO.setQueryBuilderDelegate(valueQueryBuilderDelegate);
+
+        QueryBuilderDelegate<RopertyTombstone> tombstoneQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        tombstoneQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        tombstoneQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        tombstoneQueryBuilderDelegate.setResultClass(RopertyTombstone.class);
+        RopertyTombstoneDAO ropertyTombstoneDAO = new RopertyTombstoneDAO();
+        ropertyTombstoneDAO.setQueryBuilderDelegate(tombstoneQueryBuilderDelegate);
+
+        jpaPersistence = new JpaPersistence();
+        jpaPersistence.setTransactionManager(transactionManager);
+        jpaPersistence.setRopertyKeyDAO(ropertyKeyDAO);
+        jpaPersistence.setRopertyValueDAO(ropertyValueDAO);
+        jpaPersistence.setRopertyTombstoneDAO(ropertyTombstoneDAO);
+
+        dataSource = new JDBCDataSource();
+        dataSource.setUrl(URL);
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+
+        jdbcPersistence = new JdbcPersistence();
+        jdbcPersistence.setDataSource(dataSource);
+        jdbcPersistence.setFetchSize(2);
+    }
+
+    @Test
+    public void storedValuesAreLoaded() {
+        Date date = new Date(123456789L);
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        keyValues.setDescription("description");
+        keyValues.put("default");
+        keyValues.put(date, "DE");
+        jdbcPersistence.store("key", keyValues, null);
+        KeyValues changeSetValues = keyValuesFactory.create(domainSpecificValueFactory);
+        changeSetValues.putWithChangeSet("changeSet", "changed", "DE");
+        jdbcPersistence.store("key", changeSetValues, "changeSet");
+
+        KeyValues loaded = jdbcPersistence.load("key", keyValuesFactory, domainSpecificValueFactory);
+
+        assertThat(loaded.getDescription(), is("description"));
+        assertThat(values(loaded, null), containsInAnyOrder("default", date));
+        assertThat(values(loaded, "changeSet"), contains("changed"));
+        assertThat(jdbcPersistence.load("other", keyValuesFactory, domainSpecificValueFactory), nullValue());
+    }
+
+    @Test
+    public void loadAllHandsEveryKeyToConsumerOnce() {
+        for (int i = 0; i < 5; i++) {
+            jdbcPersistence.store("key" + i, keyValues("value" + i, "DE"), null);
+        }
+
+        List<String> keys = new ArrayList<>();
+        jdbcPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory, (key, keyValues) -> {
+            keys.add(key);
+            assertThat(values(keyValues, null), contains("value" + key.substring(3)));
+        });
+
+        assertThat(keys, contains("key0", "key1", "key2", "key3", "key4"));
+    }
+
+    @Test
+    public void readsAndWritesValuesOfJpaPersistence() {
+        jpaPersistence.store("jpaKey", keyValues("jpaValue", "DE"), null);
+        jdbcPersistence.store("jdbcKey", keyValues("jdbcValue", "DE"), null);
+        jpaPersistence.store("otherJpaKey", keyValues("otherJpaValue", "DE"), null);
+        jdbcPersistence.store("jpaKey", keyValues("changed", "DE"), null);
+
+        Map<String, KeyValues> loadedWithJdbc = jdbcPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+        Map<String, KeyValues> loadedWithJpa = jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+
+        assertThat(loadedWithJdbc.keySet(), containsInAnyOrder("jpaKey", "jdbcKey", "otherJpaKey"));
+        assertThat(loadedWithJpa.keySet(), containsInAnyOrder("jpaKey", "jdbcKey", "otherJpaKey"));
+        assertThat(values(loadedWithJdbc.get("jpaKey"), null), contains("changed"));
+        assertThat(values(loadedWithJpa.get("jpaKey"), null), contains("changed"));
+        assertThat(values(loadedWithJpa.get("jdbcKey"), null), contains("jdbcValue"));
+        assertThat(values(loadedWithJdbc.get("otherJpaKey"), null), contains("otherJpaValue"));
+    }
+
+    @Test
+    public void storeWritesHashOfValueStoredWithoutHash() throws SQLException {
+        jdbcPersistence.store("key", keyValues("value", null), null);
+        execute("UPDATE roperty_value SET value_hash = NULL");
+
+        jdbcPersistence.store("key", keyValues("value", null), null);
+
+        assertThat(queryLong("SELECT value_hash FROM roperty_value"), is(RopertyValue.hash(RopertyValue.encode("value"))));
+    }
+
+    @Test
+    public void failIfNewValueIsNull() {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        keyValues.put(null);
+        assertThrows(RopertyPersistenceException.class, () -> jdbcPersistence.store("key", keyValues, null));
+        assertThat(jdbcPersistence.getAllKeys(), is(new ArrayList<>()));
+    }
+
+    @Test
+    public void removingAllValuesRemovesKey() {
+        KeyValues keyValues = keyValues("value", "DE");
+        jdbcPersistence.store("key", keyValues, null);
+        Map<String, KeyValues> keyValuesMap = jdbcPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+
+        jdbcPersistence.remove("key", keyValues, null);
+
+        assertThat(jdbcPersistence.load("key", keyValuesFactory, domainSpecificValueFactory), nullValue());
+        assertThat(jdbcPersistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory).containsKey("key"), is(false));
+    }
+
+    @Test
+    public void removingDomainSpecificValueKeepsOtherValues() {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        keyValues.put("default");
+        keyValues.put("value", "DE");
+        jdbcPersistence.store("key", keyValues, null);
+        DomainSpecificValue domainSpecificValue = keyValues.getDomainSpecificValues().stream()
+                .filter(value -> "value".equals(value.getValue()))
+                .findFirst().get();
+
+        jdbcPersistence.remove("key", domainSpecificValue, null);
+
+        KeyValues loaded = jdbcPersistence.load("key", keyValuesFactory, domainSpecificValueFactory);
+        assertThat(values(loaded, null), contains("default"));
+    }
+
+    @Test
+    public void reloadReadsKeysChangedByOthers() {
+        jdbcPersistence.store("key", keyValues("value", null), null);
+        Map<String, KeyValues> keyValuesMap = jdbcPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+
+        jpaPersistence.store("key", keyValues("changed", null), null);
+        jpaPersistence.store("newKey", keyValues("new", null), null);
+        Map<String, KeyValues> reloaded = jdbcPersistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+
+        assertThat(values(reloaded.get("key"), null), contains("changed"));
+        assertThat(values(reloaded.get("newKey"), null), contains("new"));
+    }
+
+    @Test
+    public void findKeysIgnoresCaseAndRanksExactMatchFirst() {
+        jdbcPersistence.store("some.multi.key", keyValues("value", null), null);
+        jdbcPersistence.store("multi", keyValues("value", null), null);
+        jdbcPersistence.store("other", keyValues("value", null), null);
+
+        assertThat(jdbcPersistence.findKeys("MULTI"), contains("multi", "some.multi.key"));
+        assertThat(jdbcPersistence.getAllKeys(), containsInAnyOrder("some.multi.key", "multi", "other"));
+    }
+
+    @Test
+    public void failureOfCallIsThrownIfRollbackAndResetFail() throws SQLException {
+        Connection connection = mock(Connection.class);
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        SQLException callFailure = new SQLException("call");
+        when(connection.prepareStatement(anyString())).thenThrow(callFailure);
+        SQLException rollbackFailure = new SQLException("rollback");
+        doThrow(rollbackFailure).when(connection).rollback();
+        SQLException resetFailure = new SQLException("reset");
+        doThrow(resetFailure).when(connection).setAutoCommit(true);
+        jdbcPersistence.setDataSource(failingDataSource);
+
+        RopertyPersistenceException exception = assertThrows(RopertyPersistenceException.class, () -> jdbcPersistence.store("key", keyValues("value", null), null));
+
+        assertThat(exception.getCause(), is(sameInstance(callFailure)));
+        assertThat(callFailure.getSuppressed(), arrayContaining(rollbackFailure, resetFailure));
+        verify(connection).close();
+    }
+
+    @Test
+    public void failIfFetchSizeIsNegative() {
+        assertThrows(IllegalArgumentException.class, () -> jdbcPersistence.setFetchSize(-1));
+    }
+
+    @Test
+    public void failIfDataSourceIsNull() {
+        assertThrows(NullPointerException.class, () -> jdbcPersistence.setDataSource(null));
+    }
+
+    private KeyValues keyValues(String value, String domainKeyPart) {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        if (domainKeyPart == null) {
+            keyValues.put(value);
+        } else {
+            keyValues.put(value, domainKeyPart);
+        }
+        return keyValues;
+    }
+
+    private static List<Object> values(KeyValues keyValues, String changeSet) {
+        List<Object> values = new ArrayList<>();
+        for (DomainSpecificValue domainSpecificValue : keyValues.getDomainSpecificValues()) {
+            if (domainSpecificValue.changeSetIs(changeSet)) {
+                values.add(domainSpecificValue.getValue());
+            }
+        }
+        return values;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
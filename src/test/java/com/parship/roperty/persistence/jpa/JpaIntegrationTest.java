@@ -13,6 +13,7 @@ import static org.mockito.Mockito.when;
 import com.parship.roperty.DomainResolver;
 import com.parship.roperty.KeyValues;
 import com.parship.roperty.MapBackedDomainResolver;
+import com.parship.roperty.Persistence;
 import com.parship.roperty.Roperty;
 import com.parship.roperty.RopertyImpl;
 import com.parship.roperty.RopertyWithResolver;
@@ -21,8 +22,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.stream.Stream;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
 import org.hamcrest.Matchers;
+import org.hsqldb.jdbc.JDBCDataSource;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -41,14 +42,32 @@ public class JpaIntegrationTest {
     private static Stream<Arguments> parameters() {
         return Stream.of(
             Arguments.of(new JpaPersistence(), "hsqldb"),
-            Arguments.of(new LazyJpaPersistence(), "hsqldb")
+            Arguments.of(new LazyJpaPersistence(), "hsqldb"),
+            Arguments.of(new JdbcPersistence(), "hsqldb")
         );
     }
 
-    public void initPersistence(JpaPersistence jpaPersistence, String persistenceUnitName) {
+    public void initPersistence(Persistence persistence, String persistenceUnitName) {
         MockitoAnnotations.initMocks(this);
-        EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName);
+        EntityManagerFactory entityManagerFactory = javax.persistence.Persistence.createEntityManagerFactory(persistenceUnitName);
+        if (persistence instanceof JdbcPersistence) {
+            initJdbcPersistence((JdbcPersistence) persistence, entityManagerFactory);
+        } else {
+            initJpaPersistence((JpaPersistence) persistence, entityManagerFactory);
+        }
+
+        roperty = new RopertyImpl(persistence);
+        resolver = new MapBackedDomainResolver()
+                .set("domain1", "domainValue1")
+                .set("domain2", "domainValue2");
+
+        when(resolverMock.getActiveChangeSets()).thenReturn(new ArrayList<>());
+        when(resolverMock.getDomainValue(anyString())).thenAnswer(invocationOnMock -> invocationOnMock.getArguments()[0]);
 
+        ropertyWithResolver = new RopertyWithResolver(roperty, resolverMock);
+    }
+
+    private static void initJpaPersistence(JpaPersistence jpaPersistence, EntityManagerFactory entityManagerFactory) {
         TransactionManager transactionManager = new TransactionManager();
         transactionManager.setEntityManagerFactory(entityManagerFactory);
 
@@ -66,25 +85,32 @@ public class JpaIntegrationTest {
         RopertyValueDAO ropertyValueDAO = new RopertyValueDAO();
         ropertyValueDAO.setQueryBuilderDelegate(valueQueryBuilderDelegate);
 
+        QueryBuilderDelegate<RopertyTombstone> tombstoneQueryBuilderDelegate = new QueryBuilderDelegate<>();
+        tombstoneQueryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+        tombstoneQueryBuilderDelegate.setQueryBuilder(new QueryBuilder<>());
+        tombstoneQueryBuilderDelegate.setResultClass(RopertyTombstone.class);
+        RopertyTombstoneDAO ropertyTombstoneDAO = new RopertyTombstoneDAO();
+        ropertyTombstoneDAO.setQueryBuilderDelegate(tombstoneQueryBuilderDelegate);
+
         jpaPersistence.setTransactionManager(transactionManager);
         jpaPersistence.setRopertyKeyDAO(ropertyKeyDAO);
         jpaPersistence.setRopertyValueDAO(ropertyValueDAO);
+        jpaPersistence.setRopertyTombstoneDAO(ropertyTombstoneDAO);
+    }
 
-        roperty = new RopertyImpl(jpaPersistence);
-        resolver = new MapBackedDomainResolver()
-                .set("domain1", "domainValue1")
-                .set("domain2", "domainValue2");
-
-        when(resolverMock.getActiveChangeSets()).thenReturn(new ArrayList<>());
-        when(resolverMock.getDomainValue(anyString())).thenAnswer(invocationOnMock -> invocationOnMock.getArguments()[0]);
-
-        ropertyWithResolver = new RopertyWithResolver(roperty, resolverMock);
+    private static void initJdbcPersistence(JdbcPersistence jdbcPersistence, EntityManagerFactory entityManagerFactory) {
+        // the entity manager factory created the schema, and the data source connects to the same database
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl((String) entityManagerFactory.getProperties().get("javax.persistence.jdbc.url"));
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        jdbcPersistence.setDataSource(dataSource);
     }
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void keyAndStringValueShouldBePersisted(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void keyAndStringValueShouldBePersisted(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         roperty.set("key_keyAndStringValueShouldBePersisted", "value_keyAndStringValueShouldBePersisted", "description_keyAndStringValueShouldBePersisted", "domainValue1", "domainValue2");
         roperty.reload();
@@ -95,8 +121,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void keyAndDateValueShouldBePersisted(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void keyAndDateValueShouldBePersisted(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         Date dateValue = new Date(123456789101112L);
         roperty.set("key_keyAndDateValueShouldBePersisted", dateValue, "description_keyAndDateValueShouldBePersisted", "domainValue1", "domainValue2");
@@ -106,8 +132,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void changeSetShouldBeRemoved(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void changeSetShouldBeRemoved(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         roperty.setWithChangeSet("key_changeSetShouldBeRemoved", "value_changeSetShouldBeRemoved", "description_changeSetShouldBeRemoved", "changeSet_changeSetShouldBeRemoved", "domainValue1", "domainValue2");
         roperty.reload();
@@ -119,8 +145,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void keyAndValueShouldBeRemovedWithChangeSet(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void keyAndValueShouldBeRemovedWithChangeSet(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         roperty.setWithChangeSet("key_keyAndValueShouldBeRemovedWithChangeSet", "value_keyAndValueShouldBeRemovedWithChangeSet", "description_keyAndValueShouldBeRemovedWithChangeSet", "changeSet_keyAndValueShouldBeRemovedWithChangeSet", "domainValue1", "domainValue2");
         roperty.reload();
@@ -132,8 +158,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void keyAndValueShouldBeRemoved(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void keyAndValueShouldBeRemoved(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         roperty.set("key_keyAndValueShouldBeRemoved", "value_keyAndValueShouldBeRemoved", "description_keyAndValueShouldBeRemoved", "domainValue1", "domainValue2");
         roperty.reload();
@@ -144,8 +170,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void removingKeyRemovesAllValues(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void removingKeyRemovesAllValues(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         roperty.set("key_removingKeyRemovesAllValues", "value_removingKeyRemovesAllValues", "description_removingKeyRemovesAllValues", "domainValue1", "domainValue2");
         roperty.reload();
@@ -156,16 +182,16 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void gettingAPropertyThatDoesNotExistGivesNull(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void gettingAPropertyThatDoesNotExistGivesNull(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         String value = ropertyWithResolver.get("key");
         assertThat(value, nullValue());
     }
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void gettingAPropertyThatDoesNotExistGivesDefaultValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void gettingAPropertyThatDoesNotExistGivesDefaultValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         String text = "default";
         String value = ropertyWithResolver.get("key", text);
         assertThat(value, is(text));
@@ -173,8 +199,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void settingNullAsValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void settingNullAsValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         ropertyWithResolver.set("key", "value", null);
         assertThat(ropertyWithResolver.get("key"), is("value"));
         ropertyWithResolver.set("key", null, null);
@@ -183,16 +209,16 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void settingAnEmptyString(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void settingAnEmptyString(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         ropertyWithResolver.set("key", "", null);
         assertThat(ropertyWithResolver.get("key"), is(""));
     }
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void definingAndGettingAStringValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void definingAndGettingAStringValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         String key = "key";
         String text = "some Value";
         ropertyWithResolver.set(key, text, null);
@@ -202,8 +228,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void gettingAValueWithoutAGivenDefaultGivesValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void gettingAValueWithoutAGivenDefaultGivesValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         String text = "value";
         ropertyWithResolver.set("key", text, null);
         String value = ropertyWithResolver.get("key");
@@ -212,8 +238,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void changingAStringValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void changingAStringValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         ropertyWithResolver.set("key", "first", null);
         ropertyWithResolver.set("key", "other", null);
         String value = ropertyWithResolver.get("key", "default");
@@ -222,16 +248,16 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void gettingAnIntValueThatDoesNotExistGivesDefault(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void gettingAnIntValueThatDoesNotExistGivesDefault(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         int value = ropertyWithResolver.get("key", 3);
         assertThat(value, is(3));
     }
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void settingAndGettingAnIntValueWithDefaultGivesStoredValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void settingAndGettingAnIntValueWithDefaultGivesStoredValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         ropertyWithResolver.set("key", 7, null);
         int value = ropertyWithResolver.get("key", 3);
         assertThat(value, is(7));
@@ -239,8 +265,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void getOrDefineSetsAValueWithTheGivenDefault(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void getOrDefineSetsAValueWithTheGivenDefault(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         String text = "text";
         String value = ropertyWithResolver.getOrDefine("key", text, "descr");
         assertThat(value, is(text));
@@ -250,8 +276,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void getOverriddenValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void getOverriddenValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1");
         ropertyWithResolver = new RopertyWithResolver(roperty, resolverMock);
         String defaultValue = "default value";
@@ -264,16 +290,16 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void whenAKeyForASubdomainIsSetTheRootKeyGetsANullValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void whenAKeyForASubdomainIsSetTheRootKeyGetsANullValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         ropertyWithResolver.set("key", "value", "descr", "subdomain");
         assertThat(ropertyWithResolver.get("key"), nullValue());
     }
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void theCorrectValueIsSelectedWhenAlternativeOverriddenValuesExist(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void theCorrectValueIsSelectedWhenAlternativeOverriddenValuesExist(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1");
         ropertyWithResolver = new RopertyWithResolver(roperty, resolverMock);
         String overriddenValue = "overridden value";
@@ -286,8 +312,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void theCorrectValueIsSelectedWhenAlternativeOverriddenValuesExistWithTwoDomains(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void theCorrectValueIsSelectedWhenAlternativeOverriddenValuesExistWithTwoDomains(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         DomainResolver mockResolver = mock(DomainResolver.class);
         when(mockResolver.getDomainValue("domain1")).thenReturn("domVal1");
@@ -304,8 +330,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void getOverriddenValueTwoDomainsOnlyFirstDomainIsOverridden(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void getOverriddenValueTwoDomainsOnlyFirstDomainIsOverridden(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         ropertyWithResolver = new RopertyWithResolver(roperty, resolverMock);
         String defaultValue = "default value";
@@ -318,8 +344,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void domainValuesAreRequestedFromAResolver(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void domainValuesAreRequestedFromAResolver(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         ((RopertyImpl) ropertyWithResolver.getRoperty()).addDomains("domain1", "domain2");
         DomainResolver mockResolver = mock(DomainResolver.class);
         ropertyWithResolver = new RopertyWithResolver(roperty, mockResolver);
@@ -333,8 +359,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void noDomainValuesAreRequestedWhenAKeyDoesNotExist(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void noDomainValuesAreRequestedWhenAKeyDoesNotExist(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         DomainResolver mockResolver = mock(DomainResolver.class);
         ropertyWithResolver = new RopertyWithResolver(roperty, mockResolver);
@@ -344,8 +370,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void wildcardIsResolvedWhenOtherDomainsMatch(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void wildcardIsResolvedWhenOtherDomainsMatch(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("domain1", "domain2");
         ropertyWithResolver = new RopertyWithResolver(roperty, resolverMock);
         String value = "overridden value";
@@ -355,23 +381,23 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void domainsThatAreInitializedArePresent(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void domainsThatAreInitializedArePresent(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         RopertyImpl roperty = new RopertyImpl("domain1", "domain2");
         assertThat(roperty.dump().toString(), is("Roperty{domains=[domain1, domain2]\n}"));
     }
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void ropertyWithResolverToString(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void ropertyWithResolverToString(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         assertThat(ropertyWithResolver.toString(), is("RopertyWithResolver{roperty=Roperty{domains=[]}}"));
     }
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void domainResolverToNullIsIgnored(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void domainResolverToNullIsIgnored(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         DomainResolver domainResolver = new MapBackedDomainResolver().set("dom", "domVal");
         roperty.addDomains("dom", "dom2", "dom3");
         roperty.get("key", domainResolver);
@@ -385,8 +411,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void removeDefaultValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void removeDefaultValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
 
         roperty.addDomains("dom1");
         roperty.set("key", "value", "desc");
@@ -401,8 +427,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void removeDomainSpecificValue(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void removeDomainSpecificValue(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.addDomains("dom1", "dom2");
         roperty.set("key", "value", "desc");
         roperty.set("key", "domValue1", "desc", "dom1");
@@ -416,8 +442,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void removeACompleteKey(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void removeACompleteKey(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.set("key", "value", "desc");
         roperty.set("key", "domValue1", "desc", "dom1");
         roperty.reload();
@@ -427,8 +453,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void removeKeyFromChangeSet(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void removeKeyFromChangeSet(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.set("key", "value", "descr");
         roperty.setWithChangeSet("key", "valueChangeSet", "descr", "changeSet");
         roperty.reload();
@@ -440,8 +466,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void removeAChangeSet(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void removeAChangeSet(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         roperty.set("key", "value", "descr");
         roperty.setWithChangeSet("key", "valueChangeSet", "descr", "changeSet");
         roperty.setWithChangeSet("otherKey", "otherValueChangeSet", "descr", "changeSet");
@@ -458,8 +484,8 @@ public class JpaIntegrationTest {
 
     @ParameterizedTest
     @MethodSource("parameters")
-    public void findsAKeyAccordingToSubstring(JpaPersistence jpaPersistence, String persistenceUnitName) {
-        initPersistence(jpaPersistence, persistenceUnitName);
+    public void findsAKeyAccordingToSubstring(Persistence persistence, String persistenceUnitName) {
+        initPersistence(persistence, persistenceUnitName);
         String key = "somemultiwordkey";
         roperty.set(key, "value", "descr");
         List<String> keys = roperty.findKeys("MULTI");
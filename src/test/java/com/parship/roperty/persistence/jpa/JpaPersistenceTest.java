@@ -1,31 +1,55 @@
 package com.parship.roperty.persistence.jpa;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyCollection;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
 import com.parship.roperty.DomainSpecificValue;
 import com.parship.roperty.DomainSpecificValueFactory;
 import com.parship.roperty.KeyValues;
 import com.parship.roperty.KeyValuesFactory;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -52,6 +76,9 @@ public class JpaPersistenceTest {
     @Mock
     private RopertyValueDAO ropertyValueDAO;
 
+    @Mock
+    private RopertyTombstoneDAO ropertyTombstoneDAO;
+
     @Mock
     private KeyValuesFactory keyValuesFactory;
 
@@ -73,12 +100,34 @@ public class JpaPersistenceTest {
     @Mock
     private DomainSpecificValue domainSpecificValue;
 
+    @TempDir
+    Path tempDir;
+
     @Test
     public void loadShouldReturnNullIfNoRopertyKeyFound() {
         KeyValues keyValues = jpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
         assertThat(keyValues, Matchers.nullValue());
     }
 
+    @Test
+    public void loadShouldReadInOneUnitOfWork() {
+        jpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        InOrder inOrder = inOrder(transactionManager, ropertyKeyDAO);
+        inOrder.verify(transactionManager).beginUnitOfWork();
+        inOrder.verify(ropertyKeyDAO).loadRopertyKey(KEY);
+        inOrder.verify(transactionManager).endUnitOfWork();
+    }
+
+    @Test
+    public void unitOfWorkShouldEndIfLoadFails() {
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+
+        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory));
+
+        verify(transactionManager).endUnitOfWork();
+    }
+
     @Test
     public void loadShouldFailNullIfNoRopertyValuesFound() {
         when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
@@ -138,24 +187,23 @@ public class JpaPersistenceTest {
     }
 
     @Test
-    public void failIfLoadAllAndNotKeyGiven() {
-        when(ropertyKeyDAO.loadAllRopertyKeys()).thenReturn(singletonList(ropertyKey));
-        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory));
+    public void failIfLoadAllAndValueHasNoKey() {
+        when(ropertyValueDAO.loadAllRopertyValues(0)).thenReturn(singletonList(ropertyValue));
+        assertThrows(NullPointerException.class, () -> jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory));
     }
 
     @Test
-    public void failIfNoValuesFound() {
-        when(ropertyKeyDAO.loadAllRopertyKeys()).thenReturn(singletonList(ropertyKey));
-        when(ropertyKey.getId()).thenReturn(KEY);
+    public void loadAllReturnsEmptyMapIfNoValuesFound() {
+        Map<String, KeyValues> result = jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
 
-        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory));
+        verify(ropertyValueDAO).loadAllRopertyValues(0);
+        assertThat(result.isEmpty(), Matchers.is(true));
     }
 
     @Test
     public void loadAll() {
-        when(ropertyKeyDAO.loadAllRopertyKeys()).thenReturn(singletonList(ropertyKey));
         when(ropertyKey.getId()).thenReturn(KEY);
-        when(ropertyValueDAO.loadRopertyValues(ropertyKey)).thenReturn(singletonList(ropertyValue));
+        when(ropertyValueDAO.loadAllRopertyValues(0)).thenReturn(singletonList(ropertyValue));
         when(keyValuesFactory.create(domainSpecificValueFactory)).thenReturn(keyValues);
         when(ropertyValue.getPattern()).thenReturn(PATTERN);
         when(ropertyValue.getKey()).thenReturn(ropertyKey);
@@ -165,22 +213,165 @@ public class JpaPersistenceTest {
 
         Map<String, KeyValues> result = jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
 
-        verify(ropertyKeyDAO).loadAllRopertyKeys();
-        verify(ropertyValueDAO).loadRopertyValues(ropertyKey);
+        verify(ropertyValueDAO).loadAllRopertyValues(0);
         verify(keyValuesFactory).create(domainSpecificValueFactory);
-        verify(ropertyKey, times(2)).getId();
+        verify(ropertyKey).getId();
         verify(ropertyKey).getDescription();
-        verify(ropertyValue).getPattern();
-        verify(ropertyValue).getKey();
-        verify(ropertyValue).getValue();
-        verify(ropertyValue).getChangeSet();
-        verify(ropertyValue).getValue();
         verify(keyValues).putWithChangeSet(CHANGE_SET, value, DOMAIN_KEY_PART_1, DOMAIN_KEY_PART_2);
         verify(keyValues).setDescription(DESCRIPTION);
+        verifyNoInteractions(ropertyKeyDAO);
         assertThat(result.get(KEY), Matchers.is(keyValues));
         assertThat(result.size(), Matchers.is(1));
     }
 
+    @Test
+    public void loadAllGroupsAdjacentValuesByKey() {
+        RopertyKey otherRopertyKey = mock(RopertyKey.class);
+        RopertyValue otherRopertyValue = mock(RopertyValue.class);
+        RopertyValue secondRopertyValue = mock(RopertyValue.class);
+        KeyValues otherKeyValues = mock(KeyValues.class);
+        when(ropertyKey.getId()).thenReturn(KEY);
+        when(otherRopertyKey.getId()).thenReturn("otherKey");
+        when(ropertyValue.getKey()).thenReturn(ropertyKey);
+        when(ropertyValue.getPattern()).thenReturn(PATTERN);
+        when(ropertyValue.getChangeSet()).thenReturn("");
+        when(secondRopertyValue.getKey()).thenReturn(ropertyKey);
+        when(secondRopertyValue.getPattern()).thenReturn("");
+        when(secondRopertyValue.getChangeSet()).thenReturn("");
+        when(otherRopertyValue.getKey()).thenReturn(otherRopertyKey);
+        when(otherRopertyValue.getPattern()).thenReturn("");
+        when(otherRopertyValue.getChangeSet()).thenReturn("");
+        when(ropertyValueDAO.loadAllRopertyValues(0)).thenReturn(asList(ropertyValue, secondRopertyValue, otherRopertyValue));
+        when(keyValuesFactory.create(domainSpecificValueFactory)).thenReturn(keyValues, otherKeyValues);
+
+        Map<String, KeyValues> result = jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+
+        verify(keyValuesFactory, times(2)).create(domainSpecificValueFactory);
+        verify(keyValues).put(null, DOMAIN_KEY_PART_1, DOMAIN_KEY_PART_2);
+        verify(keyValues).put(null);
+        verify(otherKeyValues).put(null);
+        assertThat(result.get(KEY), Matchers.is(keyValues));
+        assertThat(result.get("otherKey"), Matchers.is(otherKeyValues));
+        assertThat(result.size(), Matchers.is(2));
+    }
+
+    @Test
+    public void loadAllInChunksHandsKeysToConsumer() {
+        RopertyKey otherRopertyKey = mock(RopertyKey.class);
+        RopertyValue otherRopertyValue = mock(RopertyValue.class);
+        KeyValues otherKeyValues = mock(KeyValues.class);
+        when(ropertyKey.getId()).thenReturn(KEY);
+        when(otherRopertyKey.getId()).thenReturn("otherKey");
+        when(ropertyValue.getKey()).thenReturn(ropertyKey);
+        when(ropertyValue.getPattern()).thenReturn("");
+        when(ropertyValue.getChangeSet()).thenReturn("");
+        when(otherRopertyValue.getKey()).thenReturn(otherRopertyKey);
+        when(otherRopertyValue.getPattern()).thenReturn("");
+        when(otherRopertyValue.getChangeSet()).thenReturn("");
+        when(ropertyKeyDAO.loadRopertyKeyIds("", 1)).thenReturn(singletonList(KEY));
+        when(ropertyKeyDAO.loadRopertyKeyIds(KEY, 1)).thenReturn(singletonList("otherKey"));
+        when(ropertyKeyDAO.loadRopertyKeyIds("otherKey", 1)).thenReturn(emptyList());
+        when(ropertyValueDAO.loadRopertyValuesOfKeyRange("", KEY, 100)).thenReturn(singletonList(ropertyValue));
+        when(ropertyValueDAO.loadRopertyValuesOfKeyRange(KEY, "otherKey", 100)).thenReturn(singletonList(otherRopertyValue));
+        when(keyValuesFactory.create(domainSpecificValueFactory)).thenReturn(keyValues, otherKeyValues);
+        jpaPersistence.setLoadChunkSize(1);
+        jpaPersistence.setFetchSize(100);
+        Map<String, KeyValues> result = new LinkedHashMap<>();
+
+        jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory, result::put);
+
+        assertThat(result.keySet(), contains(KEY, "otherKey"));
+        assertThat(result.get(KEY), Matchers.is(keyValues));
+        assertThat(result.get("otherKey"), Matchers.is(otherKeyValues));
+        verify(transactionManager, times(3)).beginUnitOfWork();
+        verify(transactionManager, times(3)).endUnitOfWork();
+        verify(ropertyValueDAO, never()).loadAllRopertyValues(anyInt());
+    }
+
+    @Test
+    public void loadAllStopsAfterIncompleteChunk() {
+        when(ropertyKeyDAO.loadRopertyKeyIds("", 2)).thenReturn(singletonList(KEY));
+        jpaPersistence.setLoadChunkSize(2);
+
+        jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory, (key, keyValues) -> {
+        });
+
+        verify(ropertyKeyDAO).loadRopertyKeyIds("", 2);
+        verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("", KEY, 0);
+        verifyNoMoreInteractions(ropertyKeyDAO, ropertyValueDAO);
+    }
+
+    @Test
+    public void loadAllInParallelSplitsKeysIntoRanges() {
+        when(ropertyKeyDAO.loadRopertyKeyIds("", Integer.MAX_VALUE)).thenReturn(asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"));
+        jpaPersistence.setLoadParallelism(2);
+        jpaPersistence.setLoadExecutor(Runnable::run);
+
+        jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory, (key, keyValues) -> {
+        });
+
+        InOrder inOrder = inOrder(ropertyValueDAO);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("", "a", 0);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("a", "b", 0);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("b", "c", 0);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("c", "e", 0);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("e", "f", 0);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("f", "g", 0);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("g", "h", 0);
+        inOrder.verify(ropertyValueDAO).loadRopertyValuesOfKeyRange("h", "j", 0);
+        verifyNoMoreInteractions(ropertyValueDAO);
+    }
+
+    @Test
+    public void loadAllInParallelHandsRangesToConsumerInOrder() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(String.format("key%03d", i));
+        }
+        when(ropertyKeyDAO.loadRopertyKeyIds("", Integer.MAX_VALUE)).thenReturn(keys);
+        when(ropertyValueDAO.loadRopertyValuesOfKeyRange(anyString(), anyString(), anyInt())).thenAnswer(invocation -> {
+            String afterKey = invocation.getArgument(0);
+            String lastKey = invocation.getArgument(1);
+            List<RopertyValue> ropertyValues = new ArrayList<>();
+            for (String key : keys.subList(keys.indexOf(afterKey) + 1, keys.indexOf(lastKey) + 1)) {
+                RopertyKey rangeKey = new RopertyKey();
+                rangeKey.setId(key);
+                RopertyValue rangeValue = new RopertyValue();
+                rangeValue.setKey(rangeKey);
+                rangeValue.setPattern("");
+                rangeValue.setChangeSet("");
+                ropertyValues.add(rangeValue);
+            }
+            return ropertyValues;
+        });
+        when(keyValuesFactory.create(domainSpecificValueFactory)).thenAnswer(invocation -> mock(KeyValues.class));
+        jpaPersistence.setLoadParallelism(4);
+        List<String> loadedKeys = new ArrayList<>();
+
+        jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory, (key, keyValues) -> loadedKeys.add(key));
+
+        assertThat(loadedKeys, Matchers.is(keys));
+    }
+
+    @Test
+    public void loadAllInParallelFailsIfRangeFails() {
+        when(ropertyKeyDAO.loadRopertyKeyIds("", Integer.MAX_VALUE)).thenReturn(asList("a", "b"));
+        when(ropertyValueDAO.loadRopertyValuesOfKeyRange(anyString(), anyString(), anyInt())).thenThrow(new RopertyPersistenceException("failed"));
+        jpaPersistence.setLoadParallelism(2);
+
+        assertThrows(RopertyPersistenceException.class, () -> jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory));
+    }
+
+    @Test
+    public void failIfLoadParallelismIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.setLoadParallelism(0));
+    }
+
+    @Test
+    public void failIfLoadChunkSizeIsNegative() {
+        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.setLoadChunkSize(-1));
+    }
+
     @Test
     public void reloadWithEmptyMapReturnsEmptyMap() {
         Map<String, KeyValues> keyValuesMap = new HashMap<>();
@@ -235,6 +426,67 @@ public class JpaPersistenceTest {
         assertThat(result.size(), Matchers.is(1));
     }
 
+    @Test
+    public void reloadAfterLoadAllOnlyReloadsModifiedAndRemovedKeys() {
+        KeyValues unchangedKeyValues = mock(KeyValues.class);
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        keyValuesMap.put(KEY, mock(KeyValues.class));
+        keyValuesMap.put("unchangedKey", unchangedKeyValues);
+        keyValuesMap.put("removedKey", mock(KeyValues.class));
+        when(ropertyValueDAO.loadRopertyValuesModifiedSince(anyLong())).thenReturn(singletonList(ropertyValue));
+        when(ropertyTombstoneDAO.loadRemovedKeys(anyLong())).thenReturn(singletonList("removedKey"));
+        when(ropertyValue.getKey()).thenReturn(ropertyKey);
+        when(ropertyValue.getPattern()).thenReturn(PATTERN);
+        when(ropertyValue.getChangeSet()).thenReturn(CHANGE_SET);
+        when(ropertyKey.getId()).thenReturn(KEY);
+        when(keyValuesFactory.create(domainSpecificValueFactory)).thenReturn(keyValues);
+
+        jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+        Map<String, KeyValues> result = jpaPersistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(ropertyValueDAO).loadRopertyValuesModifiedSince(anyLong());
+        verify(ropertyTombstoneDAO).loadRemovedKeys(anyLong());
+        verifyNoInteractions(ropertyKeyDAO);
+        assertThat(result.get(KEY), Matchers.is(keyValues));
+        assertThat(result.get("unchangedKey"), Matchers.is(unchangedKeyValues));
+        assertThat(result.containsKey("removedKey"), Matchers.is(false));
+        assertThat(result.size(), Matchers.is(2));
+    }
+
+    @Test
+    public void reloadKeepsKeyThatWasRemovedAndCreatedAgain() {
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        keyValuesMap.put(KEY, mock(KeyValues.class));
+        when(ropertyValueDAO.loadRopertyValuesModifiedSince(anyLong())).thenReturn(singletonList(ropertyValue));
+        when(ropertyTombstoneDAO.loadRemovedKeys(anyLong())).thenReturn(singletonList(KEY));
+        when(ropertyValue.getKey()).thenReturn(ropertyKey);
+        when(ropertyValue.getPattern()).thenReturn(PATTERN);
+        when(ropertyValue.getChangeSet()).thenReturn(CHANGE_SET);
+        when(ropertyKey.getId()).thenReturn(KEY);
+        when(keyValuesFactory.create(domainSpecificValueFactory)).thenReturn(keyValues);
+
+        jpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+        Map<String, KeyValues> result = jpaPersistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+
+        assertThat(result.get(KEY), Matchers.is(keyValues));
+        assertThat(result.size(), Matchers.is(1));
+    }
+
+    @Test
+    public void reloadWithoutTombstoneDAOReloadsEveryKey() {
+        JpaPersistence persistence = new JpaPersistence();
+        persistence.setRopertyKeyDAO(ropertyKeyDAO);
+        persistence.setRopertyValueDAO(ropertyValueDAO);
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        keyValuesMap.put(KEY, keyValues);
+
+        persistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
+        Map<String, KeyValues> result = persistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(ropertyKeyDAO).loadRopertyKey(KEY);
+        assertThat(result.isEmpty(), Matchers.is(true));
+    }
+
     @Test
     public void failIfKeyWithoutValuesShouldBeStored() {
         assertThrows(RopertyPersistenceException.class, () -> jpaPersistence.store(KEY, keyValues, CHANGE_SET));
@@ -251,6 +503,8 @@ public class JpaPersistenceTest {
     public void valueMustBeSerializable() {
         when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
         when(domainSpecificValue.getValue()).thenReturn(new Object());
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(domainSpecificValue.changeSetIs(CHANGE_SET)).thenReturn(true);
 
         assertThrows(RopertyPersistenceException.class, () -> jpaPersistence.store(KEY, keyValues, CHANGE_SET));
     }
@@ -265,18 +519,144 @@ public class JpaPersistenceTest {
         jpaPersistence.store(KEY, keyValues, CHANGE_SET);
 
         verify(keyValues).getDescription();
-        verify(keyValues).getDomainSpecificValues();
+        // once to validate and once to store
+        verify(keyValues, times(2)).getDomainSpecificValues();
         verify(ropertyKeyDAO).loadRopertyKey(KEY);
         verify(transactionManager).begin();
         verify(transactionManager).persist(any(RopertyKey.class));
         verify(transactionManager).persist(any(RopertyValue.class));
         verify(transactionManager).end();
         verify(domainSpecificValue).getValue();
-        verify(domainSpecificValue).getPatternStr();
+        verify(domainSpecificValue, times(2)).getPatternStr();
+
+        verifyNoMoreInteractions(transactionManager);
+    }
+
+    @Test
+    public void storeShouldRollBackIfWriteFails() {
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenThrow(new IllegalStateException());
+
+        assertThrows(IllegalStateException.class, () -> jpaPersistence.store(KEY, keyValues, CHANGE_SET));
+
+        verify(transactionManager).begin();
+        verify(transactionManager).rollback();
+        verifyNoMoreInteractions(transactionManager);
+    }
+
+    @Test
+    public void storeShouldThrowWriteFailureIfRollbackFails() {
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        IllegalStateException writeFailure = new IllegalStateException("write");
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenThrow(writeFailure);
+        IllegalStateException rollbackFailure = new IllegalStateException("rollback");
+        doThrow(rollbackFailure).when(transactionManager).rollback();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> jpaPersistence.store(KEY, keyValues, CHANGE_SET));
+
+        assertThat(exception, Matchers.is(Matchers.sameInstance(writeFailure)));
+        assertThat(exception.getSuppressed(), Matchers.arrayContaining(rollbackFailure));
+    }
+
+    @Test
+    public void storeShouldNotWriteKeyWithoutValues() {
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>());
+
+        assertThrows(RopertyPersistenceException.class, () -> jpaPersistence.store(KEY, keyValues, CHANGE_SET));
+
+        verifyNoInteractions(transactionManager, ropertyKeyDAO);
+    }
+
+    @Test
+    public void storeShouldTouchExistingKey() {
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getValue()).thenReturn(value);
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(domainSpecificValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+
+        jpaPersistence.store(KEY, keyValues, CHANGE_SET);
+
+        verify(ropertyKey).setModified(anyLong());
+        verify(transactionManager).begin();
+        verify(transactionManager).merge(ropertyKey);
+        verify(transactionManager).persist(any(RopertyValue.class));
+        verify(transactionManager).end();
 
         verifyNoMoreInteractions(transactionManager);
     }
 
+    @Test
+    public void storeShouldNotLoadValuesOfNewKey() {
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getValue()).thenReturn(value);
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(domainSpecificValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+
+        jpaPersistence.store(KEY, keyValues, CHANGE_SET);
+
+        verifyNoInteractions(ropertyValueDAO);
+    }
+
+    @Test
+    public void storeShouldLoadExistingValuesOfKeyOnceAndOnlyWriteChanges() {
+        DomainSpecificValue unchangedValue = mock(DomainSpecificValue.class);
+        DomainSpecificValue changedValue = mock(DomainSpecificValue.class);
+        DomainSpecificValue newValue = mock(DomainSpecificValue.class);
+        RopertyValue unchangedRopertyValue = new RopertyValue();
+        unchangedRopertyValue.setPattern("unchanged");
+        unchangedRopertyValue.setChangeSet(CHANGE_SET);
+        unchangedRopertyValue.setValue("value");
+        RopertyValue changedRopertyValue = new RopertyValue();
+        changedRopertyValue.setPattern("changed");
+        changedRopertyValue.setChangeSet(CHANGE_SET);
+        changedRopertyValue.setValue("oldValue");
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+        when(ropertyValueDAO.loadRopertyValues(ropertyKey, CHANGE_SET)).thenReturn(asList(unchangedRopertyValue, changedRopertyValue));
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(asList(unchangedValue, changedValue, newValue)));
+        when(unchangedValue.getValue()).thenReturn("value");
+        when(unchangedValue.getPatternStr()).thenReturn("unchanged");
+        when(unchangedValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+        when(changedValue.getValue()).thenReturn("newValue");
+        when(changedValue.getPatternStr()).thenReturn("changed");
+        when(changedValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+        when(newValue.getValue()).thenReturn("value");
+        when(newValue.getPatternStr()).thenReturn("new");
+        when(newValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+
+        jpaPersistence.store(KEY, keyValues, CHANGE_SET);
+
+        verify(ropertyValueDAO).loadRopertyValues(ropertyKey, CHANGE_SET);
+        verify(transactionManager).begin();
+        verify(transactionManager).merge(ropertyKey);
+        verify(transactionManager).merge(changedRopertyValue);
+        verify(transactionManager).persist(any(RopertyValue.class));
+        verify(transactionManager).end();
+        verifyNoMoreInteractions(transactionManager, ropertyValueDAO);
+        assertThat(changedRopertyValue.getValue(), Matchers.is("newValue"));
+    }
+
+    @Test
+    public void storeWritesValueStoredWithoutHashWithItsHash() {
+        DomainSpecificValue domainSpecificValue = mock(DomainSpecificValue.class);
+        RopertyValue ropertyValueWithoutHash = new RopertyValue();
+        ropertyValueWithoutHash.setPattern("pattern");
+        ropertyValueWithoutHash.setChangeSet(CHANGE_SET);
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+        when(ropertyValueDAO.loadRopertyValues(ropertyKey, CHANGE_SET)).thenReturn(singletonList(ropertyValueWithoutHash));
+        when(keyValues.getDomainSpecificValues()).thenReturn(singleton(domainSpecificValue));
+        when(domainSpecificValue.getValue()).thenReturn("value");
+        when(domainSpecificValue.getPatternStr()).thenReturn("pattern");
+        when(domainSpecificValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+
+        jpaPersistence.store(KEY, keyValues, CHANGE_SET);
+
+        verify(transactionManager).merge(ropertyValueWithoutHash);
+        assertThat(ropertyValueWithoutHash.getValueHash(), Matchers.is(RopertyValue.hash(RopertyValue.encode("value"))));
+    }
+
     @Test
     public void failIfNullDomainSpecificValues() {
         when(keyValues.getDomainSpecificValues()).thenReturn(null);
@@ -293,18 +673,110 @@ public class JpaPersistenceTest {
         jpaPersistence.store(KEY, keyValues, null);
 
         verify(keyValues).getDescription();
-        verify(keyValues).getDomainSpecificValues();
+        // once to validate and once to store
+        verify(keyValues, times(2)).getDomainSpecificValues();
         verify(ropertyKeyDAO).loadRopertyKey(KEY);
         verify(transactionManager).begin();
         verify(transactionManager).persist(any(RopertyKey.class));
         verify(transactionManager).persist(any(RopertyValue.class));
         verify(transactionManager).end();
         verify(domainSpecificValue).getValue();
-        verify(domainSpecificValue).getPatternStr();
+        verify(domainSpecificValue, times(2)).getPatternStr();
+
+        verifyNoMoreInteractions(transactionManager);
+    }
+
+    @Test
+    public void storeAllShouldWriteChunksInOwnTransactions() {
+        jpaPersistence.setStoreChunkSize(2);
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getValue()).thenReturn(value);
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(domainSpecificValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+        Map<String, KeyValues> keyValuesMap = new LinkedHashMap<>();
+        keyValuesMap.put("first", keyValues);
+        keyValuesMap.put("second", keyValues);
+        keyValuesMap.put("third", keyValues);
+
+        jpaPersistence.storeAll(keyValuesMap, CHANGE_SET);
+
+        verify(ropertyKeyDAO).loadRopertyKeys(asList("first", "second"));
+        verify(ropertyKeyDAO).loadRopertyKeys(singletonList("third"));
+        verify(ropertyKeyDAO, never()).loadRopertyKey(anyString());
+        verify(transactionManager, times(2)).begin();
+        verify(transactionManager, times(3)).persist(any(RopertyKey.class));
+        verify(transactionManager, times(3)).persist(any(RopertyValue.class));
+        verify(transactionManager, times(2)).end();
+        verifyNoMoreInteractions(transactionManager);
+    }
+
+    @Test
+    public void storeAllShouldOnlyWriteChangesOfExistingKeys() {
+        DomainSpecificValue changedValue = mock(DomainSpecificValue.class);
+        RopertyValue unchangedRopertyValue = new RopertyValue();
+        unchangedRopertyValue.setKey(ropertyKey);
+        unchangedRopertyValue.setPattern(PATTERN);
+        unchangedRopertyValue.setChangeSet(CHANGE_SET);
+        unchangedRopertyValue.setValue("value");
+        RopertyValue changedRopertyValue = new RopertyValue();
+        changedRopertyValue.setKey(ropertyKey);
+        changedRopertyValue.setPattern("changed");
+        changedRopertyValue.setChangeSet(CHANGE_SET);
+        changedRopertyValue.setValue("oldValue");
+        when(ropertyKey.getId()).thenReturn(KEY);
+        when(ropertyKeyDAO.loadRopertyKeys(singletonList(KEY))).thenReturn(singletonList(ropertyKey));
+        when(ropertyValueDAO.loadRopertyValues(anyCollection(), eq(CHANGE_SET))).thenReturn(asList(unchangedRopertyValue, changedRopertyValue));
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(asList(domainSpecificValue, changedValue)));
+        when(domainSpecificValue.getValue()).thenReturn("value");
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(domainSpecificValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+        when(changedValue.getValue()).thenReturn("newValue");
+        when(changedValue.getPatternStr()).thenReturn("changed");
+        when(changedValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+
+        jpaPersistence.storeAll(singletonMap(KEY, keyValues), CHANGE_SET);
+
+        verify(transactionManager).begin();
+        verify(transactionManager).merge(ropertyKey);
+        verify(transactionManager).merge(changedRopertyValue);
+        verify(transactionManager).end();
+        verifyNoMoreInteractions(transactionManager);
+        assertThat(changedRopertyValue.getValue(), Matchers.is("newValue"));
+    }
+
+    @Test
+    public void storeAllShouldValidateAllKeyValuesBeforeWriting() {
+        KeyValues emptyKeyValues = mock(KeyValues.class);
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(emptyKeyValues.getDomainSpecificValues()).thenReturn(emptySet());
+        Map<String, KeyValues> keyValuesMap = new LinkedHashMap<>();
+        keyValuesMap.put(KEY, keyValues);
+        keyValuesMap.put("empty", emptyKeyValues);
+
+        assertThrows(RopertyPersistenceException.class, () -> jpaPersistence.storeAll(keyValuesMap, CHANGE_SET));
+
+        verifyNoInteractions(transactionManager, ropertyKeyDAO, ropertyValueDAO);
+    }
 
+    @Test
+    public void storeAllShouldRollBackChunkIfWriteFails() {
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(ropertyKeyDAO.loadRopertyKeys(singletonList(KEY))).thenThrow(new IllegalStateException());
+
+        assertThrows(IllegalStateException.class, () -> jpaPersistence.storeAll(singletonMap(KEY, keyValues), CHANGE_SET));
+
+        verify(transactionManager).begin();
+        verify(transactionManager).rollback();
         verifyNoMoreInteractions(transactionManager);
     }
 
+    @Test
+    public void failIfStoreChunkSizeIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.setStoreChunkSize(0));
+    }
+
     @Test
     public void removeNonExistingKeyShouldDoNothing() {
         jpaPersistence.remove(KEY, keyValues, CHANGE_SET);
@@ -344,7 +816,9 @@ public class JpaPersistenceTest {
     @Test
     public void removingKeyWithOnlyOneValueShouldRemoveKeyAsWell() {
         when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+        when(ropertyKey.getId()).thenReturn(KEY);
         when(ropertyValueDAO.loadRopertyValues(ropertyKey)).thenReturn(singletonList(ropertyValue));
+        when(ropertyValue.getId()).thenReturn(1L);
         when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
         when(ropertyValue.equals(domainSpecificValue)).thenReturn(true);
 
@@ -354,9 +828,10 @@ public class JpaPersistenceTest {
         verify(ropertyValueDAO).loadRopertyValues(ropertyKey);
         verify(keyValues).getDomainSpecificValues();
         verify(ropertyValue).equals(domainSpecificValue);
+        verify(ropertyValueDAO).deleteRopertyValues(ropertyKey, singleton(1L));
         verify(transactionManager).begin();
-        verify(transactionManager).remove(ropertyValue);
         verify(transactionManager).remove(ropertyKey);
+        verify(transactionManager).merge(any(RopertyTombstone.class));
         verify(transactionManager).end();
 
         verifyNoMoreInteractions(transactionManager);
@@ -367,6 +842,7 @@ public class JpaPersistenceTest {
         when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
         RopertyValue ropertyValue2 = mock(RopertyValue.class);
         when(ropertyValueDAO.loadRopertyValues(ropertyKey)).thenReturn(asList(ropertyValue, ropertyValue2));
+        when(ropertyValue.getId()).thenReturn(1L);
         DomainSpecificValue domainSpecificValue2 = mock(DomainSpecificValue.class);
         final Set<DomainSpecificValue> value = new TreeSet<>(asList(domainSpecificValue, domainSpecificValue2));
         when(keyValues.getDomainSpecificValues()).thenReturn(value);
@@ -380,13 +856,62 @@ public class JpaPersistenceTest {
         verify(ropertyValue).equals(domainSpecificValue);
         verify(ropertyValue2).equals(domainSpecificValue);
         verify(ropertyValue2).equals(domainSpecificValue2);
+        verify(ropertyValueDAO).deleteRopertyValues(ropertyKey, singleton(1L));
+        verify(ropertyKey).setModified(anyLong());
         verify(transactionManager).begin();
-        verify(transactionManager).remove(ropertyValue);
+        verify(transactionManager).merge(ropertyKey);
         verify(transactionManager).end();
 
         verifyNoMoreInteractions(transactionManager);
     }
 
+    @Test
+    public void removingValuesOnlyComparesValuesWithSamePattern() {
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+        RopertyValue otherRopertyValue = mock(RopertyValue.class);
+        when(ropertyValue.getPattern()).thenReturn(PATTERN);
+        when(ropertyValue.getId()).thenReturn(1L);
+        when(otherRopertyValue.getPattern()).thenReturn(DOMAIN_KEY_PART_1);
+        when(ropertyValueDAO.loadRopertyValues(ropertyKey)).thenReturn(asList(ropertyValue, otherRopertyValue));
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(ropertyValue.equals(domainSpecificValue)).thenReturn(true);
+
+        jpaPersistence.remove(KEY, keyValues, CHANGE_SET);
+
+        verify(otherRopertyValue, never()).equals(domainSpecificValue);
+        verify(ropertyValueDAO).deleteRopertyValues(ropertyKey, singleton(1L));
+        verify(transactionManager).merge(ropertyKey);
+        verify(transactionManager, never()).remove(any());
+    }
+
+    @Test
+    public void removingKeyDeletesAllValuesWithOneStatement() {
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+        when(ropertyKey.getId()).thenReturn(KEY);
+        when(ropertyValueDAO.deleteRopertyValues(ropertyKey)).thenReturn(3);
+
+        jpaPersistence.remove(KEY, (KeyValues) null, CHANGE_SET);
+
+        verify(ropertyValueDAO).deleteRopertyValues(ropertyKey);
+        verify(ropertyValueDAO, never()).loadRopertyValues(ropertyKey);
+        verify(transactionManager).begin();
+        verify(transactionManager).remove(ropertyKey);
+        verify(transactionManager).merge(any(RopertyTombstone.class));
+        verify(transactionManager).end();
+
+        verifyNoMoreInteractions(transactionManager);
+    }
+
+    @Test
+    public void removingKeyWithoutValuesToDeleteShouldNotHappen() {
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+
+        assertThrows(RopertyPersistenceException.class, () -> jpaPersistence.remove(KEY, (KeyValues) null, CHANGE_SET));
+
+        verify(transactionManager, never()).remove(ropertyKey);
+    }
+
     @Test
     public void shouldDoNothingIfKeyNotFoundOnRemoval() {
         jpaPersistence.remove(KEY, domainSpecificValue, CHANGE_SET);
@@ -422,7 +947,8 @@ public class JpaPersistenceTest {
         jpaPersistence.remove(KEY, domainSpecificValue, CHANGE_SET);
 
         verify(ropertyKeyDAO).loadRopertyKey(KEY);
-        verify(ropertyValueDAO).loadRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
+        verify(ropertyValueDAO).deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
+        verify(ropertyKeyDAO, never()).deleteRopertyKeyWithoutValues(KEY);
         verify(transactionManager).begin();
         verify(transactionManager).end();
         verify(domainSpecificValue).getPatternStr();
@@ -436,15 +962,17 @@ public class JpaPersistenceTest {
         when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
         when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
         when(domainSpecificValue.getValue()).thenReturn(value);
-        when(ropertyValueDAO.loadRopertyValue(ropertyKey, PATTERN, CHANGE_SET)).thenReturn(ropertyValue);
-        when(ropertyValueDAO.getNumberOfValues(ropertyKey)).thenReturn(2L);
+        when(ropertyValueDAO.deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET)).thenReturn(true);
 
         jpaPersistence.remove(KEY, domainSpecificValue, CHANGE_SET);
 
         verify(ropertyKeyDAO).loadRopertyKey(KEY);
-        verify(ropertyValueDAO).loadRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
+        verify(ropertyValueDAO).deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
+        verify(ropertyKeyDAO).deleteRopertyKeyWithoutValues(KEY);
+        verify(ropertyValueDAO, never()).getNumberOfValues(ropertyKey);
+        verify(ropertyKey).setModified(anyLong());
         verify(transactionManager).begin();
-        verify(transactionManager).remove(ropertyValue);
+        verify(transactionManager).merge(ropertyKey);
         verify(transactionManager).end();
         verify(domainSpecificValue).getPatternStr();
         verify(domainSpecificValue).getValue();
@@ -457,16 +985,17 @@ public class JpaPersistenceTest {
         when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
         when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
         when(domainSpecificValue.getValue()).thenReturn(value);
-        when(ropertyValueDAO.loadRopertyValue(ropertyKey, PATTERN, CHANGE_SET)).thenReturn(ropertyValue);
-        when(ropertyValueDAO.getNumberOfValues(ropertyKey)).thenReturn(1L);
+        when(ropertyValueDAO.deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET)).thenReturn(true);
+        when(ropertyKeyDAO.deleteRopertyKeyWithoutValues(KEY)).thenReturn(true);
 
         jpaPersistence.remove(KEY, domainSpecificValue, CHANGE_SET);
 
         verify(ropertyKeyDAO).loadRopertyKey(KEY);
-        verify(ropertyValueDAO).loadRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
+        verify(ropertyValueDAO).deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
+        verify(ropertyKeyDAO).deleteRopertyKeyWithoutValues(KEY);
+        verify(ropertyKey, never()).setModified(anyLong());
         verify(transactionManager).begin();
-        verify(transactionManager).remove(ropertyValue);
-        verify(transactionManager).remove(ropertyKey);
+        verify(transactionManager).merge(any(RopertyTombstone.class));
         verify(transactionManager).end();
         verify(domainSpecificValue).getPatternStr();
         verify(domainSpecificValue).getValue();
@@ -476,10 +1005,249 @@ public class JpaPersistenceTest {
 
     @Test
     public void returnsAllKeys() {
-        when(ropertyKey.getId()).thenReturn(KEY);
-        when(ropertyKeyDAO.loadAllRopertyKeys()).thenReturn(singletonList(ropertyKey));
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenReturn(singletonList(KEY));
         List<String> allKeys = jpaPersistence.getAllKeys();
         assertThat(allKeys, contains(KEY));
     }
 
+    @Test
+    public void findKeysRanksAndLimitsKeysOfDatabase() {
+        when(ropertyKeyDAO.findKeys(KEY)).thenReturn(asList("other.key", "key.b", KEY));
+
+        List<String> keys = jpaPersistence.findKeys(KEY, 2);
+
+        assertThat(keys, contains(KEY, "key.b"));
+    }
+
+    @Test
+    public void findKeysFromSearchIndexReadsKeysOnlyOnce() {
+        jpaPersistence.setKeySearchIndexEnabled(true);
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenReturn(singletonList("some.key"));
+
+        assertThat(jpaPersistence.findKeys("KEY"), contains("some.key"));
+        assertThat(jpaPersistence.findKeys("other"), Matchers.empty());
+
+        verify(ropertyKeyDAO).loadAllRopertyKeyIds();
+        verify(ropertyKeyDAO, never()).findKeys(anyString());
+    }
+
+    @Test
+    public void searchIndexFollowsStoresAndRemovals() {
+        jpaPersistence.setKeySearchIndexEnabled(true);
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenReturn(emptyList());
+        assertThat(jpaPersistence.findKeys(KEY), Matchers.empty());
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getValue()).thenReturn(value);
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(domainSpecificValue.changeSetIs(CHANGE_SET)).thenReturn(true);
+
+        jpaPersistence.store(KEY, keyValues, CHANGE_SET);
+
+        assertThat(jpaPersistence.findKeys(KEY), contains(KEY));
+
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenReturn(ropertyKey);
+        when(ropertyValueDAO.deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET)).thenReturn(true);
+        when(ropertyKeyDAO.deleteRopertyKeyWithoutValues(KEY)).thenReturn(true);
+
+        jpaPersistence.remove(KEY, domainSpecificValue, CHANGE_SET);
+
+        assertThat(jpaPersistence.findKeys(KEY), Matchers.empty());
+    }
+
+    @Test
+    public void searchIndexPicksUpKeysOfOtherNodes() {
+        jpaPersistence.setKeySearchIndexEnabled(true);
+        jpaPersistence.setKeySearchIndexRefreshInterval(0L);
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenReturn(singletonList(KEY));
+        assertThat(jpaPersistence.findKeys(KEY), contains(KEY));
+        when(ropertyKeyDAO.loadRopertyKeyIdsModifiedSince(anyLong())).thenReturn(singletonList("new.key"));
+        when(ropertyTombstoneDAO.loadRemovedKeys(anyLong())).thenReturn(singletonList(KEY));
+
+        List<String> keys = jpaPersistence.findKeys(KEY);
+
+        assertThat(keys, contains("new.key"));
+        verify(ropertyKeyDAO).loadAllRopertyKeyIds();
+    }
+
+    @Test
+    public void getKeysReturnsPageAfterGivenKey() {
+        when(ropertyKeyDAO.loadRopertyKeyIds("", 2)).thenReturn(asList("a", "b"));
+        when(ropertyKeyDAO.loadRopertyKeyIds("b", 2)).thenReturn(singletonList("c"));
+
+        assertThat(jpaPersistence.getKeys(null, 2), contains("a", "b"));
+        assertThat(jpaPersistence.getKeys("b", 2), contains("c"));
+    }
+
+    @Test
+    public void iterateKeysFetchesPagesUntilShortPage() {
+        when(ropertyKeyDAO.loadRopertyKeyIds("", 2)).thenReturn(asList("a", "b"));
+        when(ropertyKeyDAO.loadRopertyKeyIds("b", 2)).thenReturn(singletonList("c"));
+
+        List<String> keys = new ArrayList<>();
+        jpaPersistence.iterateKeys(2).forEachRemaining(keys::add);
+
+        assertThat(keys, contains("a", "b", "c"));
+        verify(ropertyKeyDAO, times(2)).loadRopertyKeyIds(anyString(), anyInt());
+    }
+
+    @Test
+    public void findKeysReturnsPageOfDatabaseAfterGivenKey() {
+        when(ropertyKeyDAO.findKeys(KEY, "", 10)).thenReturn(asList(KEY, "key.b"));
+
+        assertThat(jpaPersistence.findKeys(KEY, null, 10), contains(KEY, "key.b"));
+    }
+
+    @Test
+    public void iterateFoundKeysFromSearchIndex() {
+        jpaPersistence.setKeySearchIndexEnabled(true);
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenReturn(asList("some.key", "any.key"));
+
+        List<String> keys = new ArrayList<>();
+        jpaPersistence.iterateKeys("KEY", 1).forEachRemaining(keys::add);
+
+        assertThat(keys, contains("any.key", "some.key"));
+        verify(ropertyKeyDAO, never()).findKeys(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    public void loadAllWritesSnapshotAndStartsFromItWithChangesSince() {
+        Path snapshotFile = tempDir.resolve("roperty.snapshot");
+        jpaPersistence.setSnapshotFile(snapshotFile);
+        KeyValuesFactory defaultKeyValuesFactory = new DefaultKeyValuesFactory();
+        DomainSpecificValueFactory defaultDomainSpecificValueFactory = new DefaultDomainSpecificValueFactory();
+        when(ropertyValueDAO.loadAllRopertyValues(0)).thenReturn(asList(
+                storedValue("a", "", "", "first"), storedValue("a", "DE", CHANGE_SET, "german"), storedValue("b", "", "", "second"), storedValue("c", "", "", "third")));
+        jpaPersistence.loadAll(defaultKeyValuesFactory, defaultDomainSpecificValueFactory);
+        when(ropertyValueDAO.loadRopertyValuesModifiedSince(anyLong())).thenReturn(asList(storedValue("b", "", "", "changed"), storedValue("d", "", "", "new")));
+        when(ropertyTombstoneDAO.loadRemovedKeys(anyLong())).thenReturn(singletonList("c"));
+
+        List<String> keys = new ArrayList<>();
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        jpaPersistence.loadAll(defaultKeyValuesFactory, defaultDomainSpecificValueFactory, (key, loadedKeyValues) -> {
+            keys.add(key);
+            keyValuesMap.put(key, loadedKeyValues);
+        });
+
+        assertThat(keys, contains("a", "b", "d"));
+        assertThat(keyValuesMap.get("a").getDomainSpecificValues().size(), Matchers.is(2));
+        assertThat(keyValuesMap.get("a").getDescription(), Matchers.is(DESCRIPTION));
+        assertThat(keyValuesMap.get("b").getDomainSpecificValues().iterator().next().getValue(), Matchers.is("changed"));
+        verify(ropertyValueDAO).loadAllRopertyValues(0);
+    }
+
+    @Test
+    public void loadAllReadsDatabaseIfSnapshotIsTooOld() {
+        jpaPersistence.setSnapshotFile(tempDir.resolve("roperty.snapshot"));
+        jpaPersistence.setSnapshotMaxAge(0);
+        when(ropertyValueDAO.loadAllRopertyValues(0)).thenReturn(singletonList(storedValue("a", "", "", "first")));
+
+        jpaPersistence.loadAll(new DefaultKeyValuesFactory(), new DefaultDomainSpecificValueFactory());
+        jpaPersistence.loadAll(new DefaultKeyValuesFactory(), new DefaultDomainSpecificValueFactory());
+
+        verify(ropertyValueDAO, times(2)).loadAllRopertyValues(0);
+        verify(ropertyValueDAO, never()).loadRopertyValuesModifiedSince(anyLong());
+    }
+
+    @Test
+    public void failIfSnapshotMaxAgeIsNegative() {
+        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.setSnapshotMaxAge(-1));
+    }
+
+    @Test
+    public void recordsOperationWithinOtherOperationOnce() {
+        MetricsRecorder metricsRecorder = mock(MetricsRecorder.class);
+        jpaPersistence.setMetricsRecorder(metricsRecorder);
+        Map<String, KeyValues> keyValuesMap = new HashMap<>();
+        keyValuesMap.put(KEY, keyValues);
+
+        jpaPersistence.reload(keyValuesMap, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(metricsRecorder).record(eq(PersistenceOperation.RELOAD), anyLong(), any(OperationStats.class));
+        verifyNoMoreInteractions(metricsRecorder);
+        assertThat(OperationStats.current(), Matchers.nullValue());
+    }
+
+    @Test
+    public void recordsFailedOperation() {
+        MetricsRecorder metricsRecorder = mock(MetricsRecorder.class);
+        jpaPersistence.setMetricsRecorder(metricsRecorder);
+        when(keyValues.getDomainSpecificValues()).thenReturn(new HashSet<>(singletonList(domainSpecificValue)));
+        when(domainSpecificValue.getPatternStr()).thenReturn(PATTERN);
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenThrow(new RopertyPersistenceException("failed"));
+        ArgumentCaptor<OperationStats> statsCaptor = ArgumentCaptor.forClass(OperationStats.class);
+
+        assertThrows(RopertyPersistenceException.class, () -> jpaPersistence.store(KEY, keyValues, null));
+
+        verify(metricsRecorder).record(eq(PersistenceOperation.STORE), anyLong(), statsCaptor.capture());
+        assertThat(statsCaptor.getValue().isFailed(), Matchers.is(true));
+    }
+
+    @Test
+    public void loadAsyncRunsOnAsyncExecutor() {
+        List<Runnable> tasks = new ArrayList<>();
+        jpaPersistence.setAsyncExecutor(tasks::add);
+
+        CompletableFuture<KeyValues> result = jpaPersistence.loadAsync(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        assertThat(result.isDone(), Matchers.is(false));
+        verifyNoInteractions(ropertyKeyDAO);
+        tasks.forEach(Runnable::run);
+        assertThat(result.join(), Matchers.nullValue());
+        verify(ropertyKeyDAO).loadRopertyKey(KEY);
+    }
+
+    @Test
+    public void storeAsyncCompletesExceptionallyIfStoreFails() {
+        jpaPersistence.setAsyncExecutor(Runnable::run);
+
+        CompletableFuture<Void> result = jpaPersistence.storeAsync(" ", keyValues, null);
+
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertThat(exception.getCause(), Matchers.instanceOf(IllegalArgumentException.class));
+    }
+
+    @Test
+    public void defaultAsyncExecutorRunsAtMostAsyncParallelismCalls() {
+        jpaPersistence.setAsyncParallelism(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(ropertyKeyDAO.loadRopertyKey(KEY)).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20L);
+            running.decrementAndGet();
+            return null;
+        });
+
+        List<CompletableFuture<KeyValues>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(jpaPersistence.loadAsync(KEY, keyValuesFactory, domainSpecificValueFactory));
+        }
+        results.forEach(CompletableFuture::join);
+
+        verify(ropertyKeyDAO, times(8)).loadRopertyKey(KEY);
+        assertThat(maxRunning.get(), Matchers.lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void failIfAsyncParallelismIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> jpaPersistence.setAsyncParallelism(0));
+    }
+
+    @Test
+    public void failIfAsyncExecutorIsNull() {
+        assertThrows(NullPointerException.class, () -> jpaPersistence.setAsyncExecutor(null));
+    }
+
+    private static RopertyValue storedValue(String key, String pattern, String changeSet, String value) {
+        RopertyKey storedKey = new RopertyKey();
+        storedKey.setId(key);
+        storedKey.setDescription(DESCRIPTION);
+        RopertyValue storedValue = new RopertyValue();
+        storedValue.setKey(storedKey);
+        storedValue.setPattern(pattern);
+        storedValue.setChangeSet(changeSet);
+        storedValue.setValue(value);
+        return storedValue;
+    }
+
 }
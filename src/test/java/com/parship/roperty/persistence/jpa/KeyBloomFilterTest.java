@@ -0,0 +1,70 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class KeyBloomFilterTest {
+
+    private static final int NUM_KEYS = 10_000;
+
+    @Test
+    public void containsAllKeysThatWerePut() {
+        KeyBloomFilter keyBloomFilter = KeyBloomFilter.create(NUM_KEYS, 0.01d);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keyBloomFilter.put("feature.flag." + i);
+        }
+
+        for (int i = 0; i < NUM_KEYS; i++) {
+            assertThat(keyBloomFilter.mightContain("feature.flag." + i), is(true));
+        }
+    }
+
+    @Test
+    public void answersMissingKeysWithRequestedFalsePositiveRate() {
+        KeyBloomFilter keyBloomFilter = KeyBloomFilter.create(NUM_KEYS, 0.01d);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keyBloomFilter.put("feature.flag." + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < NUM_KEYS; i++) {
+            if (keyBloomFilter.mightContain("missing.flag." + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives, lessThan(NUM_KEYS / 50));
+    }
+
+    @Test
+    public void countsKeysOnlyOnce() {
+        KeyBloomFilter keyBloomFilter = KeyBloomFilter.create(2, 0.01d);
+
+        keyBloomFilter.put("a");
+        keyBloomFilter.put("a");
+        keyBloomFilter.put("b");
+
+        assertThat(keyBloomFilter.size(), is(2));
+        assertThat(keyBloomFilter.isSaturated(), is(false));
+
+        keyBloomFilter.put("c");
+
+        assertThat(keyBloomFilter.isSaturated(), is(true));
+    }
+
+    @Test
+    public void failIfExpectedKeysIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> KeyBloomFilter.create(0, 0.01d));
+    }
+
+    @Test
+    public void failIfFalsePositiveRateIsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> KeyBloomFilter.create(1, 0.0d));
+        assertThrows(IllegalArgumentException.class, () -> KeyBloomFilter.create(1, 1.0d));
+    }
+
+}
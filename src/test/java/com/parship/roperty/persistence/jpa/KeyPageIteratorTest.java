@@ -0,0 +1,75 @@
+package com.parship.roperty.persistence.jpa;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+
+public class KeyPageIteratorTest {
+
+    private final List<String> requestedPages = new ArrayList<>();
+
+    @Test
+    public void loadsPagesAfterLastKeyOfPreviousPage() {
+        List<String> keys = asList("a", "b", "c", "d", "e");
+
+        List<String> iterated = new ArrayList<>();
+        new KeyPageIterator((afterKey, limit) -> page(keys, afterKey, limit), 2).forEachRemaining(iterated::add);
+
+        assertThat(iterated, contains("a", "b", "c", "d", "e"));
+        assertThat(requestedPages, contains("", "b", "d"));
+    }
+
+    @Test
+    public void loadsEmptyPageIfLastPageIsFull() {
+        List<String> keys = asList("a", "b");
+
+        List<String> iterated = new ArrayList<>();
+        new KeyPageIterator((afterKey, limit) -> page(keys, afterKey, limit), 2).forEachRemaining(iterated::add);
+
+        assertThat(iterated, contains("a", "b"));
+        assertThat(requestedPages, contains("", "b"));
+    }
+
+    @Test
+    public void loadsFirstPageOnlyWhenIterated() {
+        Iterator<String> iterator = new KeyPageIterator((afterKey, limit) -> page(asList("a", "b"), afterKey, limit), 10);
+
+        assertThat(requestedPages.isEmpty(), is(true));
+        assertThat(iterator.next(), is("a"));
+        assertThat(requestedPages, contains(""));
+    }
+
+    @Test
+    public void failIfNoMoreKeys() {
+        Iterator<String> iterator = new KeyPageIterator((afterKey, limit) -> emptyList(), 10);
+
+        assertThat(iterator.hasNext(), is(false));
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    public void failIfPageSizeIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyPageIterator((afterKey, limit) -> emptyList(), 0));
+    }
+
+    private List<String> page(List<String> keys, String afterKey, int limit) {
+        requestedPages.add(afterKey);
+        List<String> page = new ArrayList<>();
+        for (String key : keys) {
+            if (key.compareTo(afterKey) > 0 && page.size() < limit) {
+                page.add(key);
+            }
+        }
+        return page;
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.parship.roperty.persistence.jpa;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class KeySearchIndexTest {
+
+    @Test
+    public void findsKeysContainingSubstringIgnoringCase() {
+        KeySearchIndex index = KeySearchIndex.of(asList("some.MultiWord.key", "other.key", "multi"));
+
+        assertThat(index.find("MULTIWORD", 10), contains("some.MultiWord.key"));
+        assertThat(index.find("key", 10), contains("other.key", "some.MultiWord.key"));
+        assertThat(index.find("nothing", 10), empty());
+    }
+
+    @Test
+    public void findsKeysBySubstringsShorterThanTrigrams() {
+        KeySearchIndex index = KeySearchIndex.of(asList("ab", "cab", "xyz"));
+
+        assertThat(index.find("A", 10), contains("ab", "cab"));
+        assertThat(index.find("", 10), contains("ab", "cab", "xyz"));
+    }
+
+    @Test
+    public void ranksExactMatchThenPositionThenLengthThenAlphabet() {
+        KeySearchIndex index = KeySearchIndex.of(asList("x.mail.long", "x.mail", "mail.b", "mail.a", "mail"));
+
+        assertThat(index.find("mail", 10), contains("mail", "mail.a", "mail.b", "x.mail", "x.mail.long"));
+    }
+
+    @Test
+    public void limitsNumberOfResults() {
+        KeySearchIndex index = KeySearchIndex.of(asList("key.c", "key.b", "key.a"));
+
+        assertThat(index.find("key", 2), contains("key.a", "key.b"));
+    }
+
+    @Test
+    public void removedKeysAreNotFound() {
+        KeySearchIndex index = KeySearchIndex.of(asList("first.key", "second.key"));
+
+        index.remove("first.key");
+        index.remove("unknown.key");
+
+        assertThat(index.find("key", 10), contains("second.key"));
+        assertThat(index.find("first", 10), empty());
+        assertThat(index.size(), is(1));
+    }
+
+    @Test
+    public void keysAddedTwiceAreFoundOnce() {
+        KeySearchIndex index = KeySearchIndex.of(Collections.singletonList("key"));
+
+        index.add("key");
+        index.add("another.key");
+
+        assertThat(index.find("key", 10), contains("key", "another.key"));
+        assertThat(index.size(), is(2));
+    }
+
+    @Test
+    public void findsKeysAfterGivenKeyInAscendingOrder() {
+        KeySearchIndex index = KeySearchIndex.of(asList("mail", "x.mail", "mail.b", "mail.a", "other"));
+
+        assertThat(index.findAfter("MAIL", "", 2), contains("mail", "mail.a"));
+        assertThat(index.findAfter("mail", "mail.a", 2), contains("mail.b", "x.mail"));
+        assertThat(index.findAfter("mail", "x.mail", 2), empty());
+        assertThat(index.findAfter("", "mail.b", 10), contains("other", "x.mail"));
+    }
+
+    @Test
+    public void ranksKeysFoundElsewhere() {
+        List<String> keys = new ArrayList<>(asList("b.mail", "mail_x", "mail"));
+
+        assertThat(KeySearchIndex.rank(keys, "MAIL", 10), contains("mail", "mail_x", "b.mail"));
+        assertThat(KeySearchIndex.rank(keys, "ma_l", 10), contains("mail", "b.mail", "mail_x"));
+    }
+
+    @Test
+    public void failIfMaximumNumberOfResultsIsNotPositive() {
+        KeySearchIndex index = KeySearchIndex.of(Collections.emptyList());
+
+        assertThrows(IllegalArgumentException.class, () -> index.find("key", 0));
+    }
+
+}
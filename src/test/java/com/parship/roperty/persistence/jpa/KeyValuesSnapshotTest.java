@@ -0,0 +1,172 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.DomainSpecificValue;
+import com.parship.roperty.KeyValues;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class KeyValuesSnapshotTest {
+
+    private static final long WATERMARK = 1234L;
+
+    private final RopertyValueTransformer ropertyValueTransformer = new RopertyValueTransformer()
+            .withKeyValuesFactory(new DefaultKeyValuesFactory())
+            .withDomainSpecificValueFactory(new DefaultDomainSpecificValueFactory());
+
+    @TempDir
+    Path tempDir;
+
+    private Path snapshotFile;
+
+    @BeforeEach
+    public void createSnapshotFile() {
+        snapshotFile = tempDir.resolve("roperty.snapshot");
+    }
+
+    @Test
+    public void readsKeysInOrderOfWriting() {
+        KeyValues first = ropertyValueTransformer.createKeyValues();
+        first.setDescription("description");
+        first.put("default");
+        first.putWithChangeSet("changeSet", new Date(42L), "DE", "premium");
+        KeyValues second = ropertyValueTransformer.createKeyValues();
+        second.put(Arrays.asList(1, 2), "AT");
+        try (KeyValuesSnapshot.Writer writer = KeyValuesSnapshot.create(snapshotFile, WATERMARK)) {
+            writer.add("first", first);
+            writer.add("second", second);
+            writer.commit();
+        }
+
+        KeyValuesSnapshot snapshot = KeyValuesSnapshot.open(snapshotFile);
+        assertThat(snapshot.getWatermark(), is(WATERMARK));
+        assertThat(snapshot.getNumKeys(), is(2L));
+        KeyValuesSnapshot.Cursor cursor = snapshot.cursor();
+        assertThat(cursor.next(), is(true));
+        assertThat(cursor.getKey(), is("first"));
+        KeyValues readFirst = cursor.getKeyValues(ropertyValueTransformer);
+        assertThat(readFirst.getDescription(), is("description"));
+        assertThat(readFirst.getDomainSpecificValues().toString(), is(first.getDomainSpecificValues().toString()));
+        assertThat(cursor.next(), is(true));
+        assertThat(cursor.getKey(), is("second"));
+        DomainSpecificValue value = cursor.getKeyValues(ropertyValueTransformer).getDomainSpecificValues().iterator().next();
+        assertThat(value.getValue(), is(Arrays.asList(1, 2)));
+        assertThat(value.getChangeSet(), nullValue());
+        assertThat(cursor.next(), is(false));
+    }
+
+    @Test
+    public void skipsValuesThatAreNotRead() {
+        try (KeyValuesSnapshot.Writer writer = KeyValuesSnapshot.create(snapshotFile, WATERMARK)) {
+            for (int i = 0; i < 3; i++) {
+                KeyValues keyValues = ropertyValueTransformer.createKeyValues();
+                keyValues.put("value" + i);
+                writer.add("key" + i, keyValues);
+            }
+            writer.commit();
+        }
+
+        KeyValuesSnapshot.Cursor cursor = KeyValuesSnapshot.open(snapshotFile).cursor();
+        cursor.next();
+        cursor.next();
+        cursor.next();
+
+        assertThat(cursor.getKey(), is("key2"));
+        assertThat(cursor.getKeyValues(ropertyValueTransformer).getDomainSpecificValues().iterator().next().getValue(), is("value2"));
+        assertThat(cursor.next(), is(false));
+    }
+
+    @Test
+    public void readsSnapshotLargerThanOneMappingInSegments() {
+        try (KeyValuesSnapshot.Writer writer = KeyValuesSnapshot.create(snapshotFile, WATERMARK)) {
+            for (int i = 0; i < 20; i++) {
+                KeyValues keyValues = ropertyValueTransformer.createKeyValues();
+                keyValues.setDescription("description" + i);
+                keyValues.put("value" + i, "DE");
+                writer.add("key" + i, keyValues);
+            }
+            writer.commit();
+        }
+
+        KeyValuesSnapshot.Cursor cursor = KeyValuesSnapshot.open(snapshotFile).cursor(100);
+        for (int i = 0; i < 20; i++) {
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.getKey(), is("key" + i));
+            KeyValues keyValues = cursor.getKeyValues(ropertyValueTransformer);
+            assertThat(keyValues.getDescription(), is("description" + i));
+            assertThat(keyValues.getDomainSpecificValues().iterator().next().getValue(), is("value" + i));
+        }
+        assertThat(cursor.next(), is(false));
+    }
+
+    @Test
+    public void failIfKeyExceedsMaxSegmentSize() {
+        try (KeyValuesSnapshot.Writer writer = KeyValuesSnapshot.create(snapshotFile, WATERMARK)) {
+            KeyValues keyValues = ropertyValueTransformer.createKeyValues();
+            keyValues.put("value");
+            writer.add("key", keyValues);
+            writer.commit();
+        }
+
+        KeyValuesSnapshot.Cursor cursor = KeyValuesSnapshot.open(snapshotFile).cursor(16);
+
+        assertThrows(RopertyPersistenceException.class, cursor::next);
+    }
+
+    @Test
+    public void uncommittedSnapshotIsDiscarded() throws IOException {
+        try (KeyValuesSnapshot.Writer writer = KeyValuesSnapshot.create(snapshotFile, WATERMARK)) {
+            writer.add("key", ropertyValueTransformer.createKeyValues());
+        }
+
+        assertThat(KeyValuesSnapshot.open(snapshotFile), nullValue());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void incompleteSnapshotIsNotOpened() throws IOException {
+        try (KeyValuesSnapshot.Writer writer = KeyValuesSnapshot.create(snapshotFile, WATERMARK)) {
+            writer.add("key", ropertyValueTransformer.createKeyValues());
+            writer.commit();
+        }
+        byte[] bytes = Files.readAllBytes(snapshotFile);
+
+        Files.write(snapshotFile, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThat(KeyValuesSnapshot.open(snapshotFile), nullValue());
+    }
+
+    @Test
+    public void snapshotOfOtherVersionIsNotOpened() throws IOException {
+        try (KeyValuesSnapshot.Writer writer = KeyValuesSnapshot.create(snapshotFile, WATERMARK)) {
+            writer.commit();
+        }
+        byte[] bytes = Files.readAllBytes(snapshotFile);
+        bytes[7] = KeyValuesSnapshot.VERSION + 1;
+
+        Files.write(snapshotFile, bytes);
+
+        assertThat(KeyValuesSnapshot.open(snapshotFile), nullValue());
+    }
+
+    @Test
+    public void missingSnapshotIsNotOpened() {
+        assertThat(KeyValuesSnapshot.open(snapshotFile), nullValue());
+    }
+
+}
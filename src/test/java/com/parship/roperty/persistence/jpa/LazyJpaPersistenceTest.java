@@ -1,10 +1,21 @@
 package com.parship.roperty.persistence.jpa;
 
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
+import com.parship.roperty.DomainSpecificValue;
 import com.parship.roperty.DomainSpecificValueFactory;
 import com.parship.roperty.KeyValues;
 import com.parship.roperty.KeyValuesFactory;
@@ -21,6 +32,8 @@ public class LazyJpaPersistenceTest {
 
     public static final String KEY = "key";
 
+    private static final String OTHER_KEY = "otherKey";
+
     @InjectMocks
     private LazyJpaPersistence lazyJpaPersistence = new LazyJpaPersistence();
 
@@ -33,6 +46,18 @@ public class LazyJpaPersistenceTest {
     @Mock
     private KeyValues keyValues;
 
+    @Mock
+    private DomainSpecificValue domainSpecificValue;
+
+    @Mock
+    private RopertyKeyDAO ropertyKeyDAO;
+
+    @Mock
+    private RopertyValueDAO ropertyValueDAO;
+
+    @Mock
+    private TransactionManager transactionManager;
+
     @Test
     public void loadAllShouldReturnEmptyMap() {
         Map<String, KeyValues> result = lazyJpaPersistence.loadAll(keyValuesFactory, domainSpecificValueFactory);
@@ -64,4 +89,103 @@ public class LazyJpaPersistenceTest {
         assertThrows(UnsupportedOperationException.class, () -> result.put(KEY, keyValues));
     }
 
+    @Test
+    public void keyFilterIsDisabledByDefault() {
+        KeyValues result = lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        assertThat(result, nullValue());
+        verify(ropertyKeyDAO).loadRopertyKey(KEY);
+        verifyNoMoreInteractions(ropertyKeyDAO);
+    }
+
+    @Test
+    public void missingKeyIsAnsweredByKeyFilter() {
+        lazyJpaPersistence.setKeyFilterEnabled(true);
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenReturn(singletonList(OTHER_KEY));
+
+        KeyValues result = lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+        lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        assertThat(result, nullValue());
+        verify(ropertyKeyDAO).loadAllRopertyKeyIds();
+        verify(ropertyKeyDAO, never()).loadRopertyKey(KEY);
+    }
+
+    @Test
+    public void existingKeyIsLoadedFromDatabase() {
+        lazyJpaPersistence.setKeyFilterEnabled(true);
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenReturn(singletonList(KEY));
+
+        lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(ropertyKeyDAO).loadRopertyKey(KEY);
+    }
+
+    @Test
+    public void storedKeyPassesKeyFilter() {
+        lazyJpaPersistence.setKeyFilterEnabled(true);
+        lazyJpaPersistence.load(OTHER_KEY, keyValuesFactory, domainSpecificValueFactory);
+        when(keyValues.getDomainSpecificValues()).thenReturn(singleton(domainSpecificValue));
+        when(domainSpecificValue.getValue()).thenReturn("value");
+        when(domainSpecificValue.getPatternStr()).thenReturn("");
+        when(domainSpecificValue.changeSetIs(null)).thenReturn(true);
+
+        lazyJpaPersistence.store(KEY, keyValues, null);
+        lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(ropertyKeyDAO, times(2)).loadRopertyKey(KEY);
+    }
+
+    @Test
+    public void keysStoredTogetherPassKeyFilter() {
+        lazyJpaPersistence.setKeyFilterEnabled(true);
+        lazyJpaPersistence.load(OTHER_KEY, keyValuesFactory, domainSpecificValueFactory);
+        when(keyValues.getDomainSpecificValues()).thenReturn(singleton(domainSpecificValue));
+        when(domainSpecificValue.getValue()).thenReturn("value");
+        when(domainSpecificValue.getPatternStr()).thenReturn("");
+        when(domainSpecificValue.changeSetIs(null)).thenReturn(true);
+
+        lazyJpaPersistence.storeAll(singletonMap(KEY, keyValues), null);
+        lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(ropertyKeyDAO).loadRopertyKey(KEY);
+    }
+
+    @Test
+    public void keyStoredWhileKeyFilterIsBuiltPassesKeyFilter() {
+        lazyJpaPersistence.setKeyFilterEnabled(true);
+        when(keyValues.getDomainSpecificValues()).thenReturn(singleton(domainSpecificValue));
+        when(domainSpecificValue.getValue()).thenReturn("value");
+        when(domainSpecificValue.getPatternStr()).thenReturn("");
+        when(domainSpecificValue.changeSetIs(null)).thenReturn(true);
+        // the key is committed after the key ids were read
+        when(ropertyKeyDAO.loadAllRopertyKeyIds()).thenAnswer(invocation -> {
+            lazyJpaPersistence.store(KEY, keyValues, null);
+            return singletonList(OTHER_KEY);
+        });
+
+        lazyJpaPersistence.load(OTHER_KEY, keyValuesFactory, domainSpecificValueFactory);
+        lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(ropertyKeyDAO, times(2)).loadRopertyKey(KEY);
+    }
+
+    @Test
+    public void keyFilterPicksUpKeysCreatedByOtherNodes() {
+        lazyJpaPersistence.setKeyFilterEnabled(true);
+        lazyJpaPersistence.setKeyFilterRefreshInterval(0L);
+        when(ropertyKeyDAO.loadRopertyKeyIdsModifiedSince(anyLong())).thenReturn(singletonList(KEY));
+
+        lazyJpaPersistence.load(OTHER_KEY, keyValuesFactory, domainSpecificValueFactory);
+        lazyJpaPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+
+        verify(ropertyKeyDAO).loadAllRopertyKeyIds();
+        verify(ropertyKeyDAO).loadRopertyKey(KEY);
+    }
+
+    @Test
+    public void failIfFalsePositiveRateIsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> lazyJpaPersistence.setKeyFilterFalsePositiveRate(1.0d));
+    }
+
 }
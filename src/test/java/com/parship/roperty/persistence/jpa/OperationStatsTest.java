@@ -0,0 +1,88 @@
+package com.parship.roperty.persistence.jpa;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.when;
+
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class OperationStatsTest {
+
+    @Mock
+    private TypedQuery<String> typedQuery;
+
+    @Mock
+    private TypedQuery<Long> countQuery;
+
+    @Mock
+    private Query deleteQuery;
+
+    @AfterEach
+    public void endOperation() {
+        OperationStats.end();
+    }
+
+    @Test
+    public void countsWorkOfCurrentOperation() {
+        when(typedQuery.getResultList()).thenReturn(asList("a", "b"));
+        when(countQuery.getSingleResult()).thenReturn(2L);
+        when(deleteQuery.executeUpdate()).thenReturn(3);
+        OperationStats stats = OperationStats.begin();
+
+        OperationStats.resultList(typedQuery);
+        OperationStats.singleResult(countQuery);
+        assertThat(OperationStats.executeUpdate(deleteQuery), is(3));
+        OperationStats.valueDecoded(100);
+        OperationStats.entityManagerOpened();
+
+        assertThat(stats.getQueries(), is(3L));
+        assertThat(stats.getRows(), is(3L));
+        assertThat(stats.getValueBytes(), is(100L));
+        assertThat(stats.getEntityManagers(), is(1L));
+    }
+
+    @Test
+    public void countsNothingOutsideOfOperation() {
+        when(typedQuery.getResultList()).thenReturn(asList("a", "b"));
+
+        assertThat(OperationStats.resultList(typedQuery), is(asList("a", "b")));
+        OperationStats.valueDecoded(100);
+
+        assertThat(OperationStats.current(), nullValue());
+    }
+
+    @Test
+    public void nestedOperationCountsTowardsOuterOne() {
+        OperationStats stats = OperationStats.begin();
+
+        assertThat(OperationStats.begin(), nullValue());
+        assertThat(OperationStats.current(), sameInstance(stats));
+    }
+
+    @Test
+    public void countsWorkOfOtherThreadSeparatelyAndAddsIt() {
+        OperationStats stats = OperationStats.begin();
+        OperationStats rangeStats = new OperationStats();
+
+        OperationStats.countTo(rangeStats, () -> {
+            OperationStats.valueDecoded(10);
+            return null;
+        });
+        stats.add(rangeStats);
+
+        assertThat(OperationStats.current(), sameInstance(stats));
+        assertThat(rangeStats.getValueBytes(), is(10L));
+        assertThat(stats.getValueBytes(), is(10L));
+    }
+
+}
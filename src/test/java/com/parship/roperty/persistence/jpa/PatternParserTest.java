@@ -0,0 +1,60 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class PatternParserTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"DE", "DE|premium|android", "DE||android", "DE|", "|premium", "|", "||", "DE||", "|premium|", "a|b|c|d|e|f"})
+    public void splitsLikeRegularExpression(String pattern) {
+        assertThat(PatternParser.split(pattern), is(pattern.split("\\|")));
+        assertThat(new PatternParser(PatternParser.DEFAULT_MAX_CACHED_PATTERNS).parse(pattern), is(pattern.split("\\|")));
+    }
+
+    @Test
+    public void emptyPatternHasNoParts() {
+        assertThat(new PatternParser(PatternParser.DEFAULT_MAX_CACHED_PATTERNS).parse(""), arrayWithSize(0));
+    }
+
+    @Test
+    public void sharesPartsOfEqualPatterns() {
+        PatternParser patternParser = new PatternParser(PatternParser.DEFAULT_MAX_CACHED_PATTERNS);
+
+        String[] parts = patternParser.parse("DE|premium|android");
+
+        assertThat(patternParser.parse(new String("DE|premium|android")), sameInstance(parts));
+        assertThat(patternParser.size(), is(1));
+    }
+
+    @Test
+    public void stopsCachingWhenFull() {
+        PatternParser patternParser = new PatternParser(1);
+
+        patternParser.parse("DE");
+        String[] parts = patternParser.parse("AT|premium");
+
+        assertThat(patternParser.parse("AT|premium"), not(sameInstance(parts)));
+        assertThat(patternParser.parse("AT|premium"), is(parts));
+        assertThat(patternParser.size(), is(1));
+    }
+
+    @Test
+    public void failIfPatternIsNull() {
+        assertThrows(NullPointerException.class, () -> PatternParser.shared().parse(null));
+    }
+
+    @Test
+    public void failIfMaximumIsNegative() {
+        assertThrows(IllegalArgumentException.class, () -> new PatternParser(-1));
+    }
+
+}
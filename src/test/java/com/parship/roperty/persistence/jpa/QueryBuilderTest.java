@@ -3,17 +3,28 @@ package com.parship.roperty.persistence.jpa;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.ParameterExpression;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.Metamodel;
 import javax.persistence.metamodel.SingularAttribute;
@@ -75,6 +86,12 @@ public class QueryBuilderTest {
     @Mock
     private Predicate predicate;
 
+    @Mock
+    private ParameterExpression<Long> parameterExpression;
+
+    @Mock
+    private ParameterExpression<String> stringParameterExpression;
+
     @BeforeEach
     public void prepareMocks() {
         when(entityManager.getMetamodel()).thenReturn(metamodel);
@@ -83,7 +100,6 @@ public class QueryBuilderTest {
         when(metamodel.entity(Long.class)).thenReturn(entityType);
         when(criteriaQuery.from(entityType)).thenReturn(root);
         when(entityManager.createQuery(criteriaQuery)).thenReturn(typedQuery);
-        queryBuilder.withEntityManager(entityManager);
     }
 
     @Test
@@ -92,43 +108,94 @@ public class QueryBuilderTest {
         when(equalsCriterion.getAttributeName()).thenReturn(ATTRIBUTE_NAME);
         when(equalsCriterion.getComparison()).thenReturn(1L);
         when(entityType.getSingularAttribute(ATTRIBUTE_NAME)).thenReturn(singularAttribute);
-        when(criteriaBuilder.equal(path, 1L)).thenReturn(restriction);
+        when(singularAttribute.getJavaType()).thenReturn(Long.class);
+        when(criteriaBuilder.parameter(Long.class)).thenReturn(parameterExpression);
+        when(criteriaBuilder.equal(path, parameterExpression)).thenReturn(restriction);
         when(criteriaBuilder.and(restriction)).thenReturn(predicate);
         when(root.get(singularAttribute)).thenReturn(path);
 
-        TypedQuery<Long> typedQuery = queryBuilder.equality(equalsCriterion);
+        TypedQuery<Long> typedQuery = queryBuilder.equality(entityManager, equalsCriterion);
 
         verify(equalsCriterion, times(2)).getAttributeName();
         verify(entityType).getSingularAttribute(ATTRIBUTE_NAME);
         verify(root).get(singularAttribute);
         verify(equalsCriterion, times(2)).getComparison();
-        verify(criteriaBuilder).equal(path, 1L);
+        verify(criteriaBuilder).equal(path, parameterExpression);
         verify(criteriaQuery).where(predicate);
+        verify(typedQuery).setParameter(parameterExpression, 1L);
         verifyMocks();
         assertThat(typedQuery, is(this.typedQuery));
     }
 
+    @Test
+    public void equalityQueryShapeIsBuiltOnlyOnce() {
+        queryBuilder.setResultClass(Long.class);
+        when(entityType.getSingularAttribute(ATTRIBUTE_NAME)).thenReturn(singularAttribute);
+        when(singularAttribute.getJavaType()).thenReturn(Long.class);
+        when(criteriaBuilder.parameter(Long.class)).thenReturn(parameterExpression);
+        when(root.get(singularAttribute)).thenReturn(path);
+
+        queryBuilder.equality(entityManager, new EqualsCriterion<Long>().withAttributeName(ATTRIBUTE_NAME).withComparison(1L));
+        queryBuilder.equality(entityManager, new EqualsCriterion<Long>().withAttributeName(ATTRIBUTE_NAME).withComparison(2L));
+
+        verify(criteriaBuilder).createQuery(Long.class);
+        verify(criteriaQuery).from(entityType);
+        verify(entityManager, times(2)).createQuery(criteriaQuery);
+        verify(typedQuery).setParameter(parameterExpression, 1L);
+        verify(typedQuery).setParameter(parameterExpression, 2L);
+    }
+
+    @Test
+    public void queryShapeIsBuiltForEachEntityManagerFactory() {
+        EntityManager otherEntityManager = mock(EntityManager.class);
+        CriteriaBuilder otherCriteriaBuilder = mock(CriteriaBuilder.class);
+        when(otherEntityManager.getMetamodel()).thenReturn(metamodel);
+        when(otherEntityManager.getCriteriaBuilder()).thenReturn(otherCriteriaBuilder);
+        when(otherCriteriaBuilder.createQuery(Long.class)).thenReturn(criteriaQuery);
+        queryBuilder.setResultClass(Long.class);
+
+        queryBuilder.all(entityManager);
+        queryBuilder.all(otherEntityManager);
+        queryBuilder.all(entityManager);
+
+        verify(criteriaBuilder).createQuery(Long.class);
+        verify(otherCriteriaBuilder).createQuery(Long.class);
+        verify(otherEntityManager).createQuery(criteriaQuery);
+    }
+
+    @Test
+    public void queryShapeIsBuiltAgainAfterResultClassChanged() {
+        queryBuilder.setResultClass(Long.class);
+        queryBuilder.all(entityManager);
+        queryBuilder.setResultClass(Long.class);
+        queryBuilder.all(entityManager);
+
+        verify(criteriaBuilder, times(2)).createQuery(Long.class);
+    }
+
     @Test
     public void returnsTypedQueryWhenFetchingEntityByAttribute() throws Exception {
         queryBuilder.setResultClass(Long.class);
         when(likeCriterion.getAttributeName()).thenReturn(ATTRIBUTE_NAME);
         when(likeCriterion.getExpression()).thenReturn(EXPRESSION);
         when(entityType.getSingularAttribute(ATTRIBUTE_NAME, String.class)).thenReturn(singularAttribute);
-        when(criteriaBuilder.like(stringPath, EXPRESSION)).thenReturn(restriction);
+        when(criteriaBuilder.parameter(String.class)).thenReturn(stringParameterExpression);
+        when(criteriaBuilder.like(stringPath, stringParameterExpression)).thenReturn(restriction);
         when(criteriaBuilder.and(restriction)).thenReturn(predicate);
         when(criteriaBuilder.lower(stringPath)).thenReturn(stringPath);
         when(root.get(singularAttribute)).thenReturn(stringPath);
 
-        TypedQuery<Long> typedQuery = queryBuilder.likeliness(likeCriterion);
+        TypedQuery<Long> typedQuery = queryBuilder.likeliness(entityManager, likeCriterion);
 
         verify(likeCriterion, times(2)).getAttributeName();
         verify(likeCriterion, times(2)).getExpression();
         verify(entityType).getSingularAttribute(ATTRIBUTE_NAME, String.class);
         verify(root).get(singularAttribute);
-        verify(criteriaBuilder).like(stringPath, EXPRESSION);
+        verify(criteriaBuilder).like(stringPath, stringParameterExpression);
         verify(criteriaBuilder).lower(stringPath);
         verify(criteriaBuilder).and(restriction);
         verify(criteriaQuery).where(predicate);
+        verify(typedQuery).setParameter(stringParameterExpression, EXPRESSION);
         verifyMocks();
 
         assertThat(typedQuery, is(this.typedQuery));
@@ -136,29 +203,354 @@ public class QueryBuilderTest {
 
     @Test
     public void failsIfNoCriterionGiven() {
-        assertThrows(NullPointerException.class, () -> queryBuilder.equality());
+        assertThrows(NullPointerException.class, () -> queryBuilder.equality(entityManager));
     }
 
     @Test
     public void failsIfAllAndNoResultClassGiven() {
-        assertThrows(NullPointerException.class, () -> queryBuilder.all());
+        assertThrows(NullPointerException.class, () -> queryBuilder.all(entityManager));
     }
 
     @Test
     public void failsIfEqualityAndNoResultClassGiven() {
-        assertThrows(NullPointerException.class, () -> queryBuilder.equality(new EqualsCriterion()));
+        assertThrows(NullPointerException.class, () -> queryBuilder.equality(entityManager, new EqualsCriterion()));
+    }
+
+    @Test
+    public void failsIfNoEntityManagerGiven() {
+        queryBuilder.setResultClass(Long.class);
+
+        assertThrows(NullPointerException.class, () -> queryBuilder.all(null));
     }
 
     @Test
     public void fetchingAllEntitiesShouldReturnTypedQuery() throws Exception {
         queryBuilder.setResultClass(Long.class);
-        TypedQuery<Long> typedQuery = queryBuilder.all();
+        TypedQuery<Long> typedQuery = queryBuilder.all(entityManager);
+
+        verifyMocks();
+        verify(criteriaQuery).select(root);
+        assertThat(typedQuery, is(this.typedQuery));
+    }
+
+    @Test
+    public void fetchingAllEntitiesWithJoinedAttributeShouldReturnOrderedTypedQuery() {
+        queryBuilder.setResultClass(Long.class);
+        Path<Object> joinedPath = mock(Path.class);
+        Path<Object> orderPath = mock(Path.class);
+        Order order = mock(Order.class);
+        when(root.get(ATTRIBUTE_NAME)).thenReturn(joinedPath);
+        when(joinedPath.get("id")).thenReturn(orderPath);
+        when(criteriaBuilder.asc(orderPath)).thenReturn(order);
+
+        TypedQuery<Long> typedQuery = queryBuilder.allJoined(entityManager, ATTRIBUTE_NAME, "id");
 
         verifyMocks();
+        verify(root).fetch(ATTRIBUTE_NAME);
         verify(criteriaQuery).select(root);
+        verify(criteriaQuery).orderBy(order);
         assertThat(typedQuery, is(this.typedQuery));
     }
 
+    @Test
+    public void fetchingEntitiesGreaterThanComparisonShouldReturnTypedQuery() {
+        queryBuilder.setResultClass(Long.class);
+        Path<Long> comparedPath = mock(Path.class);
+        GreaterThanCriterion<Long> criterion = new GreaterThanCriterion<Long>()
+                .withAttributeName(ATTRIBUTE_NAME)
+                .withComparison(1L);
+        when(root.<Long>get(ATTRIBUTE_NAME)).thenReturn(comparedPath);
+        when(criteriaBuilder.parameter(Long.class)).thenReturn(parameterExpression);
+        when(criteriaBuilder.greaterThan(comparedPath, parameterExpression)).thenReturn(restriction);
+
+        TypedQuery<Long> typedQuery = queryBuilder.greaterThan(entityManager, criterion);
+
+        verifyMocks();
+        verify(criteriaQuery).select(root);
+        verify(criteriaQuery).where(restriction);
+        verify(typedQuery).setParameter(parameterExpression, 1L);
+        assertThat(typedQuery, is(this.typedQuery));
+    }
+
+    @Test
+    public void fetchingJoinedRangeShouldReturnOrderedTypedQuery() {
+        queryBuilder.setResultClass(Long.class);
+        Path<Object> joinedPath = mock(Path.class);
+        Path<String> rangePath = mock(Path.class);
+        ParameterExpression<String> upperParameterExpression = mock(ParameterExpression.class);
+        Predicate upperRestriction = mock(Predicate.class);
+        Order order = mock(Order.class);
+        when(root.get(ATTRIBUTE_NAME)).thenReturn(joinedPath);
+        when(joinedPath.<String>get("id")).thenReturn(rangePath);
+        when(criteriaBuilder.parameter(String.class)).thenReturn(stringParameterExpression, upperParameterExpression);
+        when(criteriaBuilder.greaterThan(rangePath, stringParameterExpression)).thenReturn(restriction);
+        when(criteriaBuilder.lessThanOrEqualTo(rangePath, upperParameterExpression)).thenReturn(upperRestriction);
+        when(criteriaBuilder.asc(rangePath)).thenReturn(order);
+
+        TypedQuery<Long> typedQuery = queryBuilder.joinedRange(entityManager, ATTRIBUTE_NAME, "id", "a", "c");
+
+        verifyMocks();
+        verify(root).fetch(ATTRIBUTE_NAME);
+        verify(criteriaQuery).where(restriction, upperRestriction);
+        verify(criteriaQuery).orderBy(order);
+        verify(typedQuery).setParameter(stringParameterExpression, "a");
+        verify(typedQuery).setParameter(upperParameterExpression, "c");
+        assertThat(typedQuery, is(this.typedQuery));
+    }
+
+    @Test
+    public void selectingAttributeOfAllEntitiesShouldReturnTypedQueryOfAttribute() {
+        queryBuilder.setResultClass(Long.class);
+        CriteriaQuery<String> stringCriteriaQuery = mock(CriteriaQuery.class);
+        TypedQuery<String> stringTypedQuery = mock(TypedQuery.class);
+        when(criteriaBuilder.createQuery(String.class)).thenReturn(stringCriteriaQuery);
+        when(stringCriteriaQuery.from(entityType)).thenReturn(root);
+        when(entityType.getSingularAttribute(ATTRIBUTE_NAME, String.class)).thenReturn(singularAttribute);
+        when(root.get(singularAttribute)).thenReturn(stringPath);
+        when(entityManager.createQuery(stringCriteriaQuery)).thenReturn(stringTypedQuery);
+
+        TypedQuery<String> typedQuery = queryBuilder.selectAll(entityManager, ATTRIBUTE_NAME, String.class);
+
+        verify(stringCriteriaQuery).select(stringPath);
+        assertThat(typedQuery, is(stringTypedQuery));
+    }
+
+    @Test
+    public void selectingAttributeAndEntitiesUseSeparateQueryShapes() {
+        queryBuilder.setResultClass(Long.class);
+        CriteriaQuery<String> stringCriteriaQuery = mock(CriteriaQuery.class);
+        when(criteriaBuilder.createQuery(String.class)).thenReturn(stringCriteriaQuery);
+        when(stringCriteriaQuery.from(entityType)).thenReturn(root);
+        when(entityType.getSingularAttribute(ATTRIBUTE_NAME, String.class)).thenReturn(singularAttribute);
+        when(root.get(singularAttribute)).thenReturn(stringPath);
+
+        queryBuilder.all(entityManager);
+        queryBuilder.selectAll(entityManager, ATTRIBUTE_NAME, String.class);
+
+        verify(criteriaQuery).select(root);
+        verify(stringCriteriaQuery).select(stringPath);
+    }
+
+    @Test
+    public void failsIfSelectedAttributeIsBlank() {
+        queryBuilder.setResultClass(Long.class);
+
+        assertThrows(IllegalArgumentException.class, () -> queryBuilder.selectAll(entityManager, "", String.class));
+    }
+
+    @Test
+    public void fetchingEntitiesGreaterThanAscendingShouldReturnOrderedTypedQuery() {
+        queryBuilder.setResultClass(Long.class);
+        Path<String> comparedPath = mock(Path.class);
+        Order order = mock(Order.class);
+        GreaterThanCriterion<String> criterion = new GreaterThanCriterion<String>()
+                .withAttributeName(ATTRIBUTE_NAME)
+                .withComparison("a");
+        when(root.<String>get(ATTRIBUTE_NAME)).thenReturn(comparedPath);
+        when(criteriaBuilder.parameter(String.class)).thenReturn(stringParameterExpression);
+        when(criteriaBuilder.greaterThan(comparedPath, stringParameterExpression)).thenReturn(restriction);
+        when(criteriaBuilder.asc(comparedPath)).thenReturn(order);
+
+        TypedQuery<Long> typedQuery = queryBuilder.greaterThanAscending(entityManager, criterion);
+
+        verifyMocks();
+        verify(criteriaQuery).where(restriction);
+        verify(criteriaQuery).orderBy(order);
+        verify(typedQuery).setParameter(stringParameterExpression, "a");
+        assertThat(typedQuery, is(this.typedQuery));
+    }
+
+    @Test
+    public void fetchingEntitiesLikeAndGreaterThanAscendingShouldReturnOrderedTypedQuery() {
+        queryBuilder.setResultClass(Long.class);
+        Path<String> comparedPath = mock(Path.class);
+        Predicate likeRestriction = mock(Predicate.class);
+        Order order = mock(Order.class);
+        LikeCriterion like = new LikeCriterion()
+                .withAttributeName(ATTRIBUTE_NAME)
+                .withExpression("%EXPR%");
+        GreaterThanCriterion<String> criterion = new GreaterThanCriterion<String>()
+                .withAttributeName("id")
+                .withComparison("a");
+        when(entityType.getSingularAttribute(ATTRIBUTE_NAME, String.class)).thenReturn(singularAttribute);
+        when(root.get(singularAttribute)).thenReturn(stringPath);
+        when(criteriaBuilder.lower(stringPath)).thenReturn(stringPath);
+        when(root.<String>get("id")).thenReturn(comparedPath);
+        when(criteriaBuilder.parameter(String.class)).thenReturn(stringParameterExpression);
+        when(criteriaBuilder.like(stringPath, stringParameterExpression)).thenReturn(likeRestriction);
+        when(criteriaBuilder.greaterThan(comparedPath, stringParameterExpression)).thenReturn(restriction);
+        when(criteriaBuilder.asc(comparedPath)).thenReturn(order);
+
+        TypedQuery<Long> typedQuery = queryBuilder.likelinessGreaterThanAscending(entityManager, like, criterion);
+
+        verifyMocks();
+        verify(criteriaQuery).where(likeRestriction, restriction);
+        verify(criteriaQuery).orderBy(order);
+        verify(typedQuery).setParameter(stringParameterExpression, "%expr%");
+        verify(typedQuery).setParameter(stringParameterExpression, "a");
+        assertThat(typedQuery, is(this.typedQuery));
+    }
+
+    @Test
+    public void deletingEntitiesByAttributeEqualityShouldReturnQuery() {
+        queryBuilder.setResultClass(Long.class);
+        CriteriaDelete<Long> criteriaDelete = mock(CriteriaDelete.class);
+        Query query = mock(Query.class);
+        when(criteriaBuilder.createCriteriaDelete(Long.class)).thenReturn(criteriaDelete);
+        when(criteriaDelete.from(entityType)).thenReturn(root);
+        when(entityManager.createQuery(criteriaDelete)).thenReturn(query);
+        when(entityType.getSingularAttribute(ATTRIBUTE_NAME)).thenReturn(singularAttribute);
+        when(singularAttribute.getJavaType()).thenReturn(Long.class);
+        when(criteriaBuilder.parameter(Long.class, "p0")).thenReturn(parameterExpression);
+        when(parameterExpression.getName()).thenReturn("p0");
+        when(root.get(singularAttribute)).thenReturn(path);
+        when(criteriaBuilder.equal(path, parameterExpression)).thenReturn(restriction);
+        when(criteriaBuilder.and(restriction)).thenReturn(predicate);
+
+        Query result = queryBuilder.deleteEquality(entityManager, new EqualsCriterion<Long>().withAttributeName(ATTRIBUTE_NAME).withComparison(1L));
+        queryBuilder.deleteEquality(entityManager, new EqualsCriterion<Long>().withAttributeName(ATTRIBUTE_NAME).withComparison(2L));
+
+        verify(criteriaBuilder).createCriteriaDelete(Long.class);
+        verify(criteriaDelete).where(predicate);
+        verify(query).setParameter("p0", 1L);
+        verify(query).setParameter("p0", 2L);
+        assertThat(result, is(query));
+    }
+
+    @Test
+    public void fetchingEntitiesByAttributeInValuesShouldReturnTypedQuery() {
+        queryBuilder.setResultClass(Long.class);
+        Path<Object> inPath = mock(Path.class);
+        ParameterExpression<Collection> inParameterExpression = mock(ParameterExpression.class);
+        Predicate inRestriction = mock(Predicate.class);
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(criteriaBuilder.parameter(Collection.class)).thenReturn(inParameterExpression);
+        when(root.get("id")).thenReturn(inPath);
+        when(inPath.in(inParameterExpression)).thenReturn(inRestriction);
+
+        TypedQuery<Long> typedQuery = queryBuilder.in(entityManager, "id", ids);
+
+        verifyMocks();
+        verify(criteriaQuery).select(root);
+        verify(criteriaQuery).where(inRestriction);
+        verify(typedQuery).setParameter(inParameterExpression, ids);
+        assertThat(typedQuery, is(this.typedQuery));
+    }
+
+    @Test
+    public void fetchingEntitiesByAttributeEqualityAndInShouldReturnTypedQuery() {
+        queryBuilder.setResultClass(Long.class);
+        Path<Object> inPath = mock(Path.class);
+        ParameterExpression<Collection> inParameterExpression = mock(ParameterExpression.class);
+        Predicate inRestriction = mock(Predicate.class);
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(entityType.getSingularAttribute(ATTRIBUTE_NAME)).thenReturn(singularAttribute);
+        when(singularAttribute.getJavaType()).thenReturn(Long.class);
+        when(criteriaBuilder.parameter(Long.class)).thenReturn(parameterExpression);
+        when(criteriaBuilder.parameter(Collection.class)).thenReturn(inParameterExpression);
+        when(root.get(singularAttribute)).thenReturn(path);
+        when(root.get("id")).thenReturn(inPath);
+        when(criteriaBuilder.equal(path, parameterExpression)).thenReturn(restriction);
+        when(inPath.in(inParameterExpression)).thenReturn(inRestriction);
+
+        TypedQuery<Long> typedQuery = queryBuilder.equalityAndIn(entityManager, new EqualsCriterion<Long>().withAttributeName(ATTRIBUTE_NAME).withComparison(1L), "id", ids);
+
+        verifyMocks();
+        verify(criteriaQuery).where(restriction, inRestriction);
+        verify(typedQuery).setParameter(parameterExpression, 1L);
+        verify(typedQuery).setParameter(inParameterExpression, ids);
+        assertThat(typedQuery, is(this.typedQuery));
+    }
+
+    @Test
+    public void failsIfNoValuesGivenForFetchingEntitiesByAttributeIn() {
+        queryBuilder.setResultClass(Long.class);
+
+        assertThrows(IllegalArgumentException.class, () -> queryBuilder.in(entityManager, "id", Collections.emptyList()));
+    }
+
+    @Test
+    public void deletingEntitiesByAttributeEqualityAndInShouldReturnQuery() {
+        queryBuilder.setResultClass(Long.class);
+        CriteriaDelete<Long> criteriaDelete = mock(CriteriaDelete.class);
+        Query query = mock(Query.class);
+        Path<Object> inPath = mock(Path.class);
+        ParameterExpression<Collection> inParameterExpression = mock(ParameterExpression.class);
+        Predicate inRestriction = mock(Predicate.class);
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(criteriaBuilder.createCriteriaDelete(Long.class)).thenReturn(criteriaDelete);
+        when(criteriaDelete.from(entityType)).thenReturn(root);
+        when(entityManager.createQuery(criteriaDelete)).thenReturn(query);
+        when(entityType.getSingularAttribute(ATTRIBUTE_NAME)).thenReturn(singularAttribute);
+        when(singularAttribute.getJavaType()).thenReturn(Long.class);
+        when(criteriaBuilder.parameter(Long.class, "p0")).thenReturn(parameterExpression);
+        when(parameterExpression.getName()).thenReturn("p0");
+        when(criteriaBuilder.parameter(Collection.class, "values")).thenReturn(inParameterExpression);
+        when(inParameterExpression.getName()).thenReturn("values");
+        when(root.get(singularAttribute)).thenReturn(path);
+        when(root.get("id")).thenReturn(inPath);
+        when(criteriaBuilder.equal(path, parameterExpression)).thenReturn(restriction);
+        when(inPath.in(inParameterExpression)).thenReturn(inRestriction);
+
+        Query result = queryBuilder.deleteEqualityAndIn(entityManager, new EqualsCriterion<Long>().withAttributeName(ATTRIBUTE_NAME).withComparison(1L), "id", ids);
+
+        verify(criteriaDelete).where(restriction, inRestriction);
+        verify(query).setParameter("p0", 1L);
+        verify(query).setParameter("values", ids);
+        assertThat(result, is(query));
+    }
+
+    @Test
+    public void failsIfNoValuesGivenForDeletingEntitiesByAttributeEqualityAndIn() {
+        queryBuilder.setResultClass(Long.class);
+
+        assertThrows(IllegalArgumentException.class, () -> queryBuilder.deleteEqualityAndIn(entityManager, new EqualsCriterion<Long>().withAttributeName(ATTRIBUTE_NAME).withComparison(1L), "id", Collections.emptyList()));
+    }
+
+    @Test
+    public void deletingUnreferencedEntityShouldReturnQuery() {
+        queryBuilder.setResultClass(Long.class);
+        CriteriaDelete<Long> criteriaDelete = mock(CriteriaDelete.class);
+        Subquery<Integer> subquery = mock(Subquery.class);
+        Root<String> referencingRoot = mock(Root.class);
+        Path<Object> referencingPath = mock(Path.class);
+        Path<Object> referencedIdPath = mock(Path.class);
+        Expression<Integer> literal = mock(Expression.class);
+        ParameterExpression<Long> referencedParameterExpression = mock(ParameterExpression.class);
+        Predicate referencedRestriction = mock(Predicate.class);
+        Predicate exists = mock(Predicate.class);
+        Predicate notExists = mock(Predicate.class);
+        Query query = mock(Query.class);
+        when(criteriaBuilder.createCriteriaDelete(Long.class)).thenReturn(criteriaDelete);
+        when(criteriaDelete.from(entityType)).thenReturn(root);
+        when(entityManager.createQuery(criteriaDelete)).thenReturn(query);
+        when(entityType.getSingularAttribute("id")).thenReturn(singularAttribute);
+        when(singularAttribute.getJavaType()).thenReturn(Long.class);
+        when(criteriaBuilder.parameter(Long.class, "id")).thenReturn(parameterExpression);
+        when(criteriaBuilder.parameter(Long.class, "referencedId")).thenReturn(referencedParameterExpression);
+        when(parameterExpression.getName()).thenReturn("id");
+        when(referencedParameterExpression.getName()).thenReturn("referencedId");
+        when(criteriaDelete.subquery(Integer.class)).thenReturn(subquery);
+        when(subquery.from(String.class)).thenReturn(referencingRoot);
+        when(criteriaBuilder.literal(1)).thenReturn(literal);
+        when(referencingRoot.get(ATTRIBUTE_NAME)).thenReturn(referencingPath);
+        when(referencingPath.get("id")).thenReturn(referencedIdPath);
+        when(criteriaBuilder.equal(referencedIdPath, referencedParameterExpression)).thenReturn(referencedRestriction);
+        when(root.get("id")).thenReturn((Path) path);
+        when(criteriaBuilder.equal(path, parameterExpression)).thenReturn(restriction);
+        when(criteriaBuilder.exists(subquery)).thenReturn(exists);
+        when(criteriaBuilder.not(exists)).thenReturn(notExists);
+
+        Query result = queryBuilder.deleteUnreferenced(entityManager, new EqualsCriterion<Long>().withAttributeName("id").withComparison(1L), String.class, ATTRIBUTE_NAME);
+
+        verify(subquery).select(literal);
+        verify(subquery).where(referencedRestriction);
+        verify(criteriaDelete).where(restriction, notExists);
+        verify(query).setParameter("id", 1L);
+        verify(query).setParameter("referencedId", 1L);
+        assertThat(result, is(query));
+    }
+
     private void verifyMocks() {
         verify(entityManager).getMetamodel();
         verify(entityManager).getCriteriaBuilder();
@@ -1,5 +1,7 @@
 package com.parship.roperty.persistence.jpa;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
@@ -8,12 +10,17 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -41,12 +48,21 @@ public class RopertyKeyDAOTest {
     @Mock
     private TypedQuery<RopertyKey> typedQuery;
 
+    @Mock
+    private TypedQuery<String> idQuery;
+
     @Mock
     private RopertyKey ropertyKey;
 
     @Captor
     private ArgumentCaptor<LikeCriterion> likeCriterionArgumentCaptor;
 
+    @Captor
+    private ArgumentCaptor<GreaterThanCriterion<Long>> greaterThanCriterionArgumentCaptor;
+
+    @Captor
+    private ArgumentCaptor<GreaterThanCriterion<String>> idCriterionArgumentCaptor;
+
     @Test
     public void nonExistingRopertyKeyShouldReturnNull() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
@@ -55,7 +71,7 @@ public class RopertyKeyDAOTest {
 
         verify(queryBuilderDelegate).createEntityManager();
         verify(entityManager).find(RopertyKey.class, KEY);
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
         assertThat(result, nullValue());
 
         verifyNoMoreInteractions(queryBuilderDelegate, entityManager, typedQuery);
@@ -70,65 +86,83 @@ public class RopertyKeyDAOTest {
 
         verify(queryBuilderDelegate).createEntityManager();
         verify(entityManager).find(RopertyKey.class, KEY);
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
         assertThat(result, is(ropertyKey));
     }
 
+    @Test
+    public void loadsExistingKeysAmongGivenOnes() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.in(entityManager, "id", asList(KEY, "other"))).thenReturn(typedQuery);
+        when(typedQuery.getResultList()).thenReturn(singletonList(ropertyKey));
+
+        List<RopertyKey> ropertyKeys = ropertyKeyDAO.loadRopertyKeys(asList(KEY, "other"));
+
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(ropertyKeys, contains(ropertyKey));
+    }
+
+    @Test
+    public void loadingNoKeysDoesNotRunQuery() {
+        List<RopertyKey> ropertyKeys = ropertyKeyDAO.loadRopertyKeys(emptyList());
+
+        verifyNoInteractions(queryBuilderDelegate);
+        assertThat(ropertyKeys, empty());
+    }
+
     @Test
     public void failIfMissingEntityManager() {
-        assertThrows(NullPointerException.class, () -> ropertyKeyDAO.loadAllRopertyKeys());
+        assertThrows(NullPointerException.class, () -> ropertyKeyDAO.loadAllRopertyKeyIds());
     }
 
     @Test
     public void failIfTypedQueryIsNullOnLoadingAllRopertyKeys() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
 
-        assertThrows(RopertyPersistenceException.class, () -> ropertyKeyDAO.loadAllRopertyKeys());
+        assertThrows(RopertyPersistenceException.class, () -> ropertyKeyDAO.loadAllRopertyKeyIds());
     }
 
     @Test
     public void loadAllReturnsEmptyListIfNoRopertyKeysGiven() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
-        when(queryBuilderDelegate.all()).thenReturn(typedQuery);
+        when(queryBuilderDelegate.selectAll(entityManager, "id", String.class)).thenReturn(idQuery);
 
-        List<RopertyKey> ropertyKeys = ropertyKeyDAO.loadAllRopertyKeys();
+        List<String> keys = ropertyKeyDAO.loadAllRopertyKeyIds();
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).all();
-        verify(typedQuery).getResultList();
-        verify(entityManager).close();
-        assertThat(ropertyKeys, empty());
+        verify(queryBuilderDelegate).selectAll(entityManager, "id", String.class);
+        verify(idQuery).getResultList();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(keys, empty());
     }
 
     @Test
-    public void loadAllReturnsRopertyKeys() {
+    public void loadAllReturnsIdsOfRopertyKeys() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
-        when(queryBuilderDelegate.all()).thenReturn(typedQuery);
-        when(typedQuery.getResultList()).thenReturn(singletonList(ropertyKey));
+        when(queryBuilderDelegate.selectAll(entityManager, "id", String.class)).thenReturn(idQuery);
+        when(idQuery.getResultList()).thenReturn(singletonList(KEY));
 
-        List<RopertyKey> ropertyKeys = ropertyKeyDAO.loadAllRopertyKeys();
+        List<String> keys = ropertyKeyDAO.loadAllRopertyKeyIds();
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).all();
-        verify(typedQuery).getResultList();
-        verify(entityManager).close();
-        assertThat(ropertyKeys, contains(ropertyKey));
-        assertThat(ropertyKeys.size(), is(1));
+        verify(queryBuilderDelegate).selectAll(entityManager, "id", String.class);
+        verify(idQuery).getResultList();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(keys, contains(KEY));
     }
 
     @Test
     public void findsRopertyKeys() {
-        when(ropertyKey.getId()).thenReturn(KEY);
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
-        when(queryBuilderDelegate.likeliness(any(LikeCriterion.class))).thenReturn(typedQuery);
-        when(typedQuery.getResultList()).thenReturn(singletonList(ropertyKey));
+        when(queryBuilderDelegate.selectLikeliness(eq(entityManager), eq("id"), eq(String.class), any(LikeCriterion.class))).thenReturn(idQuery);
+        when(idQuery.getResultList()).thenReturn(singletonList(KEY));
 
         List<String> keys = ropertyKeyDAO.findKeys(SUBSTRING);
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).likeliness(likeCriterionArgumentCaptor.capture());
-        verify(typedQuery).getResultList();
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).selectLikeliness(eq(entityManager), eq("id"), eq(String.class), likeCriterionArgumentCaptor.capture());
+        verify(idQuery).getResultList();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
 
         LikeCriterion likeCriterion = likeCriterionArgumentCaptor.getValue();
         assertThat(likeCriterion.getAttributeName(), is("id"));
@@ -136,4 +170,83 @@ public class RopertyKeyDAOTest {
         assertThat(keys, contains(KEY));
     }
 
+    @Test
+    public void loadsIdsOfKeysModifiedSinceGivenTime() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.selectGreaterThan(eq(entityManager), eq("id"), eq(String.class), any(GreaterThanCriterion.class))).thenReturn(idQuery);
+        when(idQuery.getResultList()).thenReturn(singletonList(KEY));
+
+        List<String> keys = ropertyKeyDAO.loadRopertyKeyIdsModifiedSince(1L);
+
+        verify(queryBuilderDelegate).selectGreaterThan(eq(entityManager), eq("id"), eq(String.class), greaterThanCriterionArgumentCaptor.capture());
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+
+        GreaterThanCriterion<Long> criterion = greaterThanCriterionArgumentCaptor.getValue();
+        assertThat(criterion.getAttributeName(), is("modified"));
+        assertThat(criterion.getComparison(), is(1L));
+        assertThat(keys, contains(KEY));
+    }
+
+    @Test
+    public void loadsIdsOfKeysAfterGivenKey() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.selectGreaterThanAscending(eq(entityManager), eq("id"), eq(String.class), any(GreaterThanCriterion.class))).thenReturn(idQuery);
+        when(idQuery.setMaxResults(10)).thenReturn(idQuery);
+        when(idQuery.getResultList()).thenReturn(singletonList(KEY));
+
+        List<String> keys = ropertyKeyDAO.loadRopertyKeyIds("after", 10);
+
+        verify(queryBuilderDelegate).selectGreaterThanAscending(eq(entityManager), eq("id"), eq(String.class), idCriterionArgumentCaptor.capture());
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(idCriterionArgumentCaptor.getValue().getAttributeName(), is("id"));
+        assertThat(idCriterionArgumentCaptor.getValue().getComparison(), is("after"));
+        assertThat(keys, contains(KEY));
+    }
+
+    @Test
+    public void findsRopertyKeysAfterGivenKey() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.selectLikelinessGreaterThanAscending(eq(entityManager), eq("id"), eq(String.class), any(LikeCriterion.class), any(GreaterThanCriterion.class))).thenReturn(idQuery);
+        when(idQuery.setMaxResults(10)).thenReturn(idQuery);
+        when(idQuery.getResultList()).thenReturn(singletonList(KEY));
+
+        List<String> keys = ropertyKeyDAO.findKeys(SUBSTRING, "after", 10);
+
+        verify(queryBuilderDelegate).selectLikelinessGreaterThanAscending(eq(entityManager), eq("id"), eq(String.class), likeCriterionArgumentCaptor.capture(), idCriterionArgumentCaptor.capture());
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(likeCriterionArgumentCaptor.getValue().getAttributeName(), is("id"));
+        assertThat(likeCriterionArgumentCaptor.getValue().getExpression(), is('%' + SUBSTRING + '%'));
+        assertThat(idCriterionArgumentCaptor.getValue().getAttributeName(), is("id"));
+        assertThat(idCriterionArgumentCaptor.getValue().getComparison(), is("after"));
+        assertThat(keys, contains(KEY));
+    }
+
+    @Test
+    public void failIfMaximumNumberOfKeysIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> ropertyKeyDAO.loadRopertyKeyIds("", 0));
+    }
+
+    @Test
+    public void failIfNoQueryOnDeletingKeyWithoutValues() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+
+        assertThrows(RopertyPersistenceException.class, () -> ropertyKeyDAO.deleteRopertyKeyWithoutValues(KEY));
+    }
+
+    @Test
+    public void deletesKeyUnlessValuesReferToIt() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        ArgumentCaptor<EqualsCriterion<?>> idCriterionCaptor = ArgumentCaptor.forClass(EqualsCriterion.class);
+        Query deleteQuery = mock(Query.class);
+        when(queryBuilderDelegate.deleteUnreferenced(eq(entityManager), idCriterionCaptor.capture(), eq(RopertyValue.class), eq("key"))).thenReturn(deleteQuery);
+        when(deleteQuery.executeUpdate()).thenReturn(1, 0);
+
+        assertThat(ropertyKeyDAO.deleteRopertyKeyWithoutValues(KEY), is(true));
+        assertThat(ropertyKeyDAO.deleteRopertyKeyWithoutValues(KEY), is(false));
+
+        assertThat(idCriterionCaptor.getValue().getAttributeName(), is("id"));
+        assertThat(idCriterionCaptor.getValue().getComparison(), is(KEY));
+        verify(queryBuilderDelegate, times(2)).closeEntityManager(entityManager);
+    }
+
 }
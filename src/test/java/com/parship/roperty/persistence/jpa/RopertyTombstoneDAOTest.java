@@ -0,0 +1,88 @@
+package com.parship.roperty.persistence.jpa;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class RopertyTombstoneDAOTest {
+
+    private static final String KEY = "key";
+    private static final long SINCE = 4711L;
+
+    @InjectMocks
+    private RopertyTombstoneDAO ropertyTombstoneDAO;
+
+    @Mock
+    private QueryBuilderDelegate<RopertyTombstone> queryBuilderDelegate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TypedQuery<String> typedQuery;
+
+    @Captor
+    private ArgumentCaptor<GreaterThanCriterion<Long>> criterionArgumentCaptor;
+
+    @Test
+    public void failIfMissingEntityManager() {
+        assertThrows(NullPointerException.class, () -> ropertyTombstoneDAO.loadRemovedKeys(SINCE));
+    }
+
+    @Test
+    public void failIfTypedQueryIsNull() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+
+        assertThrows(RopertyPersistenceException.class, () -> ropertyTombstoneDAO.loadRemovedKeys(SINCE));
+    }
+
+    @Test
+    public void returnsEmptyListIfNothingWasRemoved() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.selectGreaterThan(eq(entityManager), eq("id"), eq(String.class), any(GreaterThanCriterion.class))).thenReturn(typedQuery);
+
+        List<String> keys = ropertyTombstoneDAO.loadRemovedKeys(SINCE);
+
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(keys, empty());
+    }
+
+    @Test
+    public void returnsKeysRemovedSinceGivenTime() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.selectGreaterThan(eq(entityManager), eq("id"), eq(String.class), any(GreaterThanCriterion.class))).thenReturn(typedQuery);
+        when(typedQuery.getResultList()).thenReturn(singletonList(KEY));
+
+        List<String> keys = ropertyTombstoneDAO.loadRemovedKeys(SINCE);
+
+        verify(queryBuilderDelegate).createEntityManager();
+        verify(queryBuilderDelegate).selectGreaterThan(eq(entityManager), eq("id"), eq(String.class), criterionArgumentCaptor.capture());
+        verify(typedQuery).getResultList();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+
+        GreaterThanCriterion<Long> criterion = criterionArgumentCaptor.getValue();
+        assertThat(criterion.getAttributeName(), is("removed"));
+        assertThat(criterion.getComparison(), is(SINCE));
+        assertThat(keys, contains(KEY));
+    }
+
+}
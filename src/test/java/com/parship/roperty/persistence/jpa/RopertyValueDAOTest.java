@@ -7,16 +7,25 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -48,6 +57,12 @@ public class RopertyValueDAOTest {
     @Mock
     private Object value;
 
+    @Captor
+    private ArgumentCaptor<GreaterThanCriterion<Long>> greaterThanCriterionArgumentCaptor;
+
+    @Captor
+    private ArgumentCaptor<EqualsCriterion<?>> equalsCriterionArgumentCaptor;
+
     @Test
     public void failIfNoEntityManagerOnLoadingRopertyValuesForKey() {
         assertThrows(NullPointerException.class, () -> ropertyValueDAO.loadRopertyValues(ropertyKey));
@@ -63,31 +78,152 @@ public class RopertyValueDAOTest {
     @Test
     public void returnEmptyListIfNoValuesFoundForRopertyKey() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
-        when(queryBuilderDelegate.equality(any(EqualsCriterion.class))).thenReturn(typedQuery);
+        when(queryBuilderDelegate.equality(eq(entityManager), any(EqualsCriterion.class))).thenReturn(typedQuery);
 
         List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValues(ropertyKey);
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).equality(any(EqualsCriterion.class));
+        verify(queryBuilderDelegate).equality(eq(entityManager), any(EqualsCriterion.class));
         verify(typedQuery).getResultList();
         verify(ropertyKey).getId();
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
         assertThat(ropertyValues, empty());
     }
 
     @Test
     public void returnValuesFoundForRopertyKey() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
-        when(queryBuilderDelegate.equality(any(EqualsCriterion.class))).thenReturn(typedQuery);
+        when(queryBuilderDelegate.equality(eq(entityManager), any(EqualsCriterion.class))).thenReturn(typedQuery);
         when(typedQuery.getResultList()).thenReturn(Arrays.asList(ropertyValue));
 
         List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValues(ropertyKey);
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).equality(any(EqualsCriterion.class));
+        verify(queryBuilderDelegate).equality(eq(entityManager), any(EqualsCriterion.class));
         verify(typedQuery).getResultList();
         verify(ropertyKey).getId();
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(ropertyValues, contains(ropertyValue));
+    }
+
+    @Test
+    public void failIfTypedQueryIsNullOnLoadingAllRopertyValues() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+
+        assertThrows(RopertyPersistenceException.class, () -> ropertyValueDAO.loadAllRopertyValues(0));
+    }
+
+    @Test
+    public void loadAllRopertyValuesJoinsKeysAndOrdersByKey() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.allJoined(entityManager, "key", "id")).thenReturn(typedQuery);
+        when(typedQuery.getResultList()).thenReturn(Arrays.asList(ropertyValue));
+
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadAllRopertyValues(0);
+
+        verify(queryBuilderDelegate).createEntityManager();
+        verify(queryBuilderDelegate).allJoined(entityManager, "key", "id");
+        verify(typedQuery).getResultList();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(ropertyValues, contains(ropertyValue));
+    }
+
+    @Test
+    public void loadAllRopertyValuesPassesFetchSize() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.allJoined(entityManager, "key", "id")).thenReturn(typedQuery);
+
+        ropertyValueDAO.loadAllRopertyValues(500);
+
+        verify(typedQuery).setHint("org.hibernate.fetchSize", 500);
+    }
+
+    @Test
+    public void loadsValuesOfKeyRange() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.joinedRange(entityManager, "key", "id", "a", "c")).thenReturn(typedQuery);
+        when(typedQuery.getResultList()).thenReturn(Arrays.asList(ropertyValue));
+
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValuesOfKeyRange("a", "c", 500);
+
+        verify(typedQuery).setHint("org.hibernate.fetchSize", 500);
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(ropertyValues, contains(ropertyValue));
+    }
+
+    @Test
+    public void failIfTypedQueryIsNullOnLoadingValuesOfKeyRange() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+
+        assertThrows(RopertyPersistenceException.class, () -> ropertyValueDAO.loadRopertyValuesOfKeyRange("a", "c", 0));
+    }
+
+    @Test
+    public void failIfTypedQueryIsNullOnLoadingRopertyValuesOfChangeSet() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+
+        assertThrows(RopertyPersistenceException.class, () -> ropertyValueDAO.loadRopertyValues(ropertyKey, CHANGE_SET));
+
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+    }
+
+    @Test
+    public void loadRopertyValuesOfChangeSetRestrictsKeyAndChangeSet() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.equality(eq(entityManager), any(EqualsCriterion.class), any(EqualsCriterion.class))).thenReturn(typedQuery);
+        when(typedQuery.getResultList()).thenReturn(Arrays.asList(ropertyValue));
+
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValues(ropertyKey, CHANGE_SET);
+
+        verify(queryBuilderDelegate).equality(eq(entityManager), equalsCriterionArgumentCaptor.capture(), equalsCriterionArgumentCaptor.capture());
+        verify(typedQuery).getResultList();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        List<EqualsCriterion<?>> criteria = equalsCriterionArgumentCaptor.getAllValues();
+        assertThat(criteria.get(0).getAttributeName(), is("key"));
+        assertThat(criteria.get(0).getComparison(), is(ropertyKey));
+        assertThat(criteria.get(1).getAttributeName(), is("changeSet"));
+        assertThat(criteria.get(1).getComparison(), is(CHANGE_SET));
+        assertThat(ropertyValues, contains(ropertyValue));
+    }
+
+    @Test
+    public void loadsValuesOfChangeSetForManyKeysInChunks() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.equalityAndIn(eq(entityManager), any(EqualsCriterion.class), eq("key"), any(Collection.class))).thenReturn(typedQuery);
+        when(typedQuery.getResultList()).thenReturn(Arrays.asList(ropertyValue));
+        List<RopertyKey> ropertyKeys = Collections.nCopies(1500, ropertyKey);
+
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValues(ropertyKeys, CHANGE_SET);
+
+        verify(queryBuilderDelegate).equalityAndIn(eq(entityManager), equalsCriterionArgumentCaptor.capture(), eq("key"), eq(ropertyKeys.subList(0, 1000)));
+        verify(queryBuilderDelegate).equalityAndIn(eq(entityManager), any(EqualsCriterion.class), eq("key"), eq(ropertyKeys.subList(1000, 1500)));
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(equalsCriterionArgumentCaptor.getValue().getAttributeName(), is("changeSet"));
+        assertThat(equalsCriterionArgumentCaptor.getValue().getComparison(), is(CHANGE_SET));
+        assertThat(ropertyValues, contains(ropertyValue, ropertyValue));
+    }
+
+    @Test
+    public void loadingValuesOfNoKeysDoesNotRunQuery() {
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValues(Collections.<RopertyKey>emptyList(), CHANGE_SET);
+
+        verifyNoInteractions(queryBuilderDelegate);
+        assertThat(ropertyValues, empty());
+    }
+
+    @Test
+    public void loadRopertyValuesModifiedSinceRestrictsModificationOfJoinedKey() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        when(queryBuilderDelegate.joinedGreaterThan(eq(entityManager), eq("key"), eq("id"), any(GreaterThanCriterion.class))).thenReturn(typedQuery);
+        when(typedQuery.getResultList()).thenReturn(Arrays.asList(ropertyValue));
+
+        List<RopertyValue> ropertyValues = ropertyValueDAO.loadRopertyValuesModifiedSince(4711L);
+
+        verify(queryBuilderDelegate).joinedGreaterThan(eq(entityManager), eq("key"), eq("id"), greaterThanCriterionArgumentCaptor.capture());
+        verify(typedQuery).getResultList();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(greaterThanCriterionArgumentCaptor.getValue().getAttributeName(), is("modified"));
+        assertThat(greaterThanCriterionArgumentCaptor.getValue().getComparison(), is(4711L));
         assertThat(ropertyValues, contains(ropertyValue));
     }
 
@@ -106,29 +242,29 @@ public class RopertyValueDAOTest {
     @Test
     public void returnNullIfSingleRopertyValueNotFound() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
-        when(queryBuilderDelegate.equality(any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class))).thenReturn(typedQuery);
+        when(queryBuilderDelegate.equality(eq(entityManager), any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class))).thenReturn(typedQuery);
 
         RopertyValue result = ropertyValueDAO.loadRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).equality(any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class));
+        verify(queryBuilderDelegate).equality(eq(entityManager), any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class));
         verify(typedQuery).getResultList();
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
         assertThat(result, nullValue());
     }
 
     @Test
     public void returnSingleRopertyValue() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
-        when(queryBuilderDelegate.equality(any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class))).thenReturn(typedQuery);
+        when(queryBuilderDelegate.equality(eq(entityManager), any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class))).thenReturn(typedQuery);
         when(typedQuery.getResultList()).thenReturn(Arrays.asList(ropertyValue));
 
         RopertyValue result = ropertyValueDAO.loadRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).equality(any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class));
+        verify(queryBuilderDelegate).equality(eq(entityManager), any(EqualsCriterion.class), any(EqualsCriterion.class), any(EqualsCriterion.class));
         verify(typedQuery).getResultList();
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
         assertThat(result, is(ropertyValue));
     }
 
@@ -148,7 +284,7 @@ public class RopertyValueDAOTest {
     public void failIfNoResultOnCount() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
         TypedQuery<Long> countQuery = mock(TypedQuery.class);
-        when(queryBuilderDelegate.count(ropertyKey)).thenReturn(countQuery);
+        when(queryBuilderDelegate.count(entityManager, ropertyKey)).thenReturn(countQuery);
 
         assertThrows(RopertyPersistenceException.class, () -> ropertyValueDAO.getNumberOfValues(ropertyKey));
     }
@@ -157,16 +293,88 @@ public class RopertyValueDAOTest {
     public void countShouldReturnNumberOfValues() {
         when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
         TypedQuery<Long> countQuery = mock(TypedQuery.class);
-        when(queryBuilderDelegate.count(ropertyKey)).thenReturn(countQuery);
+        when(queryBuilderDelegate.count(entityManager, ropertyKey)).thenReturn(countQuery);
         when(countQuery.getSingleResult()).thenReturn(4711L);
         Long result = ropertyValueDAO.getNumberOfValues(ropertyKey);
 
         verify(queryBuilderDelegate).createEntityManager();
-        verify(queryBuilderDelegate).count(ropertyKey);
+        verify(queryBuilderDelegate).count(entityManager, ropertyKey);
         verify(countQuery).getSingleResult();
-        verify(entityManager).close();
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
         assertThat(result, is(4711L));
     }
 
+    @Test
+    public void failIfNoQueryOnDeletingValuesOfKey() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+
+        assertThrows(RopertyPersistenceException.class, () -> ropertyValueDAO.deleteRopertyValues(ropertyKey));
+    }
+
+    @Test
+    public void deletesValuesOfKeyWithOneStatement() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        Query deleteQuery = mock(Query.class);
+        when(queryBuilderDelegate.deleteEquality(eq(entityManager), equalsCriterionArgumentCaptor.capture())).thenReturn(deleteQuery);
+        when(deleteQuery.executeUpdate()).thenReturn(3);
+
+        int numDeletedValues = ropertyValueDAO.deleteRopertyValues(ropertyKey);
+
+        EqualsCriterion<?> keyCriterion = equalsCriterionArgumentCaptor.getValue();
+        assertThat(keyCriterion.getAttributeName(), is("key"));
+        assertThat(keyCriterion.getComparison(), is(ropertyKey));
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(numDeletedValues, is(3));
+    }
+
+    @Test
+    public void deletingNoIdsDoesNotRunStatement() {
+        int numDeletedValues = ropertyValueDAO.deleteRopertyValues(ropertyKey, Collections.emptyList());
+
+        verifyNoInteractions(queryBuilderDelegate);
+        assertThat(numDeletedValues, is(0));
+    }
+
+    @Test
+    public void deletesValuesByIdInChunks() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        Query deleteQuery = mock(Query.class);
+        when(queryBuilderDelegate.deleteEqualityAndIn(eq(entityManager), any(EqualsCriterion.class), eq("id"), any(Collection.class))).thenReturn(deleteQuery);
+        when(deleteQuery.executeUpdate()).thenReturn(1000, 500);
+        List<Long> ids = LongStream.range(0, 1500).boxed().collect(Collectors.toList());
+
+        int numDeletedValues = ropertyValueDAO.deleteRopertyValues(ropertyKey, ids);
+
+        verify(queryBuilderDelegate).deleteEqualityAndIn(eq(entityManager), any(EqualsCriterion.class), eq("id"), eq(ids.subList(0, 1000)));
+        verify(queryBuilderDelegate).deleteEqualityAndIn(eq(entityManager), any(EqualsCriterion.class), eq("id"), eq(ids.subList(1000, 1500)));
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(numDeletedValues, is(1500));
+    }
+
+    @Test
+    public void failIfNoQueryOnDeletingSingleValue() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+
+        assertThrows(RopertyPersistenceException.class, () -> ropertyValueDAO.deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET));
+    }
+
+    @Test
+    public void deletesSingleValueByKeyPatternAndChangeSet() {
+        when(queryBuilderDelegate.createEntityManager()).thenReturn(entityManager);
+        Query deleteQuery = mock(Query.class);
+        when(queryBuilderDelegate.deleteEquality(eq(entityManager), equalsCriterionArgumentCaptor.capture(), equalsCriterionArgumentCaptor.capture(), equalsCriterionArgumentCaptor.capture())).thenReturn(deleteQuery);
+        when(deleteQuery.executeUpdate()).thenReturn(1);
+
+        boolean deleted = ropertyValueDAO.deleteRopertyValue(ropertyKey, PATTERN, CHANGE_SET);
+
+        List<EqualsCriterion<?>> criteria = equalsCriterionArgumentCaptor.getAllValues();
+        assertThat(criteria.get(0).getComparison(), is(ropertyKey));
+        assertThat(criteria.get(1).getAttributeName(), is("pattern"));
+        assertThat(criteria.get(1).getComparison(), is(PATTERN));
+        assertThat(criteria.get(2).getAttributeName(), is("changeSet"));
+        assertThat(criteria.get(2).getComparison(), is(CHANGE_SET));
+        verify(queryBuilderDelegate).closeEntityManager(entityManager);
+        assertThat(deleted, is(true));
+    }
 
 }
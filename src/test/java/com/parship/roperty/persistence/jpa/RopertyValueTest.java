@@ -0,0 +1,73 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+
+public class RopertyValueTest {
+
+    @Test
+    public void valueIsDecodedOnlyOnce() {
+        RopertyValue ropertyValue = new RopertyValue();
+        ropertyValue.setValue(new Date(4711L));
+
+        Object value = ropertyValue.getValue();
+
+        assertThat(value, is(new Date(4711L)));
+        assertThat(ropertyValue.getValue(), sameInstance(value));
+    }
+
+    @Test
+    public void valueCanBeReset() {
+        RopertyValue ropertyValue = new RopertyValue();
+        ropertyValue.setValue("value");
+        ropertyValue.setValue(null);
+
+        assertThat(ropertyValue.getValue(), nullValue());
+    }
+
+    @Test
+    public void storedValueMatchesItsEncodingOnly() {
+        RopertyValue ropertyValue = new RopertyValue();
+        ropertyValue.setValue("value");
+
+        assertThat(ropertyValue.hasEncodedValue(RopertyValue.encode("value")), is(true));
+        assertThat(ropertyValue.hasEncodedValue(RopertyValue.encode("other")), is(false));
+        assertThat(ropertyValue.hasEncodedValue(null), is(false));
+    }
+
+    @Test
+    public void nullValueMatchesNull() {
+        RopertyValue ropertyValue = new RopertyValue();
+        ropertyValue.setValue(null);
+
+        assertThat(ropertyValue.hasEncodedValue(null), is(true));
+        assertThat(ropertyValue.hasEncodedValue(RopertyValue.encode("value")), is(false));
+    }
+
+    @Test
+    public void valueWithoutHashNeverMatches() {
+        RopertyValue ropertyValue = new RopertyValue();
+
+        assertThat(ropertyValue.getValueHash(), nullValue());
+        assertThat(ropertyValue.hasEncodedValue(null), is(false));
+    }
+
+    @Test
+    public void hashDiffersForValuesDifferingInOneByte() {
+        assertThat(RopertyValue.hash(new byte[]{1, 2, 3}) == RopertyValue.hash(new byte[]{1, 2, 4}), is(false));
+        assertThat(RopertyValue.hash(new byte[0]) == RopertyValue.hash(null), is(false));
+    }
+
+    @Test
+    public void hashOfStoredValuesDoesNotChange() {
+        // hashes are stored in value_hash, so a different hash would rewrite every value once
+        assertThat(RopertyValue.hash(new byte[]{1, 2, 3}), is(-4394341360416282068L));
+        assertThat(RopertyValue.hash(new byte[0]), is(-1166397803181037274L));
+    }
+
+}
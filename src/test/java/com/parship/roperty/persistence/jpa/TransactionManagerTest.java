@@ -0,0 +1,196 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionManagerTest {
+
+    @InjectMocks
+    private TransactionManager transactionManager;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private EntityTransaction transaction;
+
+    @Test
+    public void failIfNoEntityManagerFactory() {
+        TransactionManager transactionManager = new TransactionManager();
+
+        assertThrows(NullPointerException.class, transactionManager::begin);
+    }
+
+    @Test
+    public void failIfEndedWithoutBegin() {
+        assertThrows(IllegalArgumentException.class, transactionManager::end);
+    }
+
+    @Test
+    public void failIfPersistedWithoutBegin() {
+        assertThrows(IllegalArgumentException.class, () -> transactionManager.persist(new Object()));
+    }
+
+    @Test
+    public void beginAndEndCommitsAndClosesEntityManager() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+        when(entityManager.getTransaction()).thenReturn(transaction);
+        Object entity = new Object();
+
+        transactionManager.begin();
+        transactionManager.persist(entity);
+        transactionManager.end();
+
+        InOrder inOrder = inOrder(transaction, entityManager);
+        inOrder.verify(transaction).begin();
+        inOrder.verify(entityManager).persist(entity);
+        inOrder.verify(transaction).commit();
+        inOrder.verify(entityManager).close();
+        assertThrows(IllegalArgumentException.class, transactionManager::end);
+    }
+
+    @Test
+    public void entityManagerIsClosedEvenIfCommitFails() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+        when(entityManager.getTransaction()).thenReturn(transaction);
+        doThrow(new IllegalStateException()).when(transaction).commit();
+
+        transactionManager.begin();
+        assertThrows(IllegalStateException.class, transactionManager::end);
+
+        verify(entityManager).close();
+        assertThrows(IllegalArgumentException.class, () -> transactionManager.merge(new Object()));
+    }
+
+    @Test
+    public void beginRollsBackTransactionLeftOpenOnSameThread() {
+        EntityManager staleEntityManager = mock(EntityManager.class);
+        EntityTransaction staleTransaction = mock(EntityTransaction.class);
+        when(entityManagerFactory.createEntityManager()).thenReturn(staleEntityManager, entityManager);
+        when(staleEntityManager.getTransaction()).thenReturn(staleTransaction);
+        when(staleTransaction.isActive()).thenReturn(true);
+        when(entityManager.getTransaction()).thenReturn(transaction);
+
+        transactionManager.begin();
+        transactionManager.begin();
+
+        verify(staleTransaction).rollback();
+        verify(staleEntityManager).close();
+        verify(transaction).begin();
+    }
+
+    @Test
+    public void threadsUseTheirOwnTransactions() throws Exception {
+        EntityManager otherEntityManager = mock(EntityManager.class);
+        EntityTransaction otherTransaction = mock(EntityTransaction.class);
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager, otherEntityManager);
+        when(entityManager.getTransaction()).thenReturn(transaction);
+        when(otherEntityManager.getTransaction()).thenReturn(otherTransaction);
+        Object entity = new Object();
+        Object otherEntity = new Object();
+
+        transactionManager.begin();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> otherThread = executorService.submit(() -> {
+                transactionManager.begin();
+                transactionManager.persist(otherEntity);
+                transactionManager.end();
+            });
+            otherThread.get();
+        } finally {
+            executorService.shutdown();
+        }
+        transactionManager.persist(entity);
+        transactionManager.end();
+
+        verify(entityManager).persist(entity);
+        verify(transaction).commit();
+        verify(otherEntityManager).persist(otherEntity);
+        verify(otherTransaction).commit();
+    }
+
+    @Test
+    public void readsBetweenBeginAndEndUseTransactionEntityManager() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+        when(entityManager.getTransaction()).thenReturn(transaction);
+        QueryBuilderDelegate<RopertyKey> queryBuilderDelegate = new QueryBuilderDelegate<>();
+        queryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+
+        transactionManager.begin();
+        EntityManager readEntityManager = queryBuilderDelegate.createEntityManager();
+        queryBuilderDelegate.closeEntityManager(readEntityManager);
+        verify(entityManager, never()).close();
+        transactionManager.end();
+
+        assertThat(readEntityManager, sameInstance(entityManager));
+        verify(entityManagerFactory).createEntityManager();
+        verify(entityManager).close();
+    }
+
+    @Test
+    public void unitOfWorkSharesEntityManagerBetweenReads() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+        QueryBuilderDelegate<RopertyKey> queryBuilderDelegate = new QueryBuilderDelegate<>();
+        queryBuilderDelegate.setEntityManagerFactory(entityManagerFactory);
+
+        transactionManager.beginUnitOfWork();
+        EntityManager first = queryBuilderDelegate.createEntityManager();
+        queryBuilderDelegate.closeEntityManager(first);
+        EntityManager second = queryBuilderDelegate.createEntityManager();
+        queryBuilderDelegate.closeEntityManager(second);
+        transactionManager.endUnitOfWork();
+
+        assertThat(second, sameInstance(first));
+        verify(entityManagerFactory).createEntityManager();
+        verify(entityManager).close();
+    }
+
+    @Test
+    public void rollbackEndsTransaction() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+        when(entityManager.getTransaction()).thenReturn(transaction);
+        when(transaction.isActive()).thenReturn(true);
+
+        transactionManager.begin();
+        transactionManager.rollback();
+
+        verify(transaction).rollback();
+        verify(transaction, never()).commit();
+        verify(entityManager).close();
+        assertThrows(IllegalArgumentException.class, transactionManager::end);
+    }
+
+    @Test
+    public void rollbackWithoutTransactionDoesNothing() {
+        transactionManager.rollback();
+
+        verifyNoInteractions(entityManagerFactory);
+    }
+
+}
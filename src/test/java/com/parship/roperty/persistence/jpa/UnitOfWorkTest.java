@@ -0,0 +1,105 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class UnitOfWorkTest {
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Test
+    public void noEntityManagerOutsideOfUnitOfWork() {
+        assertThat(UnitOfWork.entityManager(entityManagerFactory), nullValue());
+    }
+
+    @Test
+    public void sharesOneEntityManagerUntilEnd() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+
+        UnitOfWork.begin(entityManagerFactory);
+        EntityManager first = UnitOfWork.entityManager(entityManagerFactory);
+        EntityManager second = UnitOfWork.entityManager(entityManagerFactory);
+        boolean scoped = UnitOfWork.isScoped(entityManagerFactory, first);
+        UnitOfWork.end(entityManagerFactory);
+
+        assertThat(first, sameInstance(entityManager));
+        assertThat(second, sameInstance(entityManager));
+        assertThat(scoped, is(true));
+        verify(entityManagerFactory).createEntityManager();
+        verify(entityManager).close();
+        assertThat(UnitOfWork.entityManager(entityManagerFactory), nullValue());
+    }
+
+    @Test
+    public void onlyOutermostEndClosesEntityManager() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+
+        UnitOfWork.begin(entityManagerFactory);
+        UnitOfWork.begin(entityManagerFactory);
+        UnitOfWork.entityManager(entityManagerFactory);
+        UnitOfWork.end(entityManagerFactory);
+        verify(entityManager, never()).close();
+        UnitOfWork.end(entityManagerFactory);
+
+        verify(entityManager).close();
+    }
+
+    @Test
+    public void unusedUnitOfWorkDoesNotCreateEntityManager() {
+        UnitOfWork.begin(entityManagerFactory);
+        UnitOfWork.end(entityManagerFactory);
+
+        verifyNoInteractions(entityManagerFactory);
+    }
+
+    @Test
+    public void discardClosesNestedUnitOfWork() {
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+
+        UnitOfWork.begin(entityManagerFactory);
+        UnitOfWork.begin(entityManagerFactory);
+        UnitOfWork.entityManager(entityManagerFactory);
+        UnitOfWork.discard(entityManagerFactory);
+
+        verify(entityManager).close();
+        assertThat(UnitOfWork.entityManager(entityManagerFactory), nullValue());
+    }
+
+    @Test
+    public void unitsOfWorkOfDifferentFactoriesAreSeparate() {
+        EntityManagerFactory otherEntityManagerFactory = mock(EntityManagerFactory.class);
+
+        UnitOfWork.begin(entityManagerFactory);
+        try {
+            assertThat(UnitOfWork.entityManager(otherEntityManagerFactory), nullValue());
+        } finally {
+            UnitOfWork.end(entityManagerFactory);
+        }
+    }
+
+    @Test
+    public void failIfEndedWithoutBegin() {
+        assertThrows(IllegalArgumentException.class, () -> UnitOfWork.end(entityManagerFactory));
+    }
+
+}
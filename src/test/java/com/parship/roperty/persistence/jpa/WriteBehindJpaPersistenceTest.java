@@ -0,0 +1,268 @@
+package com.parship.roperty.persistence.jpa;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.parship.roperty.DefaultDomainSpecificValueFactory;
+import com.parship.roperty.DefaultKeyValuesFactory;
+import com.parship.roperty.DomainSpecificValue;
+import com.parship.roperty.DomainSpecificValueFactory;
+import com.parship.roperty.KeyValues;
+import com.parship.roperty.KeyValuesFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindJpaPersistenceTest {
+
+    private static final String KEY = "key";
+
+    private final KeyValuesFactory keyValuesFactory = new DefaultKeyValuesFactory();
+
+    private final DomainSpecificValueFactory domainSpecificValueFactory = new DefaultDomainSpecificValueFactory();
+
+    private final WriteBehindJpaPersistence writeBehindPersistence = new WriteBehindJpaPersistence();
+
+    @Mock
+    private JpaPersistence persistence;
+
+    @Captor
+    private ArgumentCaptor<Map<String, KeyValues>> keyValuesMapCaptor;
+
+    @BeforeEach
+    public void wirePersistence() {
+        writeBehindPersistence.setPersistence(persistence);
+        writeBehindPersistence.setKeyValuesFactory(keyValuesFactory);
+        writeBehindPersistence.setDomainSpecificValueFactory(domainSpecificValueFactory);
+        writeBehindPersistence.setFlushInterval(60_000L);
+    }
+
+    @Test
+    public void repeatedStoresOfSamePatternKeepLastValue() {
+        writeBehindPersistence.store(KEY, keyValues("first", "DE"), null);
+        writeBehindPersistence.store(KEY, keyValues("second", "DE"), null);
+        writeBehindPersistence.store(KEY, keyValues("default", null), null);
+
+        verifyNoInteractions(persistence);
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(2));
+
+        writeBehindPersistence.flush();
+
+        verify(persistence).storeAll(keyValuesMapCaptor.capture(), isNull());
+        verifyNoMoreInteractions(persistence);
+        Map<String, KeyValues> keyValuesMap = keyValuesMapCaptor.getValue();
+        assertThat(keyValuesMap.keySet(), contains(KEY));
+        assertThat(valueOf(keyValuesMap.get(KEY), "DE"), is("second"));
+        assertThat(valueOf(keyValuesMap.get(KEY), ""), is("default"));
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(0));
+    }
+
+    @Test
+    public void storesEachChangeSetSeparately() {
+        writeBehindPersistence.store(KEY, keyValues("value", "DE"), null);
+        KeyValues changeSetValues = keyValuesFactory.create(domainSpecificValueFactory);
+        changeSetValues.putWithChangeSet("changeSet", "changed", "DE");
+        writeBehindPersistence.store(KEY, changeSetValues, "changeSet");
+
+        writeBehindPersistence.flush();
+
+        verify(persistence).storeAll(anyMap(), isNull());
+        verify(persistence).storeAll(keyValuesMapCaptor.capture(), eq("changeSet"));
+        DomainSpecificValue domainSpecificValue = keyValuesMapCaptor.getValue().get(KEY).getDomainSpecificValues().iterator().next();
+        assertThat(domainSpecificValue.getChangeSet(), is("changeSet"));
+        assertThat(domainSpecificValue.getValue(), is("changed"));
+    }
+
+    @Test
+    public void storeFlushesWhenMaxPendingValuesAreQueued() {
+        writeBehindPersistence.setMaxPendingValues(2);
+
+        writeBehindPersistence.store("first", keyValues("value", null), null);
+        verifyNoInteractions(persistence);
+        writeBehindPersistence.store("second", keyValues("value", null), null);
+
+        verify(persistence).storeAll(keyValuesMapCaptor.capture(), isNull());
+        assertThat(keyValuesMapCaptor.getValue().keySet(), contains("first", "second"));
+    }
+
+    @Test
+    public void failedFlushQueuesValuesAgain() {
+        doThrow(new RopertyPersistenceException("failed")).doNothing().when(persistence).storeAll(anyMap(), isNull());
+        writeBehindPersistence.store(KEY, keyValues("first", null), null);
+
+        assertThrows(RopertyPersistenceException.class, writeBehindPersistence::flush);
+        writeBehindPersistence.store(KEY, keyValues("second", null), null);
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(1));
+        writeBehindPersistence.flush();
+
+        verify(persistence, times(2)).storeAll(keyValuesMapCaptor.capture(), isNull());
+        assertThat(valueOf(keyValuesMapCaptor.getValue().get(KEY), ""), is("second"));
+    }
+
+    @Test
+    public void loadAnswersWhileFlushesKeepFailing() {
+        doThrow(new RopertyPersistenceException("failed")).when(persistence).storeAll(anyMap(), isNull());
+        KeyValues loaded = keyValues("loaded", null);
+        when(persistence.load(KEY, keyValuesFactory, domainSpecificValueFactory)).thenReturn(loaded);
+        List<RuntimeException> failures = new ArrayList<>();
+        writeBehindPersistence.setFlushFailureListener(failures::add);
+        writeBehindPersistence.store(KEY, keyValues("value", null), null);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(writeBehindPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory), is(sameInstance(loaded)));
+        }
+
+        verify(persistence, times(3)).storeAll(anyMap(), isNull());
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(0));
+        assertThat(failures, hasSize(3));
+        assertThat(failures.get(2).getMessage(), is("Dropped queued values of keys [key] after 3 failed flushes"));
+    }
+
+    @Test
+    public void badValueOnlyDropsItsOwnKey() {
+        doAnswer(invocation -> {
+            Map<String, KeyValues> keyValuesMap = invocation.getArgument(0);
+            if (keyValuesMap.containsKey("bad")) {
+                throw new RopertyPersistenceException("failed");
+            }
+            return null;
+        }).when(persistence).storeAll(anyMap(), isNull());
+        writeBehindPersistence.store("first", keyValues("value", null), null);
+        writeBehindPersistence.store("bad", keyValues("value", null), null);
+        writeBehindPersistence.store("second", keyValues("value", null), null);
+
+        assertThrows(RopertyPersistenceException.class, writeBehindPersistence::flush);
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(1));
+        assertThrows(RopertyPersistenceException.class, writeBehindPersistence::flush);
+        RopertyPersistenceException exception = assertThrows(RopertyPersistenceException.class, writeBehindPersistence::flush);
+
+        assertThat(exception.getMessage(), is("Dropped queued values of keys [bad] after 3 failed flushes"));
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(0));
+        verify(persistence, times(6)).storeAll(keyValuesMapCaptor.capture(), isNull());
+        List<Map<String, KeyValues>> keyValuesMaps = keyValuesMapCaptor.getAllValues();
+        assertThat(keyValuesMaps.get(0).keySet(), contains("first", "bad", "second"));
+        assertThat(keyValuesMaps.get(1).keySet(), contains("first"));
+        assertThat(keyValuesMaps.get(2).keySet(), contains("bad"));
+        assertThat(keyValuesMaps.get(3).keySet(), contains("second"));
+    }
+
+    @Test
+    public void removalDiscardsQueuedValuesOfKeyIfFlushFails() {
+        doThrow(new RopertyPersistenceException("failed")).when(persistence).storeAll(anyMap(), isNull());
+        writeBehindPersistence.store(KEY, keyValues("value", null), null);
+        writeBehindPersistence.store("other", keyValues("value", null), null);
+
+        writeBehindPersistence.remove(KEY, (KeyValues) null, null);
+
+        verify(persistence).remove(KEY, (KeyValues) null, null);
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(1));
+    }
+
+    @Test
+    public void failIfValueCannotBeSerialized() {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        keyValues.put(new Object());
+
+        assertThrows(RopertyPersistenceException.class, () -> writeBehindPersistence.store(KEY, keyValues, null));
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(0));
+    }
+
+    @Test
+    public void committedStoreFailsIfFlushFails() {
+        writeBehindPersistence.setDurability(WriteDurability.COMMITTED);
+        writeBehindPersistence.setMaxPendingValues(1);
+        doThrow(new RopertyPersistenceException("failed")).when(persistence).storeAll(anyMap(), isNull());
+
+        assertThrows(RopertyPersistenceException.class, () -> writeBehindPersistence.store(KEY, keyValues("value", null), null));
+        assertThat(writeBehindPersistence.getNumPendingValues(), is(0));
+    }
+
+    @Test
+    public void committedStoreReturnsAfterFlush() {
+        writeBehindPersistence.setDurability(WriteDurability.COMMITTED);
+        writeBehindPersistence.setFlushInterval(10L);
+
+        writeBehindPersistence.store(KEY, keyValues("value", null), null);
+
+        verify(persistence).storeAll(anyMap(), isNull());
+        writeBehindPersistence.close();
+    }
+
+    @Test
+    public void readsAndRemovalsFlushFirst() {
+        writeBehindPersistence.store(KEY, keyValues("value", null), null);
+
+        writeBehindPersistence.load(KEY, keyValuesFactory, domainSpecificValueFactory);
+        writeBehindPersistence.store(KEY, keyValues("value", null), null);
+        writeBehindPersistence.remove(KEY, (KeyValues) null, null);
+
+        InOrder inOrder = inOrder(persistence);
+        inOrder.verify(persistence).storeAll(anyMap(), isNull());
+        inOrder.verify(persistence).load(KEY, keyValuesFactory, domainSpecificValueFactory);
+        inOrder.verify(persistence).storeAll(anyMap(), isNull());
+        inOrder.verify(persistence).remove(KEY, (KeyValues) null, null);
+    }
+
+    @Test
+    public void closeFlushesAndRejectsFurtherStores() {
+        writeBehindPersistence.store(KEY, keyValues("value", null), null);
+
+        writeBehindPersistence.close();
+
+        verify(persistence).storeAll(anyMap(), isNull());
+        assertThrows(IllegalStateException.class, () -> writeBehindPersistence.store(KEY, keyValues("value", null), null));
+    }
+
+    @Test
+    public void failIfMaxPendingValuesIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> writeBehindPersistence.setMaxPendingValues(0));
+    }
+
+    @Test
+    public void failIfMaxFlushAttemptsIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> writeBehindPersistence.setMaxFlushAttempts(0));
+    }
+
+    private KeyValues keyValues(String value, String domainKeyPart) {
+        KeyValues keyValues = keyValuesFactory.create(domainSpecificValueFactory);
+        if (domainKeyPart == null) {
+            keyValues.put(value);
+        } else {
+            keyValues.put(value, domainKeyPart);
+        }
+        return keyValues;
+    }
+
+    private static Object valueOf(KeyValues keyValues, String pattern) {
+        for (DomainSpecificValue domainSpecificValue : keyValues.getDomainSpecificValues()) {
+            if (domainSpecificValue.getPatternStr().equals(pattern)) {
+                return domainSpecificValue.getValue();
+            }
+        }
+        return null;
+    }
+}